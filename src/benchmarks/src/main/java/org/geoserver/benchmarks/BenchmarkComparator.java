@@ -0,0 +1,120 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Compares two JMH JSON result files (as written by <code>-rf json</code>) and fails when a
+ * benchmark got slower than the allowed threshold.
+ * <p>
+ * Usage: <code>BenchmarkComparator &lt;baseline.json&gt; &lt;current.json&gt; [threshold]</code>,
+ * where the threshold is the allowed relative slowdown, <code>0.10</code> by default. Benchmarks
+ * are matched by name and parameters, scores are compared according to their unit, so that both
+ * "time per operation" and "operations per time" modes are handled. When the baseline is missing
+ * the comparison is skipped.
+ * </p>
+ */
+public class BenchmarkComparator {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args[0].trim().isEmpty()) {
+            System.out.println("No JMH baseline provided, skipping the comparison");
+            return;
+        }
+        File baselineFile = new File(args[0]);
+        if (!baselineFile.exists()) {
+            System.out.println("JMH baseline " + baselineFile + " not found, skipping the comparison");
+            return;
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+
+        Map<String, Score> baseline = read(baselineFile);
+        Map<String, Score> current = read(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : new TreeMap<>(current).entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null || !before.unit.equals(after.unit)) {
+                System.out.println(String.format("NEW        %s: %.3f %s", entry.getKey(),
+                        after.score, after.unit));
+                continue;
+            }
+            double slowdown = after.slowdownAgainst(before);
+            boolean regressed = slowdown > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format("%-10s %s: %.3f -> %.3f %s (%+.1f%%)",
+                    regressed ? "REGRESSED" : "OK", entry.getKey(), before.score, after.score,
+                    after.unit, slowdown * 100));
+        }
+
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) slower than the "
+                    + (threshold * 100) + "% threshold");
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Score> read(File file) throws IOException {
+        JSONArray results = JSONArray.fromObject(FileUtils.readFileToString(file,
+                StandardCharsets.UTF_8));
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            StringBuilder key = new StringBuilder(result.getString("benchmark"));
+            JSONObject params = result.optJSONObject("params");
+            if (params != null && !params.isNullObject()) {
+                Map<String, String> sorted = new TreeMap<>();
+                for (Iterator it = params.keys(); it.hasNext();) {
+                    String name = (String) it.next();
+                    sorted.put(name, params.getString(name));
+                }
+                key.append(sorted);
+            }
+            JSONObject metric = result.getJSONObject("primaryMetric");
+            scores.put(key.toString(),
+                    new Score(metric.getDouble("score"), metric.getString("scoreUnit")));
+        }
+        return scores;
+    }
+
+    static class Score {
+        final double score;
+
+        final String unit;
+
+        Score(double score, String unit) {
+            this.score = score;
+            this.unit = unit;
+        }
+
+        /**
+         * Relative slowdown of this score compared to the other one, negative values mean it got
+         * faster
+         */
+        double slowdownAgainst(Score other) {
+            // throughput units are "ops/time", everything else is "time/op"
+            if (unit.startsWith("ops/")) {
+                return other.score / score - 1;
+            } else {
+                return score / other.score - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.io.IOException;
+
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourcePool;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.impl.GeoServerImpl;
+import org.geoserver.config.impl.GeoServerInfoImpl;
+import org.geoserver.wfs.WFSInfoImpl;
+import org.geoserver.wms.WMSInfoImpl;
+import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Builds the in memory catalog, configuration and data shared by the benchmarks, without any
+ * data directory or Spring context.
+ * <p>
+ * Everything is generated deterministically so that results of different builds can be
+ * compared.
+ * </p>
+ */
+class BenchmarkData {
+
+    static final String NAMESPACE_URI = "http://geoserver.org/benchmarks";
+
+    static final String POLYGONS = "polygons";
+
+    final CatalogImpl catalog;
+
+    final GeoServer geoServer;
+
+    final MemoryDataStore dataStore;
+
+    /**
+     * Creates a catalog with the given number of workspaces, each holding
+     * <code>layersPerWorkspace</code> feature type layers.
+     */
+    BenchmarkData(int workspaces, int layersPerWorkspace) {
+        dataStore = new MemoryDataStore();
+        dataStore.setNamespaceURI(NAMESPACE_URI);
+
+        catalog = new CatalogImpl();
+        catalog.setResourcePool(new ResourcePool(catalog) {
+            @Override
+            public DataStore getDataStore(DataStoreInfo info) throws IOException {
+                return dataStore;
+            }
+        });
+
+        CatalogFactory factory = catalog.getFactory();
+        StyleInfo style = factory.createStyle();
+        style.setName("polygon");
+        style.setFilename("polygon.sld");
+        catalog.add(style);
+
+        for (int w = 0; w < workspaces; w++) {
+            WorkspaceInfo ws = factory.createWorkspace();
+            ws.setName(workspaceName(w));
+            catalog.add(ws);
+
+            NamespaceInfo ns = factory.createNamespace();
+            ns.setPrefix(ws.getName());
+            ns.setURI(NAMESPACE_URI + "/" + ws.getName());
+            catalog.add(ns);
+
+            DataStoreInfo ds = factory.createDataStore();
+            ds.setName(storeName(w));
+            ds.setWorkspace(ws);
+            ds.setEnabled(true);
+            catalog.add(ds);
+
+            for (int l = 0; l < layersPerWorkspace; l++) {
+                FeatureTypeInfo ft = factory.createFeatureType();
+                ft.setName(layerName(w, l));
+                ft.setNativeName(ft.getName());
+                ft.setNamespace(ns);
+                ft.setStore(ds);
+                ft.setEnabled(true);
+                catalog.add(ft);
+
+                LayerInfo layer = factory.createLayer();
+                layer.setResource(ft);
+                layer.setDefaultStyle(style);
+                layer.setEnabled(true);
+                catalog.add(layer);
+            }
+        }
+
+        geoServer = new GeoServerImpl();
+        geoServer.setCatalog(catalog);
+
+        GeoServerInfoImpl global = new GeoServerInfoImpl(geoServer);
+        global.setId("geoserver");
+        geoServer.setGlobal(global);
+
+        WMSInfoImpl wms = new WMSInfoImpl();
+        wms.setId("wms");
+        wms.setName("WMS");
+        wms.setEnabled(true);
+        geoServer.add(wms);
+
+        WFSInfoImpl wfs = new WFSInfoImpl();
+        wfs.setId("wfs");
+        wfs.setName("WFS");
+        wfs.setEnabled(true);
+        geoServer.add(wfs);
+    }
+
+    /**
+     * Adds to the memory store a feature type made of a grid of <code>size x size</code>
+     * rectangular polygons covering the whole world.
+     */
+    SimpleFeatureType addPolygonGrid(int size) throws IOException, SchemaException {
+        SimpleFeatureType type = DataUtilities.createType(NAMESPACE_URI, POLYGONS,
+                "the_geom:Polygon:srid=4326,name:String,value:Double");
+        dataStore.createSchema(type);
+
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        double dx = 360d / size;
+        double dy = 180d / size;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double x = -180 + i * dx;
+                double y = -90 + j * dy;
+                Polygon polygon = gf.createPolygon(new Coordinate[] { new Coordinate(x, y),
+                        new Coordinate(x + dx, y), new Coordinate(x + dx, y + dy),
+                        new Coordinate(x, y + dy), new Coordinate(x, y) });
+                fb.add(polygon);
+                fb.add("cell." + i + "." + j);
+                fb.add(i * size + j + 0.123456789);
+                SimpleFeature feature = fb.buildFeature(POLYGONS + "." + (i * size + j));
+                dataStore.addFeature(feature);
+            }
+        }
+        return type;
+    }
+
+    static String workspaceName(int w) {
+        return "ws" + w;
+    }
+
+    static String storeName(int w) {
+        return "store" + w;
+    }
+
+    static String layerName(int w, int l) {
+        return "layer_" + w + "_" + l;
+    }
+}
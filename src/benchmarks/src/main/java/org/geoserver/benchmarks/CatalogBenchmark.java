@@ -0,0 +1,126 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.catalog.CatalogFacade;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookups by name against {@link CatalogImpl} and its {@link CatalogFacade}, the calls every
+ * OWS request performs several times when resolving layers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({ "10", "100" })
+    int workspaces;
+
+    @Param({ "10", "200" })
+    int layersPerWorkspace;
+
+    CatalogImpl catalog;
+
+    CatalogFacade facade;
+
+    String[] prefixedNames;
+
+    String[] localNames;
+
+    WorkspaceInfo[] workspaceInfos;
+
+    NamespaceInfo[] namespaceInfos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData(workspaces, layersPerWorkspace);
+        catalog = data.catalog;
+        facade = catalog.getFacade();
+
+        int count = workspaces * layersPerWorkspace;
+        prefixedNames = new String[count];
+        localNames = new String[count];
+        workspaceInfos = new WorkspaceInfo[count];
+        namespaceInfos = new NamespaceInfo[count];
+        int i = 0;
+        for (int w = 0; w < workspaces; w++) {
+            WorkspaceInfo ws = catalog.getWorkspaceByName(BenchmarkData.workspaceName(w));
+            NamespaceInfo ns = catalog.getNamespaceByPrefix(ws.getName());
+            for (int l = 0; l < layersPerWorkspace; l++, i++) {
+                localNames[i] = BenchmarkData.layerName(w, l);
+                prefixedNames[i] = ws.getName() + ":" + localNames[i];
+                workspaceInfos[i] = ws;
+                namespaceInfos[i] = ns;
+            }
+        }
+    }
+
+    int next() {
+        return ThreadLocalRandom.current().nextInt(prefixedNames.length);
+    }
+
+    @Benchmark
+    public LayerInfo getLayerByPrefixedName() {
+        return catalog.getLayerByName(prefixedNames[next()]);
+    }
+
+    @Benchmark
+    public LayerInfo getLayerByUnqualifiedName() {
+        return catalog.getLayerByName(localNames[next()]);
+    }
+
+    @Benchmark
+    public FeatureTypeInfo getFeatureTypeByName() {
+        int i = next();
+        return catalog.getFeatureTypeByName(namespaceInfos[i], localNames[i]);
+    }
+
+    @Benchmark
+    public LayerInfo facadeGetLayerByName() {
+        return facade.getLayerByName(prefixedNames[next()]);
+    }
+
+    @Benchmark
+    public FeatureTypeInfo facadeGetResourceByName() {
+        int i = next();
+        return facade.getResourceByName(namespaceInfos[i], localNames[i], FeatureTypeInfo.class);
+    }
+
+    @Benchmark
+    public DataStoreInfo facadeGetStoreByName() {
+        int i = next();
+        return facade.getStoreByName(workspaceInfos[i], BenchmarkData.storeName(i
+                / layersPerWorkspace), DataStoreInfo.class);
+    }
+
+    @Benchmark
+    public int facadeGetLayers() {
+        return facade.getLayers().size();
+    }
+}
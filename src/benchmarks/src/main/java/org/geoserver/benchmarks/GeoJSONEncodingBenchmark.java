@@ -0,0 +1,72 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.opengis.wfs20.FeatureCollectionType;
+import net.opengis.wfs20.Wfs20Factory;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.geoserver.wfs.json.GeoJSONGetFeatureResponse;
+import org.geoserver.wfs.json.JSONType;
+import org.geoserver.wfs.request.FeatureCollectionResponse;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding of a WFS 2.0 GetFeature response through {@link GeoJSONGetFeatureResponse}, reading
+ * from a memory data store and writing to a null stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class GeoJSONEncodingBenchmark {
+
+    /**
+     * Side of the polygon grid, the number of features encoded is its square
+     */
+    @Param({ "10", "100" })
+    int gridSize;
+
+    GeoJSONGetFeatureResponse response;
+
+    SimpleFeatureCollection features;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkData data = new BenchmarkData(1, 1);
+        data.addPolygonGrid(gridSize);
+        features = data.dataStore.getFeatureSource(BenchmarkData.POLYGONS).getFeatures();
+
+        response = new GeoJSONGetFeatureResponse(data.geoServer, JSONType.json);
+    }
+
+    @Benchmark
+    public long encode() throws Exception {
+        FeatureCollectionType fct = Wfs20Factory.eINSTANCE.createFeatureCollectionType();
+        FeatureCollectionResponse fcr = FeatureCollectionResponse.adapt(fct);
+        fcr.getFeature().add(features);
+
+        CountingOutputStream output = new CountingOutputStream(new NullOutputStream());
+        response.write(fcr, output, null);
+        return output.getByteCount();
+    }
+}
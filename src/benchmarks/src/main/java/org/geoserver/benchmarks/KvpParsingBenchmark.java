@@ -0,0 +1,102 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.ows.Dispatcher;
+import org.geoserver.ows.kvp.BooleanKvpParser;
+import org.geoserver.ows.kvp.FormatOptionsKvpParser;
+import org.geoserver.ows.kvp.IntegerKvpParser;
+import org.geoserver.ows.util.KvpMap;
+import org.geoserver.ows.util.KvpUtils;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.kvp.BBoxKvpParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * The KVP handling steps {@link Dispatcher} goes through for every GET request: query string
+ * parsing, normalization and the lookup and execution of the {@link org.geoserver.ows.KvpParser}
+ * extensions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KvpParsingBenchmark {
+
+    static final String GET_MAP = "wms?SERVICE=WMS&VERSION=1.1.1&REQUEST=GetMap"
+            + "&LAYERS=ws0:layer_0_0,ws0:layer_0_1&STYLES=&FORMAT=image%2Fpng&TRANSPARENT=true"
+            + "&SRS=EPSG%3A4326&BBOX=-180,-90,0,90&WIDTH=256&HEIGHT=256"
+            + "&FORMAT_OPTIONS=antialias:full;dpi:90&TILED=true";
+
+    GenericApplicationContext context;
+
+    Map<String, Object> raw;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new GenericApplicationContext();
+        context.getBeanFactory().registerSingleton("widthKvpParser", new IntegerKvpParser("width"));
+        context.getBeanFactory().registerSingleton("heightKvpParser", new IntegerKvpParser("height"));
+        context.getBeanFactory().registerSingleton("transparentKvpParser",
+                new BooleanKvpParser("transparent"));
+        context.getBeanFactory().registerSingleton("tiledKvpParser", new BooleanKvpParser("tiled"));
+        context.getBeanFactory().registerSingleton("bboxKvpParser", new BBoxKvpParser());
+        context.getBeanFactory().registerSingleton("formatOptionsKvpParser",
+                new FormatOptionsKvpParser("format_options"));
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+
+        raw = KvpUtils.parseQueryString(GET_MAP);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> parseQueryString() {
+        return KvpUtils.parseQueryString(GET_MAP);
+    }
+
+    @Benchmark
+    public KvpMap normalize() {
+        return KvpUtils.normalize(raw);
+    }
+
+    @Benchmark
+    public KvpMap parseQueryStringNormalizeAndParse(Blackhole bh) {
+        // same sequence as Dispatcher.preParseKVP and parseKVP: the normalized map is parsed in
+        // place, a copy is kept around as the raw kvp
+        KvpMap kvp = KvpUtils.normalize(KvpUtils.parseQueryString(GET_MAP));
+        KvpMap rawKvp = new KvpMap(kvp);
+        List<Throwable> errors = KvpUtils.parse(kvp);
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Unexpected KVP parse failure", errors.get(0));
+        }
+        bh.consume(rawKvp);
+        return kvp;
+    }
+}
@@ -0,0 +1,100 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.RenderedImageMap;
+import org.geoserver.wms.map.RenderedImageMapOutputFormat;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link RenderedImageMapOutputFormat#produceMap(WMSMapContent)} against a grid of polygons held
+ * in a memory data store, so that the measure is dominated by GeoServer and the renderer rather
+ * than by data access.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class RenderingBenchmark {
+
+    @Param({ "256", "1024" })
+    int size;
+
+    @Param({ "1", "8" })
+    int layers;
+
+    @Param({ "100" })
+    int gridSize;
+
+    RenderedImageMapOutputFormat outputFormat;
+
+    SimpleFeatureSource source;
+
+    Style style;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkData data = new BenchmarkData(1, 1);
+        data.addPolygonGrid(gridSize);
+        source = data.dataStore.getFeatureSource(BenchmarkData.POLYGONS);
+
+        StyleBuilder sb = new StyleBuilder();
+        style = sb.createStyle(sb.createPolygonSymbolizer(Color.LIGHT_GRAY, Color.BLACK, 1));
+
+        outputFormat = new RenderedImageMapOutputFormat("image/png", new WMS(data.geoServer));
+    }
+
+    @Benchmark
+    public RenderedImageMap produceMap() {
+        GetMapRequest request = new GetMapRequest();
+        request.setFormat("image/png");
+        request.setWidth(size);
+        request.setHeight(size);
+        request.setTransparent(true);
+
+        WMSMapContent map = new WMSMapContent(request);
+        map.getViewport().setBounds(
+                new ReferencedEnvelope(-180, 180, -90, 90, DefaultGeographicCRS.WGS84));
+        map.setMapWidth(size);
+        map.setMapHeight(size);
+        map.setTransparent(true);
+        map.setBgColor(Color.WHITE);
+        for (int i = 0; i < layers; i++) {
+            map.addLayer(new FeatureLayer(source, style));
+        }
+
+        RenderedImageMap result = outputFormat.produceMap(map);
+        // force the image to be computed, encoding is not part of this benchmark
+        result.getImage().getData();
+        // disposes the map content as well
+        result.dispose();
+        return result;
+    }
+}
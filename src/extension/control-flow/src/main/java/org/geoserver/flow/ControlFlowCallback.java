@@ -102,6 +102,13 @@ public class ControlFlowCallback extends AbstractDispatcherCallback implements A
         return runningRequests.get();
     }
 
+    /**
+     * Returns the provider of the flow controllers
+     */
+    public FlowControllerProvider getProvider() {
+        return provider;
+    }
+
     public Operation operationDispatched(Request request, Operation operation) {
         // if this request is nested, release the previous controllers and grab new ones
         // Nesting happens only with integrated GWC, sometimes the nested request is similar to the
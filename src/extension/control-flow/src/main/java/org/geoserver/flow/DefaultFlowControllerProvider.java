@@ -61,6 +61,13 @@ public class DefaultFlowControllerProvider implements FlowControllerProvider {
         return controllers;
     }
 
+    /**
+     * Returns the current flow controllers, without checking the configuration for changes
+     */
+    public List<FlowController> getControllers() {
+        return controllers;
+    }
+
     @Override
     public long getTimeout(Request request) {
         return timeout;
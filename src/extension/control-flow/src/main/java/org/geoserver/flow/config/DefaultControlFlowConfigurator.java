@@ -8,6 +8,7 @@ package org.geoserver.flow.config;
 import org.geoserver.config.GeoServerPluginConfigurator;
 import org.geoserver.flow.ControlFlowConfigurator;
 import org.geoserver.flow.FlowController;
+import org.geoserver.flow.controller.AdaptiveThreadBlocker;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.CookieKeyGenerator;
 import org.geoserver.flow.controller.GlobalFlowController;
@@ -22,6 +23,7 @@ import org.geoserver.flow.controller.RateFlowController;
 import org.geoserver.flow.controller.SimpleThreadBlocker;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.ThreadBlocker;
+import org.geoserver.flow.controller.TokenBucketFlowController;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.GeoServerResourceLoader;
@@ -50,7 +52,7 @@ import java.util.regex.Pattern;
  * @author Juan Marin, OpenGeo
  */
 public class DefaultControlFlowConfigurator implements ControlFlowConfigurator, GeoServerPluginConfigurator {
-    static final Pattern RATE_PATTERN = Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?");
+    static final Pattern RATE_PATTERN = Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?(;bucket)?");
 
     static final Logger LOGGER = Logging.getLogger(DefaultControlFlowConfigurator.class);
     static final String PROPERTYFILENAME="controlflow.properties";
@@ -65,7 +67,7 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
         public FlowController build(String[] keys, String value) {
             Matcher matcher = RATE_PATTERN.matcher(value);
             if (!matcher.matches()) {
-                LOGGER.severe("Rate limiting rule values should be expressed as <rate</<unit>[;<delay>s], "
+                LOGGER.severe("Rate limiting rule values should be expressed as <rate</<unit>[;<delay>s][;bucket], "
                         + "where unit can be s, m, h or d. This one is invalid: "
                         + value);
                 return null;
@@ -83,6 +85,11 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
             String format = keys.length >= 5 ? keys[4] : null;
             OWSRequestMatcher requestMatcher = new OWSRequestMatcher(service, request, format);
             KeyGenerator keyGenerator = buildKeyGenerator(keys, value);
+            if (matcher.group(5) != null) {
+                // smooth rate limiting, no bursts at the time period boundaries
+                return new TokenBucketFlowController(requestMatcher, rate, interval, delay,
+                        keyGenerator);
+            }
             return new RateFlowController(requestMatcher, rate, interval, delay, keyGenerator);
         }
 
@@ -114,6 +121,7 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
         Properties p = configFile.getProperties();
         List<FlowController> newControllers = new ArrayList<>();
         PriorityProvider priorityProvider = getPriorityProvider(p);
+        int adaptiveFactor = getAdaptiveFactor(p, priorityProvider);
         
         for (Object okey : p.keySet()) {
             String key = ((String) okey).trim();
@@ -125,7 +133,8 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
             StringTokenizer tokenizer = new StringTokenizer(value, ",");
             try {
                 // some properties are not integers
-                if("ip.blacklist".equals(key) || "ip.whitelist".equals(key) || "ows.priority.http".equals(key)) {
+                if("ip.blacklist".equals(key) || "ip.whitelist".equals(key) || "ows.priority.http".equals(key)
+                        || "adaptive".equals(key)) {
                     continue;
                 } else {
                     if (!key.startsWith("user.ows") && !key.startsWith("ip.ows")) {
@@ -148,10 +157,10 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
                 continue;
             }
             if ("ows.global".equalsIgnoreCase(key)) {
-                controller = new GlobalFlowController(queueSize, buildBlocker(queueSize, priorityProvider));
+                controller = new GlobalFlowController(queueSize, buildBlocker(queueSize, priorityProvider, adaptiveFactor));
             } else if ("ows".equals(keys[0])) {
                 // todo: check, if possible, if the service, method and output format actually exist
-                ThreadBlocker threadBlocker = buildBlocker(queueSize, priorityProvider);
+                ThreadBlocker threadBlocker = buildBlocker(queueSize, priorityProvider, adaptiveFactor);
                 if (keys.length >= 4) {
                     controller = new BasicOWSController(keys[1], keys[2], keys[3], queueSize, threadBlocker);
                 } else if (keys.length == 3) {
@@ -239,16 +248,56 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
         return null;
     }
 
+    /**
+     * Parses the configuration for adaptive concurrency limits
+     * 
+     * @param p the configuration properties
+     * @param priorityProvider the priority provider, if any
+     * @return How many times the configured queue sizes the adaptive limits can grow, or 0 if
+     *         the limits are fixed
+     */
+    private int getAdaptiveFactor(Properties p, PriorityProvider priorityProvider) {
+        String value = p.getProperty("adaptive");
+        if (value == null) {
+            return 0;
+        }
+        int factor;
+        try {
+            factor = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            factor = 0;
+        }
+        if (factor < 1) {
+            LOGGER.severe("Unexpected adaptive specification found '" + value + "', "
+                    + "the expected format is a positive integer, the maximum limit "
+                    + "as a multiple of the configured queue sizes");
+            return 0;
+        }
+        if (priorityProvider != null) {
+            LOGGER.warning("Adaptive limits cannot be combined with priorities, "
+                    + "keeping the configured queue sizes");
+            return 0;
+        }
+        LOGGER.info("Found adaptive limits specification adaptive=" + value);
+        return factor;
+    }
+
     /**
      * Builds a {@link ThreadBlocker} based on a queue size and a prority provider
      * @param queueSize The count of concurrent requests allowed to run
      * @param priorityProvider The priority provider (if not null, a 
      * {@link org.geoserver.flow.controller.PriorityThreadBlocker} will be built
+     * @param adaptiveFactor If positive, an {@link AdaptiveThreadBlocker} starting at the queue
+     * size and growing up to this many times it will be built
      * @return a {@link ThreadBlocker}
      */
-    private ThreadBlocker buildBlocker(int queueSize, PriorityProvider priorityProvider) {
+    private ThreadBlocker buildBlocker(int queueSize, PriorityProvider priorityProvider,
+            int adaptiveFactor) {
         if (priorityProvider != null) {
             return new PriorityThreadBlocker(queueSize, priorityProvider);
+        } else if (adaptiveFactor > 0 && queueSize > 0) {
+            int maxLimit = (int) Math.min(Integer.MAX_VALUE, (long) queueSize * adaptiveFactor);
+            return new AdaptiveThreadBlocker(queueSize, maxLimit);
         } else {
             return new SimpleThreadBlocker(queueSize);
         }
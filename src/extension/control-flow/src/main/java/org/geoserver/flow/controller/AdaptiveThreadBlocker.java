@@ -0,0 +1,248 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A blocker whose concurrency limit adapts to the observed request latency, instead of being fixed.
+ * <p>
+ * The limit follows a gradient algorithm: the average latency of the recent requests is compared
+ * with a long term average, as long as the two are close the limit keeps growing, when the recent
+ * latency inflates, meaning requests are piling up on some resource, the limit shrinks
+ * proportionally. The limit starts at the configured queue size and moves between 1 and a
+ * configured maximum.
+ * </p>
+ */
+public class AdaptiveThreadBlocker implements ThreadBlocker {
+
+    static final Logger LOGGER = Logging.getLogger(AdaptiveThreadBlocker.class);
+
+    /**
+     * The minimum number of samples the recent latency is computed from
+     */
+    static final int WINDOW_SAMPLES = 10;
+
+    /**
+     * The minimum time span the recent latency is computed over
+     */
+    static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /**
+     * The number of windows the long term latency is averaged over
+     */
+    static final int LONG_WINDOWS = 100;
+
+    /**
+     * How much the recent latency can exceed the long term one before the limit shrinks
+     */
+    static final double TOLERANCE = 1.5;
+
+    /**
+     * How fast the limit moves towards the newly computed one
+     */
+    static final double SMOOTHING = 0.2;
+
+    final int initialLimit;
+
+    final int maxLimit;
+
+    final ReentrantLock lock = new ReentrantLock(true);
+
+    final Condition available = lock.newCondition();
+
+    /**
+     * The start time of the running requests, guarded by the lock
+     */
+    final Map<Request, Long> running = new IdentityHashMap<>();
+
+    volatile double limit;
+
+    volatile int waiting;
+
+    /**
+     * The long term average latency, in nanoseconds, guarded by the lock
+     */
+    volatile double longLatency;
+
+    long windowStart;
+
+    double windowSum;
+
+    int windowCount;
+
+    int windowMaxRunning;
+
+    /**
+     * @param initialLimit The concurrency limit to start from
+     * @param maxLimit The maximum concurrency limit
+     */
+    public AdaptiveThreadBlocker(int initialLimit, int maxLimit) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid limits, initial " + initialLimit
+                    + ", max " + maxLimit);
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public boolean requestIncoming(Request request, long timeout) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            waiting++;
+            try {
+                while (running.size() >= getLimit()) {
+                    if (timeout > 0) {
+                        if (nanos <= 0) {
+                            return false;
+                        }
+                        nanos = available.awaitNanos(nanos);
+                    } else {
+                        available.await();
+                    }
+                }
+            } finally {
+                waiting--;
+            }
+            running.put(request, System.nanoTime());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void requestComplete(Request request) {
+        lock.lock();
+        try {
+            // timed out requests never made it into the running ones
+            Long start = running.remove(request);
+            if (start == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            sample(now - start, running.size() + 1, now);
+
+            // the limit might have grown by more than one
+            for (int i = running.size(); i < getLimit(); i++) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accounts for a completed request, call holding the lock
+     *
+     * @param latency The request latency, in nanoseconds
+     * @param concurrent The number of requests running when it completed, itself included
+     * @param now The current time, in nanoseconds
+     */
+    void sample(long latency, int concurrent, long now) {
+        if (windowCount == 0) {
+            windowStart = now;
+        }
+        windowSum += latency;
+        windowCount++;
+        windowMaxRunning = Math.max(windowMaxRunning, concurrent);
+        if (windowCount < WINDOW_SAMPLES || now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+
+        double shortLatency = windowSum / windowCount;
+        int maxRunning = windowMaxRunning;
+        windowSum = 0;
+        windowCount = 0;
+        windowMaxRunning = 0;
+        update(shortLatency, maxRunning);
+    }
+
+    /**
+     * Updates the limit given the average latency and the max concurrency of the last window
+     */
+    void update(double shortLatency, int maxRunning) {
+        if (longLatency == 0) {
+            longLatency = shortLatency;
+        } else {
+            longLatency += (shortLatency - longLatency) / LONG_WINDOWS;
+        }
+        if (longLatency > 2 * shortLatency) {
+            // requests got a lot faster, e.g., after a load spike, catch up sooner
+            longLatency *= 0.95;
+        }
+
+        double current = limit;
+        if (maxRunning < current / 2) {
+            // the limit is not being used, nothing to learn about the capacity
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1, TOLERANCE * longLatency / shortLatency));
+        double target = current * gradient + Math.sqrt(current);
+        double updated = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(1, Math.min(maxLimit, updated));
+
+        if (LOGGER.isLoggable(Level.FINE) && (int) current != getLimit()) {
+            LOGGER.fine(this + ", recent latency " + (long) (shortLatency / 1000000)
+                    + "ms, long term latency " + (long) (longLatency / 1000000) + "ms");
+        }
+    }
+
+    @Override
+    public int getRunningRequestsCount() {
+        lock.lock();
+        try {
+            return running.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The current concurrency limit
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * The number of requests waiting for the running ones to complete
+     */
+    public int getWaitingRequestsCount() {
+        return waiting;
+    }
+
+    /**
+     * The long term average latency of the requests, in milliseconds
+     */
+    public long getLatency() {
+        return (long) (longLatency / 1000000);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveThreadBlocker(" + getLimit() + "/" + maxLimit + ")";
+    }
+}
@@ -16,7 +16,6 @@ import org.geoserver.flow.ControlFlowCallback;
 import org.geoserver.flow.FlowController;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
-import org.geotools.util.CanonicalSet;
 import org.geotools.util.logging.Logging;
 
 import com.google.common.base.Predicate;
@@ -82,7 +81,7 @@ public class RateFlowController implements FlowController {
             return requests.incrementAndGet();
         }
 
-        public synchronized long getTimePeriodId() {
+        public long getTimePeriodId() {
             return timePeriodId;
         }
 
@@ -103,11 +102,6 @@ public class RateFlowController implements FlowController {
      */
     Map<String, Counter> counters = new ConcurrentHashMap<>();
 
-    /**
-     * Used to make user keys unique before using them as synchronization locks
-     */
-    CanonicalSet<String> canonicalizer = CanonicalSet.newInstance(String.class);
-
     /**
      * Checks if we should apply this request rate limit to the request
      */
@@ -163,14 +157,7 @@ public class RateFlowController implements FlowController {
         // grab/generate the counter
         Counter counter = counters.get(userKey);
         if (counter == null) {
-            userKey = canonicalizer.unique(userKey);
-            synchronized (userKey) {
-                counter = counters.get(userKey);
-                if (counter == null) {
-                    counter = new Counter();
-                    counters.put(userKey, counter);
-                }
-            }
+            counter = counters.computeIfAbsent(userKey, k -> new Counter());
         }
 
         // update the counters
@@ -0,0 +1,135 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoserver.ows.HttpErrorCodeException;
+import org.geoserver.ows.Request;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Limits the rate of requests like {@link RateFlowController}, but using a token bucket refilled
+ * continuously instead of a counter reset at fixed time periods, so that no burst can happen at the
+ * boundary of two periods: a user can issue at most <code>maxRequests</code> requests in a row,
+ * after which requests are allowed again at a pace of <code>maxRequests</code> per
+ * <code>timeInterval</code>.
+ * <p>
+ * The bucket is tracked as the theoretical arrival time of the next request once the bucket is
+ * empty (generic cell rate algorithm), a single atomic long per user updated with a compare and
+ * set, hence no locking is involved. A bucket whose arrival time is in the past is full and
+ * indistinguishable from a new one, so it can be dropped at any time.
+ * </p>
+ */
+public class TokenBucketFlowController extends RateFlowController {
+
+    /**
+     * Longer intervals are treated as this one, a century, to keep the computations from
+     * overflowing
+     */
+    static final long MAX_INTERVAL = 100L * 365 * 24 * 60 * 60 * 1000;
+
+    /**
+     * The buckets, by user key. Times are expressed in units of 1/maxRequests milliseconds, so
+     * that a request consumes exactly {@link #emission} units
+     */
+    Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * The time span of a request, in scaled units
+     */
+    final long emission;
+
+    /**
+     * The time span of a full bucket, in scaled units
+     */
+    final long capacity;
+
+    public TokenBucketFlowController(Predicate<Request> matcher, int maxRequests,
+            long timeInterval, long delay, KeyGenerator keyGenerator) {
+        super(matcher, maxRequests, timeInterval, delay, keyGenerator);
+        this.emission = Math.min(timeInterval, MAX_INTERVAL);
+        this.capacity = emission * maxRequests;
+    }
+
+    @Override
+    public boolean requestIncoming(Request request, long timeout) {
+        if (!matcher.apply(request)) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        String userKey = keyGenerator.getUserKey(request);
+        AtomicLong bucket = buckets.get(userKey);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(userKey, k -> new AtomicLong());
+        }
+
+        // consume a token, if available
+        long scaledNow = now * maxRequests;
+        long arrival;
+        boolean allowed;
+        while (true) {
+            long current = bucket.get();
+            arrival = Math.max(current, scaledNow) + emission;
+            allowed = arrival - scaledNow <= capacity;
+            if (!allowed || bucket.compareAndSet(current, arrival)) {
+                break;
+            }
+        }
+        long residual = allowed ? (capacity - (arrival - scaledNow)) / emission : -1;
+
+        // set the headers
+        HttpServletResponse response = request.getHttpResponse();
+        response.addHeader(X_RATE_LIMIT_CONTEXT, matcher.toString());
+        response.addIntHeader(X_RATE_LIMIT_LIMIT, maxRequests);
+        response.addIntHeader(X_RATE_LIMIT_REMAINING, (int) Math.max(residual, 0));
+        // the time at which the bucket will be full again
+        long full = allowed ? arrival : bucket.get();
+        response.addDateHeader(X_RATE_LIMIT_RESET, (full + maxRequests - 1) / maxRequests);
+        response.addHeader("X-Rate-Limit-Action", action);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(this + ", residual tokens " + residual);
+        }
+        if (!allowed) {
+            if (delay <= 0) {
+                throw new HttpErrorCodeException(429,
+                        "Too many requests requests in the current time period, check X-Rate-Limit HTTP response headers");
+            } else if (delay > timeout) {
+                // no point in waiting
+                return false;
+            } else {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(this + ", delaying current request");
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    LOGGER.log(Level.WARNING, this + ", the delay was abruptly interrupted", e);
+                }
+            }
+        }
+
+        // drop the full buckets if necessary
+        long elapsed = now - lastCleanup;
+        if (buckets.size() > COUNTERS_CLEANUP_THRESHOLD
+                && (elapsed > timeInterval || elapsed > COUNTERS_CLEANUP_INTERVAL)) {
+            lastCleanup = now;
+            int before = buckets.size();
+            buckets.values().removeIf(b -> b.get() <= scaledNow);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(this + ", purged " + (before - buckets.size()) + " full buckets");
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.geoserver.flow.ControlFlowCallback;
+import org.geoserver.flow.DefaultFlowControllerProvider;
+import org.geoserver.flow.FlowController;
+import org.geoserver.flow.FlowControllerProvider;
+import org.geoserver.flow.controller.AdaptiveThreadBlocker;
+import org.geoserver.flow.controller.SingleQueueFlowController;
+import org.geoserver.flow.controller.ThreadBlocker;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.rest.catalog.NamedMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the running and blocked requests, and for each flow controller its current concurrency
+ * limit and queue depth, including the limits chosen by the adaptive controllers
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/controlflow", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+public class ControlFlowStatusController extends RestBaseController {
+
+    ControlFlowCallback callback;
+
+    @Autowired
+    public ControlFlowStatusController(ControlFlowCallback callback) {
+        this.callback = callback;
+    }
+
+    @GetMapping
+    public Map<String, Object> statusGet() {
+        Map<String, Object> result = new NamedMap<>("controlflow");
+        result.put("runningRequests", callback.getRunningRequests());
+        result.put("blockedRequests", callback.getBlockedRequests());
+
+        List<Map<String, Object>> controllers = new ArrayList<>();
+        for (FlowController controller : getControllers()) {
+            controllers.add(controller(controller));
+        }
+        result.put("controllers", controllers);
+        return result;
+    }
+
+    /**
+     * The controllers of a custom provider can depend on the request, only the default ones can be
+     * reported
+     */
+    List<FlowController> getControllers() {
+        FlowControllerProvider provider = callback.getProvider();
+        if (provider instanceof DefaultFlowControllerProvider) {
+            return ((DefaultFlowControllerProvider) provider).getControllers();
+        }
+        return Collections.emptyList();
+    }
+
+    Map<String, Object> controller(FlowController controller) {
+        Map<String, Object> map = new NamedMap<>("controller");
+        map.put("name", controller.toString());
+        map.put("priority", controller.getPriority());
+        if (controller instanceof SingleQueueFlowController) {
+            ThreadBlocker blocker = ((SingleQueueFlowController) controller).getBlocker();
+            map.put("runningRequests", blocker.getRunningRequestsCount());
+            if (blocker instanceof AdaptiveThreadBlocker) {
+                AdaptiveThreadBlocker adaptive = (AdaptiveThreadBlocker) blocker;
+                map.put("limit", adaptive.getLimit());
+                map.put("initialLimit", adaptive.getInitialLimit());
+                map.put("maxLimit", adaptive.getMaxLimit());
+                map.put("waitingRequests", adaptive.getWaitingRequestsCount());
+                map.put("latency", adaptive.getLatency());
+            }
+        }
+        return map;
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Properties;
 
 import org.geoserver.flow.ControllerPriorityComparator;
 import org.geoserver.flow.FlowController;
+import org.geoserver.flow.controller.AdaptiveThreadBlocker;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.HttpHeaderPriorityProvider;
@@ -25,8 +26,10 @@ import org.geoserver.flow.controller.IpFlowController;
 import org.geoserver.flow.controller.IpRequestMatcher;
 import org.geoserver.flow.controller.PriorityThreadBlocker;
 import org.geoserver.flow.controller.RateFlowController;
+import org.geoserver.flow.controller.SimpleThreadBlocker;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.ThreadBlocker;
+import org.geoserver.flow.controller.TokenBucketFlowController;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
 import org.geoserver.platform.GeoServerResourceLoader;
 import org.geoserver.platform.resource.Files;
@@ -135,6 +138,71 @@ public class DefaultControlFlowConfigurationTest {
         assertEquals(savedProps.getProperties(), p);
     }
 
+    @Test
+    public void testParsingTokenBucket() throws Exception {
+        Properties p = new Properties();
+        p.put("ip.ows.wms.getmap", "100/m;3s;bucket");
+        p.put("user.ows", "20/s");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+        assertEquals(2, controllers.size());
+
+        assertTrue(controllers.get(0) instanceof TokenBucketFlowController);
+        RateFlowController rfc = (RateFlowController) controllers.get(0);
+        assertEquals("wms.getmap", rfc.getMatcher().toString());
+        assertEquals(100, rfc.getMaxRequests());
+        assertEquals(Intervals.m.getDuration(), rfc.getTimeInterval());
+        assertEquals(3000, rfc.getDelay());
+
+        assertFalse(controllers.get(1) instanceof TokenBucketFlowController);
+        assertEquals(20, ((RateFlowController) controllers.get(1)).getMaxRequests());
+    }
+
+    @Test
+    public void testParsingAdaptive() throws Exception {
+        Properties p = new Properties();
+        p.put("adaptive", "4");
+        p.put("ows.global", "100");
+        p.put("ows.wms.getmap", "8");
+        p.put("user", "6");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+        assertEquals(3, controllers.size());
+
+        assertTrue(controllers.get(0) instanceof UserConcurrentFlowController);
+
+        BasicOWSController getMap = (BasicOWSController) controllers.get(1);
+        assertEquals(8, getMap.getPriority());
+        AdaptiveThreadBlocker blocker = (AdaptiveThreadBlocker) getMap.getBlocker();
+        assertEquals(8, blocker.getLimit());
+        assertEquals(32, blocker.getMaxLimit());
+
+        GlobalFlowController global = (GlobalFlowController) controllers.get(2);
+        blocker = (AdaptiveThreadBlocker) global.getBlocker();
+        assertEquals(100, blocker.getLimit());
+        assertEquals(400, blocker.getMaxLimit());
+    }
+
+    @Test
+    public void testParsingAdaptiveInvalid() throws Exception {
+        Properties p = new Properties();
+        p.put("adaptive", "many");
+        p.put("ows.global", "100");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        assertEquals(1, controllers.size());
+        GlobalFlowController global = (GlobalFlowController) controllers.get(0);
+        assertTrue(global.getBlocker() instanceof SimpleThreadBlocker);
+    }
+
     @Test
     public void testParsingPriority() throws Exception {
         Properties p = new Properties();
@@ -0,0 +1,102 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.ows.Request;
+import org.junit.Test;
+
+public class AdaptiveThreadBlockerTest {
+
+    @Test
+    public void testBlocking() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(2, 8);
+        Request r1 = new Request();
+        Request r2 = new Request();
+        assertTrue(blocker.requestIncoming(r1, 0));
+        assertTrue(blocker.requestIncoming(r2, 0));
+        assertEquals(2, blocker.getRunningRequestsCount());
+
+        // over the limit, times out
+        assertFalse(blocker.requestIncoming(new Request(), 50));
+        assertEquals(0, blocker.getWaitingRequestsCount());
+
+        // waits for a running request to complete
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Request r3 = new Request();
+            Future<Boolean> future = executor.submit(() -> blocker.requestIncoming(r3, 10000));
+            for (int i = 0; i < 500 && blocker.getWaitingRequestsCount() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, blocker.getWaitingRequestsCount());
+            blocker.requestComplete(r1);
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+            assertEquals(2, blocker.getRunningRequestsCount());
+            assertEquals(0, blocker.getWaitingRequestsCount());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // completing a request that never ran has no effect
+        blocker.requestComplete(new Request());
+        assertEquals(2, blocker.getRunningRequestsCount());
+    }
+
+    @Test
+    public void testGrowWithStableLatency() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(10, 20);
+        for (int i = 0; i < 100; i++) {
+            blocker.update(100, blocker.getLimit());
+        }
+        assertEquals(20, blocker.getLimit());
+        assertEquals(0, blocker.getLatency());
+    }
+
+    @Test
+    public void testNoGrowthWhenUnused() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(10, 20);
+        for (int i = 0; i < 100; i++) {
+            blocker.update(100, 2);
+        }
+        assertEquals(10, blocker.getLimit());
+    }
+
+    @Test
+    public void testShrinkWithInflatedLatency() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(10, 20);
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        blocker.update(100 * ms, 10);
+        // requests pile up, latency grows tenfold
+        for (int i = 0; i < 10; i++) {
+            blocker.update(1000 * ms, blocker.getLimit());
+        }
+        assertTrue(blocker.getLimit() < 10);
+        assertTrue(blocker.getLimit() >= 1);
+    }
+
+    @Test
+    public void testSampleWindow() throws Exception {
+        AdaptiveThreadBlocker blocker = new AdaptiveThreadBlocker(1, 10);
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        // enough samples, but not enough time
+        for (int i = 0; i < AdaptiveThreadBlocker.WINDOW_SAMPLES; i++) {
+            blocker.sample(20 * ms, 1, i * ms);
+        }
+        assertEquals(0, blocker.getLatency());
+        // the window is closed
+        blocker.sample(20 * ms, 1, AdaptiveThreadBlocker.WINDOW_NANOS);
+        assertEquals(20, blocker.getLatency());
+        assertEquals(0, blocker.windowCount);
+    }
+}
@@ -0,0 +1,117 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geoserver.ows.HttpErrorCodeException;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class TokenBucketFlowControllerTest extends AbstractFlowControllerTest {
+
+    @Test
+    public void testIpRateControl() {
+        TokenBucketFlowController controller = new TokenBucketFlowController(
+                new OWSRequestMatcher(), 2, Long.MAX_VALUE, 1000, new IpKeyGenerator());
+
+        Request request = buildIpRequest("127.0.0.1", "");
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        checkHeaders(request, 2, 1);
+        request = buildIpRequest("127.0.0.1", "");
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        checkHeaders(request, 2, 0);
+
+        // third one, this one will have to wait
+        long start = System.currentTimeMillis();
+        request = buildIpRequest("127.0.0.1", "");
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        long delay = System.currentTimeMillis() - start;
+        assertTrue("Request was not delayed enough: " + delay, delay >= 1000);
+        checkHeaders(request, 2, 0);
+
+        // fourth one, this one will bail out immediately because we give it not enough wait
+        assertFalse(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 500));
+
+        // another user has its own bucket
+        request = buildIpRequest("192.168.1.1", "");
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        checkHeaders(request, 2, 1);
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        // two requests every 400ms, that is, a new one every 200ms
+        TokenBucketFlowController controller = new TokenBucketFlowController(
+                new OWSRequestMatcher(), 2, 400, 0, new IpKeyGenerator());
+
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+        try {
+            controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0);
+            fail("Should have been rejected");
+        } catch (HttpErrorCodeException e) {
+            assertEquals(429, e.getErrorCode());
+        }
+
+        // a single token is back, no bursts of two
+        Thread.sleep(250);
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0));
+        try {
+            controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0);
+            fail("Should have been rejected");
+        } catch (HttpErrorCodeException e) {
+            assertEquals(429, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        TokenBucketFlowController controller = new TokenBucketFlowController(
+                new OWSRequestMatcher(), 100, Long.MAX_VALUE, 0, new IpKeyGenerator());
+        AtomicInteger allowed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] futures = new Future<?>[400];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> {
+                    try {
+                        controller.requestIncoming(buildIpRequest("127.0.0.1", ""), 0);
+                        allowed.incrementAndGet();
+                    } catch (HttpErrorCodeException e) {
+                        rejected.incrementAndGet();
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100, allowed.get());
+        assertEquals(300, rejected.get());
+    }
+
+    private void checkHeaders(Request request, int limit, int remaining) {
+        MockHttpServletResponse response = (MockHttpServletResponse) request.getHttpResponse();
+        assertEquals("Any OGC request",
+                response.getHeader(RateFlowController.X_RATE_LIMIT_CONTEXT));
+        assertEquals(String.valueOf(limit),
+                response.getHeader(RateFlowController.X_RATE_LIMIT_LIMIT));
+        assertEquals(String.valueOf(remaining),
+                response.getHeader(RateFlowController.X_RATE_LIMIT_REMAINING));
+    }
+}
@@ -0,0 +1,79 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+public class ControlFlowStatusControllerTest extends GeoServerSystemTestSupport {
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        super.setUpTestData(testData);
+        // a global and a WMS controller, both with adaptive limits
+        File config = new File(testData.getDataDirectoryRoot(), "controlflow.properties");
+        FileUtils.writeStringToFile(config, "ows.global=100\nows.wms=10\nadaptive=4\n", "UTF-8");
+    }
+
+    @Test
+    public void testGetAsJSON() throws Exception {
+        JSON json = getAsJSON(RestBaseController.ROOT_PATH + "/controlflow.json");
+
+        assertTrue(json instanceof JSONObject);
+        JSONObject status = (JSONObject) json;
+        assertTrue(status.has("runningRequests"));
+        assertTrue(status.has("blockedRequests"));
+        JSONArray controllers = status.getJSONArray("controllers");
+        assertEquals(2, controllers.size());
+        Set<Integer> maxLimits = new HashSet<>();
+        for (int i = 0; i < controllers.size(); i++) {
+            JSONObject controller = controllers.getJSONObject(i);
+            assertTrue(controller.has("name"));
+            assertTrue(controller.has("priority"));
+            assertTrue(controller.getInt("limit") <= controller.getInt("maxLimit"));
+            maxLimits.add(controller.getInt("maxLimit"));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(400, 40)), maxLimits);
+    }
+
+    @Test
+    public void testGetAsXML() throws Exception {
+        Document dom = getAsDOM(RestBaseController.ROOT_PATH + "/controlflow.xml");
+
+        assertEquals("controlflow", dom.getDocumentElement().getNodeName());
+        assertEquals(1, dom.getElementsByTagName("blockedRequests").getLength());
+        // the controller maps are encoded as the entries of the list
+        NodeList lists = dom.getElementsByTagName("controllers");
+        assertEquals(1, lists.getLength());
+        NodeList controllers = ((Element) lists.item(0)).getElementsByTagName("entry");
+        assertEquals(2, controllers.getLength());
+        Set<String> maxLimits = new HashSet<>();
+        for (int i = 0; i < controllers.getLength(); i++) {
+            Element controller = (Element) controllers.item(i);
+            assertEquals(1, controller.getElementsByTagName("name").getLength());
+            assertEquals(1, controller.getElementsByTagName("limit").getLength());
+            maxLimits.add(controller.getElementsByTagName("maxLimit").item(0).getTextContent());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("400", "40")), maxLimits);
+    }
+}
@@ -10,25 +10,67 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.Query.SortOrder;
 import org.geoserver.ows.util.OwsUtils;
 
+/**
+ * Keeps the running requests and the last completed ones in memory.
+ * <p>
+ * Completed requests go in a fixed size ring buffer, the oldest being overwritten by the newest,
+ * and both running and completed requests are indexed by id. Completed requests are also
+ * accounted for in {@link RequestStatistics rolling aggregates}, which can be used to summarize
+ * the recent activity without going through the requests.
+ * </p>
+ */
 public class MemoryMonitorDAO implements MonitorDAO {
 
     public static final String NAME = "memory";
 
-    Queue<RequestData> live = new ConcurrentLinkedQueue<RequestData>();
-    Queue<RequestData> history = new ConcurrentLinkedQueue<RequestData>();
-    
+    /**
+     * The number of completed requests kept in memory
+     */
+    static final int HISTORY_SIZE = 100;
+
+    /**
+     * The running requests, sorted by id
+     */
+    Map<Long, RequestData> live = new ConcurrentSkipListMap<>();
+
+    /**
+     * The completed requests, the one with sequence number n is found at n % size
+     */
+    AtomicReferenceArray<HistoryEntry> history;
+
+    /**
+     * The sequence number of the next completed request
+     */
+    AtomicLong historySequence = new AtomicLong();
+
+    /**
+     * The completed requests still in the history, by id
+     */
+    Map<Long, RequestData> historyIndex = new ConcurrentHashMap<>();
+
+    RequestStatistics statistics = new RequestStatistics();
+
     AtomicLong REQUEST_ID_GEN = new AtomicLong(1);
 
+    public MemoryMonitorDAO() {
+        this(HISTORY_SIZE);
+    }
+
+    MemoryMonitorDAO(int historySize) {
+        this.history = new AtomicReferenceArray<>(historySize);
+    }
+
     @Override
     public String getName() {
         return NAME;
@@ -44,40 +86,76 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     public void add(RequestData data) {
-        live.add(data);
+        live.put(data.getId(), data);
     }
 
     public void update(RequestData data) {
     }
 
     public void save(RequestData data) {
-        live.remove(data);
-        history.add(data);
-        
-        if (history.size() > 100) {
-            history.poll();
+        historyIndex.put(data.getId(), data);
+        live.remove(data.getId());
+        statistics.record(data);
+
+        long sequence = historySequence.getAndIncrement();
+        int index = (int) (sequence % history.length());
+        HistoryEntry entry = new HistoryEntry(sequence, data);
+        while (true) {
+            HistoryEntry previous = history.get(index);
+            if (previous != null && previous.sequence > sequence) {
+                // a newer request already took the slot, this one is evicted straight away
+                historyIndex.remove(data.getId(), data);
+                return;
+            }
+            if (history.compareAndSet(index, previous, entry)) {
+                if (previous != null) {
+                    historyIndex.remove(previous.data.getId(), previous.data);
+                }
+                return;
+            }
         }
     }
-    
-    public RequestData getRequest(long id) {
-        for (RequestData r : getRequests()) {
-            if (r.getId() == id) {
-                return r;
+
+    /**
+     * The completed requests in the history, oldest first
+     */
+    List<RequestData> getHistory() {
+        long next = historySequence.get();
+        int size = history.length();
+        List<RequestData> requests = new ArrayList<>(size);
+        for (long sequence = Math.max(0, next - size); sequence < next; sequence++) {
+            HistoryEntry entry = history.get((int) (sequence % size));
+            // skip the slots not yet written, or already overwritten
+            if (entry != null && entry.sequence == sequence) {
+                requests.add(entry.data);
             }
         }
-        return null;
+        return requests;
     }
-    
+
+    /**
+     * The rolling aggregates of the completed requests
+     */
+    public RequestStatistics getStatistics() {
+        return statistics;
+    }
+
+    public RequestData getRequest(long id) {
+        RequestData data = live.get(id);
+        if (data == null) {
+            data = historyIndex.get(id);
+        }
+        return data;
+    }
+
     public List<RequestData> getRequests() {
-        List<RequestData> requests = new LinkedList();
-        requests.addAll(live);
-        requests.addAll(history);
+        List<RequestData> requests = new ArrayList<>(live.size() + history.length());
+        requests.addAll(live.values());
+        requests.addAll(getHistory());
         return requests;
     }
-        
+
     public List<RequestData> getRequests(Query q) {
-        List<RequestData> requests = getRequests();
-       
         List<Predicate> predicates = new ArrayList();
         if (q.getFilter() != null) {
             Filter f = q.getFilter();
@@ -86,29 +164,25 @@ public class MemoryMonitorDAO implements MonitorDAO {
         if (q.getFromDate() != null || q.getToDate() != null) {
             predicates.add(new DateRange(q.getFromDate(), q.getToDate()));
         }
-        
-        int i = 1, count = 0;
-        
-O:      for (Iterator<RequestData> it = requests.iterator(); it.hasNext();) {
-            RequestData r = it.next();
+
+        List<RequestData> requests = new ArrayList<>();
+        int i = 1;
+O:      for (RequestData r : getRequests()) {
             for (Predicate p : predicates) {
                 if (!p.matches(r)) {
-                    it.remove();
                     continue O;
                 }
             }
-        
+
             if (q.getOffset() != null && q.getOffset() >= i++) {
-                it.remove();
                 continue;
             }
-            if (q.getCount() != null && q.getCount() <= count) {
-                it.remove();
-                continue;       
+            if (q.getCount() != null && q.getCount() <= requests.size()) {
+                break;
             }
-            count++;
+            requests.add(r);
         }
-        
+
         if (q.getSortBy() != null) {
             Collections.sort(requests, new Sorter(q.getSortBy(), q.getSortOrder()));
         }
@@ -162,14 +236,29 @@ O:      for (Iterator<RequestData> it = requests.iterator(); it.hasNext();) {
     
     public void clear() {
         live.clear();
-        history.clear();
+        for (int i = 0; i < history.length(); i++) {
+            history.set(i, null);
+        }
+        historyIndex.clear();
+        statistics.clear();
     }
     
     public void dispose() {
-        live.clear();
-        history.clear();
+        clear();
         REQUEST_ID_GEN = new AtomicLong(1);
     }
+
+    static class HistoryEntry {
+
+        final long sequence;
+
+        final RequestData data;
+
+        HistoryEntry(long sequence, RequestData data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
     
     static interface Predicate {
         boolean matches(RequestData data);
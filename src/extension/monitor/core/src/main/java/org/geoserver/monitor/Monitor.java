@@ -136,6 +136,17 @@ public class Monitor implements ApplicationListener<ApplicationEvent>{
     public MonitorDAO getDAO() {
         return dao;
     }
+
+    /**
+     * Returns the rolling aggregates of the completed requests, or null if the storage does not
+     * maintain them
+     */
+    public RequestStatistics getStatistics() {
+        if (dao instanceof MemoryMonitorDAO) {
+            return ((MemoryMonitorDAO) dao).getStatistics();
+        }
+        return null;
+    }
     
     public GeoServer getServer() {
         return server;
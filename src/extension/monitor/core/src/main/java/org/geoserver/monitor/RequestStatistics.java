@@ -0,0 +1,384 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.geoserver.monitor.RequestData.Status;
+
+/**
+ * Rolling aggregates of the completed requests, request counts and latency histograms per
+ * service, operation and layer over the last minute, five minutes and hour, updated as requests
+ * complete so that the summaries can be read without scanning the requests themselves.
+ * <p>
+ * Each series keeps two rings of time slots, 5 seconds ones covering the last five minutes and
+ * 1 minute ones covering the last hour, recycled without locking as time moves on. Windows are
+ * hence approximated to the slot granularity.
+ * </p>
+ */
+public class RequestStatistics {
+
+    /**
+     * The time windows summaries are available for
+     */
+    public enum Window {
+        ONE_MINUTE(60 * 1000L), FIVE_MINUTES(5 * 60 * 1000L), ONE_HOUR(60 * 60 * 1000L);
+
+        final long millis;
+
+        Window(long millis) {
+            this.millis = millis;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /**
+     * Upper bounds of the latency histogram buckets, in milliseconds, the last bucket collects
+     * everything above the last bound
+     */
+    public static final long[] LATENCY_BOUNDS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000,
+            10000 };
+
+    static final long FINE_SLOT = 5 * 1000L;
+
+    static final long COARSE_SLOT = 60 * 1000L;
+
+    static final int SLOTS = 60;
+
+    /**
+     * Separates service and operation in the operation keys
+     */
+    static final char OPERATION_SEPARATOR = '.';
+
+    final Series total = new Series();
+
+    final ConcurrentMap<String, Series> services = new ConcurrentHashMap<>();
+
+    final ConcurrentMap<String, Series> operations = new ConcurrentHashMap<>();
+
+    final ConcurrentMap<String, Series> layers = new ConcurrentHashMap<>();
+
+    /**
+     * Accounts for a completed request
+     */
+    public void record(RequestData data) {
+        record(data, System.currentTimeMillis());
+    }
+
+    void record(RequestData data, long time) {
+        long latency = data.getTotalTime();
+        if (latency <= 0 && data.getStartTime() != null && data.getEndTime() != null) {
+            latency = data.getEndTime().getTime() - data.getStartTime().getTime();
+        }
+        boolean failed = data.getStatus() == Status.FAILED;
+
+        total.record(time, latency, failed);
+        String service = data.getService();
+        if (service != null) {
+            series(services, service).record(time, latency, failed);
+            if (data.getOperation() != null) {
+                series(operations, service + OPERATION_SEPARATOR + data.getOperation())
+                        .record(time, latency, failed);
+            }
+        }
+        if (data.getResources() != null) {
+            for (String layer : data.getResources()) {
+                if (layer != null) {
+                    series(layers, layer).record(time, latency, failed);
+                }
+            }
+        }
+    }
+
+    Series series(ConcurrentMap<String, Series> map, String key) {
+        Series series = map.get(key);
+        if (series == null) {
+            series = map.computeIfAbsent(key, k -> new Series());
+        }
+        return series;
+    }
+
+    /**
+     * Summary of all the completed requests in the window
+     */
+    public Summary getTotal(Window window) {
+        return total.summarize(window, System.currentTimeMillis());
+    }
+
+    /**
+     * Summaries of the completed requests in the window, by service
+     */
+    public Map<String, Summary> getServices(Window window) {
+        return summarize(services, null, window, System.currentTimeMillis());
+    }
+
+    /**
+     * Summaries of the completed requests of a service in the window, by operation
+     */
+    public Map<String, Summary> getOperations(String service, Window window) {
+        return summarize(operations, service + OPERATION_SEPARATOR, window,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Summaries of the completed requests in the window, by layer
+     */
+    public Map<String, Summary> getLayers(Window window) {
+        return summarize(layers, null, window, System.currentTimeMillis());
+    }
+
+    Map<String, Summary> summarize(ConcurrentMap<String, Series> map, String prefix,
+            Window window, long now) {
+        Map<String, Summary> result = new TreeMap<>();
+        for (Map.Entry<String, Series> entry : map.entrySet()) {
+            String key = entry.getKey();
+            Series series = entry.getValue();
+            if (series.isStale(now)) {
+                // nothing in the last hour, drop it so that the maps do not grow forever
+                map.remove(key, series);
+                continue;
+            }
+            if (prefix != null) {
+                if (!key.startsWith(prefix)) {
+                    continue;
+                }
+                key = key.substring(prefix.length());
+            }
+            Summary summary = series.summarize(window, now);
+            if (summary.getCount() > 0) {
+                result.put(key, summary);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops all the aggregates
+     */
+    public void clear() {
+        total.clear();
+        services.clear();
+        operations.clear();
+        layers.clear();
+    }
+
+    /**
+     * The aggregates of a single key
+     */
+    static class Series {
+
+        final Ring fine = new Ring(FINE_SLOT);
+
+        final Ring coarse = new Ring(COARSE_SLOT);
+
+        void record(long time, long latency, boolean failed) {
+            fine.record(time, latency, failed);
+            coarse.record(time, latency, failed);
+        }
+
+        Summary summarize(Window window, long now) {
+            if (window.millis <= FINE_SLOT * SLOTS) {
+                return fine.summarize((int) (window.millis / FINE_SLOT), now);
+            }
+            return coarse.summarize((int) (window.millis / COARSE_SLOT), now);
+        }
+
+        boolean isStale(long now) {
+            long latest = coarse.getLatestEpoch();
+            return latest != Long.MIN_VALUE && latest <= now / COARSE_SLOT - SLOTS;
+        }
+
+        void clear() {
+            fine.clear();
+            coarse.clear();
+        }
+    }
+
+    /**
+     * A ring of time slots, each slot is replaced with a fresh one the first time a request is
+     * recorded in it after its time span is over
+     */
+    static class Ring {
+
+        final long slotMillis;
+
+        final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(SLOTS);
+
+        Ring(long slotMillis) {
+            this.slotMillis = slotMillis;
+        }
+
+        void record(long time, long latency, boolean failed) {
+            long epoch = time / slotMillis;
+            int index = (int) (epoch % SLOTS);
+            while (true) {
+                Slot slot = slots.get(index);
+                if (slot != null && slot.epoch == epoch) {
+                    slot.record(latency, failed);
+                    return;
+                } else if (slot != null && slot.epoch > epoch) {
+                    // the request completed longer ago than the ring covers
+                    return;
+                } else {
+                    Slot fresh = new Slot(epoch);
+                    if (slots.compareAndSet(index, slot, fresh)) {
+                        fresh.record(latency, failed);
+                        return;
+                    }
+                }
+            }
+        }
+
+        Summary summarize(int count, long now) {
+            long current = now / slotMillis;
+            long[] values = new long[Slot.HISTOGRAM + LATENCY_BOUNDS.length + 1];
+            for (int i = 0; i < SLOTS; i++) {
+                Slot slot = slots.get(i);
+                if (slot != null && slot.epoch <= current && slot.epoch > current - count) {
+                    for (int j = 0; j < values.length; j++) {
+                        values[j] += slot.values.get(j);
+                    }
+                }
+            }
+            return new Summary(values);
+        }
+
+        long getLatestEpoch() {
+            long latest = Long.MIN_VALUE;
+            for (int i = 0; i < SLOTS; i++) {
+                Slot slot = slots.get(i);
+                if (slot != null && slot.epoch > latest) {
+                    latest = slot.epoch;
+                }
+            }
+            return latest;
+        }
+
+        void clear() {
+            for (int i = 0; i < SLOTS; i++) {
+                slots.set(i, null);
+            }
+        }
+    }
+
+    /**
+     * The counters of a time slot: request count, failures, total latency, then the latency
+     * histogram
+     */
+    static class Slot {
+
+        static final int COUNT = 0;
+
+        static final int FAILED = 1;
+
+        static final int TIME = 2;
+
+        static final int HISTOGRAM = 3;
+
+        final long epoch;
+
+        final AtomicLongArray values = new AtomicLongArray(HISTOGRAM + LATENCY_BOUNDS.length + 1);
+
+        Slot(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void record(long latency, boolean failed) {
+            values.incrementAndGet(COUNT);
+            if (failed) {
+                values.incrementAndGet(FAILED);
+            }
+            values.addAndGet(TIME, latency);
+            values.incrementAndGet(HISTOGRAM + getBucket(latency));
+        }
+    }
+
+    static int getBucket(long latency) {
+        int bucket = Arrays.binarySearch(LATENCY_BOUNDS, latency);
+        return bucket >= 0 ? bucket : -bucket - 1;
+    }
+
+    /**
+     * The aggregates of a key over a time window
+     */
+    public static class Summary {
+
+        final long[] values;
+
+        Summary(long[] values) {
+            this.values = values;
+        }
+
+        /**
+         * The number of completed requests
+         */
+        public long getCount() {
+            return values[Slot.COUNT];
+        }
+
+        /**
+         * The number of failed requests
+         */
+        public long getFailedCount() {
+            return values[Slot.FAILED];
+        }
+
+        /**
+         * The sum of the request latencies, in milliseconds
+         */
+        public long getTotalTime() {
+            return values[Slot.TIME];
+        }
+
+        public double getAverageTime() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getTotalTime() / count;
+        }
+
+        /**
+         * The request counts for each latency bucket, see {@link RequestStatistics#LATENCY_BOUNDS}
+         */
+        public long[] getHistogram() {
+            return Arrays.copyOfRange(values, Slot.HISTOGRAM, values.length);
+        }
+
+        /**
+         * Estimates a latency percentile as the upper bound of the histogram bucket it falls
+         * into, returns -1 if it falls in the last, unbounded, bucket
+         *
+         * @param percentile A value between 0 and 100
+         */
+        public long getPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+                seen += values[Slot.HISTOGRAM + i];
+                if (seen >= rank) {
+                    return LATENCY_BOUNDS[i];
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary [count=" + getCount() + ", failed=" + getFailedCount()
+                    + ", averageTime=" + getAverageTime() + "]";
+        }
+    }
+}
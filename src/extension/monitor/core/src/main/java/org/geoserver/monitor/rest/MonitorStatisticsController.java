@@ -0,0 +1,121 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.monitor.RequestStatistics.Summary;
+import org.geoserver.monitor.RequestStatistics.Window;
+import org.geoserver.rest.ResourceNotFoundException;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.rest.RestException;
+import org.geoserver.rest.catalog.NamedMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the rolling aggregates of the completed requests, by service, operation and layer,
+ * without going through the requests themselves
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/monitor/statistics", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+public class MonitorStatisticsController extends RestBaseController {
+
+    Monitor monitor;
+
+    @Autowired
+    public MonitorStatisticsController(Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @GetMapping
+    public Map<String, Object> statisticsGet(
+            @RequestParam(name = "window", required = false) String windowSpec) {
+        RequestStatistics statistics = monitor.getStatistics();
+        if (statistics == null) {
+            throw new ResourceNotFoundException(
+                    "Request statistics are not available with the current monitor storage");
+        }
+
+        List<Window> windows;
+        if (windowSpec != null) {
+            try {
+                windows = Arrays.asList(Window.valueOf(windowSpec.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new RestException("Unknown window " + windowSpec + ", expected one of "
+                        + Arrays.toString(Window.values()), HttpStatus.BAD_REQUEST, e);
+            }
+        } else {
+            windows = Arrays.asList(Window.values());
+        }
+
+        List<Map<String, Object>> windowList = new ArrayList<>();
+        for (Window window : windows) {
+            Map<String, Object> map = new NamedMap<>("window");
+            map.put("name", window.name());
+            map.put("total", summary("total", null, statistics.getTotal(window)));
+
+            List<Map<String, Object>> services = new ArrayList<>();
+            for (Map.Entry<String, Summary> service : statistics.getServices(window)
+                    .entrySet()) {
+                Map<String, Object> serviceMap = summary("service", service.getKey(),
+                        service.getValue());
+                Map<String, Summary> operations = statistics.getOperations(service.getKey(),
+                        window);
+                serviceMap.put("operations", summaries("operation", operations));
+                services.add(serviceMap);
+            }
+            map.put("services", services);
+            map.put("layers", summaries("layer", statistics.getLayers(window)));
+            windowList.add(map);
+        }
+
+        Map<String, Object> result = new NamedMap<>("statistics");
+        result.put("latencyBounds", toList(RequestStatistics.LATENCY_BOUNDS));
+        result.put("windows", windowList);
+        return result;
+    }
+
+    List<Map<String, Object>> summaries(String type, Map<String, Summary> summaries) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            result.add(summary(type, entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    Map<String, Object> summary(String type, String name, Summary summary) {
+        Map<String, Object> map = new NamedMap<>(type);
+        if (name != null) {
+            map.put("name", name);
+        }
+        map.put("count", summary.getCount());
+        map.put("failedCount", summary.getFailedCount());
+        map.put("averageTime", summary.getAverageTime());
+        map.put("medianTime", summary.getPercentile(50));
+        map.put("p95Time", summary.getPercentile(95));
+        map.put("histogram", toList(summary.getHistogram()));
+        return map;
+    }
+
+    List<Long> toList(long[] values) {
+        List<Long> list = new ArrayList<>(values.length);
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -12,6 +12,9 @@ import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.monitor.RequestStatistics.Summary;
+import org.geoserver.monitor.RequestStatistics.Window;
 import org.geoserver.monitor.Query.Comparison;
 
 public class OWSDetailsPanel extends OWSSummaryChartBasePanel {
@@ -29,6 +32,17 @@ public class OWSDetailsPanel extends OWSSummaryChartBasePanel {
     
     @Override
     protected Map<String, Integer> gatherData(Monitor monitor) {
+        RequestStatistics statistics = monitor.getStatistics();
+        if (statistics != null) {
+            Map<String, Integer> data = new HashMap<String, Integer>();
+            for (Map.Entry<String, Summary> e : statistics
+                    .getOperations(owsService, Window.ONE_HOUR).entrySet()) {
+                data.merge(e.getKey().toLowerCase(), (int) e.getValue().getCount(),
+                        Integer::sum);
+            }
+            return data;
+        }
+
         DataGatherer g = new DataGatherer();
         monitor.query(new Query().properties("operation")
             .filter("service", owsService, Comparison.EQ), g);
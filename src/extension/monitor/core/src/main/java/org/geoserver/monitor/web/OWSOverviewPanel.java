@@ -12,6 +12,9 @@ import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.monitor.RequestStatistics.Summary;
+import org.geoserver.monitor.RequestStatistics.Window;
 import org.geoserver.monitor.Query.Comparison;
 
 public class OWSOverviewPanel extends OWSSummaryChartBasePanel {
@@ -29,6 +32,16 @@ public class OWSOverviewPanel extends OWSSummaryChartBasePanel {
     
     @Override
     protected Map<String,Integer> gatherData(Monitor monitor) {
+        RequestStatistics statistics = monitor.getStatistics();
+        if (statistics != null) {
+            Map<String, Integer> data = new HashMap<String, Integer>();
+            for (Map.Entry<String, Summary> e : statistics.getServices(Window.ONE_HOUR)
+                    .entrySet()) {
+                data.put(e.getKey(), (int) e.getValue().getCount());
+            }
+            return data;
+        }
+
         Query q = new Query();
         q.properties("service").filter("service", null, Comparison.NEQ);
         
@@ -5,7 +5,21 @@
  */
 package org.geoserver.monitor;
 
+import static org.geoserver.monitor.MonitorTestData.assertCoveredInOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestStatistics.Window;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 public class MemoryMonitorDAOTest extends MonitorDAOTestSupport {
 
@@ -14,4 +28,73 @@ public class MemoryMonitorDAOTest extends MonitorDAOTestSupport {
         dao = new MemoryMonitorDAO();
         setUpData();
     }
+
+    @Test
+    public void testHistoryRing() throws Exception {
+        MemoryMonitorDAO memory = new MemoryMonitorDAO(4);
+        RequestData running = request(memory, "WMS", "GetMap");
+        memory.add(running);
+        for (int i = 0; i < 6; i++) {
+            memory.save(request(memory, "WMS", "GetMap"));
+        }
+
+        // live requests first, then the last completed ones, oldest first
+        assertCoveredInOrder(memory.getRequests(), 1, 4, 5, 6, 7);
+        assertSame(running, memory.getRequest(1));
+        // evicted from the history
+        assertNull(memory.getRequest(2));
+        assertNull(memory.getRequest(3));
+        assertEquals(7, memory.getRequest(7).getId());
+
+        memory.save(running);
+        assertCoveredInOrder(memory.getRequests(), 5, 6, 7, 1);
+        assertSame(running, memory.getRequest(1));
+        assertEquals(7, memory.getStatistics().getTotal(Window.ONE_MINUTE).getCount());
+
+        memory.clear();
+        assertEquals(0, memory.getRequests().size());
+        assertNull(memory.getRequest(7));
+        assertEquals(0, memory.getStatistics().getTotal(Window.ONE_MINUTE).getCount());
+    }
+
+    @Test
+    public void testConcurrentSave() throws Exception {
+        MemoryMonitorDAO memory = new MemoryMonitorDAO(16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        RequestData data = request(memory, "WFS", "GetFeature");
+                        memory.add(data);
+                        memory.save(data);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<RequestData> requests = memory.getRequests();
+        assertEquals(16, requests.size());
+        assertEquals(16, memory.historyIndex.size());
+        for (RequestData data : requests) {
+            assertSame(data, memory.getRequest(data.getId()));
+        }
+        assertEquals(8000, memory.getStatistics().getServices(Window.ONE_HOUR).get("WFS")
+                .getCount());
+    }
+
+    RequestData request(MemoryMonitorDAO memory, String service, String operation) {
+        RequestData data = memory.init(new RequestData());
+        data.setService(service);
+        data.setOperation(operation);
+        data.setStatus(Status.FINISHED);
+        data.setTotalTime(20);
+        return data;
+    }
 }
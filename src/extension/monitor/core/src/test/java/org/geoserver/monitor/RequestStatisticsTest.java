@@ -0,0 +1,107 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestStatistics.Summary;
+import org.geoserver.monitor.RequestStatistics.Window;
+import org.junit.Test;
+
+public class RequestStatisticsTest {
+
+    // a round hour, so that slots are aligned with the test times
+    static final long NOW = 1000L * 60 * 60 * 24 * 365 * 48;
+
+    @Test
+    public void testWindows() throws Exception {
+        RequestStatistics statistics = new RequestStatistics();
+        statistics.record(request("WMS", "GetMap", 5, Status.FINISHED, "topp:states"), NOW);
+        statistics.record(request("WMS", "GetMap", 40, Status.FINISHED, "topp:states",
+                "sf:roads"), NOW - 30 * 1000);
+        statistics.record(request("WMS", "GetFeatureInfo", 300, Status.FAILED, "sf:roads"),
+                NOW - 3 * 60 * 1000);
+        statistics.record(request("WFS", "GetFeature", 20000, Status.FINISHED, "sf:roads"),
+                NOW - 30 * 60 * 1000);
+        // too old to be accounted for
+        statistics.record(request("WFS", "GetFeature", 10, Status.FINISHED, "sf:roads"),
+                NOW - 2 * 60 * 60 * 1000);
+
+        Summary minute = statistics.total.summarize(Window.ONE_MINUTE, NOW);
+        assertEquals(2, minute.getCount());
+        assertEquals(0, minute.getFailedCount());
+        assertEquals(22.5, minute.getAverageTime(), 0d);
+        assertEquals(3, statistics.total.summarize(Window.FIVE_MINUTES, NOW).getCount());
+        Summary hour = statistics.total.summarize(Window.ONE_HOUR, NOW);
+        assertEquals(4, hour.getCount());
+        assertEquals(1, hour.getFailedCount());
+        assertArrayEquals(new long[] { 1, 0, 1, 0, 0, 1, 0, 0, 0, 0, 1 }, hour.getHistogram());
+        assertEquals(50, hour.getPercentile(50));
+        assertEquals(-1, hour.getPercentile(100));
+
+        Map<String, Summary> services = statistics.summarize(statistics.services, null,
+                Window.FIVE_MINUTES, NOW);
+        assertEquals(1, services.size());
+        assertEquals(3, services.get("WMS").getCount());
+        services = statistics.summarize(statistics.services, null, Window.ONE_HOUR, NOW);
+        assertEquals(1, services.get("WFS").getCount());
+
+        Map<String, Summary> operations = statistics.summarize(statistics.operations, "WMS.",
+                Window.ONE_HOUR, NOW);
+        assertEquals(2, operations.size());
+        assertEquals(2, operations.get("GetMap").getCount());
+        assertEquals(1, operations.get("GetFeatureInfo").getFailedCount());
+
+        Map<String, Summary> layers = statistics.summarize(statistics.layers, null,
+                Window.ONE_MINUTE, NOW);
+        assertEquals(2, layers.get("topp:states").getCount());
+        assertEquals(1, layers.get("sf:roads").getCount());
+    }
+
+    @Test
+    public void testSlotRecycling() throws Exception {
+        RequestStatistics statistics = new RequestStatistics();
+        statistics.record(request("WMS", "GetMap", 5, Status.FINISHED, "topp:states"), NOW);
+        long later = NOW + 61 * 60 * 1000;
+        statistics.record(request("WMS", "GetMap", 5, Status.FINISHED), later);
+
+        // the old counts fell out of all the windows
+        assertEquals(1, statistics.total.summarize(Window.ONE_HOUR, later).getCount());
+        assertEquals(1, statistics.total.summarize(Window.ONE_MINUTE, later).getCount());
+
+        // the layer series has nothing in the last hour and gets dropped
+        assertTrue(statistics.layers.containsKey("topp:states"));
+        assertTrue(statistics.summarize(statistics.layers, null, Window.ONE_HOUR, later)
+                .isEmpty());
+        assertFalse(statistics.layers.containsKey("topp:states"));
+    }
+
+    @Test
+    public void testBuckets() throws Exception {
+        assertEquals(0, RequestStatistics.getBucket(0));
+        assertEquals(0, RequestStatistics.getBucket(10));
+        assertEquals(1, RequestStatistics.getBucket(11));
+        assertEquals(RequestStatistics.LATENCY_BOUNDS.length,
+                RequestStatistics.getBucket(100000));
+    }
+
+    RequestData request(String service, String operation, long time, Status status,
+            String... layers) {
+        RequestData data = new RequestData();
+        data.setService(service);
+        data.setOperation(operation);
+        data.setTotalTime(time);
+        data.setStatus(status);
+        data.setResources(Arrays.asList(layers));
+        return data;
+    }
+}
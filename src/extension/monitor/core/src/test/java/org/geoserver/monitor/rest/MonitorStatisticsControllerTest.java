@@ -0,0 +1,77 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.rest;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.MonitorTestData;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class MonitorStatisticsControllerTest extends GeoServerSystemTestSupport {
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        // no test data
+    }
+
+    @Before
+    public void setupMonitorContents() throws Exception {
+        Monitor monitor = applicationContext.getBean(Monitor.class);
+        monitor.getDAO().dispose();
+        new MonitorTestData(monitor.getDAO()).setup();
+    }
+
+    @Test
+    public void testGetJSON() throws Exception {
+        JSONObject json = (JSONObject) getAsJSON(
+                RestBaseController.ROOT_PATH + "/monitor/statistics.json?window=one_minute");
+        JSONArray windows = json.getJSONArray("windows");
+        assertEquals(1, windows.size());
+        JSONObject window = windows.getJSONObject(0);
+        assertEquals("ONE_MINUTE", window.getString("name"));
+        assertEquals(20, window.getJSONObject("total").getLong("count"));
+        assertEquals(4, window.getJSONObject("total").getLong("failedCount"));
+
+        JSONArray services = window.getJSONArray("services");
+        assertEquals(4, services.size());
+        // sorted by name
+        JSONObject bam = services.getJSONObject(0);
+        assertEquals("bam", bam.getString("name"));
+        assertEquals(3, bam.getLong("count"));
+        JSONArray operations = bam.getJSONArray("operations");
+        assertEquals(2, operations.size());
+        assertEquals("x", operations.getJSONObject(0).getString("name"));
+        assertEquals(1, operations.getJSONObject(0).getLong("count"));
+        assertEquals("y", operations.getJSONObject(1).getString("name"));
+        assertEquals(2, operations.getJSONObject(1).getLong("count"));
+
+        assertEquals(3, window.getJSONArray("layers").size());
+    }
+
+    @Test
+    public void testGetXML() throws Exception {
+        Document dom = getAsDOM(RestBaseController.ROOT_PATH + "/monitor/statistics.xml");
+        assertEquals("statistics", dom.getDocumentElement().getNodeName());
+        assertXpathEvaluatesTo("3", "count(/statistics/windows/entry)", dom);
+        assertXpathEvaluatesTo("20", "/statistics/windows/entry[name='ONE_HOUR']/total/count",
+                dom);
+    }
+
+    @Test
+    public void testUnknownWindow() throws Exception {
+        assertEquals(400, getAsServletResponse(
+                RestBaseController.ROOT_PATH + "/monitor/statistics.json?window=forever")
+                        .getStatus());
+    }
+}
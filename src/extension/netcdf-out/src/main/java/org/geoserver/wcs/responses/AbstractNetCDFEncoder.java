@@ -10,6 +10,8 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.MetadataMap;
 import org.geoserver.config.GeoServer;
 import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geoserver.util.LazyThreadPool;
 import org.geoserver.wcs2_0.response.DimensionBean;
 import org.geoserver.wcs2_0.response.GranuleStack;
 import org.geoserver.wcs2_0.response.WCS20GetCoverageResponse;
@@ -49,12 +51,17 @@ import javax.media.jai.iterator.RandomIter;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +73,22 @@ public abstract class AbstractNetCDFEncoder implements NetCDFEncoder {
 
     protected static final double EQUALITY_DELTA = 1E-10; //Consider customizing it depending on the noData magnitude
 
+    /**
+     * The property setting the number of threads preparing the granules data in parallel
+     */
+    public static final String ENCODING_THREADS_PROPERTY = "NETCDF_ENCODING_THREADS";
+
+    /**
+     * Max size, in bytes, of the chunks of the variables written one 2D slice at a time
+     */
+    static final int MAX_SLICE_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The pool preparing the granules data in parallel, when enabled
+     */
+    private static final LazyThreadPool ENCODING_POOL = new LazyThreadPool(
+            "GeoServer NetCDF encoder", AbstractNetCDFEncoder::lookupEncodingThreads);
+
     /**
      * Attributes that are never copied to the main output variable from a NetCDF/GRIB source because they require special handling.
      */
@@ -273,7 +296,7 @@ public abstract class AbstractNetCDFEncoder implements NetCDFEncoder {
             if (!NetCDFUtilities.isNC4CAvailable()) {
                 throw new IOException(NetCDFUtilities.NC4_ERROR_MESSAGE);
             }
-            Nc4Chunking chunker = new Nc4ChunkingDefault(compressionLevel, shuffle);
+            Nc4Chunking chunker = new SliceChunking(compressionLevel, shuffle);
             writer = NetcdfFileWriter.createNew(version, file.getAbsolutePath(), chunker);
         }
 
@@ -691,6 +714,165 @@ public abstract class AbstractNetCDFEncoder implements NetCDFEncoder {
         }
     }
 
+    /**
+     * Returns the number of threads preparing the granules data in parallel, 0 if the granules
+     * are prepared sequentially (the default, set the NETCDF_ENCODING_THREADS property to change
+     * it)
+     */
+    static int getEncodingThreads() {
+        return ENCODING_POOL.getThreads();
+    }
+
+    static int lookupEncodingThreads() {
+        String value = GeoServerExtensions.getProperty(ENCODING_THREADS_PROPERTY);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + ENCODING_THREADS_PROPERTY + ": " + value
+                        + ", the granules will be encoded sequentially");
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the bounded pool preparing the granules data in parallel, or null if the granules
+     * are prepared sequentially
+     */
+    static ExecutorService getEncodingPool() {
+        return ENCODING_POOL.get();
+    }
+
+    /**
+     * Shuts down the encoding pool, if any. The number of threads is read again from the
+     * NETCDF_ENCODING_THREADS property on the next encoding
+     */
+    public static void disposeEncodingPool() {
+        ENCODING_POOL.dispose();
+    }
+
+    /**
+     * Prepares the data of a granule to be written, possibly in a pool thread
+     */
+    @FunctionalInterface
+    protected interface GranuleProcessor<T> {
+        T process(GridCoverage2D granule) throws Exception;
+    }
+
+    /**
+     * Writes out the data prepared for a granule, always in the encoding thread
+     */
+    @FunctionalInterface
+    protected interface GranuleWriter<T> {
+        void write(GridCoverage2D granule, T data) throws IOException, InvalidRangeException;
+    }
+
+    /**
+     * Processes and writes out all the granules of the stack, in order. When the encoding pool is
+     * enabled the granules are read and processed in parallel, while the output is written in the
+     * calling thread, as the {@link NetcdfFileWriter} is not thread safe. At most twice as many
+     * granules as the pool threads are held in memory at any given time.
+     */
+    protected <T> void processGranules(GranuleProcessor<T> processor,
+            GranuleWriter<T> granuleWriter) throws IOException, InvalidRangeException {
+        List<GridCoverage2D> granules = granuleStack.getGranules();
+        ExecutorService executor = getEncodingPool();
+        if (executor == null || granules.size() < 2) {
+            for (GridCoverage2D granule : granules) {
+                granuleWriter.write(granule, process(processor, granule));
+            }
+            return;
+        }
+
+        // the pool threads need the request and security thread locals
+        final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        final int maxInFlight = getEncodingThreads() * 2;
+        Deque<Future<T>> inFlight = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (GridCoverage2D granule : granules) {
+                while (submitted < granules.size() && inFlight.size() < maxInFlight) {
+                    final GridCoverage2D next = granules.get(submitted++);
+                    inFlight.add(executor.submit(() -> {
+                        threadLocals.apply();
+                        try {
+                            return processor.process(next);
+                        } finally {
+                            threadLocals.cleanup();
+                        }
+                    }));
+                }
+                granuleWriter.write(granule, waitFor(inFlight.removeFirst()));
+            }
+        } finally {
+            // no need to keep going if a granule failed
+            for (Future<T> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <T> T process(GranuleProcessor<T> processor, GridCoverage2D granule)
+            throws IOException {
+        try {
+            return processor.process(granule);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to encode granule " + granule.getName(), e);
+        }
+    }
+
+    private <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding the granules", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to encode the granules", cause);
+        }
+    }
+
+    /**
+     * Chunks the variables having more than two dimensions by 2D slice, matching the granules
+     * being written one at a time, so that each written granule is compressed independently
+     */
+    static class SliceChunking extends Nc4ChunkingDefault {
+
+        SliceChunking(int deflateLevel, boolean shuffle) {
+            super(deflateLevel, shuffle);
+        }
+
+        @Override
+        public int[] computeChunking(Variable v) {
+            int rank = v.getRank();
+            if (rank < 3 || v.isUnlimited()) {
+                return super.computeChunking(v);
+            }
+            int[] chunks = new int[rank];
+            for (int i = 0; i < rank - 2; i++) {
+                chunks[i] = 1;
+            }
+            // keep huge slices split in bands of rows
+            int width = v.getDimension(rank - 1).getLength();
+            int height = v.getDimension(rank - 2).getLength();
+            long rowSize = Math.max(1, (long) width * v.getElementSize());
+            chunks[rank - 2] = (int) Math.max(1, Math.min(height, MAX_SLICE_CHUNK_SIZE / rowSize));
+            chunks[rank - 1] = width;
+            return chunks;
+        }
+    }
+
     // Non-scalar ExtraVariable
     protected static class ExtraVariableRecord {
 
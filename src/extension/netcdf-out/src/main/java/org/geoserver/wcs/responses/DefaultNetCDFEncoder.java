@@ -338,107 +338,135 @@ public class DefaultNetCDFEncoder extends AbstractNetCDFEncoder {
         // the same sample model 
         final int imageDataType = sampleGranule.getRenderedImage().getSampleModel().getDataType();
         final DataType netCDFDataType = var.getDataType();
-        final Array matrix = NetCDFUtilities.getArray(dimSize, netCDFDataType);
-
-        // Loop over all granules
-        for (GridCoverage2D gridCoverage: granuleStack.getGranules()) {
-            final RenderedImage ri = gridCoverage.getRenderedImage();
-
-            //
-            // Preparing tile properties for future scan
-            //
-            int width = ri.getWidth();
-            int height = ri.getHeight();
-            int minX = ri.getMinX();
-            int minY = ri.getMinY();
-            int maxX = minX + width - 1;
-            int maxY = minY + height - 1;
-            int tileWidth = Math.min(ri.getTileWidth(), width);
-            int tileHeight = Math.min(ri.getTileHeight(), height);
-
-            int minTileX = minX / tileWidth - (minX < 0 ? (-minX % tileWidth > 0 ? 1 : 0): 0);
-            int minTileY = minY / tileHeight - (minY < 0 ? (-minY % tileHeight > 0 ? 1 : 0): 0);
-            int maxTileX = maxX / tileWidth - (maxX < 0 ? (-maxX % tileWidth > 0 ? 1 : 0): 0);
-            int maxTileY = maxY / tileHeight - (maxY < 0 ? (-maxY % tileHeight > 0 ? 1 : 0): 0);
-
-            final Index matrixIndex = matrix.getIndex();
-            final int indexing[] = new int[numDimensions];
 
+        // Each granule is a 2D slice of the output, with a single value on the higher rank
+        // dimensions, written as soon as it is ready instead of filling the whole output in memory
+        final int[] sliceSize = new int[numDimensions];
+        Arrays.fill(sliceSize, 1);
+        sliceSize[numDimensions - 2] = dimSize[numDimensions - 2];
+        sliceSize[numDimensions - 1] = dimSize[numDimensions - 1];
+
+        processGranules(gridCoverage -> {
+            final Array slice = NetCDFUtilities.getArray(sliceSize, netCDFDataType);
+            fillSlice(gridCoverage, slice, imageDataType, netCDFDataType);
+            return slice;
+        }, (gridCoverage, slice) -> {
             // Update the NetCDF array indexing to set values for a specific 2D slice 
-            updateIndexing(indexing, gridCoverage);
+            final int origin[] = new int[numDimensions];
+            updateIndexing(origin, gridCoverage);
 
             // copy non-scalar extra variable data
             if (!nonscalarExtraVariables.isEmpty()) {
-                // Before opening the source NetCDF/GRIB, see if any record requires data from it;
-                // we might be iterating over many time/elevation/custom dimensions but have
-                // granules with sources in common and want to avoid unnecessary opening of
-                // source NetCDF/GRIB. Only the first matching data value is used.
-                // This loop also ensures that the source for each granule is only opened once.
-                boolean needSource = false;
-                for (ExtraVariableRecord record : nonscalarExtraVariables) {
-                    if (!record.writtenIndices.contains(indexing[record.dimensionIndex])) {
-                        needSource = true;
-                        break;
-                    }
-                }
-                if (needSource) {
-                    try (NetcdfDataset source = getSourceNetcdfDataset(gridCoverage)) {
-                        if (source != null) {
-                            for (ExtraVariableRecord record : nonscalarExtraVariables) {
-                                if (!record.writtenIndices
-                                        .contains(indexing[record.dimensionIndex])) {
-                                    writer.write(
-                                            writer.findVariable(record.extraVariable.getOutput()),
-                                            new int[] { indexing[record.dimensionIndex] },
-                                            source.findVariable(record.extraVariable.getSource())
-                                                    .read().reshape(new int[] { 1 }));
-                                    record.writtenIndices.add(indexing[record.dimensionIndex]);
-                                }
-                            }
+                writeExtraVariables(gridCoverage, origin, nonscalarExtraVariables);
+            }
+
+            // ------------------------------
+            // Write the data to the variable
+            // ------------------------------
+            writer.write(var, origin, slice);
+        });
+        writer.flush();
+    }
+
+    /**
+     * Copies the non-scalar extra variables data related to a granule, if not already copied
+     */
+    private void writeExtraVariables(GridCoverage2D gridCoverage, int[] indexing,
+            List<ExtraVariableRecord> nonscalarExtraVariables)
+            throws IOException, InvalidRangeException {
+        // Before opening the source NetCDF/GRIB, see if any record requires data from it;
+        // we might be iterating over many time/elevation/custom dimensions but have
+        // granules with sources in common and want to avoid unnecessary opening of
+        // source NetCDF/GRIB. Only the first matching data value is used.
+        // This loop also ensures that the source for each granule is only opened once.
+        boolean needSource = false;
+        for (ExtraVariableRecord record : nonscalarExtraVariables) {
+            if (!record.writtenIndices.contains(indexing[record.dimensionIndex])) {
+                needSource = true;
+                break;
+            }
+        }
+        if (needSource) {
+            try (NetcdfDataset source = getSourceNetcdfDataset(gridCoverage)) {
+                if (source != null) {
+                    for (ExtraVariableRecord record : nonscalarExtraVariables) {
+                        if (!record.writtenIndices
+                                .contains(indexing[record.dimensionIndex])) {
+                            writer.write(
+                                    writer.findVariable(record.extraVariable.getOutput()),
+                                    new int[] { indexing[record.dimensionIndex] },
+                                    source.findVariable(record.extraVariable.getSource())
+                                            .read().reshape(new int[] { 1 }));
+                            record.writtenIndices.add(indexing[record.dimensionIndex]);
                         }
                     }
                 }
             }
+        }
+    }
 
-            // ----------------
-            // Fill data matrix
-            // ----------------
-
-            // Loop over bands using a RandomIter 
-            final RandomIter data = RandomIterFactory.create(ri, null);
-            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
-                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
-                    for (int trow = 0; trow < tileHeight; trow++) {
-                        int j = (tileY * tileHeight) + trow;
-                        if ((j >= minY) && (j <= maxY)) {
-                            for (int tcol = 0; tcol < tileWidth; tcol++) {
-                                int col = (tileX * tileWidth) + tcol;
-                                if ((col >= minX) && (col <= maxX)) {
-                                    int k = col;
-                                    final int yPos = height - j + minY - 1;
-
-                                    // Simply setting lat and lon
-                                    indexing[numDimensions - 1] = k - minX;
-                                    indexing[numDimensions - 2] = yPos;
-                                    matrixIndex.set(indexing);
-                                    setPixel(k, j, NetCDFUtilities.transcodeImageDataType(imageDataType), 
-                                            netCDFDataType, data, matrix, matrixIndex, dataPacker, noDataValue, 
-                                            unitConverter, 0);
-                                }
+    /**
+     * Fills the 2D slice of a granule. Only reads the granule and the encoder settings, can be
+     * run in parallel for different granules
+     */
+    private void fillSlice(GridCoverage2D gridCoverage, Array slice, int imageDataType,
+            DataType netCDFDataType) {
+        final RenderedImage ri = gridCoverage.getRenderedImage();
+
+        //
+        // Preparing tile properties for future scan
+        //
+        int width = ri.getWidth();
+        int height = ri.getHeight();
+        int minX = ri.getMinX();
+        int minY = ri.getMinY();
+        int maxX = minX + width - 1;
+        int maxY = minY + height - 1;
+        int tileWidth = Math.min(ri.getTileWidth(), width);
+        int tileHeight = Math.min(ri.getTileHeight(), height);
+
+        int minTileX = minX / tileWidth - (minX < 0 ? (-minX % tileWidth > 0 ? 1 : 0): 0);
+        int minTileY = minY / tileHeight - (minY < 0 ? (-minY % tileHeight > 0 ? 1 : 0): 0);
+        int maxTileX = maxX / tileWidth - (maxX < 0 ? (-maxX % tileWidth > 0 ? 1 : 0): 0);
+        int maxTileY = maxY / tileHeight - (maxY < 0 ? (-maxY % tileHeight > 0 ? 1 : 0): 0);
+
+        final int numDimensions = slice.getRank();
+        final Index sliceIndex = slice.getIndex();
+        // the local slice indexing, the higher rank dimensions are set to 0
+        final int indexing[] = new int[numDimensions];
+
+        // ----------------
+        // Fill data matrix
+        // ----------------
+
+        // Loop over bands using a RandomIter 
+        final RandomIter data = RandomIterFactory.create(ri, null);
+        final DataType sourceDataType = NetCDFUtilities.transcodeImageDataType(imageDataType);
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                for (int trow = 0; trow < tileHeight; trow++) {
+                    int j = (tileY * tileHeight) + trow;
+                    if ((j >= minY) && (j <= maxY)) {
+                        for (int tcol = 0; tcol < tileWidth; tcol++) {
+                            int col = (tileX * tileWidth) + tcol;
+                            if ((col >= minX) && (col <= maxX)) {
+                                int k = col;
+                                final int yPos = height - j + minY - 1;
+
+                                // Simply setting lat and lon
+                                indexing[numDimensions - 1] = k - minX;
+                                indexing[numDimensions - 2] = yPos;
+                                sliceIndex.set(indexing);
+                                setPixel(k, j, sourceDataType, netCDFDataType, data, slice,
+                                        sliceIndex, dataPacker, noDataValue, unitConverter, 0);
                             }
                         }
                     }
                 }
             }
-            // Finalize the iterator 
-            data.done();
         }
-
-        // ------------------------------
-        // Write the data to the variable
-        // ------------------------------
-        writer.write(var, matrix);
-        writer.flush();
+        // Finalize the iterator 
+        data.done();
     }
 
     @Override
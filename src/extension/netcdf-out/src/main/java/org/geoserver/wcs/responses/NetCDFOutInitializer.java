@@ -9,8 +9,9 @@ import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.GeoServerInitializer;
 import org.geoserver.web.netcdf.NetCDFSettingsContainer;
+import org.springframework.beans.factory.DisposableBean;
 
-public class NetCDFOutInitializer implements GeoServerInitializer {
+public class NetCDFOutInitializer implements GeoServerInitializer, DisposableBean {
 
     @Override
     public void initialize(GeoServer geoServer) throws Exception {
@@ -22,4 +23,9 @@ public class NetCDFOutInitializer implements GeoServerInitializer {
             geoServer.save(global);
         }
     }
+
+    @Override
+    public void destroy() throws Exception {
+        AbstractNetCDFEncoder.disposeEncodingPool();
+    }
 }
@@ -42,6 +42,7 @@ import org.geoserver.data.test.SystemTestData;
 import org.geoserver.test.TestSetup;
 import org.geoserver.test.TestSetupFrequency;
 import org.geoserver.wcs.WCSInfo;
+import org.geoserver.wcs.responses.AbstractNetCDFEncoder;
 import org.geoserver.wcs2_0.response.GranuleStack;
 import org.geoserver.web.netcdf.DataPacking;
 import org.geoserver.web.netcdf.NetCDFSettingsContainer;
@@ -542,6 +543,21 @@ public class WCSNetCDFMosaicTest extends WCSNetCDFBaseTest {
         checkExtraVariables("application/x-netcdf4");
     }
 
+    /**
+     * Test <code>Temperature_surface</code> output, with the granules encoded in parallel.
+     */
+    @Test
+    public void testExtraVariablesParallelEncoding() throws Exception {
+        System.setProperty(AbstractNetCDFEncoder.ENCODING_THREADS_PROPERTY, "2");
+        try {
+            AbstractNetCDFEncoder.disposeEncodingPool();
+            checkExtraVariables("application/x-netcdf");
+        } finally {
+            System.clearProperty(AbstractNetCDFEncoder.ENCODING_THREADS_PROPERTY);
+            AbstractNetCDFEncoder.disposeEncodingPool();
+        }
+    }
+
     /**
      * Check <code>Temperature_surface</code> extra variables, variable attributes, and global attributes of different type.
      * 
@@ -0,0 +1,339 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionListener;
+import org.geoserver.wfs.WFSException;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.type.Name;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateFilter;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Caches the geometries clipped, simplified and transformed by the vector tile {@link Pipeline},
+ * by layer and tile, so that the tiles asked again, or in another vector tile format using the same
+ * pipeline settings, only need to read the features.
+ * <p>
+ * The geometries are looked up by feature id, and used only if the source geometry still has the
+ * same coordinates, changes made via WFS-T and catalog changes drop the cached geometries right
+ * away, and tiles are evicted a while after being cached in any case.
+ * </p>
+ * <p>
+ * The cache is bounded by the estimated memory used by the geometries, set in bytes by the
+ * <code>VECTOR_TILES_GEOMETRY_CACHE_MAX_SIZE</code> variable, caching is disabled if the variable is
+ * not set.
+ * </p>
+ */
+public class VectorTileGeometryCache implements TransactionListener, CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(VectorTileGeometryCache.class);
+
+    static final String MAX_SIZE_PROPERTY = "VECTOR_TILES_GEOMETRY_CACHE_MAX_SIZE";
+
+    /**
+     * Tiles are evicted this long, in seconds, after being cached
+     */
+    static final long CACHE_TIMEOUT = 10 * 60;
+
+    /**
+     * Estimated memory used by a coordinate, and by the rest of a cached geometry
+     */
+    static final int COORDINATE_SIZE = 48;
+
+    static final int GEOMETRY_SIZE = 200;
+
+    final Cache<TileKey, TileGeometries> cache;
+
+    /**
+     * Incremented on each clear, the geometries computed while the cache is cleared are not kept
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    public VectorTileGeometryCache(Catalog catalog) {
+        this(getMaxSize());
+        catalog.addListener(this);
+    }
+
+    VectorTileGeometryCache(long maxSize) {
+        if (maxSize > 0) {
+            LOGGER.info("Caching up to " + maxSize + " bytes of vector tile geometries");
+            this.cache = CacheBuilder.newBuilder().maximumWeight(maxSize)
+                    .<TileKey, TileGeometries> weigher((key, geometries) -> geometries.weight)
+                    .expireAfterWrite(CACHE_TIMEOUT, TimeUnit.SECONDS).build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    static long getMaxSize() {
+        String value = GeoServerExtensions.getProperty(MAX_SIZE_PROPERTY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + MAX_SIZE_PROPERTY + ": " + value
+                        + ", vector tile geometries will not be cached");
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the geometries are being cached
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Returns the cache generation, to be passed back to {@link #put(TileKey, Map, long)}
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the cached geometries of a layer tile, by feature id, or an empty map
+     */
+    Map<String, CachedGeometry> get(TileKey key) {
+        TileGeometries geometries = cache == null ? null : cache.getIfPresent(key);
+        return geometries == null ? Collections.emptyMap() : geometries.geometries;
+    }
+
+    /**
+     * Caches the geometries of a layer tile, unless the cache was cleared after they started being
+     * computed
+     *
+     * @param generation The cache generation before the geometries were computed
+     */
+    void put(TileKey key, Map<String, CachedGeometry> geometries, long generation) {
+        if (cache == null) {
+            return;
+        }
+        cache.put(key, new TileGeometries(geometries));
+        if (this.generation.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Removes all the cached geometries
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Removes the cached geometries of a layer
+     */
+    void clear(QName layerName) {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(k -> k.matches(layerName));
+        }
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        clear(event.getLayerName());
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        // nothing cached yet
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        if (event.getSource() instanceof ResourceInfo) {
+            clear();
+        }
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // wait for the change to be applied
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        if (event.getSource() instanceof ResourceInfo) {
+            clear();
+        }
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    /**
+     * Identifies a layer tile and the settings of the pipeline processing its geometries
+     */
+    static class TileKey {
+
+        final Name layerName;
+
+        final ReferencedEnvelope renderingArea;
+
+        final int width;
+
+        final int height;
+
+        final int buffer;
+
+        final double overSamplingFactor;
+
+        final boolean transformToScreenCoordinates;
+
+        final boolean clipToMapBounds;
+
+        /**
+         * The SQL view parameters, if any, as they can change the geometries
+         */
+        final Object viewParams;
+
+        TileKey(Name layerName, ReferencedEnvelope renderingArea, Rectangle paintArea, int buffer,
+                double overSamplingFactor, boolean transformToScreenCoordinates,
+                boolean clipToMapBounds, Object viewParams) {
+            this.layerName = layerName;
+            this.renderingArea = renderingArea;
+            this.width = paintArea.width;
+            this.height = paintArea.height;
+            this.buffer = buffer;
+            this.overSamplingFactor = overSamplingFactor;
+            this.transformToScreenCoordinates = transformToScreenCoordinates;
+            this.clipToMapBounds = clipToMapBounds;
+            this.viewParams = viewParams;
+        }
+
+        boolean matches(QName name) {
+            return name != null && name.getLocalPart().equals(layerName.getLocalPart())
+                    && (name.getNamespaceURI() == null || name.getNamespaceURI().isEmpty()
+                            || name.getNamespaceURI().equals(layerName.getNamespaceURI()));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layerName, renderingArea, width, height, buffer,
+                    overSamplingFactor, transformToScreenCoordinates, clipToMapBounds,
+                    viewParams);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return layerName.equals(other.layerName) && renderingArea.equals(other.renderingArea)
+                    && width == other.width && height == other.height && buffer == other.buffer
+                    && overSamplingFactor == other.overSamplingFactor
+                    && transformToScreenCoordinates == other.transformToScreenCoordinates
+                    && clipToMapBounds == other.clipToMapBounds
+                    && Objects.equals(viewParams, other.viewParams);
+        }
+
+        @Override
+        public String toString() {
+            return layerName + " " + renderingArea + " " + width + "x" + height;
+        }
+    }
+
+    /**
+     * A processed geometry, along with a fingerprint of the source one
+     */
+    static class CachedGeometry {
+
+        final int sourcePoints;
+
+        final long sourceHash;
+
+        final Geometry geometry;
+
+        CachedGeometry(Geometry source, Geometry geometry) {
+            this.sourcePoints = source.getNumPoints();
+            this.sourceHash = hash(source);
+            this.geometry = geometry;
+        }
+
+        /**
+         * Returns true if the geometry was computed from the given source geometry, as far as a
+         * hash of its coordinates can tell
+         */
+        boolean matches(Geometry source) {
+            return source != null && sourcePoints == source.getNumPoints()
+                    && sourceHash == hash(source);
+        }
+
+        /**
+         * Hashes the type, structure and coordinates of a geometry, cheaper than keeping a copy
+         * of the source geometry around to compare it
+         */
+        static long hash(Geometry geometry) {
+            final long[] hash = { geometry.getGeometryType().hashCode() * 31L
+                    + geometry.getNumGeometries() };
+            geometry.apply(new CoordinateFilter() {
+
+                @Override
+                public void filter(Coordinate c) {
+                    hash[0] = hash[0] * 1099511628211L + Double.doubleToLongBits(c.x);
+                    hash[0] = hash[0] * 1099511628211L + Double.doubleToLongBits(c.y);
+                }
+            });
+            return hash[0];
+        }
+
+        /**
+         * Returns a copy of the processed geometry, safe to be modified by the caller
+         */
+        Geometry getGeometry() {
+            return (Geometry) geometry.clone();
+        }
+    }
+
+    static class TileGeometries {
+
+        final Map<String, CachedGeometry> geometries;
+
+        final int weight;
+
+        TileGeometries(Map<String, CachedGeometry> geometries) {
+            this.geometries = geometries;
+            long weight = 0;
+            for (CachedGeometry cached : geometries.values()) {
+                weight += GEOMETRY_SIZE + (long) cached.geometry.getNumPoints() * COORDINATE_SIZE;
+            }
+            this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+    }
+}
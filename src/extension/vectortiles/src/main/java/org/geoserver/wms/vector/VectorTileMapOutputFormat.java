@@ -10,22 +10,34 @@ import static org.geotools.renderer.lite.VectorMapRenderUtils.getStyleQuery;
 
 import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geoserver.wms.DefaultWebMapService;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.map.AbstractMapOutputFormat;
+import org.geoserver.wms.vector.VectorTileGeometryCache.CachedGeometry;
+import org.geoserver.wms.vector.VectorTileGeometryCache.TileKey;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.factory.Hints;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.filter.function.EnvFunction;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.Layer;
 import org.geotools.renderer.lite.VectorMapRenderUtils;
@@ -59,6 +71,8 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
 
     private boolean transformToScreenCoordinates;
 
+    private VectorTileGeometryCache geometryCache;
+
     public VectorTileMapOutputFormat(WMS wms, VectorTileBuilderFactory tileBuilderFactory) {
         super(tileBuilderFactory.getMimeType(), tileBuilderFactory.getOutputFormats());
         this.wms = wms;
@@ -88,6 +102,14 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         this.transformToScreenCoordinates = useScreenCoords;
     }
 
+    /**
+     * Sets the cache of the geometries processed by the pipeline, shared among the vector tile
+     * formats
+     */
+    public void setGeometryCache(VectorTileGeometryCache geometryCache) {
+        this.geometryCache = geometryCache;
+    }
+
     @Override
     public WebMap produceMap(final WMSMapContent mapContent) throws ServiceException, IOException {
         checkNotNull(mapContent);
@@ -106,6 +128,7 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         vectorTileBuilder = this.tileBuilderFactory.newBuilder(paintArea, renderingArea);
 
         CoordinateReferenceSystem sourceCrs;
+        List<LayerRun> runs = new ArrayList<>();
         for (Layer layer : mapContent.layers()) {
 
             FeatureSource<?, ?> featureSource = layer.getFeatureSource();
@@ -126,14 +149,81 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
             query.getHints().remove(Hints.SCREENMAP);
 
             FeatureCollection<?, ?> features = featureSource.getFeatures(query);
+
+            TileKey tileKey = null;
+            if (geometryCache != null && geometryCache.isEnabled()) {
+                tileKey = new TileKey(featureSource.getSchema().getName(), renderingArea,
+                        paintArea, buffer, overSamplingFactor, transformToScreenCoordinates,
+                        clipToMapBounds, query.getHints().get(Hints.VIRTUAL_TABLE_PARAMETERS));
+            }
             
-            run(features, pipeline, geometryDescriptor, vectorTileBuilder, layer);
+            runs.add(new LayerRun(features, pipeline, geometryDescriptor, layer, tileKey));
+        }
+
+        ExecutorService executor = DefaultWebMapService.getLayerRenderingPool();
+        if (executor == null || runs.size() < 2) {
+            for (LayerRun layerRun : runs) {
+                run(layerRun, vectorTileBuilder::addFeature);
+            }
+        } else {
+            runParallel(runs, executor, vectorTileBuilder);
         }
         
         WebMap map = vectorTileBuilder.build(mapContent);
         return map;
     }
 
+    /**
+     * Runs the pipelines of all layers but the first in the executor, buffering their features,
+     * while the first one is run in the calling thread. The buffered features are then added to
+     * the tile in layer order, as the builders are not thread safe and the layer order matters.
+     */
+    void runParallel(List<LayerRun> runs, ExecutorService executor,
+            VectorTileBuilder vectorTileBuilder) throws IOException {
+        // the data is read in the pool threads, they need the request, security and env values
+        final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        final Map<String, Object> envValues = new HashMap<>(EnvFunction.getLocalValues());
+        List<Future<FeatureBuffer>> buffers = new ArrayList<>();
+        try {
+            for (final LayerRun layerRun : runs.subList(1, runs.size())) {
+                buffers.add(executor.submit(() -> {
+                    threadLocals.apply();
+                    EnvFunction.setLocalValues(envValues);
+                    try {
+                        FeatureBuffer buffer = new FeatureBuffer();
+                        run(layerRun, buffer);
+                        return buffer;
+                    } finally {
+                        EnvFunction.clearLocalValues();
+                        threadLocals.cleanup();
+                    }
+                }));
+            }
+
+            run(runs.get(0), vectorTileBuilder::addFeature);
+
+            for (Future<FeatureBuffer> future : buffers) {
+                future.get().replay(vectorTileBuilder::addFeature);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while building the vector tile", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ServiceException) {
+                throw (ServiceException) cause;
+            }
+            throw new ServiceException(cause);
+        } finally {
+            // no need to keep going if one of the layers failed
+            for (Future<FeatureBuffer> future : buffers) {
+                future.cancel(true);
+            }
+        }
+    }
+
     protected Pipeline getPipeline(final WMSMapContent mapContent,
             final ReferencedEnvelope renderingArea, final Rectangle paintArea,
             CoordinateReferenceSystem sourceCrs, int buffer) {
@@ -175,48 +265,144 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
     void run(FeatureCollection<?, ?> features, Pipeline pipeline, 
             GeometryDescriptor geometryDescriptor, 
             VectorTileBuilder vectorTileBuilder, Layer layer){
+        run(new LayerRun(features, pipeline, geometryDescriptor, layer, null),
+                vectorTileBuilder::addFeature);
+    }
+
+    void run(LayerRun run, FeatureConsumer consumer) {
         Stopwatch sw = Stopwatch.createStarted();
         int count = 0;
         int total = 0;
+        int cacheHits = 0;
         Feature feature;
+
+        // the geometries cached by a previous request for the same tile, if any
+        Map<String, CachedGeometry> cached = null;
+        Map<String, CachedGeometry> computed = null;
+        long generation = 0;
+        if (run.tileKey != null) {
+            generation = geometryCache.getGeneration();
+            cached = geometryCache.get(run.tileKey);
+            computed = new HashMap<>();
+        }
         
-        try (FeatureIterator<?> it = features.features()) {
+        try (FeatureIterator<?> it = run.features.features()) {
             while (it.hasNext()) {
                 feature = it.next();
                 total++;
                 Geometry originalGeom;
                 Geometry finalGeom;
 
+                final String featureId = feature.getIdentifier().toString();
                 originalGeom = (Geometry) feature.getDefaultGeometryProperty().getValue();
-                try {
-                    finalGeom = pipeline.execute(originalGeom);
-                } catch (Exception processingException) {
-                    processingException.printStackTrace();
-                    continue;
+                CachedGeometry cachedGeom = cached == null ? null : cached.get(featureId);
+                if (cachedGeom != null && cachedGeom.matches(originalGeom)) {
+                    finalGeom = cachedGeom.getGeometry();
+                    cacheHits++;
+                } else {
+                    try {
+                        finalGeom = run.pipeline.execute(originalGeom);
+                    } catch (Exception processingException) {
+                        LOGGER.log(Level.WARNING, "Failed to process the geometry of feature "
+                                + featureId + ", skipping it", processingException);
+                        continue;
+                    }
+                    cachedGeom = null;
+                    if (computed != null && originalGeom != null) {
+                        cachedGeom = new CachedGeometry(originalGeom, finalGeom);
+                        // the builder gets its own copy, it might modify it
+                        finalGeom = cachedGeom.getGeometry();
+                    }
+                }
+                if (computed != null && cachedGeom != null) {
+                    computed.put(featureId, cachedGeom);
                 }
                 if (finalGeom.isEmpty()) {
                     continue;
                 }
 
                 final String layerName = feature.getName().getLocalPart();
-                final String featureId = feature.getIdentifier().toString();
-                final String geometryName = geometryDescriptor.getName().getLocalPart();
+                final String geometryName = run.geometryDescriptor.getName().getLocalPart();
 
                 final Map<String, Object> properties = getProperties(feature);
 
-                vectorTileBuilder.addFeature(layerName, featureId, geometryName, finalGeom,
-                        properties);
+                consumer.addFeature(layerName, featureId, geometryName, finalGeom, properties);
                 count++;
             }
         }
+        if (computed != null) {
+            geometryCache.put(run.tileKey, computed, generation);
+        }
         sw.stop();
         if (LOGGER.isLoggable(Level.FINE)) {
-            String msg = String.format("Added %,d out of %,d features of '%s' in %s", count,
-                    total, layer.getTitle(), sw);
+            String msg = String.format("Added %,d out of %,d features of '%s' in %s, "
+                    + "%,d geometries from the cache", count, total, run.layer.getTitle(), sw,
+                    cacheHits);
             // System.err.println(msg);
             LOGGER.fine(msg);
         }
     }
+
+    /**
+     * The features and pipeline of a layer
+     */
+    static class LayerRun {
+
+        final FeatureCollection<?, ?> features;
+
+        final Pipeline pipeline;
+
+        final GeometryDescriptor geometryDescriptor;
+
+        final Layer layer;
+
+        /**
+         * The key of the layer tile in the geometry cache, or null if not caching
+         */
+        final TileKey tileKey;
+
+        LayerRun(FeatureCollection<?, ?> features, Pipeline pipeline,
+                GeometryDescriptor geometryDescriptor, Layer layer, TileKey tileKey) {
+            this.features = features;
+            this.pipeline = pipeline;
+            this.geometryDescriptor = geometryDescriptor;
+            this.layer = layer;
+            this.tileKey = tileKey;
+        }
+    }
+
+    /**
+     * Receives the processed features of a layer, either a {@link VectorTileBuilder} or a
+     * {@link FeatureBuffer}
+     */
+    @FunctionalInterface
+    interface FeatureConsumer {
+
+        void addFeature(String layerName, String featureId, String geometryName,
+                Geometry geometry, Map<String, Object> properties);
+    }
+
+    /**
+     * Collects the features of a layer processed in a pool thread, to be added to the actual
+     * builder later
+     */
+    static class FeatureBuffer implements FeatureConsumer {
+
+        final List<Consumer<FeatureConsumer>> features = new ArrayList<>();
+
+        @Override
+        public void addFeature(String layerName, String featureId, String geometryName,
+                Geometry geometry, Map<String, Object> properties) {
+            features.add(consumer -> consumer.addFeature(layerName, featureId, geometryName,
+                    geometry, properties));
+        }
+
+        void replay(FeatureConsumer consumer) {
+            for (Consumer<FeatureConsumer> feature : features) {
+                feature.accept(consumer);
+            }
+        }
+    }
     
     /**
      * @return {@code null}, not a raster format.
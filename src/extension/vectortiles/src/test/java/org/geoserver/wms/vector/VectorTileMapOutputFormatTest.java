@@ -17,6 +17,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.QName;
 
 import org.apache.wicket.spring.test.ApplicationContextMock;
 import org.geoserver.catalog.SLDHandler;
@@ -45,6 +49,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.GeometryDescriptor;
@@ -52,8 +57,10 @@ import org.opengis.filter.Filter;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.google.common.collect.ImmutableSet;
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.io.ParseException;
 
 public class VectorTileMapOutputFormatTest {
@@ -276,6 +283,84 @@ public class VectorTileMapOutputFormatTest {
                 any(Geometry.class), any(Map.class));
     }
 
+    @Test
+    public void testGeometryCache() throws Exception {
+        VectorTileGeometryCache cache = new VectorTileGeometryCache(1024 * 1024);
+        outputFormat.setGeometryCache(cache);
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(-90, 90, 0, 180, WGS84);
+        Rectangle renderingArea = new Rectangle(256, 256);
+
+        WMSMapContent mapContent = createMapContent(mapBounds, renderingArea, null, pointLayer);
+        outputFormat.produceMap(mapContent);
+        assertEquals(1, cache.cache.size());
+        Map<String, VectorTileGeometryCache.CachedGeometry> geometries = cache.cache.asMap()
+                .values().iterator().next().geometries;
+        assertTrue(geometries.containsKey("point1"));
+
+        // same tile, the cached geometries are used
+        mapContent = createMapContent(mapBounds, renderingArea, null, pointLayer);
+        outputFormat.produceMap(mapContent);
+        assertEquals(1, cache.cache.size());
+        verify(tileBuilderMock, times(2)).addFeature(eq("points"), eq("point1"), eq("geom"),
+                eq(geometries.get("point1").geometry), any(Map.class));
+        verify(tileBuilderMock, never()).addFeature(eq("points"), eq("pointFar"), eq("geom"),
+                any(Geometry.class), any(Map.class));
+
+        // another tile
+        mapContent = createMapContent(new ReferencedEnvelope(0, 90, 0, 90, WGS84), renderingArea,
+                null, pointLayer);
+        outputFormat.produceMap(mapContent);
+        assertEquals(2, cache.cache.size());
+
+        // a WFS-T on another layer
+        cache.clear(new QName("lines"));
+        assertEquals(2, cache.cache.size());
+        cache.clear(new QName("points"));
+        assertEquals(0, cache.cache.size());
+    }
+
+    @Test
+    public void testCachedGeometryMatches() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Geometry source = gf.createLineString(new Coordinate[] { new Coordinate(0, 0),
+                new Coordinate(5, 5), new Coordinate(10, 0) });
+        VectorTileGeometryCache.CachedGeometry cached = new VectorTileGeometryCache.CachedGeometry(
+                source, source);
+        assertTrue(cached.matches((Geometry) source.clone()));
+
+        // same bounds and number of points, moved vertex
+        Geometry moved = gf.createLineString(new Coordinate[] { new Coordinate(0, 0),
+                new Coordinate(4, 5), new Coordinate(10, 0) });
+        assertFalse(cached.matches(moved));
+        assertFalse(cached.matches(null));
+    }
+
+    @Test
+    public void testRunParallel() throws Exception {
+        List<VectorTileMapOutputFormat.LayerRun> runs = new ArrayList<>();
+        for (FeatureLayer layer : new FeatureLayer[] { pointLayer, lineLayer, polygonLayer }) {
+            runs.add(new VectorTileMapOutputFormat.LayerRun(
+                    layer.getFeatureSource().getFeatures(), Pipeline.END,
+                    layer.getFeatureSource().getSchema().getGeometryDescriptor(), layer, null));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            outputFormat.runParallel(runs, executor, tileBuilderMock);
+        } finally {
+            executor.shutdown();
+        }
+
+        // all features added, in layer order
+        InOrder inOrder = inOrder(tileBuilderMock);
+        inOrder.verify(tileBuilderMock, times(5)).addFeature(eq("points"), anyString(),
+                eq("geom"), any(Geometry.class), any(Map.class));
+        inOrder.verify(tileBuilderMock, atLeastOnce()).addFeature(eq("lines"), anyString(),
+                eq("geom"), any(Geometry.class), any(Map.class));
+        inOrder.verify(tileBuilderMock, times(3)).addFeature(eq("polygons"), anyString(),
+                eq("geom"), any(Geometry.class), any(Map.class));
+    }
+
     private WMSMapContent createMapContent(ReferencedEnvelope mapBounds, Rectangle renderingArea, 
             Integer buffer, Layer... layers) throws Exception {
 
@@ -93,19 +93,19 @@ public class WPSInitializer implements GeoServerInitializer {
         // the max number of synch proceesses
         int defaultMaxProcesses = Runtime.getRuntime().availableProcessors() * 2;
         int maxSynch = info.getMaxSynchronousProcesses();
-        if (maxSynch > 0) {
-            processManager.setMaxSynchronousProcesses(maxSynch);
-        } else {
-            processManager.setMaxSynchronousProcesses(defaultMaxProcesses);
+        if (maxSynch <= 0) {
+            maxSynch = defaultMaxProcesses;
         }
+        processManager.setMaxSynchronousProcesses(maxSynch);
+        executionManager.setMaxSynchronousExecutions(maxSynch);
 
         // the max number of asynch proceesses
         int maxAsynch = info.getMaxAsynchronousProcesses();
-        if (maxAsynch > 0) {
-            processManager.setMaxAsynchronousProcesses(maxAsynch);
-        } else {
-            processManager.setMaxAsynchronousProcesses(defaultMaxProcesses);
+        if (maxAsynch <= 0) {
+            maxAsynch = defaultMaxProcesses;
         }
+        processManager.setMaxAsynchronousProcesses(maxAsynch);
+        executionManager.setMaxAsynchronousExecutions(maxAsynch);
         
         // update the location of the artifact storage in case we are using a file system based
         // one
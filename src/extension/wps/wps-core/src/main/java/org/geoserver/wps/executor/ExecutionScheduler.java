@@ -0,0 +1,419 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wps.executor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wps.WPSException;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.type.Name;
+
+/**
+ * Admits the process executions and runs the asynchronous ones on a bounded pool.
+ * <p>
+ * Each execution is admitted before anything is stored or parsed, and rejected with a
+ * <code>ServerBusy</code> exception if it would go beyond the configured limits:
+ * <ul>
+ * <li>the number of synchronous or asynchronous executions waiting for a free slot, set by the
+ * <code>WPS_MAX_QUEUED_SYNCHRONOUS</code> and <code>WPS_MAX_QUEUED_ASYNCHRONOUS</code>
+ * variables</li>
+ * <li>the number of executions, queued or running, of the same process, set by the
+ * <code>WPS_MAX_PROCESS_EXECUTIONS</code> variable</li>
+ * <li>the number of executions, queued or running, of the same user, or of the same remote address
+ * for anonymous requests, set by the <code>WPS_MAX_USER_EXECUTIONS</code> variable</li>
+ * </ul>
+ * None of the limits is enforced unless the variable is set.
+ * </p>
+ * <p>
+ * The queued asynchronous executions are run by priority first, then by expected completion time,
+ * that is, the time they have been submitted plus the average duration of the past executions of
+ * the same process. Among executions of the same priority, short ones thus get ahead of long ones
+ * submitted around the same time, without starving them, as the expected completion time of the
+ * waiting executions does not move. Priorities are not aged though, so a steady stream of higher
+ * priority executions can delay the lower priority ones indefinitely.
+ * </p>
+ */
+public class ExecutionScheduler {
+
+    static final Logger LOGGER = Logging.getLogger(ExecutionScheduler.class);
+
+    static final String MAX_QUEUED_SYNCHRONOUS = "WPS_MAX_QUEUED_SYNCHRONOUS";
+
+    static final String MAX_QUEUED_ASYNCHRONOUS = "WPS_MAX_QUEUED_ASYNCHRONOUS";
+
+    static final String MAX_PROCESS_EXECUTIONS = "WPS_MAX_PROCESS_EXECUTIONS";
+
+    static final String MAX_USER_EXECUTIONS = "WPS_MAX_USER_EXECUTIONS";
+
+    /**
+     * The name of the HTTP header carrying the execution priority, if any
+     */
+    static final String PRIORITY_HEADER = "WPS_PRIORITY_HEADER";
+
+    static final String SERVER_BUSY = "ServerBusy";
+
+    /**
+     * How fast the estimated duration of a process follows the latest executions
+     */
+    static final double COST_SMOOTHING = 0.2;
+
+    final int maxQueuedSynchronous;
+
+    final int maxQueuedAsynchronous;
+
+    final int maxProcessExecutions;
+
+    final int maxUserExecutions;
+
+    final String priorityHeader;
+
+    final ThreadPoolExecutor asynchronousPool;
+
+    int maxSynchronous;
+
+    int maxAsynchronous;
+
+    /**
+     * The synchronous executions admitted and not yet completed, guarded by this
+     */
+    int synchronousExecutions;
+
+    /**
+     * The asynchronous executions admitted and not yet completed, guarded by this
+     */
+    int asynchronousExecutions;
+
+    /**
+     * The asynchronous executions running, guarded by this
+     */
+    int runningAsynchronous;
+
+    final AtomicLong rejected = new AtomicLong();
+
+    final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The executions admitted and not yet completed, by process and by user, guarded by this
+     */
+    final Map<Name, Integer> processExecutions = new HashMap<>();
+
+    final Map<String, Integer> userExecutions = new HashMap<>();
+
+    /**
+     * The average duration of the past executions, in milliseconds, by process
+     */
+    final Map<Name, Double> costs = new ConcurrentHashMap<>();
+
+    public ExecutionScheduler() {
+        this(getLimit(MAX_QUEUED_SYNCHRONOUS), getLimit(MAX_QUEUED_ASYNCHRONOUS),
+                getLimit(MAX_PROCESS_EXECUTIONS), getLimit(MAX_USER_EXECUTIONS),
+                GeoServerExtensions.getProperty(PRIORITY_HEADER));
+    }
+
+    /**
+     * @param maxQueuedSynchronous The max synchronous executions waiting for a slot, or -1
+     * @param maxQueuedAsynchronous The max asynchronous executions waiting for a slot, or -1
+     * @param maxProcessExecutions The max executions of a single process, or -1
+     * @param maxUserExecutions The max executions of a single user, or -1
+     * @param priorityHeader The HTTP header carrying the execution priority, or null
+     */
+    ExecutionScheduler(int maxQueuedSynchronous, int maxQueuedAsynchronous,
+            int maxProcessExecutions, int maxUserExecutions, String priorityHeader) {
+        this.maxQueuedSynchronous = maxQueuedSynchronous;
+        this.maxQueuedAsynchronous = maxQueuedAsynchronous;
+        this.maxProcessExecutions = maxProcessExecutions;
+        this.maxUserExecutions = maxUserExecutions;
+        this.priorityHeader = priorityHeader;
+
+        int defaultMaxProcesses = Runtime.getRuntime().availableProcessors() * 2;
+        this.maxSynchronous = defaultMaxProcesses;
+        this.maxAsynchronous = defaultMaxProcesses;
+        this.asynchronousPool = new ThreadPoolExecutor(defaultMaxProcesses, defaultMaxProcesses,
+                60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new ExecutionThreadFactory());
+        this.asynchronousPool.allowCoreThreadTimeOut(true);
+    }
+
+    static int getLimit(String property) {
+        String value = GeoServerExtensions.getProperty(property);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + property + ": " + value
+                        + ", the limit will not be enforced");
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the number of synchronous executions that can run in parallel, as the process
+     * managers run them
+     */
+    public synchronized void setMaxSynchronousExecutions(int maxSynchronous) {
+        this.maxSynchronous = maxSynchronous;
+    }
+
+    /**
+     * Sets the number of asynchronous executions that can run in parallel
+     */
+    public synchronized void setMaxAsynchronousExecutions(int maxAsynchronous) {
+        if (maxAsynchronous > asynchronousPool.getMaximumPoolSize()) {
+            asynchronousPool.setMaximumPoolSize(maxAsynchronous);
+            asynchronousPool.setCorePoolSize(maxAsynchronous);
+        } else {
+            asynchronousPool.setCorePoolSize(maxAsynchronous);
+            asynchronousPool.setMaximumPoolSize(maxAsynchronous);
+        }
+        this.maxAsynchronous = maxAsynchronous;
+    }
+
+    /**
+     * The HTTP header carrying the execution priority, or null if priorities are not used
+     */
+    public String getPriorityHeader() {
+        return priorityHeader;
+    }
+
+    /**
+     * Admits a new execution, or throws a <code>ServerBusy</code> exception if that would go beyond
+     * one of the configured limits. The returned execution must be either submitted, or started
+     * and released once completed.
+     *
+     * @param processName The process to be run
+     * @param user The user name, or remote address, of the requester, if known
+     * @param synchronous Whether the execution is synchronous
+     * @param priority The execution priority, higher runs first
+     */
+    public synchronized Execution admit(Name processName, String user, boolean synchronous,
+            int priority) throws WPSException {
+        if (synchronous) {
+            checkLimit(synchronousExecutions, maxSynchronous, maxQueuedSynchronous,
+                    "synchronous");
+        } else {
+            checkLimit(asynchronousExecutions, maxAsynchronous, maxQueuedAsynchronous,
+                    "asynchronous");
+        }
+        if (maxProcessExecutions >= 0
+                && processExecutions.getOrDefault(processName, 0) >= maxProcessExecutions) {
+            reject("Too many executions of process " + processName.getURI()
+                    + " are already in progress, please try again later");
+        }
+        if (maxUserExecutions >= 0 && user != null
+                && userExecutions.getOrDefault(user, 0) >= maxUserExecutions) {
+            reject("Too many executions of user " + user
+                    + " are already in progress, please try again later");
+        }
+
+        if (synchronous) {
+            synchronousExecutions++;
+        } else {
+            asynchronousExecutions++;
+        }
+        processExecutions.merge(processName, 1, Integer::sum);
+        if (user != null) {
+            userExecutions.merge(user, 1, Integer::sum);
+        }
+        return new Execution(processName, user, synchronous, priority);
+    }
+
+    private void checkLimit(int executions, int max, int maxQueued, String type) {
+        if (maxQueued >= 0 && executions >= max + maxQueued) {
+            reject("Too many " + type + " executions are already in progress, "
+                    + "please try again later");
+        }
+    }
+
+    private void reject(String message) {
+        rejected.incrementAndGet();
+        throw new WPSException(SERVER_BUSY, message);
+    }
+
+    /**
+     * Queues an admitted asynchronous execution
+     *
+     * @param execution The admitted execution
+     * @param task The task running the execution, it will be released once the task completes
+     */
+    public void submit(Execution execution, Callable<?> task) throws WPSException {
+        execution.task = task;
+        try {
+            asynchronousPool.execute(execution);
+        } catch (RejectedExecutionException e) {
+            release(execution);
+            throw new WPSException("The WPS service is shutting down", e);
+        }
+    }
+
+    /**
+     * Marks an admitted execution as started, to keep track of its duration
+     */
+    public synchronized void started(Execution execution) {
+        execution.startTime = System.currentTimeMillis();
+        if (!execution.synchronous) {
+            runningAsynchronous++;
+        }
+    }
+
+    /**
+     * Releases an admitted execution, once it's completed or if it could not be started, its
+     * duration is accounted for in the estimated cost of the process if it was started
+     */
+    public void release(Execution execution) {
+        synchronized (this) {
+            if (execution.released) {
+                return;
+            }
+            execution.released = true;
+            if (execution.synchronous) {
+                synchronousExecutions--;
+            } else {
+                asynchronousExecutions--;
+                if (execution.startTime > 0) {
+                    runningAsynchronous--;
+                }
+            }
+            decrement(processExecutions, execution.processName);
+            if (execution.user != null) {
+                decrement(userExecutions, execution.user);
+            }
+        }
+
+        if (execution.startTime > 0) {
+            double duration = System.currentTimeMillis() - execution.startTime;
+            costs.merge(execution.processName, duration,
+                    (cost, d) -> cost + (d - cost) * COST_SMOOTHING);
+        }
+    }
+
+    private <K> void decrement(Map<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * The estimated duration of the given process, in milliseconds, based on its past executions
+     */
+    public long getEstimatedCost(Name processName) {
+        return costs.getOrDefault(processName, 0d).longValue();
+    }
+
+    /**
+     * The synchronous executions in progress, either running or waiting for a slot
+     */
+    public synchronized int getSynchronousExecutions() {
+        return synchronousExecutions;
+    }
+
+    /**
+     * The asynchronous executions waiting for a slot
+     */
+    public synchronized int getQueuedAsynchronousExecutions() {
+        return asynchronousExecutions - runningAsynchronous;
+    }
+
+    /**
+     * The asynchronous executions running
+     */
+    public synchronized int getRunningAsynchronousExecutions() {
+        return runningAsynchronous;
+    }
+
+    /**
+     * The executions rejected so far because of the configured limits
+     */
+    public long getRejectedExecutions() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops the asynchronous executions
+     */
+    public void shutdown() {
+        asynchronousPool.shutdownNow();
+    }
+
+    /**
+     * An admitted execution, the queued ones are ordered by priority and expected completion time
+     */
+    public class Execution implements Runnable, Comparable<Execution> {
+
+        final Name processName;
+
+        final String user;
+
+        final boolean synchronous;
+
+        final int priority;
+
+        final long deadline;
+
+        final long seq;
+
+        Callable<?> task;
+
+        volatile long startTime;
+
+        boolean released;
+
+        Execution(Name processName, String user, boolean synchronous, int priority) {
+            this.processName = processName;
+            this.user = user;
+            this.synchronous = synchronous;
+            this.priority = priority;
+            this.deadline = System.currentTimeMillis() + getEstimatedCost(processName);
+            this.seq = sequence.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            try {
+                started(this);
+                task.call();
+            } catch (Exception e) {
+                // the execution failure has already been reported to the listeners
+                LOGGER.log(Level.FINE, "Asynchronous execution of " + processName + " failed", e);
+            } finally {
+                release(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Execution other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            if (deadline != other.deadline) {
+                return deadline < other.deadline ? -1 : 1;
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    static class ExecutionThreadFactory implements ThreadFactory {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "wps-execution-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
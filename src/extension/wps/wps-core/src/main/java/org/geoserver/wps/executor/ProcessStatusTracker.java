@@ -40,6 +40,8 @@ public class ProcessStatusTracker implements ApplicationContextAware, ProcessLis
 
     ProcessStatusStore store;
 
+    ExecutionScheduler scheduler;
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         ProcessStatusStore store = GeoServerExtensions.bean(ProcessStatusStore.class,
@@ -153,6 +155,40 @@ public class ProcessStatusTracker implements ApplicationContextAware, ProcessLis
 
     }
 
+    void setScheduler(ExecutionScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the number of asynchronous executions waiting for a free slot on this node
+     */
+    public int getQueuedAsynchronousExecutions() {
+        return scheduler == null ? 0 : scheduler.getQueuedAsynchronousExecutions();
+    }
+
+    /**
+     * Returns the number of asynchronous executions running on this node
+     */
+    public int getRunningAsynchronousExecutions() {
+        return scheduler == null ? 0 : scheduler.getRunningAsynchronousExecutions();
+    }
+
+    /**
+     * Returns the number of synchronous executions in progress on this node, either running or
+     * waiting for a free slot
+     */
+    public int getSynchronousExecutions() {
+        return scheduler == null ? 0 : scheduler.getSynchronousExecutions();
+    }
+
+    /**
+     * Returns the number of executions rejected so far on this node because the queues were full,
+     * or the process or user quotas exhausted
+     */
+    public long getRejectedExecutions() {
+        return scheduler == null ? 0 : scheduler.getRejectedExecutions();
+    }
+
     @Override
     public int getPriority() {
         // we want status tracking to be the last bit in the status tracking chain,
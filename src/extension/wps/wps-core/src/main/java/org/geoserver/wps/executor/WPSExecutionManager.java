@@ -13,14 +13,16 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.opengis.wps10.ExecuteResponseType;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.geoserver.config.GeoServer;
+import org.geoserver.ows.Dispatcher;
+import org.geoserver.ows.Request;
 import org.geoserver.ows.XmlObjectEncodingResponse;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.resource.Resource;
@@ -31,6 +33,7 @@ import org.geoserver.wps.ProcessListener;
 import org.geoserver.wps.UnknownExecutionIdException;
 import org.geoserver.wps.WPSException;
 import org.geoserver.wps.WPSInfo;
+import org.geoserver.wps.executor.ExecutionScheduler.Execution;
 import org.geoserver.wps.ppio.ComplexPPIO;
 import org.geoserver.wps.ppio.ProcessParameterIO;
 import org.geoserver.wps.process.GeoServerProcessors;
@@ -49,7 +52,9 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextClosedEvent;
-import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
  * Manages the process runs for both synchronous and asynchronous processes
@@ -63,10 +68,10 @@ public class WPSExecutionManager implements ApplicationContextAware,
     private static final Logger LOGGER = Logging.getLogger(WPSExecutionManager.class);
 
     /**
-     * The thread pool that will run the threads doing input decoding/process launch/output decoding
-     * for asynchronous processes
+     * Admits the executions, and runs the threads doing input decoding/process launch/output
+     * decoding for asynchronous processes
      */
-    private ExecutorService executors = Executors.newCachedThreadPool();
+    private ExecutionScheduler scheduler;
 
     /**
      * Used to do run-time lookups of extension points
@@ -124,6 +129,8 @@ public class WPSExecutionManager implements ApplicationContextAware,
         this.resourceManager = resourceManager;
         this.statusTracker = statusTracker;
         this.geoServer = geoServer;
+        this.scheduler = new ExecutionScheduler();
+        statusTracker.setScheduler(scheduler);
     }
 
     WPSResourceManager getResourceManager() {
@@ -168,39 +175,86 @@ public class WPSExecutionManager implements ApplicationContextAware,
 
         Name processName = request.getProcessName();
         ProcessManager processManager = getProcessManager(processName);
-        String executionId = resourceManager.getExecutionId(synchronous);
-        LazyInputMap inputs = request.getProcessInputs(WPSExecutionManager.this);
-        request.validateOutputs(inputs);
-        ExecutionStatus status = new ExecutionStatus(processName, executionId,
-                request.isAsynchronous());
-        status.setRequest(request.getRequest());
-        long maxExecutionTime = getMaxExecutionTime(synchronous);
-        long maxTotalTime = getMaxTotalTime(synchronous);
-        Executor executor = new Executor(request, processManager, processName, inputs, synchronous,
-                status, resourceManager, maxExecutionTime, maxTotalTime);
-
-        ExecuteResponseType response;
-        if (synchronous) {
-            response = executor.call();
-        } else {
-            LOGGER.log(Level.INFO, "Submitting new asynch process " + processName.getURI()
-                    + " with execution id " + executionId);
-            // building the response while the process is still "queued", will result in
-            // ProcessAccepted in the response
-            try {
-                resourceManager.storeRequestObject(request.getRequest(), executionId);
-            } catch (IOException e) {
-                throw new WPSException("Failed to store original WPS request, which "
-                        + "will be needed to encode the output", e);
+        // reject right away if busy, before storing or parsing anything
+        Execution execution = scheduler.admit(processName, getUser(), synchronous,
+                getPriority());
+        boolean submitted = false;
+        try {
+            String executionId = resourceManager.getExecutionId(synchronous);
+            LazyInputMap inputs = request.getProcessInputs(WPSExecutionManager.this);
+            request.validateOutputs(inputs);
+            ExecutionStatus status = new ExecutionStatus(processName, executionId,
+                    request.isAsynchronous());
+            status.setRequest(request.getRequest());
+            long maxExecutionTime = getMaxExecutionTime(synchronous);
+            long maxTotalTime = getMaxTotalTime(synchronous);
+            Executor executor = new Executor(request, processManager, processName, inputs,
+                    synchronous, status, resourceManager, maxExecutionTime, maxTotalTime);
+
+            ExecuteResponseType response;
+            if (synchronous) {
+                scheduler.started(execution);
+                response = executor.call();
+            } else {
+                LOGGER.log(Level.INFO, "Submitting new asynch process " + processName.getURI()
+                        + " with execution id " + executionId);
+                // building the response while the process is still "queued", will result in
+                // ProcessAccepted in the response
+                try {
+                    resourceManager.storeRequestObject(request.getRequest(), executionId);
+                } catch (IOException e) {
+                    throw new WPSException("Failed to store original WPS request, which "
+                            + "will be needed to encode the output", e);
+                }
+                ExecuteResponseBuilder builder = new ExecuteResponseBuilder(request.getRequest(),
+                        applicationContext, status);
+                response = builder.build();
+                // now actually queue the process
+                scheduler.submit(execution, executor);
+                submitted = true;
+            }
+
+            return response;
+        } finally {
+            if (!submitted) {
+                scheduler.release(execution);
             }
-            ExecuteResponseBuilder builder = new ExecuteResponseBuilder(request.getRequest(),
-                    applicationContext, status);
-            response = builder.build();
-            // now actually start the process
-            executors.submit(executor);
         }
+    }
 
-        return response;
+    /**
+     * Returns the name of the user making the request, or its remote address if anonymous
+     */
+    private String getUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return authentication.getName();
+        }
+        HttpServletRequest httpRequest = getHttpRequest();
+        return httpRequest != null ? httpRequest.getRemoteAddr() : null;
+    }
+
+    /**
+     * Returns the execution priority, as found in the configured HTTP header, or zero
+     */
+    private int getPriority() {
+        String header = scheduler.getPriorityHeader();
+        HttpServletRequest httpRequest = getHttpRequest();
+        if (header == null || httpRequest == null || httpRequest.getHeader(header) == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(httpRequest.getHeader(header).trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.FINE, "Invalid execution priority, using the default one", e);
+            return 0;
+        }
+    }
+
+    private HttpServletRequest getHttpRequest() {
+        Request request = Dispatcher.REQUEST.get();
+        return request != null ? request.getHttpRequest() : null;
     }
 
     private long getMaxExecutionTime(boolean synchronous) {
@@ -285,14 +339,24 @@ public class WPSExecutionManager implements ApplicationContextAware,
         this.listeners = GeoServerExtensions.extensions(ProcessListener.class, context);
     }
 
+    /**
+     * Sets the number of synchronous executions running in parallel, the others are queued
+     */
+    public void setMaxSynchronousExecutions(int maxSynchronous) {
+        scheduler.setMaxSynchronousExecutions(maxSynchronous);
+    }
+
+    /**
+     * Sets the number of asynchronous executions running in parallel, the others are queued
+     */
+    public void setMaxAsynchronousExecutions(int maxAsynchronous) {
+        scheduler.setMaxAsynchronousExecutions(maxAsynchronous);
+    }
+
     @Override
     public void onApplicationEvent(ApplicationEvent event) {
-        if (event instanceof ContextRefreshedEvent) {
-            if (executors == null) {
-                executors = Executors.newCachedThreadPool();
-            } else if (event instanceof ContextClosedEvent) {
-                executors.shutdownNow();
-            }
+        if (event instanceof ContextClosedEvent) {
+            scheduler.shutdown();
         }
     }
 
@@ -316,9 +380,7 @@ public class WPSExecutionManager implements ApplicationContextAware,
 
         private ThreadLocalsTransfer transfer;
 
-        private long maxExecutionTime;
-
-        private long maxTotalTime;
+        private ProgressListener listener;
 
         private Executor(ExecuteRequest request, ProcessManager processManager, Name processName,
                 LazyInputMap inputs, boolean synchronous, ExecutionStatus status,
@@ -329,8 +391,6 @@ public class WPSExecutionManager implements ApplicationContextAware,
             this.status = status;
             this.inputs = inputs;
             this.synchronous = synchronous;
-            this.maxExecutionTime = maxExecutionTime;
-            this.maxTotalTime = maxTotalTime;
 
             // if we execute asynchronously we'll need to make sure all thread locals are
             // transferred (in particular, the executionId in WPSResourceManager)
@@ -340,6 +400,9 @@ public class WPSExecutionManager implements ApplicationContextAware,
 
             // preparing the listener that will report
             notifier = new ProcessListenerNotifier(status, request, inputs, listeners);
+            // created on submission, so that the total time includes the time spent queued
+            listener = new MaxExecutionTimeListener(notifier.getProgressListener(),
+                    maxExecutionTime, maxTotalTime);
         }
 
         boolean hasComplexOutputs() {
@@ -363,6 +426,10 @@ public class WPSExecutionManager implements ApplicationContextAware,
             if (transfer != null) {
                 try {
                     transfer.apply();
+                    if (statusTracker.getStatus(status.getExecutionId()) == null) {
+                        // dismissed while queued, nothing to run
+                        return null;
+                    }
                     localProcesses.put(status.getExecutionId(), notifier);
                     return execute();
                 } finally {
@@ -398,9 +465,7 @@ public class WPSExecutionManager implements ApplicationContextAware,
             float inputPercentage = inputsBase + inputsLongSteps * longStepPercentage;
             float outputPercentage = (hasComplexOutputs() ? longStepPercentage : 0) + 1;
             float executionPercentage = 100 - inputPercentage - outputPercentage;
-            ProgressListener listener = notifier.getProgressListener();
-
-            listener = new MaxExecutionTimeListener(listener, maxExecutionTime, maxTotalTime);
+            ProgressListener listener = this.listener;
             try {
                 // have the input map give us progress report
                 inputs.setListener(new SubProgressListener(listener, 0, inputPercentage));
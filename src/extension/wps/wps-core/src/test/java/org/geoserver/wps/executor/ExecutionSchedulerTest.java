@@ -0,0 +1,143 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wps.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.wps.WPSException;
+import org.geoserver.wps.executor.ExecutionScheduler.Execution;
+import org.geotools.feature.NameImpl;
+import org.junit.After;
+import org.junit.Test;
+import org.opengis.feature.type.Name;
+
+public class ExecutionSchedulerTest {
+
+    static final Name BUFFER = new NameImpl("JTS", "buffer");
+
+    static final Name AREA = new NameImpl("JTS", "area");
+
+    ExecutionScheduler scheduler;
+
+    @After
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testSynchronousQueueLimit() {
+        scheduler = new ExecutionScheduler(1, -1, -1, -1, null);
+        scheduler.setMaxSynchronousExecutions(2);
+        List<Execution> executions = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            executions.add(scheduler.admit(BUFFER, null, true, 0));
+        }
+        assertBusy(() -> scheduler.admit(BUFFER, null, true, 0));
+        assertEquals(3, scheduler.getSynchronousExecutions());
+        assertEquals(1, scheduler.getRejectedExecutions());
+
+        // asynchronous ones are accounted for separately
+        scheduler.admit(BUFFER, null, false, 0);
+
+        // releasing twice has no effect
+        scheduler.release(executions.get(0));
+        scheduler.release(executions.get(0));
+        assertEquals(2, scheduler.getSynchronousExecutions());
+        scheduler.admit(BUFFER, null, true, 0);
+    }
+
+    @Test
+    public void testProcessAndUserQuotas() {
+        scheduler = new ExecutionScheduler(-1, -1, 2, 1, null);
+        Execution first = scheduler.admit(BUFFER, "alice", true, 0);
+        scheduler.admit(BUFFER, "bob", false, 0);
+        // process quota
+        assertBusy(() -> scheduler.admit(BUFFER, "carol", true, 0));
+        // user quota
+        assertBusy(() -> scheduler.admit(AREA, "alice", true, 0));
+        // unknown users are only subject to the process quota
+        scheduler.admit(AREA, null, true, 0);
+
+        scheduler.release(first);
+        scheduler.admit(BUFFER, "alice", false, 0);
+        assertEquals(2, scheduler.getRejectedExecutions());
+    }
+
+    @Test
+    public void testNoLimits() {
+        scheduler = new ExecutionScheduler(-1, -1, -1, -1, null);
+        scheduler.setMaxSynchronousExecutions(1);
+        scheduler.setMaxAsynchronousExecutions(1);
+        for (int i = 0; i < 100; i++) {
+            scheduler.admit(BUFFER, "alice", i % 2 == 0, 0);
+        }
+        assertEquals(0, scheduler.getRejectedExecutions());
+    }
+
+    @Test
+    public void testQueueOrder() throws Exception {
+        scheduler = new ExecutionScheduler(-1, 10, -1, -1, null);
+        scheduler.setMaxAsynchronousExecutions(1);
+
+        // the process durations seen so far
+        Execution slow = scheduler.admit(BUFFER, null, true, 0);
+        slow.startTime = System.currentTimeMillis() - 60000;
+        scheduler.release(slow);
+        assertEquals(60000, scheduler.getEstimatedCost(BUFFER), 1000);
+
+        // keep the only slot busy
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        scheduler.submit(scheduler.admit(AREA, null, false, 0), () -> {
+            running.countDown();
+            return blocked.await(10, TimeUnit.SECONDS);
+        });
+        assertEquals(true, running.await(10, TimeUnit.SECONDS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch completed = new CountDownLatch(4);
+        submit(BUFFER, 0, "slow", order, completed);
+        submit(AREA, 0, "fast", order, completed);
+        submit(BUFFER, 5, "urgent", order, completed);
+        submit(AREA, 0, "fast2", order, completed);
+        assertEquals(4, scheduler.getQueuedAsynchronousExecutions());
+        assertEquals(1, scheduler.getRunningAsynchronousExecutions());
+
+        blocked.countDown();
+        assertEquals(true, completed.await(10, TimeUnit.SECONDS));
+        assertEquals(4, order.size());
+        assertEquals("urgent", order.get(0));
+        assertEquals("fast", order.get(1));
+        assertEquals("fast2", order.get(2));
+        assertEquals("slow", order.get(3));
+    }
+
+    private void submit(Name process, int priority, String label, List<String> order,
+            CountDownLatch completed) {
+        scheduler.submit(scheduler.admit(process, null, false, priority), () -> {
+            order.add(label);
+            completed.countDown();
+            return null;
+        });
+    }
+
+    private void assertBusy(Runnable admission) {
+        try {
+            admission.run();
+            fail("The execution should have been rejected");
+        } catch (WPSException e) {
+            assertEquals(ExecutionScheduler.SERVER_BUSY, e.getCode());
+        }
+    }
+}
@@ -238,6 +238,12 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
     
     private BlobStoreAggregator blobStoreAggregator;
 
+    /**
+     * Defers and merges the truncations of {@link #truncate(String, ReferencedEnvelope)}, null if
+     * they happen right away
+     */
+    private final TruncationAggregator truncationAggregator;
+
     /**
      * Constructor for the GWC mediator
      *
@@ -283,6 +289,9 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         
         this.jdbcConfigurationStorage = jdbcConfigurationStorage;
         this.blobStoreAggregator = blobStoreAggregator;
+        
+        this.truncationAggregator = TruncationAggregator
+                .create((layerName, gridSetId, bounds) -> truncate(layerName, gridSetId, bounds));
     }
 
     /**
@@ -357,6 +366,9 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         if (this.catalogStyleChangeListener != null) {
             catalog.removeListener(this.catalogStyleChangeListener);
         }
+        if (this.truncationAggregator != null) {
+            this.truncationAggregator.dispose();
+        }
         GWC.set(null);
     }
 
@@ -414,6 +426,14 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         truncate(layerName, styleName, gridSetId, bounds, format);
     }
 
+    /**
+     * Truncates the given area of a layer, for all grid sets, formats and styles. If truncation
+     * aggregation is enabled the truncation happens later, merged with the other ones affecting
+     * the layer, see {@link #isTruncationPending(String, GridSubset, long[])}
+     * 
+     * @param layerName
+     * @param bounds
+     */
     public void truncate(final String layerName, final ReferencedEnvelope bounds)
             throws GeoWebCacheException {
 
@@ -429,15 +449,41 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
             if (intersectingBounds == null) {
                 continue;
             }
-            try {
-                // This iterates over all cached parameters and all formats
-                new TruncateBboxRequest(layerName, intersectingBounds, gridSetId).doTruncate(storageBroker, tileBreeder);
-            } catch (StorageException | GeoWebCacheException e) {
-                log.log(Level.WARNING, e, ()->String.format("Error while truncating modified bounds for layer %s gridset %s",layerName, gridSetId));
+            if (truncationAggregator != null) {
+                truncationAggregator.add(layerName, gridSetId, intersectingBounds);
+            } else {
+                truncate(layerName, gridSetId, intersectingBounds);
             }
         }
     }
 
+    private void truncate(final String layerName, final String gridSetId,
+            final BoundingBox bounds) {
+        try {
+            // This iterates over all cached parameters and all formats
+            new TruncateBboxRequest(layerName, bounds, gridSetId).doTruncate(storageBroker, tileBreeder);
+        } catch (StorageException | GeoWebCacheException e) {
+            log.log(Level.WARNING, e, ()->String.format("Error while truncating modified bounds for layer %s gridset %s",layerName, gridSetId));
+        }
+    }
+
+    /**
+     * Returns true if the given tile falls in an area whose truncation has been deferred and is
+     * not complete yet, in which case the cached tile, if any, is stale
+     * 
+     * @param layerName the tile layer name
+     * @param gridSubset the tile grid subset
+     * @param tileIndex the tile x, y and z
+     */
+    public boolean isTruncationPending(final String layerName, final GridSubset gridSubset,
+            final long[] tileIndex) {
+        if (truncationAggregator == null) {
+            return false;
+        }
+        return truncationAggregator.isPending(layerName, gridSubset.getName(),
+                gridSubset.boundsFromIndex(tileIndex));
+    }
+
     private BoundingBox getIntersectingBounds(String layerName, GridSubset layerGrid,
             ReferencedEnvelope bounds) {
         final GridSet gridSet = layerGrid.getGridSet();
@@ -41,6 +41,10 @@ import org.opengis.referencing.operation.TransformException;
  * pick it up automatically and forward transaction events to it.
  * </p>
  * <p>
+ * The truncation can be deferred and merged with the ones of other transactions, see
+ * {@link GWC#truncate(String, ReferencedEnvelope)}.
+ * </p>
+ * <p>
  * TODO: upon deletion, only truncate if feature count > 0
  * </p>
  * 
@@ -0,0 +1,304 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.grid.BoundingBox;
+
+/**
+ * Collects the areas to be truncated per tile layer and grid set, merging them into a few covering
+ * boxes, and truncates them in a background thread, either at a fixed delay or as soon as a layer
+ * accumulates too many changes. Turns a stream of small transactions into a handful of truncate
+ * tasks.
+ * <p>
+ * Until their truncation is complete the areas are reported as dirty by
+ * {@link #isPending(String, String, BoundingBox)}, so that the tiles falling in them can be
+ * rendered without looking up the cache.
+ * </p>
+ * <p>
+ * Enabled by setting the <code>GWC_TRUNCATION_AGGREGATION_DELAY</code> variable to the delay
+ * between truncations, in milliseconds, the <code>GWC_TRUNCATION_AGGREGATION_THRESHOLD</code>
+ * one sets how many changes trigger an early truncation (defaults to 100).
+ * </p>
+ */
+class TruncationAggregator {
+
+    static final Logger LOGGER = Logging.getLogger(TruncationAggregator.class);
+
+    static final String DELAY_PROPERTY = "GWC_TRUNCATION_AGGREGATION_DELAY";
+
+    static final String THRESHOLD_PROPERTY = "GWC_TRUNCATION_AGGREGATION_THRESHOLD";
+
+    static final int DEFAULT_THRESHOLD = 100;
+
+    /**
+     * The maximum number of boxes kept per layer and grid set, above it the boxes whose merge
+     * adds the least area get merged
+     */
+    static final int MAX_BOXES = 8;
+
+    /**
+     * Truncates an area of a tile layer grid set
+     */
+    interface Truncator {
+        void truncate(String layerName, String gridSetId, BoundingBox bounds);
+    }
+
+    final Truncator truncator;
+
+    final int threshold;
+
+    final ScheduledExecutorService executor;
+
+    final ConcurrentMap<RegionKey, Region> regions = new ConcurrentHashMap<>();
+
+    TruncationAggregator(Truncator truncator, long delay, int threshold) {
+        this.truncator = truncator;
+        this.threshold = threshold;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GWC truncation aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::truncatePending, delay, delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds an aggregator based on the system configuration, or returns null if aggregation is
+     * not enabled
+     */
+    static TruncationAggregator create(Truncator truncator) {
+        long delay = getProperty(DELAY_PROPERTY, 0);
+        if (delay <= 0) {
+            return null;
+        }
+        int threshold = (int) getProperty(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+        if (threshold <= 0) {
+            threshold = DEFAULT_THRESHOLD;
+        }
+        LOGGER.info("Aggregating transaction truncations every " + delay + "ms or " + threshold
+                + " changes");
+        return new TruncationAggregator(truncator, delay, threshold);
+    }
+
+    static long getProperty(String name, long defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + name + ": " + value + ", using "
+                    + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Queues the truncation of an area of a tile layer grid set
+     */
+    void add(String layerName, String gridSetId, BoundingBox bounds) {
+        RegionKey key = new RegionKey(layerName, gridSetId);
+        Region region = regions.computeIfAbsent(key, k -> new Region());
+        boolean truncateNow;
+        synchronized (region) {
+            region.add(bounds);
+            truncateNow = ++region.changes >= threshold;
+        }
+        if (truncateNow) {
+            try {
+                executor.execute(() -> truncate(key, region));
+            } catch (RejectedExecutionException e) {
+                // shutting down, dispose takes care of the pending areas
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given area of a tile layer grid set is waiting for a truncation, or
+     * being truncated
+     */
+    boolean isPending(String layerName, String gridSetId, BoundingBox bounds) {
+        Region region = regions.get(new RegionKey(layerName, gridSetId));
+        if (region == null) {
+            return false;
+        }
+        synchronized (region) {
+            return intersects(region.pending, bounds) || intersects(region.running, bounds);
+        }
+    }
+
+    static boolean intersects(List<BoundingBox> boxes, BoundingBox bounds) {
+        for (BoundingBox box : boxes) {
+            if (box.intersects(bounds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Truncates all the pending areas
+     */
+    void truncatePending() {
+        for (Map.Entry<RegionKey, Region> entry : regions.entrySet()) {
+            truncate(entry.getKey(), entry.getValue());
+        }
+    }
+
+    void truncate(RegionKey key, Region region) {
+        List<BoundingBox> boxes;
+        synchronized (region) {
+            if (region.pending.isEmpty()) {
+                return;
+            }
+            boxes = region.pending;
+            region.pending = new ArrayList<>();
+            region.changes = 0;
+            // still dirty until the truncation is over
+            region.running.addAll(boxes);
+        }
+        try {
+            for (BoundingBox box : boxes) {
+                try {
+                    truncator.truncate(key.layerName, key.gridSetId, box);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Error truncating tile layer " + key.layerName
+                            + " gridset " + key.gridSetId + " for bounds " + box, e);
+                }
+            }
+        } finally {
+            synchronized (region) {
+                for (BoundingBox box : boxes) {
+                    region.running.remove(box);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background truncations, and truncates whatever is still pending
+     */
+    void dispose() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        truncatePending();
+    }
+
+    /**
+     * The areas of a tile layer grid set to be truncated
+     */
+    static class Region {
+
+        List<BoundingBox> pending = new ArrayList<>();
+
+        final List<BoundingBox> running = new ArrayList<>();
+
+        int changes;
+
+        void add(BoundingBox bounds) {
+            BoundingBox merged = bounds;
+            // absorb the boxes it overlaps, the grown box might overlap more
+            boolean absorbed = true;
+            while (absorbed) {
+                absorbed = false;
+                for (Iterator<BoundingBox> it = pending.iterator(); it.hasNext();) {
+                    BoundingBox box = it.next();
+                    if (box.intersects(merged)) {
+                        merged = union(merged, box);
+                        it.remove();
+                        absorbed = true;
+                    }
+                }
+            }
+            pending.add(merged);
+
+            while (pending.size() > MAX_BOXES) {
+                mergeClosest();
+            }
+        }
+
+        /**
+         * Merges the two boxes whose union adds the least area
+         */
+        void mergeClosest() {
+            int first = 0;
+            int second = 1;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < pending.size(); i++) {
+                for (int j = i + 1; j < pending.size(); j++) {
+                    BoundingBox a = pending.get(i);
+                    BoundingBox b = pending.get(j);
+                    double growth = area(union(a, b)) - area(a) - area(b);
+                    if (growth < best) {
+                        best = growth;
+                        first = i;
+                        second = j;
+                    }
+                }
+            }
+            BoundingBox merged = union(pending.get(first), pending.get(second));
+            // remove the second first, its index is the higher one
+            pending.remove(second);
+            pending.set(first, merged);
+        }
+    }
+
+    static BoundingBox union(BoundingBox a, BoundingBox b) {
+        return new BoundingBox(Math.min(a.getMinX(), b.getMinX()),
+                Math.min(a.getMinY(), b.getMinY()), Math.max(a.getMaxX(), b.getMaxX()),
+                Math.max(a.getMaxY(), b.getMaxY()));
+    }
+
+    static double area(BoundingBox box) {
+        return box.getWidth() * box.getHeight();
+    }
+
+    static class RegionKey {
+
+        final String layerName;
+
+        final String gridSetId;
+
+        RegionKey(String layerName, String gridSetId) {
+            this.layerName = layerName;
+            this.gridSetId = gridSetId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * layerName.hashCode() + gridSetId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RegionKey)) {
+                return false;
+            }
+            RegionKey other = (RegionKey) obj;
+            return layerName.equals(other.layerName) && gridSetId.equals(other.gridSetId);
+        }
+    }
+}
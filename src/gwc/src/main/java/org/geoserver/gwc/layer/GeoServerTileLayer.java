@@ -534,7 +534,9 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
             metaX = metaY = 1;
         }
 
-        returnTile = getMetatilingReponse(tile, true, metaX, metaY);
+        // the cached tile is stale if the area is waiting for a deferred truncation
+        final boolean tryCache = !GWC.get().isTruncationPending(getName(), gridSubset, gridLoc);
+        returnTile = getMetatilingReponse(tile, tryCache, metaX, metaY);
 
         sendTileRequestedEvent(returnTile);
 
@@ -0,0 +1,126 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.geowebcache.grid.BoundingBox;
+import org.junit.After;
+import org.junit.Test;
+
+public class TruncationAggregatorTest {
+
+    List<String> truncated = new CopyOnWriteArrayList<>();
+
+    TruncationAggregator aggregator;
+
+    @After
+    public void tearDown() {
+        if (aggregator != null) {
+            aggregator.executor.shutdownNow();
+        }
+    }
+
+    TruncationAggregator.Truncator recorder() {
+        return (layer, gridSet, bounds) -> truncated.add(layer + "/" + gridSet + "/"
+                + bounds.getMinX() + "," + bounds.getMinY() + "," + bounds.getMaxX() + ","
+                + bounds.getMaxY());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        TruncationAggregator.Region region = new TruncationAggregator.Region();
+        region.add(new BoundingBox(0, 0, 10, 10));
+        region.add(new BoundingBox(20, 0, 30, 10));
+        assertEquals(2, region.pending.size());
+        // bridges the two boxes, all get merged
+        region.add(new BoundingBox(5, 5, 25, 6));
+        assertEquals(1, region.pending.size());
+        assertEquals(0, region.pending.get(0).getMinX(), 0d);
+        assertEquals(30, region.pending.get(0).getMaxX(), 0d);
+
+        // disjoint boxes are merged past the limit, closest first
+        region = new TruncationAggregator.Region();
+        for (int i = 0; i < TruncationAggregator.MAX_BOXES; i++) {
+            region.add(new BoundingBox(i * 100, 0, i * 100 + 1, 1));
+        }
+        assertEquals(TruncationAggregator.MAX_BOXES, region.pending.size());
+        region.add(new BoundingBox(102, 0, 103, 1));
+        assertEquals(TruncationAggregator.MAX_BOXES, region.pending.size());
+        assertTrue(region.pending.stream()
+                .anyMatch(b -> b.getMinX() == 100 && b.getMaxX() == 103));
+    }
+
+    @Test
+    public void testPendingUntilTruncated() throws Exception {
+        // long delay, only explicit truncations
+        aggregator = new TruncationAggregator(recorder(), 60 * 60 * 1000, 100);
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(0, 0, 10, 10));
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(5, 5, 15, 15));
+
+        assertTrue(aggregator.isPending("topp:states", "EPSG:4326",
+                new BoundingBox(12, 12, 13, 13)));
+        assertFalse(aggregator.isPending("topp:states", "EPSG:4326",
+                new BoundingBox(20, 20, 30, 30)));
+        assertFalse(aggregator.isPending("topp:states", "EPSG:900913",
+                new BoundingBox(0, 0, 1, 1)));
+        assertFalse(aggregator.isPending("sf:roads", "EPSG:4326", new BoundingBox(0, 0, 1, 1)));
+        assertTrue(truncated.isEmpty());
+
+        aggregator.truncatePending();
+        assertEquals(1, truncated.size());
+        assertEquals("topp:states/EPSG:4326/0.0,0.0,15.0,15.0", truncated.get(0));
+        assertFalse(aggregator.isPending("topp:states", "EPSG:4326", new BoundingBox(0, 0, 1, 1)));
+    }
+
+    @Test
+    public void testPendingWhileTruncating() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        aggregator = new TruncationAggregator((layer, gridSet, bounds) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 60 * 60 * 1000, 1);
+        // threshold reached, truncates right away in the background
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(0, 0, 10, 10));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(aggregator.isPending("topp:states", "EPSG:4326", new BoundingBox(1, 1, 2, 2)));
+
+        release.countDown();
+        aggregator.dispose();
+        assertFalse(aggregator.isPending("topp:states", "EPSG:4326", new BoundingBox(1, 1, 2, 2)));
+    }
+
+    @Test
+    public void testThreshold() throws Exception {
+        aggregator = new TruncationAggregator(recorder(), 60 * 60 * 1000, 3);
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(0, 0, 1, 1));
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(2, 2, 3, 3));
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(4, 4, 5, 5));
+        // wait for the background truncation
+        aggregator.executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+        assertEquals(3, truncated.size());
+        assertFalse(aggregator.isPending("topp:states", "EPSG:4326", new BoundingBox(0, 0, 5, 5)));
+    }
+
+    @Test
+    public void testDisposeTruncatesPending() throws Exception {
+        aggregator = new TruncationAggregator(recorder(), 60 * 60 * 1000, 100);
+        aggregator.add("topp:states", "EPSG:4326", new BoundingBox(0, 0, 1, 1));
+        aggregator.dispose();
+        assertEquals(1, truncated.size());
+    }
+}
@@ -0,0 +1,19 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.List;
+
+/**
+ * Extension point for the caches living outside of the {@link ResourcePool}, whose statistics are
+ * published along with the resource pool ones by {@link ResourcePoolStatistics}
+ */
+public interface CacheStatisticsProvider {
+
+    /**
+     * Returns a snapshot of the statistics of the caches of this provider
+     */
+    List<ResourceCache.Statistics> getCacheStatistics();
+}
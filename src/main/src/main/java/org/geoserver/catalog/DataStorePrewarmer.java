@@ -0,0 +1,146 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerReinitializer;
+import org.geoserver.platform.ExtensionPriority;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Connects the most used data stores in the background after the configuration is loaded, so
+ * that the first requests hitting them do not pay the connection cost.
+ * <p>
+ * Disabled by default, the <code>GEOSERVER_RESOURCE_POOL_PREWARM_STORES</code> variable sets the
+ * number of stores to connect, the <code>GEOSERVER_RESOURCE_POOL_PREWARM_THREADS</code> one the
+ * number of threads used to connect them. The stores are ranked by number of enabled layers.
+ * </p>
+ */
+public class DataStorePrewarmer implements GeoServerReinitializer, ExtensionPriority {
+
+    static final Logger LOGGER = Logging.getLogger(DataStorePrewarmer.class);
+
+    static final String PREWARM_STORES_PROPERTY = "GEOSERVER_RESOURCE_POOL_PREWARM_STORES";
+
+    static final String PREWARM_THREADS_PROPERTY = "GEOSERVER_RESOURCE_POOL_PREWARM_THREADS";
+
+    static final int PREWARM_THREADS_DEFAULT = 4;
+
+    ExecutorService executor;
+
+    @Override
+    public void initialize(GeoServer geoServer) throws Exception {
+        int maxStores = getIntProperty(PREWARM_STORES_PROPERTY, 0);
+        if (maxStores <= 0) {
+            return;
+        }
+        int threads = getIntProperty(PREWARM_THREADS_PROPERTY, PREWARM_THREADS_DEFAULT);
+
+        Catalog catalog = geoServer.getCatalog();
+        List<DataStoreInfo> stores = getMostUsedStores(catalog, maxStores);
+        if (stores.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            // a reload cancels the connections still pending from the previous configuration
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, stores.size())),
+                    new PrewarmThreadFactory());
+            final ResourcePool pool = catalog.getResourcePool();
+            for (final DataStoreInfo store : stores) {
+                executor.submit(() -> prewarm(pool, store));
+            }
+            executor.shutdown();
+        }
+    }
+
+    static int getIntProperty(String name, int defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + name + ": " + value + ", using the default "
+                        + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    void prewarm(ResourcePool pool, DataStoreInfo store) {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            pool.getDataStore(store);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Connected store " + store.getName() + " in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to connect store " + store.getName()
+                    + " while pre-warming the resource pool", e);
+        }
+    }
+
+    /**
+     * Returns the enabled data stores with the most enabled layers, at most the given number
+     */
+    static List<DataStoreInfo> getMostUsedStores(Catalog catalog, int maxStores) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (LayerInfo layer : catalog.getLayers()) {
+            ResourceInfo resource = layer.getResource();
+            if (layer.enabled() && resource != null
+                    && resource.getStore() instanceof DataStoreInfo) {
+                counts.merge(resource.getStore().getId(), 1, Integer::sum);
+            }
+        }
+
+        List<DataStoreInfo> stores = new ArrayList<>();
+        for (DataStoreInfo store : catalog.getDataStores()) {
+            if (store.isEnabled() && counts.containsKey(store.getId())) {
+                stores.add(store);
+            }
+        }
+        stores.sort(Comparator.comparing((DataStoreInfo s) -> counts.get(s.getId()))
+                .reversed());
+        return stores.size() > maxStores ? stores.subList(0, maxStores) : stores;
+    }
+
+    @Override
+    public int getPriority() {
+        // run after the other initializers configured the resource pool
+        return ExtensionPriority.LOWEST;
+    }
+
+    static class PrewarmThreadFactory implements ThreadFactory {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "GeoServer store prewarm " + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
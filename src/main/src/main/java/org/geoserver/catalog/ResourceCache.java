@@ -0,0 +1,342 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A bounded cache used by {@link ResourcePool}, exposed as a {@link Map} for backwards
+ * compatibility.
+ * <p>
+ * The cache is bounded by the total weight of its entries, as computed by
+ * {@link #weigh(Object, Object)}, which subclasses override to provide an estimate of the heap
+ * used by each entry. Entries that are not accessed for longer than the idle timeout are
+ * evicted as well. Removed entries are passed to {@link #dispose(Object, Object)}, evicted ones
+ * to {@link #evict(Object, Object)}, replaced ones are not disposed, the same as the soft value
+ * maps this cache replaces.
+ * </p>
+ * <p>
+ * {@link #get(Object, Callable)} loads missing entries making concurrent callers asking for the
+ * same key wait on a single load, without blocking the callers asking for other keys.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ResourceCache<K, V> extends AbstractMap<K, V> {
+
+    static final Logger LOGGER = Logging.getLogger(ResourceCache.class);
+
+    final String name;
+
+    final long maxWeight;
+
+    final long idleTimeout;
+
+    final AtomicLong weight = new AtomicLong();
+
+    final Cache<K, V> cache;
+
+    final ConcurrentMap<K, V> map;
+
+    /**
+     * Creates a new cache
+     *
+     * @param name The cache name, used for logging and statistics
+     * @param maxWeight The maximum total weight of the entries, see {@link #weigh(Object, Object)}
+     * @param idleTimeout The time in seconds after which entries that have not been accessed are
+     *        evicted, zero or a negative value disables idle eviction
+     */
+    public ResourceCache(String name, long maxWeight, long idleTimeout) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.idleTimeout = idleTimeout;
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        builder.maximumWeight(maxWeight).weigher(new Weigher<K, V>() {
+
+            @Override
+            public int weigh(K key, V value) {
+                int w = weightOf(key, value);
+                weight.addAndGet(w);
+                return w;
+            }
+        });
+        if (idleTimeout > 0) {
+            builder.expireAfterAccess(idleTimeout, TimeUnit.SECONDS);
+        }
+        this.cache = builder.removalListener(new RemovalListener<K, V>() {
+
+            @Override
+            public void onRemoval(RemovalNotification<K, V> notification) {
+                K key = notification.getKey();
+                V value = notification.getValue();
+                weight.addAndGet(-weightOf(key, value));
+                RemovalCause cause = notification.getCause();
+                if (cause != RemovalCause.REPLACED && value != null) {
+                    try {
+                        if (cause == RemovalCause.EXPLICIT) {
+                            dispose(key, value);
+                        } else {
+                            evict(key, value);
+                        }
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Error disposing entry " + key + " from cache "
+                                + ResourceCache.this.name, e);
+                    }
+                }
+            }
+        }).build();
+        this.map = cache.asMap();
+    }
+
+    int weightOf(K key, V value) {
+        if (value == null) {
+            return 0;
+        }
+        return Math.max(1, weigh(key, value));
+    }
+
+    /**
+     * Estimates the heap used by an entry, in bytes. The default implementation returns one,
+     * making the maximum weight a maximum number of entries.
+     */
+    protected int weigh(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Disposes an entry evicted or removed from the cache. The default implementation does
+     * nothing.
+     */
+    protected void dispose(K key, V value) {
+        // nothing to do
+    }
+
+    /**
+     * Called when an entry is evicted because the cache is full or the entry expired, as opposed
+     * to being explicitly removed. The default implementation disposes it, subclasses holding
+     * values that might still be in use elsewhere can override.
+     */
+    protected void evict(K key, V value) {
+        dispose(key, value);
+    }
+
+    /**
+     * Returns the value associated to the key, loading it with the provided loader if missing.
+     * <p>
+     * Only one thread runs the loader for a given key, concurrent callers for the same key wait
+     * for its result while callers for other keys proceed without blocking. The loader must not
+     * return null.
+     * </p>
+     *
+     * @throws IOException If the loader failed
+     */
+    public V get(K key, Callable<? extends V> loader) throws IOException {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to load " + key + " in cache " + name, cause);
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        // goes through the cache so that hits and misses are recorded
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return map.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return map.entrySet();
+    }
+
+    /**
+     * The cache name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The maximum total weight of the cache entries
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * The idle timeout in seconds, zero or negative if idle eviction is disabled
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics
+     */
+    public Statistics getStatistics() {
+        // let pending evictions and expirations happen before taking the snapshot
+        cache.cleanUp();
+        return new Statistics(name, map.size(), weight.get(), maxWeight, idleTimeout,
+                cache.stats());
+    }
+
+    /**
+     * A snapshot of the usage statistics of a {@link ResourceCache}
+     */
+    public static class Statistics {
+
+        final String name;
+
+        final long size;
+
+        final long weight;
+
+        final long maxWeight;
+
+        final long idleTimeout;
+
+        final CacheStats stats;
+
+        /**
+         * Builds a snapshot, also used by the {@link CacheStatisticsProvider} extensions
+         */
+        public Statistics(String name, long size, long weight, long maxWeight,
+                long idleTimeout, CacheStats stats) {
+            this.name = name;
+            this.size = size;
+            this.weight = weight;
+            this.maxWeight = maxWeight;
+            this.idleTimeout = idleTimeout;
+            this.stats = stats;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Number of entries in the cache
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Estimated total weight of the entries in the cache
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public long getHitCount() {
+            return stats.hitCount();
+        }
+
+        public long getMissCount() {
+            return stats.missCount();
+        }
+
+        public double getHitRate() {
+            return stats.hitRate();
+        }
+
+        public long getEvictionCount() {
+            return stats.evictionCount();
+        }
+
+        public long getLoadCount() {
+            return stats.loadCount();
+        }
+
+        public long getLoadExceptionCount() {
+            return stats.loadExceptionCount();
+        }
+
+        /**
+         * Total time spent loading entries, in nanoseconds
+         */
+        public long getTotalLoadTime() {
+            return stats.totalLoadTime();
+        }
+
+        /**
+         * Average time spent loading an entry, in nanoseconds
+         */
+        public double getAverageLoadPenalty() {
+            return stats.averageLoadPenalty();
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics [name=" + name + ", size=" + size + ", weight=" + weight
+                    + ", maxWeight=" + maxWeight + ", " + stats + "]";
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URI;
@@ -34,8 +35,16 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -106,9 +115,14 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.gml2.GML;
 import org.geotools.measure.Measure;
 import org.geotools.referencing.CRS;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.NamedLayer;
+import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyleImpl;
+import org.geotools.styling.StyledLayer;
 import org.geotools.styling.StyledLayerDescriptor;
+import org.geotools.styling.UserLayer;
 import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.URLs;
 import org.geotools.util.Utilities;
@@ -154,6 +168,11 @@ import org.xml.sax.EntityResolver;
  * <li>{@link #sldCache} </li>
  * <li>{@link #styleCache} </li>
  * </p>
+ * <p>
+ * The feature type, attribute, crs, style, sld and coverage reader caches are
+ * {@link ResourceCache} instances, bounded by the estimated heap size of their entries, see
+ * {@link #getCacheStatistics()} for their usage statistics.
+ * </p>
  * 
  * @author Justin Deoliveira, Boundless
  */
@@ -198,6 +217,36 @@ public class ResourcePool {
      * Default number of hard references
      */
     static int FEATURETYPE_CACHE_SIZE_DEFAULT = 100;
+
+    /**
+     * Estimated average heap size of a cached feature type, used to turn the configured feature
+     * type cache size into a weight bound
+     */
+    static int FEATURETYPE_AVERAGE_WEIGHT = 16 * 1024;
+
+    /**
+     * Default weight bounds, in bytes, of the other bounded caches
+     */
+    static long CRS_CACHE_WEIGHT_DEFAULT = 16 * 1024 * 1024;
+    static long STYLE_CACHE_WEIGHT_DEFAULT = 32 * 1024 * 1024;
+    static long SLD_CACHE_WEIGHT_DEFAULT = 32 * 1024 * 1024;
+    static long COVERAGE_READER_CACHE_WEIGHT_DEFAULT = 256 * 1024 * 1024;
+
+    /**
+     * Prefix of the system/context/environment variables used to override the bounds of
+     * the resource pool caches, e.g. <code>GEOSERVER_RESOURCE_POOL_STYLES_MAX_WEIGHT</code>
+     * (bytes) and <code>GEOSERVER_RESOURCE_POOL_STYLES_IDLE_TIMEOUT</code> (seconds). The
+     * <code>GEOSERVER_RESOURCE_POOL_IDLE_TIMEOUT</code> variable sets the default idle
+     * timeout for all caches.
+     */
+    static final String CACHE_PROPERTY_PREFIX = "GEOSERVER_RESOURCE_POOL_";
+
+    /**
+     * Default time, in seconds, a thread waits for a data store connection another thread is
+     * establishing, can be overridden with the
+     * <code>GEOSERVER_RESOURCE_POOL_DATASTORE_CONNECT_TIMEOUT</code> variable
+     */
+    static long DATASTORE_CONNECT_TIMEOUT_DEFAULT = 60;
     
     private static final String IMAGE_PYRAMID = "ImagePyramid";
     private static final String IMAGE_MOSAIC = "ImageMosaic";
@@ -205,6 +254,8 @@ public class ResourcePool {
     Catalog catalog;
     Map<String, CoordinateReferenceSystem> crsCache;
     DataStoreCache dataStoreCache;
+    ConcurrentMap<String, FutureTask<DataAccess>> pendingDataStores;
+    long dataStoreConnectTimeout;
     Map<String, FeatureType> featureTypeCache;
     Map<String, List<AttributeTypeInfo>> featureTypeAttributeCache;
     Map<String, WebMapServer> wmsCache;
@@ -235,6 +286,9 @@ public class ResourcePool {
     protected ResourcePool() {
         crsCache = createCrsCache();
         dataStoreCache = createDataStoreCache();
+        pendingDataStores = new ConcurrentHashMap<>();
+        dataStoreConnectTimeout = getCacheProperty("DATASTORE_CONNECT_TIMEOUT",
+                DATASTORE_CONNECT_TIMEOUT_DEFAULT);
         featureTypeCache = createFeatureTypeCache(FEATURETYPE_CACHE_SIZE_DEFAULT);
         
         featureTypeAttributeCache = createFeatureTypeAttributeCache(FEATURETYPE_CACHE_SIZE_DEFAULT);
@@ -286,7 +340,8 @@ public class ResourcePool {
     }
 
     protected Map<String,CoordinateReferenceSystem> createCrsCache() {
-        return new HashMap<String, CoordinateReferenceSystem>();
+        return new CRSCache(getCacheMaxWeight("crs", CRS_CACHE_WEIGHT_DEFAULT),
+                getCacheIdleTimeout("crs"));
     }
 
     /**
@@ -328,7 +383,8 @@ public class ResourcePool {
     protected Map<String,FeatureType> createFeatureTypeCache(int size) {
         // for each feature type we cache two versions, one with the projection policy applied, one
         // without it
-        return new FeatureTypeCache(size * 2);
+        long weight = getCacheMaxWeight("featureTypes", size * 2L * FEATURETYPE_AVERAGE_WEIGHT);
+        return new FeatureTypeCache(weight, getCacheIdleTimeout("featureTypes"));
     }
 
     /**
@@ -347,7 +403,9 @@ public class ResourcePool {
     protected Map<String, List<AttributeTypeInfo>> createFeatureTypeAttributeCache(int size) {
         // for each feature type we cache two versions, one with the projection policy applied, one
         // without it
-        return new FeatureTypeAttributeCache(size * 2);
+        long weight = getCacheMaxWeight("featureTypeAttributes",
+                size * 2L * FEATURETYPE_AVERAGE_WEIGHT / 4);
+        return new FeatureTypeAttributeCache(weight, getCacheIdleTimeout("featureTypeAttributes"));
     }
 
     /**
@@ -361,7 +419,9 @@ public class ResourcePool {
     }
     
     protected Map<CoverageHintReaderKey, GridCoverageReader> createHintCoverageReaderCache() {
-        return new CoverageHintReaderCache();
+        return new CoverageHintReaderCache(
+                getCacheMaxWeight("coverageReaders", COVERAGE_READER_CACHE_WEIGHT_DEFAULT),
+                getCacheIdleTimeout("coverageReaders"));
     }
 
     /**
@@ -375,7 +435,8 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, StyledLayerDescriptor> createSldCache() {
-        return new HashMap<StyleInfo, StyledLayerDescriptor>();
+        return new SLDCache(getCacheMaxWeight("slds", SLD_CACHE_WEIGHT_DEFAULT),
+                getCacheIdleTimeout("slds"));
     }
 
     /**
@@ -389,7 +450,98 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, Style> createStyleCache() {
-        return new HashMap<StyleInfo, Style>();
+        return new StyleCache(getCacheMaxWeight("styles", STYLE_CACHE_WEIGHT_DEFAULT),
+                getCacheIdleTimeout("styles"));
+    }
+
+    /**
+     * Returns the time, in seconds, a thread waits for a data store connection being
+     * established by another thread before giving up
+     */
+    public long getDataStoreConnectTimeout() {
+        return dataStoreConnectTimeout;
+    }
+
+    /**
+     * Sets the time, in seconds, a thread waits for a data store connection being
+     * established by another thread, zero or a negative value waits indefinitely
+     */
+    public void setDataStoreConnectTimeout(long dataStoreConnectTimeout) {
+        this.dataStoreConnectTimeout = dataStoreConnectTimeout;
+    }
+
+    /**
+     * Returns the maximum weight of a bounded cache, looking up the
+     * <code>GEOSERVER_RESOURCE_POOL_&lt;NAME&gt;_MAX_WEIGHT</code> variable first
+     */
+    long getCacheMaxWeight(String cacheName, long defaultValue) {
+        return getCacheProperty(cacheName + "_MAX_WEIGHT", defaultValue);
+    }
+
+    /**
+     * Returns the idle timeout of a bounded cache, looking up the
+     * <code>GEOSERVER_RESOURCE_POOL_&lt;NAME&gt;_IDLE_TIMEOUT</code> and
+     * <code>GEOSERVER_RESOURCE_POOL_IDLE_TIMEOUT</code> variables, idle eviction is disabled
+     * by default
+     */
+    long getCacheIdleTimeout(String cacheName) {
+        return getCacheProperty(cacheName + "_IDLE_TIMEOUT", getCacheProperty("IDLE_TIMEOUT", 0));
+    }
+
+    static long getCacheProperty(String name, long defaultValue) {
+        String key = CACHE_PROPERTY_PREFIX + name.toUpperCase();
+        String value = GeoServerExtensions.getProperty(key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + key + ": " + value + ", using the default "
+                        + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the bounded caches of this pool.
+     */
+    public List<ResourceCache.Statistics> getCacheStatistics() {
+        List<ResourceCache.Statistics> result = new ArrayList<>();
+        for (Map<?, ?> cache : Arrays.asList(featureTypeCache, featureTypeAttributeCache,
+                crsCache, styleCache, sldCache, hintCoverageReaderCache)) {
+            if (cache instanceof ResourceCache) {
+                result.add(((ResourceCache<?, ?>) cache).getStatistics());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up a value in one of the caches, loading it if missing. {@link ResourceCache}
+     * instances load without holding a lock on the whole cache, other maps (as provided by
+     * subclasses overriding the cache factory methods) are synchronized on.
+     */
+    <K, V> V getOrLoad(Map<K, V> cache, K key, Callable<V> loader) throws IOException {
+        if (cache instanceof ResourceCache) {
+            return ((ResourceCache<K, V>) cache).get(key, loader);
+        }
+        V value = cache.get(key);
+        if (value == null) {
+            synchronized (cache) {
+                value = cache.get(key);
+                if (value == null) {
+                    try {
+                        value = loader.call();
+                    } catch (IOException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException(e);
+                    }
+                    cache.put(key, value);
+                }
+            }
+        }
+        return value;
     }
 
     /**
@@ -503,23 +655,13 @@ public class ResourcePool {
         if(srsName == null)
             return null;
         
-        CoordinateReferenceSystem crs = crsCache.get( srsName );
-        if ( crs == null ) {
-            synchronized (crsCache) {
-                crs = crsCache.get( srsName );
-                if ( crs == null ) {
-                    try {
-                        crs = CRS.decode( srsName );
-                        crsCache.put( srsName, crs );
-                    }
-                    catch( Exception e) {
-                        throw (IOException) new IOException().initCause(e);
-                    }
-                }
+        return getOrLoad(crsCache, srsName, () -> {
+            try {
+                return CRS.decode(srsName);
+            } catch (Exception e) {
+                throw (IOException) new IOException().initCause(e);
             }
-        }
-        
-        return crs;
+        });
     }
     
     /**
@@ -563,117 +705,179 @@ public class ResourcePool {
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public DataAccess<? extends FeatureType, ? extends Feature> getDataStore( DataStoreInfo info ) throws IOException {
-        
+        String id = info.getId();
+        // no need to cache the stores returned from un-saved DataStoreInfo objects (it would be
+        // actually harmful, NPE when trying to dispose of them)
+        if (id == null) {
+            return createDataStore(info);
+        }
+        DataAccess<? extends FeatureType, ? extends Feature> dataStore = dataStoreCache.get(id);
+        if (dataStore != null) {
+            return dataStore;
+        }
+
+        // single flight connection, the first thread connects while the others wait for it,
+        // without holding a lock that would block the callers of other stores
+        // the cache itself is not thread safe, only its accesses are synchronized
+        FutureTask<DataAccess> task = new FutureTask<>(() -> {
+            DataAccess created;
+            synchronized (dataStoreCache) {
+                created = dataStoreCache.get(id);
+            }
+            if (created == null) {
+                created = createDataStore(info);
+                synchronized (dataStoreCache) {
+                    dataStoreCache.put(id, created);
+                }
+            }
+            return created;
+        });
+        FutureTask<DataAccess> pending = pendingDataStores.putIfAbsent(id, task);
+        if (pending == null) {
+            try {
+                task.run();
+            } finally {
+                pendingDataStores.remove(id, task);
+            }
+            return getDataStoreResult(info, task, 0);
+        } else {
+            return getDataStoreResult(info, pending, dataStoreConnectTimeout);
+        }
+    }
+
+    /**
+     * Extracts the result of a data store connection, waiting at most the given time in
+     * seconds, or indefinitely if the timeout is zero or negative
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private DataAccess<? extends FeatureType, ? extends Feature> getDataStoreResult(
+            DataStoreInfo info, Future<DataAccess> future, long timeout) throws IOException {
+        try {
+            if (timeout > 0) {
+                return future.get(timeout, TimeUnit.SECONDS);
+            } else {
+                return future.get();
+            }
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out after " + timeout + " seconds waiting for the "
+                    + "connection to data access '" + info.getName() + "'", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the connection to data access '"
+                    + info.getName() + "'", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else {
+                throw (IOException) new IOException().initCause(cause);
+            }
+        }
+    }
+
+    /**
+     * Creates a new DataAccess from the store connection parameters, without caching it.
+     * 
+     * @param info The store configuration
+     * @throws IOException Any errors that occur connecting to the resource.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected DataAccess<? extends FeatureType, ? extends Feature> createDataStore(
+            DataStoreInfo info) throws IOException {
         DataStoreInfo expandedStore = clone(info, true);
-        
+
         DataAccess<? extends FeatureType, ? extends Feature> dataStore = null;
         try {
-            String id = info.getId();
-            dataStore = dataStoreCache.get(id);
-            if ( dataStore == null ) {
-                synchronized (dataStoreCache) {
-                    dataStore = dataStoreCache.get( id );
-                    if ( dataStore == null ) {
-                        //create data store
-                        Map<String, Serializable> connectionParameters = expandedStore.getConnectionParameters();
-                        
-                        // call this method to execute the hack which recognizes 
-                        // urls which are relative to the data directory
-                        // TODO: find a better way to do this
-                        connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader());
-                        
-                        // obtain the factory
-                        DataAccessFactory factory = null;
-                        try {
-                            factory = getDataStoreFactory(info);
-                        } catch(IOException e) {
-                            throw new IOException("Failed to find the datastore factory for " + info.getName() 
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        if (factory == null) {
-                            throw new IOException("Failed to find the datastore factory for "
-                                    + info.getName()
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        Param[] params = factory.getParametersInfo();
-                        
-                        //ensure that the namespace parameter is set for the datastore
-                        if (!connectionParameters.containsKey( "namespace") && params != null) {
-                            //if we grabbed the factory, check that the factory actually supports
-                            // a namespace parameter, if we could not get the factory, assume that
-                            // it does
-                            boolean supportsNamespace = true;
-                            supportsNamespace = false;
-                            
-                            for ( Param p : params ) {
-                                if ( "namespace".equalsIgnoreCase( p.key ) ) {
-                                    supportsNamespace = true;
-                                    break;
-                                }
-                            }
-                            
-                            if ( supportsNamespace ) {
-                                WorkspaceInfo ws = info.getWorkspace();
-                                NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
-                                if ( ns == null ) {
-                                    ns = info.getCatalog().getDefaultNamespace();
-                                }
-                                if ( ns != null ) {
-                                    connectionParameters.put( "namespace", ns.getURI() );
-                                }    
-                            }
-                        }
-                        
-                        // see if the store has a repository param, if so, pass the one wrapping
-                        // the store
-                        if(params != null) {
-                            for ( Param p : params ) {
-                                if(Repository.class.equals(p.getType())) {
-                                    connectionParameters.put(p.getName(), repository);
-                                }
-                            }
-                        }
-                        
-                        // see if the store has a entity resolver param, if so, pass it down
-                        EntityResolver resolver = getEntityResolver();
-                        if(resolver != null && params != null) {
-                            for ( Param p : params ) {
-                                if(EntityResolver.class.equals(p.getType())) {
-                                    if(!(resolver instanceof Serializable)) {
-                                        resolver = new SerializableEntityResolver(resolver);
-                                    }
-                                    connectionParameters.put(p.getName(), (Serializable) resolver);
-                                }
-                            }
-                        }
-                        
-                        dataStore = DataStoreUtils.getDataAccess(connectionParameters);
-                        if (dataStore == null) {
-                            /*
-                             * Preserve DataStore retyping behaviour by calling
-                             * DataAccessFinder.getDataStore after the call to
-                             * DataStoreUtils.getDataStore above.
-                             * 
-                             * TODO: DataAccessFinder can also find DataStores, and when retyping is
-                             * supported for DataAccess, we can use a single mechanism.
-                             */
-                            dataStore = DataAccessFinder.getDataStore(connectionParameters);
-                        }
-                        
-                        if ( dataStore == null ) {
-                            throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
-                        }
-                        
-                        // cache only if the id is not null, no need to cache the stores
-                        // returned from un-saved DataStoreInfo objects (it would be actually
-                        // harmful, NPE when trying to dispose of them)
-                        if(id != null) {
-                            dataStoreCache.put( id, dataStore );
+            //create data store
+            Map<String, Serializable> connectionParameters = expandedStore.getConnectionParameters();
+
+            // call this method to execute the hack which recognizes 
+            // urls which are relative to the data directory
+            // TODO: find a better way to do this
+            connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader());
+
+            // obtain the factory
+            DataAccessFactory factory = null;
+            try {
+                factory = getDataStoreFactory(info);
+            } catch(IOException e) {
+                throw new IOException("Failed to find the datastore factory for " + info.getName() 
+                        + ", did you forget to install the store extension jar?");
+            }
+            if (factory == null) {
+                throw new IOException("Failed to find the datastore factory for "
+                        + info.getName()
+                        + ", did you forget to install the store extension jar?");
+            }
+            Param[] params = factory.getParametersInfo();
+
+            //ensure that the namespace parameter is set for the datastore
+            if (!connectionParameters.containsKey( "namespace") && params != null) {
+                //if we grabbed the factory, check that the factory actually supports
+                // a namespace parameter, if we could not get the factory, assume that
+                // it does
+                boolean supportsNamespace = true;
+                supportsNamespace = false;
+
+                for ( Param p : params ) {
+                    if ( "namespace".equalsIgnoreCase( p.key ) ) {
+                        supportsNamespace = true;
+                        break;
+                    }
+                }
+
+                if ( supportsNamespace ) {
+                    WorkspaceInfo ws = info.getWorkspace();
+                    NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
+                    if ( ns == null ) {
+                        ns = info.getCatalog().getDefaultNamespace();
+                    }
+                    if ( ns != null ) {
+                        connectionParameters.put( "namespace", ns.getURI() );
+                    }    
+                }
+            }
+
+            // see if the store has a repository param, if so, pass the one wrapping
+            // the store
+            if(params != null) {
+                for ( Param p : params ) {
+                    if(Repository.class.equals(p.getType())) {
+                        connectionParameters.put(p.getName(), repository);
+                    }
+                }
+            }
+
+            // see if the store has a entity resolver param, if so, pass it down
+            EntityResolver resolver = getEntityResolver();
+            if(resolver != null && params != null) {
+                for ( Param p : params ) {
+                    if(EntityResolver.class.equals(p.getType())) {
+                        if(!(resolver instanceof Serializable)) {
+                            resolver = new SerializableEntityResolver(resolver);
                         }
+                        connectionParameters.put(p.getName(), (Serializable) resolver);
                     }
-                } 
+                }
             }
-            
+
+            dataStore = DataStoreUtils.getDataAccess(connectionParameters);
+            if (dataStore == null) {
+                /*
+                 * Preserve DataStore retyping behaviour by calling
+                 * DataAccessFinder.getDataStore after the call to
+                 * DataStoreUtils.getDataStore above.
+                 * 
+                 * TODO: DataAccessFinder can also find DataStores, and when retyping is
+                 * supported for DataAccess, we can use a single mechanism.
+                 */
+                dataStore = DataAccessFinder.getDataStore(connectionParameters);
+            }
+
+            if ( dataStore == null ) {
+                throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
+            }
+
             return dataStore;
         } catch (Exception e) {
             // if anything goes wrong we have to clean up the store anyways
@@ -774,32 +978,27 @@ public class ResourcePool {
             return info.getAttributes();
         }
         
-        //check the cache
-        List<AttributeTypeInfo> atts = featureTypeAttributeCache.get(info.getId());
-        if (atts == null) {
-            synchronized (featureTypeAttributeCache) {
-                atts = featureTypeAttributeCache.get(info.getId());
-                if (atts == null) {
-                    //load from feature type
-                    atts = loadAttributes(info);
-                    
-                    //check for a schema override
-                    try {
-                        handleSchemaOverride(atts,info);
-                    }
-                    catch( Exception e ) {
-                        LOGGER.log( Level.WARNING, 
-                            "Error occured applying schema override for "+info.getName(), e);
-                    }
-                    
-                    // cache attributes only if the id is not null -> the feature type is not new
-                    if(info.getId() != null) {
-                        featureTypeAttributeCache.put(info.getId(), atts);
-                    }
-                }
-            }
+        // cache attributes only if the id is not null -> the feature type is not new
+        if (info.getId() == null) {
+            return loadAttributesWithOverrides(info);
+        }
+        return getOrLoad(featureTypeAttributeCache, info.getId(),
+                () -> loadAttributesWithOverrides(info));
+    }
+
+    private List<AttributeTypeInfo> loadAttributesWithOverrides(FeatureTypeInfo info)
+            throws IOException {
+        //load from feature type
+        List<AttributeTypeInfo> atts = loadAttributes(info);
+
+        //check for a schema override
+        try {
+            handleSchemaOverride(atts,info);
+        }
+        catch( Exception e ) {
+            LOGGER.log( Level.WARNING, 
+                "Error occured applying schema override for "+info.getName(), e);
         }
-        
         return atts;
     }
     
@@ -953,27 +1152,17 @@ public class ResourcePool {
 
     FeatureType getCacheableFeatureType( FeatureTypeInfo info, boolean handleProjectionPolicy ) throws IOException {
         String key = getFeatureTypeInfoKey(info, handleProjectionPolicy);
-        FeatureType ft = featureTypeCache.get( key );
-        if ( ft == null ) {
-            synchronized ( featureTypeCache ) {
-                ft = featureTypeCache.get( key );
-                if ( ft == null ) {
-
-                    //grab the underlying feature type
-                    DataAccess<? extends FeatureType, ? extends Feature> dataAccess = getDataStore(info.getStore());
-                    FeatureTypeCallback initializer = getFeatureTypeInitializer(info, dataAccess);
-                    if (initializer != null) {
-                        initializer.initialize(info, dataAccess, null);
-                    }
-                    // ft = jstore.getSchema(vt.getName());
-                    ft = dataAccess.getSchema(info.getQualifiedNativeName());
-                    ft = buildFeatureType(info, handleProjectionPolicy, ft);
-
-                    featureTypeCache.put( key, ft );
-                }
+        return getOrLoad(featureTypeCache, key, () -> {
+            //grab the underlying feature type
+            DataAccess<? extends FeatureType, ? extends Feature> dataAccess = getDataStore(info.getStore());
+            FeatureTypeCallback initializer = getFeatureTypeInitializer(info, dataAccess);
+            if (initializer != null) {
+                initializer.initialize(info, dataAccess, null);
             }
-        }
-        return ft;
+            // ft = jstore.getSchema(vt.getName());
+            FeatureType ft = dataAccess.getSchema(info.getQualifiedNativeName());
+            return buildFeatureType(info, handleProjectionPolicy, ft);
+        });
     }
 
     private FeatureType getNonCacheableFeatureType( FeatureTypeInfo info, boolean handleProjectionPolicy ) throws IOException {
@@ -1484,36 +1673,25 @@ public class ResourcePool {
         if (coverageExecutor != null){
             hints.add(new RenderingHints(Hints.EXECUTOR_SERVICE, coverageExecutor));
         }
-        // look into the cache
-        Object key = new CoverageHintReaderKey(info.getId(), hints);
-        GridCoverageReader reader = hintCoverageReaderCache.get( key );
-        
-        // if not found in cache, create it
-        if (reader == null) {
-            synchronized ( hintCoverageReaderCache ) {
-                if (key != null) {
-                    reader = hintCoverageReaderCache.get(key);
-                }
-                if (reader == null) {
-                    /////////////////////////////////////////////////////////
-                    //
-                    // Getting coverage reader using the format and the real path.
-                    //
-                    // /////////////////////////////////////////////////////////
-                    final String urlString = expandedStore.getURL();
-                    Object readObject = getObjectToRead(urlString);
-
-                    // readers might change the provided hints, pass down a defensive copy
-                    reader = gridFormat.getReader(readObject, hints);
-                    if (reader == null) {
-                        throw new IOException("Failed to create reader from " + urlString + " and hints " + hints);
-                    }
-                    if (key != null) {
-                        hintCoverageReaderCache.put((CoverageHintReaderKey) key, reader);
-                    }
-                }
+        // look into the cache, if not found create it
+        CoverageHintReaderKey key = new CoverageHintReaderKey(info.getId(), hints);
+        final Hints readerHints = hints;
+        GridCoverageReader reader = getOrLoad(hintCoverageReaderCache, key, () -> {
+            /////////////////////////////////////////////////////////
+            //
+            // Getting coverage reader using the format and the real path.
+            //
+            // /////////////////////////////////////////////////////////
+            final String urlString = expandedStore.getURL();
+            Object readObject = getObjectToRead(urlString);
+
+            // readers might change the provided hints, pass down a defensive copy
+            GridCoverageReader created = gridFormat.getReader(readObject, readerHints);
+            if (created == null) {
+                throw new IOException("Failed to create reader from " + urlString + " and hints " + readerHints);
             }
-        }
+            return created;
+        });
 
         if(coverageInfo == null && coverageName != null) {
             coverageInfo = getCoverageInfo(coverageName, info);
@@ -1593,6 +1771,10 @@ public class ResourcePool {
     public void clear(CoverageStoreInfo info) {
         String storeId = info.getId();
         HashSet<CoverageHintReaderKey> keys = new HashSet<CoverageHintReaderKey>(hintCoverageReaderCache.keySet());
+        if (hintCoverageReaderCache instanceof CoverageHintReaderCache) {
+            // evicted readers are disposed as well
+            keys.addAll(((CoverageHintReaderCache) hintCoverageReaderCache).evicted.keySet());
+        }
         for (CoverageHintReaderKey key : keys) {
             if(key.id != null && key.id.equals(storeId)) {
                 hintCoverageReaderCache.remove(key);
@@ -1949,29 +2131,33 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public StyledLayerDescriptor getSld( final StyleInfo info) throws IOException {
-        StyledLayerDescriptor sld = sldCache.get( info );
-        if ( sld== null ) {
-            synchronized (sldCache) {
-                sld = sldCache.get( info );
-                if ( sld == null ) {
-                    sld = dataDir().parsedSld(info);
-
-                    sldCache.put( info, sld );
-
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener( new ResourceListener() {
-                        @Override
-                        public void changed(ResourceNotification notify) {
-                            sldCache.remove(info);
-                            styleResource.removeListener( this );
-                        }
-                    });
-
-                }
-            }
+        StyledLayerDescriptor cached = sldCache.get(info);
+        if (cached != null) {
+            return cached;
         }
+        // load under the same lock as the writers, a style written while being parsed
+        // must not be put back in the cache
+        synchronized (sldCache) {
+            return loadSld(info);
+        }
+    }
 
-        return sld;
+    StyledLayerDescriptor loadSld(final StyleInfo info) throws IOException {
+        return getOrLoad(sldCache, info, () -> {
+            StyledLayerDescriptor sld = dataDir().parsedSld(info);
+
+            final Resource styleResource = dataDir().style(info);
+            styleResource.addListener( new ResourceListener() {
+                @Override
+                public void changed(ResourceNotification notify) {
+                    synchronized (sldCache) {
+                        sldCache.remove(info);
+                    }
+                    styleResource.removeListener( this );
+                }
+            });
+            return sld;
+        });
     }
     /**
      * Returns the first {@link Style} in a style resource, caching the result. Any associated images should
@@ -1987,39 +2173,42 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public Style getStyle( final StyleInfo info ) throws IOException {
-        Style style = styleCache.get( info );
-        if ( style == null ) {
-            synchronized (styleCache) {
-                style = styleCache.get( info );
-                if ( style == null ) {
-                    style = dataDir().parsedStyle(info);
-
-                    if (style == null) {
-                        throw new ServiceException("Could not extract a UserStyle definition from "
-                                + info.getName());
-                    }
-                    //Make sure we don't change the name of an object in sldCache
-                    if (style instanceof StyleImpl) {
-                        style = (Style)((StyleImpl)style).clone();
-                    }
-                    // remove this when wms works off style info
-                    style.setName( info.getName() );
-                    styleCache.put( info, style );
-                    
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener( new ResourceListener() {
-                        @Override
-                        public void changed(ResourceNotification notify) {
-                            styleCache.remove(info);
-                            styleResource.removeListener( this );
-                        }
-                    });
-                    
-                }
-            }
+        Style cached = styleCache.get(info);
+        if (cached != null) {
+            return cached;
         }
-        
-        return style;
+        // load under the same lock as the writers, a style written while being parsed
+        // must not be put back in the cache
+        synchronized (styleCache) {
+            return loadStyle(info);
+        }
+    }
+
+    Style loadStyle(final StyleInfo info) throws IOException {
+        return getOrLoad(styleCache, info, () -> {
+            Style style = dataDir().parsedStyle(info);
+
+            if (style == null) {
+                throw new ServiceException("Could not extract a UserStyle definition from "
+                        + info.getName());
+            }
+            //Make sure we don't change the name of an object in sldCache
+            if (style instanceof StyleImpl) {
+                style = (Style)((StyleImpl)style).clone();
+            }
+            // remove this when wms works off style info
+            style.setName( info.getName() );
+
+            final Resource styleResource = dataDir().style(info);
+            styleResource.addListener( new ResourceListener() {
+                @Override
+                public void changed(ResourceNotification notify) {
+                    clear(info);
+                    styleResource.removeListener( this );
+                }
+            });
+            return style;
+        });
     }
 
     /**
@@ -2028,7 +2217,9 @@ public class ResourcePool {
      * @param info The style metadata.
      */
     public void clear(StyleInfo info) {
-        styleCache.remove( info );
+        synchronized (styleCache) {
+            styleCache.remove( info );
+        }
     }
     
     /**
@@ -2179,6 +2370,7 @@ public class ResourcePool {
         wmsCache.clear();
         wmtsCache.clear();        
         styleCache.clear();
+        sldCache.clear();
         listeners.clear();
     }
     
@@ -2232,12 +2424,18 @@ public class ResourcePool {
         protected abstract void dispose(K key, V object);
     }
     
-    class FeatureTypeCache extends CatalogResourceCache<String, FeatureType> {
+    class FeatureTypeCache extends ResourceCache<String, FeatureType> {
         
-        public FeatureTypeCache(int maxSize) {
-            super(maxSize);
+        public FeatureTypeCache(long maxWeight, long idleTimeout) {
+            super("featureTypes", maxWeight, idleTimeout);
         }
-        
+
+        @Override
+        protected int weigh(String key, FeatureType featureType) {
+            return 1024 + 512 * featureType.getDescriptors().size();
+        }
+
+        @Override
         protected void dispose(String key, FeatureType featureType) {
             String id = key.substring(0, key.indexOf(PROJECTION_POLICY_SEPARATOR));
         	FeatureTypeInfo info = catalog.getFeatureType(id);
@@ -2312,8 +2510,84 @@ public class ResourcePool {
         }
     }
     
-    class CoverageHintReaderCache extends CatalogResourceCache<CoverageHintReaderKey, GridCoverageReader> {
-        
+    /**
+     * The coverage reader cache. Readers evicted because the cache is full or idle might still be
+     * in use by a running request, so they are not disposed, but only softly referenced, and
+     * reused if asked for again before being garbage collected, the same as the soft value map
+     * this cache replaces. Readers are disposed only when explicitly removed, or on clear.
+     */
+    class CoverageHintReaderCache extends ResourceCache<CoverageHintReaderKey, GridCoverageReader> {
+
+        final Map<CoverageHintReaderKey, SoftReference<GridCoverageReader>> evicted =
+                new ConcurrentHashMap<>();
+
+        public CoverageHintReaderCache(long maxWeight, long idleTimeout) {
+            super("coverageReaders", maxWeight, idleTimeout);
+        }
+
+        @Override
+        protected void evict(CoverageHintReaderKey key, GridCoverageReader reader) {
+            evicted.values().removeIf(ref -> ref.get() == null);
+            evicted.put(key, new SoftReference<>(reader));
+        }
+
+        /**
+         * Returns the evicted reader for the key, if not garbage collected yet
+         */
+        GridCoverageReader revive(Object key) {
+            SoftReference<GridCoverageReader> ref = evicted.remove(key);
+            return ref == null ? null : ref.get();
+        }
+
+        @Override
+        public GridCoverageReader get(CoverageHintReaderKey key,
+                Callable<? extends GridCoverageReader> loader) throws IOException {
+            return super.get(key, () -> {
+                GridCoverageReader reader = revive(key);
+                return reader != null ? reader : loader.call();
+            });
+        }
+
+        @Override
+        public GridCoverageReader get(Object key) {
+            GridCoverageReader reader = super.get(key);
+            if (reader == null) {
+                reader = revive(key);
+                if (reader != null) {
+                    put((CoverageHintReaderKey) key, reader);
+                }
+            }
+            return reader;
+        }
+
+        @Override
+        public GridCoverageReader remove(Object key) {
+            GridCoverageReader reader = revive(key);
+            if (reader != null) {
+                dispose((CoverageHintReaderKey) key, reader);
+            }
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            for (CoverageHintReaderKey key : new ArrayList<>(evicted.keySet())) {
+                GridCoverageReader reader = revive(key);
+                if (reader != null) {
+                    dispose(key, reader);
+                }
+            }
+            super.clear();
+        }
+
+        @Override
+        protected int weigh(CoverageHintReaderKey key, GridCoverageReader reader) {
+            // there is no telling how much memory a reader holds (caches, open files,
+            // granule catalogs), use a flat estimate
+            return 1024 * 1024;
+        }
+
+        @Override
         protected void dispose(CoverageHintReaderKey key, GridCoverageReader reader) {
         	CoverageStoreInfo info = catalog.getCoverageStore(key.id);
         	if(info != null) {
@@ -2380,16 +2654,81 @@ public class ResourcePool {
 
     }
     
-    class FeatureTypeAttributeCache extends CatalogResourceCache<String, List<AttributeTypeInfo>> {
+    class FeatureTypeAttributeCache extends ResourceCache<String, List<AttributeTypeInfo>> {
+
+        FeatureTypeAttributeCache(long maxWeight, long idleTimeout) {
+            super("featureTypeAttributes", maxWeight, idleTimeout);
+        }
+
+        @Override
+        protected int weigh(String key, List<AttributeTypeInfo> attributes) {
+            return 256 + 256 * attributes.size();
+        }
+    }
+
+    class CRSCache extends ResourceCache<String, CoordinateReferenceSystem> {
+
+        CRSCache(long maxWeight, long idleTimeout) {
+            super("crs", maxWeight, idleTimeout);
+        }
+
+        @Override
+        protected int weigh(String key, CoordinateReferenceSystem crs) {
+            // datum, ellipsoid, projection and axis objects, plus identifiers
+            return 8 * 1024;
+        }
+    }
+
+    class StyleCache extends ResourceCache<StyleInfo, Style> {
 
-        FeatureTypeAttributeCache(int size) {
-            super(size);
+        StyleCache(long maxWeight, long idleTimeout) {
+            super("styles", maxWeight, idleTimeout);
         }
 
         @Override
-        protected void dispose(String key, List<AttributeTypeInfo> object) {
-            // nothing to do actually
+        protected int weigh(StyleInfo key, Style style) {
+            return estimateStyleWeight(style);
+        }
+    }
+
+    class SLDCache extends ResourceCache<StyleInfo, StyledLayerDescriptor> {
+
+        SLDCache(long maxWeight, long idleTimeout) {
+            super("slds", maxWeight, idleTimeout);
+        }
+
+        @Override
+        protected int weigh(StyleInfo key, StyledLayerDescriptor sld) {
+            int weight = 1024;
+            for (StyledLayer layer : sld.layers()) {
+                Style[] styles = null;
+                if (layer instanceof NamedLayer) {
+                    styles = ((NamedLayer) layer).getStyles();
+                } else if (layer instanceof UserLayer) {
+                    styles = ((UserLayer) layer).getUserStyles();
+                }
+                if (styles != null) {
+                    for (Style style : styles) {
+                        weight += estimateStyleWeight(style);
+                    }
+                }
+            }
+            return weight;
+        }
+    }
+
+    /**
+     * Rough estimate of the heap used by a style, based on the number of rules and symbolizers
+     */
+    static int estimateStyleWeight(Style style) {
+        int weight = 1024;
+        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+            weight += 512;
+            for (Rule rule : fts.rules()) {
+                weight += 1024 + 1024 * rule.symbolizers().size();
+            }
         }
+        return weight;
     }
 
     class WMSCache extends CatalogResourceCache<String, WebMapServer> {
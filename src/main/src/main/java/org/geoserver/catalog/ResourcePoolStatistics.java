@@ -0,0 +1,81 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Publishes the statistics of the {@link ResourcePool} caches, followed by the ones of the
+ * {@link CacheStatisticsProvider} extensions, in the platform MBean server, under the
+ * <code>org.geoserver:type=ResourcePool</code> name.
+ * <p>
+ * The pool is looked up from the catalog on each call, as it can be replaced at runtime.
+ * </p>
+ */
+public class ResourcePoolStatistics implements ResourcePoolStatisticsMXBean, InitializingBean,
+        DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(ResourcePoolStatistics.class);
+
+    static final String OBJECT_NAME = "org.geoserver:type=ResourcePool";
+
+    Catalog catalog;
+
+    ObjectName name;
+
+    public ResourcePoolStatistics(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public List<ResourceCache.Statistics> getCacheStatistics() {
+        List<ResourceCache.Statistics> result = new ArrayList<>(
+                catalog.getResourcePool().getCacheStatistics());
+        for (CacheStatisticsProvider provider : GeoServerExtensions
+                .extensions(CacheStatisticsProvider.class)) {
+            result.addAll(provider.getCacheStatistics());
+        }
+        return result;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(candidate)) {
+                server.registerMBean(this, candidate);
+                name = candidate;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to register the resource pool statistics in JMX",
+                    e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to unregister the resource pool statistics", e);
+            }
+            name = null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.List;
+
+/**
+ * JMX view of the {@link ResourcePool} cache statistics
+ */
+public interface ResourcePoolStatisticsMXBean {
+
+    /**
+     * Returns a snapshot of the statistics of the resource pool bounded caches, and of the caches
+     * contributed by the {@link CacheStatisticsProvider} extensions
+     */
+    List<ResourceCache.Statistics> getCacheStatistics();
+}
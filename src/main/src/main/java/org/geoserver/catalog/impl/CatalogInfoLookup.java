@@ -7,14 +7,21 @@ package org.geoserver.catalog.impl;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.geoserver.catalog.CatalogInfo;
+import org.geotools.util.logging.Logging;
 import org.opengis.feature.type.Name;
 
 /**
@@ -24,11 +31,17 @@ import org.opengis.feature.type.Name;
  * The lookups by predicate have been tested and optimized for performance, in particular
  * the current for loops turned out to be significantly faster than building and returning streams
  * 
+ * Secondary indexes can be registered to find the ids of the objects having a given property
+ * value, see {@link #addIndex(String, Function)}
+ * 
  * @param <T>
  */
 class CatalogInfoLookup<T extends CatalogInfo> {
+    static final Logger LOGGER = Logging.getLogger(CatalogInfoLookup.class);
+
     ConcurrentHashMap<Class<T>, Map<String, T>> idMultiMap = new ConcurrentHashMap<>();
     ConcurrentHashMap<Class<T>, Map<Name, T>> nameMultiMap = new ConcurrentHashMap<>();
+    Map<String, Index<T>> indexes = new ConcurrentHashMap<>();
     Function<T, Name> nameMapper;
     static final Predicate TRUE = x -> true;
     
@@ -36,6 +49,49 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         super();
         this.nameMapper = nameMapper;
     }
+
+    /**
+     * Builds a lookup with the given secondary indexes, keyed by index name
+     */
+    public CatalogInfoLookup(Function<T, Name> nameMapper,
+            Map<String, Function<T, Object>> indexMappers) {
+        this(nameMapper);
+        for (Map.Entry<String, Function<T, Object>> entry : indexMappers.entrySet()) {
+            addIndex(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Registers a secondary index, indexing the values already in the lookup. The key mapper
+     * returns the key of a value, or a collection of keys for multi valued properties, or null
+     * if the value should not be found by any key
+     */
+    public void addIndex(String name, Function<T, Object> keyMapper) {
+        Index<T> index = new Index<>(name, keyMapper);
+        for (T value : values()) {
+            index.add(value.getId(), value);
+        }
+        indexes.put(name, index);
+    }
+
+    /**
+     * Returns true if an index with the given name has been registered
+     */
+    public boolean hasIndex(String name) {
+        return indexes.containsKey(name);
+    }
+
+    /**
+     * Returns the ids of the objects whose index key matches the given one, including the objects
+     * whose key could not be computed, or null if there is no such index
+     */
+    public Set<String> getIndexedIds(String indexName, Object key) {
+        Index<T> index = indexes.get(indexName);
+        if (index == null) {
+            return null;
+        }
+        return index.get(key);
+    }
     
     <K> Map<K, T> getMapForValue(ConcurrentHashMap<Class<T>, Map<K, T>> maps, T value) {
         Class<T> vc;
@@ -68,6 +124,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name name = nameMapper.apply(value);
         nameMap.put(name, value);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
+        for (Index<T> index : indexes.values()) {
+            index.add(value.getId(), value);
+        }
         return idMap.put(value.getId(), value);
     }
     
@@ -84,12 +143,16 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name name = nameMapper.apply(value);
         Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
         nameMap.remove(name);
+        for (Index<T> index : indexes.values()) {
+            index.remove(value.getId());
+        }
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
         return idMap.remove(value.getId());
     }
     
     /**
-     * Updates the value in the name map. The new value must be a ModificationProxy
+     * Updates the value in the name map and in the secondary indexes. The new value must be a
+     * ModificationProxy
      */
     public void update(T proxiedValue) {
         ModificationProxy h = (ModificationProxy) Proxy.getInvocationHandler(proxiedValue);
@@ -102,12 +165,20 @@ class CatalogInfoLookup<T extends CatalogInfo> {
             nameMap.remove(oldName);
             nameMap.put(newName, actualValue);
         }
+        // the proxy returns the new values, the changes are committed right after
+        for (Index<T> index : indexes.values()) {
+            index.remove(actualValue.getId());
+            index.add(actualValue.getId(), proxiedValue);
+        }
     }
 
     
     public void clear() {
         idMultiMap.clear();
         nameMultiMap.clear();
+        for (Index<T> index : indexes.values()) {
+            index.clear();
+        }
     }
 
     /**
@@ -139,6 +210,52 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         return result;
     }
     
+    /**
+     * Looks up objects by class and matching predicate among the ones with the given ids, usually
+     * coming from {@link #getIndexedIds(String, Object)}. The objects are returned in the same
+     * order as {@link #list(Class, Predicate)} would.
+     * 
+     * @param clazz
+     * @param ids
+     * @param predicate
+     * @return
+     */
+    <U extends CatalogInfo> List<U> list(Class<U> clazz, Set<String> ids, Predicate<U> predicate) {
+        ArrayList<U> result = new ArrayList<U>();
+        for (Class<T> key : nameMultiMap.keySet()) {
+            if (clazz.isAssignableFrom(key)) {
+                Map<String, T> idMap = idMultiMap.get(key);
+                if (idMap == null) {
+                    continue;
+                }
+                List<T> values = new ArrayList<>();
+                for (String id : ids) {
+                    T v = idMap.get(id);
+                    if (v != null) {
+                        values.add(v);
+                    }
+                }
+                // same order as the name map
+                if (values.size() > 1) {
+                    Map<T, Name> names = new IdentityHashMap<>();
+                    for (T v : values) {
+                        names.put(v, nameMapper.apply(v));
+                    }
+                    values.sort((v1, v2) -> ((Comparable<Name>) names.get(v1))
+                            .compareTo(names.get(v2)));
+                }
+                for (T v : values) {
+                    final U u = (U) v;
+                    if (predicate == TRUE || predicate.test(u)) {
+                        result.add(u);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Looks up a CatalogInfo by class and identifier
      * @param id
@@ -210,4 +327,94 @@ class CatalogInfoLookup<T extends CatalogInfo> {
 
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * A secondary index, mapping keys extracted from the values to the ids of the values
+     */
+    static class Index<T extends CatalogInfo> {
+
+        final String name;
+
+        final Function<T, Object> keyMapper;
+
+        final ConcurrentHashMap<Object, Set<String>> idsByKey = new ConcurrentHashMap<>();
+
+        final ConcurrentHashMap<String, Collection<Object>> keysById = new ConcurrentHashMap<>();
+
+        /**
+         * Ids of the values whose keys could not be computed, always returned as candidates
+         */
+        final Set<String> unindexed = ConcurrentHashMap.newKeySet();
+
+        Index(String name, Function<T, Object> keyMapper) {
+            this.name = name;
+            this.keyMapper = keyMapper;
+        }
+
+        void add(String id, T value) {
+            Collection<Object> keys;
+            try {
+                keys = toKeys(keyMapper.apply(value));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not compute the " + name + " index key of " + id, e);
+                unindexed.add(id);
+                return;
+            }
+            keysById.put(id, keys);
+            for (Object key : keys) {
+                idsByKey.compute(key, (k, ids) -> {
+                    Set<String> result = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                    result.add(id);
+                    return result;
+                });
+            }
+        }
+
+        void remove(String id) {
+            unindexed.remove(id);
+            Collection<Object> keys = keysById.remove(id);
+            if (keys != null) {
+                for (Object key : keys) {
+                    idsByKey.computeIfPresent(key, (k, ids) -> {
+                        ids.remove(id);
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+            }
+        }
+
+        Set<String> get(Object key) {
+            Set<String> ids = key == null ? null : idsByKey.get(key);
+            if (unindexed.isEmpty()) {
+                return ids == null ? Collections.emptySet() : new HashSet<>(ids);
+            }
+            Set<String> result = new HashSet<>(unindexed);
+            if (ids != null) {
+                result.addAll(ids);
+            }
+            return result;
+        }
+
+        void clear() {
+            idsByKey.clear();
+            keysById.clear();
+            unindexed.clear();
+        }
+
+        static Collection<Object> toKeys(Object key) {
+            if (key == null) {
+                return Collections.emptyList();
+            } else if (key instanceof Collection) {
+                List<Object> keys = new ArrayList<>();
+                for (Object k : (Collection<?>) key) {
+                    if (k != null) {
+                        keys.add(k);
+                    }
+                }
+                return keys;
+            } else {
+                return Collections.singletonList(key);
+            }
+        }
+    }
+}
@@ -11,9 +11,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
@@ -25,6 +28,7 @@ import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.KeywordInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.LockingCatalogFacade;
@@ -40,7 +44,12 @@ import org.geoserver.catalog.util.CloseableIteratorAdapter;
 import org.geoserver.ows.util.OwsUtils;
 import org.geotools.feature.NameImpl;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.MultiValuedFilter.MatchAction;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
@@ -86,10 +95,69 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     static final Function<StyleInfo, Name> STYLE_NAME_MAPPER = s -> 
         new NameImpl(s.getWorkspace() != null ? s.getWorkspace().getId() : null, s.getName());
         
+    /*
+     * Names of the secondary indexes, see getCandidateIds(Class, Filter). The indexes reference
+     * other objects by id, so that they are not affected by renames, and only look at the direct
+     * properties of an object, so that they are updated when the object itself is saved
+     */
+    static final String WORKSPACE_INDEX = "workspace";
+
+    static final String NAMESPACE_INDEX = "namespace";
+
+    static final String STORE_INDEX = "store";
+
+    static final String RESOURCE_INDEX = "resource";
+
+    static final String ENABLED_INDEX = "enabled";
+
+    static final String ADVERTISED_INDEX = "advertised";
+
+    static final String KEYWORDS_INDEX = "keywords";
+
+    static final Map<String, Function<StoreInfo, Object>> STORE_INDEXES = new LinkedHashMap<>();
+    static {
+        STORE_INDEXES.put(WORKSPACE_INDEX, s -> s.getWorkspace().getId());
+        STORE_INDEXES.put(ENABLED_INDEX, s -> s.isEnabled());
+    }
+
+    static final Map<String, Function<ResourceInfo, Object>> RESOURCE_INDEXES = new LinkedHashMap<>();
+    static {
+        RESOURCE_INDEXES.put(STORE_INDEX, r -> r.getStore().getId());
+        RESOURCE_INDEXES.put(NAMESPACE_INDEX, r -> r.getNamespace().getId());
+        RESOURCE_INDEXES.put(ENABLED_INDEX, r -> r.isEnabled());
+        RESOURCE_INDEXES.put(ADVERTISED_INDEX, r -> r.isAdvertised());
+        RESOURCE_INDEXES.put(KEYWORDS_INDEX, r -> {
+            List<String> values = new ArrayList<>();
+            if (r.getKeywords() != null) {
+                for (KeywordInfo kw : r.getKeywords()) {
+                    values.add(kw.getValue());
+                }
+            }
+            return values;
+        });
+    }
+
+    static final Map<String, Function<LayerInfo, Object>> LAYER_INDEXES = new LinkedHashMap<>();
+    static {
+        LAYER_INDEXES.put(RESOURCE_INDEX, l -> l.getResource().getId());
+    }
+
+    static final Map<String, Function<LayerGroupInfo, Object>> LAYERGROUP_INDEXES = new LinkedHashMap<>();
+    static {
+        LAYERGROUP_INDEXES.put(WORKSPACE_INDEX,
+                lg -> lg.getWorkspace() != null ? lg.getWorkspace().getId() : null);
+    }
+
+    static final Map<String, Function<StyleInfo, Object>> STYLE_INDEXES = new LinkedHashMap<>();
+    static {
+        STYLE_INDEXES.put(WORKSPACE_INDEX,
+                s -> s.getWorkspace() != null ? s.getWorkspace().getId() : null);
+    }
+
     static final class LayerInfoLookup extends CatalogInfoLookup<LayerInfo> {
 
         public LayerInfoLookup() {
-            super(LAYER_NAME_MAPPER);
+            super(LAYER_NAME_MAPPER, LAYER_INDEXES);
         }
         
         public void update(ResourceInfo proxiedValue) {
@@ -113,7 +181,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * Contains the stores keyed by implementation class
      */
-    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER, STORE_INDEXES);
     
     /**
      * The default store keyed by workspace id
@@ -123,7 +191,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * resources
      */
-    protected CatalogInfoLookup<ResourceInfo> resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+    protected CatalogInfoLookup<ResourceInfo> resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER, RESOURCE_INDEXES);
 
     /**
      * The default namespace
@@ -158,12 +226,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * layer groups
      */
-    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER, LAYERGROUP_INDEXES);
     
     /**
      * styles
      */
-    protected CatalogInfoLookup<StyleInfo> styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+    protected CatalogInfoLookup<StyleInfo> styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER, STYLE_INDEXES);
 
     /**
      * the catalog
@@ -884,7 +952,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //stores
         if ( stores == null ) {
-            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER, STORE_INDEXES);
         }
         for ( Object o : stores.values() ) {
             resolve((StoreInfoImpl)o);
@@ -892,7 +960,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //styles
         if ( styles == null ) {
-            styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+            styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER, STYLE_INDEXES);
         }
         for ( StyleInfo s : styles.values() ) {
             resolve(s);
@@ -900,7 +968,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //resources
         if ( resources == null ) {
-            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER, RESOURCE_INDEXES);
         }
         for( Object o : resources.values() ) {
             resolve((ResourceInfo)o);
@@ -916,7 +984,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //layer groups
         if ( layerGroups == null ) {
-            layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+            layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER, LAYERGROUP_INDEXES);
         }
         for (LayerGroupInfo lg : layerGroups.values()) {
             resolve(lg);
@@ -1069,23 +1137,23 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         T t = null;
         if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) namespaces.list(of, toPredicate(filter));
+            all = list(namespaces, NamespaceInfo.class, of, filter);
         } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) workspaces.list(of, toPredicate(filter));
+            all = list(workspaces, WorkspaceInfo.class, of, filter);
         } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) stores.list(of, toPredicate(filter));
+            all = list(stores, StoreInfo.class, of, filter);
         } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) resources.list(of, toPredicate(filter));
+            all = list(resources, ResourceInfo.class, of, filter);
         } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layers.list(of, toPredicate(filter));
+            all = list(layers, LayerInfo.class, of, filter);
         } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layerGroups.list(of, toPredicate(filter));
+            all = list(layerGroups, LayerGroupInfo.class, of, filter);
         } else if (PublishedInfo.class.isAssignableFrom(of)) {
             all = new ArrayList<>();
-            all.addAll((List<T>) layers.list(LayerInfo.class, toPredicate(filter)));
-            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, toPredicate(filter)));
+            all.addAll((List<T>) list(layers, LayerInfo.class, LayerInfo.class, filter));
+            all.addAll((List<T>) list(layerGroups, LayerGroupInfo.class, LayerGroupInfo.class, filter));
         } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) styles.list(of, toPredicate(filter));
+            all = list(styles, StyleInfo.class, of, filter);
         } else if (MapInfo.class.isAssignableFrom(of)) {
             all = (List<T>) new ArrayList<>(maps);
         } else {
@@ -1106,6 +1174,202 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return ModificationProxy.createList(all, of);
     }
 
+    /**
+     * Lists the objects of the lookup matching the filter, using the secondary indexes to narrow
+     * down the objects to evaluate when possible
+     */
+    private <T extends CatalogInfo> List<T> list(CatalogInfoLookup<?> lookup,
+            Class<? extends CatalogInfo> type, Class<T> of, Filter filter) {
+        Set<String> ids = getCandidateIds(type, filter);
+        if (ids == null) {
+            return lookup.list(of, toPredicate(filter));
+        } else {
+            return lookup.list(of, ids, toPredicate(filter));
+        }
+    }
+
+    /**
+     * Returns the ids of the objects of the given type that might match the filter, as found in
+     * the secondary indexes, or null if none of the filter conditions can use them. The filter
+     * still needs to be evaluated against the returned objects.
+     * <p>
+     * The filter can use the indexes if it's an equality comparison between a property and a
+     * literal, or a conjunction containing such comparisons, on one of the following properties:
+     * <ul>
+     * <li>workspaces: <code>id</code>, <code>name</code></li>
+     * <li>namespaces: <code>id</code>, <code>prefix</code></li>
+     * <li>stores: <code>id</code>, <code>workspace.*</code>, <code>enabled</code></li>
+     * <li>resources: <code>id</code>, <code>store.*</code>, <code>namespace.*</code>,
+     * <code>enabled</code>, <code>advertised</code>, <code>keywords.value</code></li>
+     * <li>layers: <code>id</code>, <code>resource.*</code>, <code>enabled</code>,
+     * <code>advertised</code></li>
+     * <li>layer groups and styles: <code>id</code>, <code>workspace.*</code></li>
+     * </ul>
+     * where <code>*</code> is any of the properties supported by the referenced type, e.g.
+     * <code>resource.store.workspace.name</code> for layers.
+     * </p>
+     */
+    Set<String> getCandidateIds(Class<? extends CatalogInfo> type, Filter filter) {
+        if (filter == null) {
+            return null;
+        }
+        List<Filter> conditions = new ArrayList<>();
+        collectConditions(filter, conditions);
+
+        Set<String> result = null;
+        for (Filter condition : conditions) {
+            if (!(condition instanceof PropertyIsEqualTo)) {
+                continue;
+            }
+            PropertyIsEqualTo equal = (PropertyIsEqualTo) condition;
+            if (!equal.isMatchingCase()) {
+                continue;
+            }
+            String property;
+            Object value;
+            if (equal.getExpression1() instanceof PropertyName
+                    && equal.getExpression2() instanceof Literal) {
+                property = ((PropertyName) equal.getExpression1()).getPropertyName();
+                value = ((Literal) equal.getExpression2()).getValue();
+            } else if (equal.getExpression2() instanceof PropertyName
+                    && equal.getExpression1() instanceof Literal) {
+                property = ((PropertyName) equal.getExpression2()).getPropertyName();
+                value = ((Literal) equal.getExpression1()).getValue();
+            } else {
+                continue;
+            }
+            if (property == null || value == null) {
+                continue;
+            }
+
+            Set<String> ids = getIndexedIds(type, property, value, equal.getMatchAction());
+            if (ids != null) {
+                if (result == null) {
+                    result = ids;
+                } else {
+                    result.retainAll(ids);
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void collectConditions(Filter filter, List<Filter> conditions) {
+        if (filter instanceof And) {
+            for (Filter child : ((And) filter).getChildren()) {
+                collectConditions(child, conditions);
+            }
+        } else {
+            conditions.add(filter);
+        }
+    }
+
+    /**
+     * Returns the ids of the objects of the given type whose property might be equal to the
+     * value, or null if the property is not indexed. The returned set can be modified.
+     */
+    private Set<String> getIndexedIds(Class<?> type, String property, Object value,
+            MatchAction matchAction) {
+        if ("id".equals(property)) {
+            return value instanceof String ? newSet((String) value) : null;
+        }
+        if (WorkspaceInfo.class.equals(type)) {
+            if ("name".equals(property) && value instanceof String) {
+                WorkspaceInfo ws = workspaces.findByName(new NameImpl((String) value),
+                        WorkspaceInfo.class);
+                return ws == null ? newSet() : newSet(ws.getId());
+            }
+        } else if (NamespaceInfo.class.equals(type)) {
+            if ("prefix".equals(property) && value instanceof String) {
+                NamespaceInfo ns = namespaces.findByName(new NameImpl((String) value),
+                        NamespaceInfo.class);
+                return ns == null ? newSet() : newSet(ns.getId());
+            }
+        } else if (StoreInfo.class.equals(type)) {
+            if (property.startsWith("workspace.")) {
+                return join(stores, WORKSPACE_INDEX, getIndexedIds(WorkspaceInfo.class,
+                        property.substring("workspace.".length()), value, matchAction));
+            } else if ("enabled".equals(property)) {
+                return getIndexedIds(stores, ENABLED_INDEX, toBoolean(value));
+            }
+        } else if (ResourceInfo.class.equals(type)) {
+            if (property.startsWith("store.")) {
+                return join(resources, STORE_INDEX, getIndexedIds(StoreInfo.class,
+                        property.substring("store.".length()), value, matchAction));
+            } else if (property.startsWith("namespace.")) {
+                return join(resources, NAMESPACE_INDEX, getIndexedIds(NamespaceInfo.class,
+                        property.substring("namespace.".length()), value, matchAction));
+            } else if ("enabled".equals(property)) {
+                return getIndexedIds(resources, ENABLED_INDEX, toBoolean(value));
+            } else if ("advertised".equals(property)) {
+                return getIndexedIds(resources, ADVERTISED_INDEX, toBoolean(value));
+            } else if ("keywords.value".equals(property) && value instanceof String
+                    && matchAction != MatchAction.ALL) {
+                // with ALL an empty keyword list would match too
+                return getIndexedIds(resources, KEYWORDS_INDEX, value);
+            }
+        } else if (LayerInfo.class.equals(type)) {
+            if (property.startsWith("resource.")) {
+                return join(layers, RESOURCE_INDEX, getIndexedIds(ResourceInfo.class,
+                        property.substring("resource.".length()), value, matchAction));
+            } else if ("enabled".equals(property) || "advertised".equals(property)) {
+                // the layer flags are the resource ones
+                return join(layers, RESOURCE_INDEX,
+                        getIndexedIds(ResourceInfo.class, property, value, matchAction));
+            }
+        } else if (LayerGroupInfo.class.equals(type)) {
+            if (property.startsWith("workspace.")) {
+                return join(layerGroups, WORKSPACE_INDEX, getIndexedIds(WorkspaceInfo.class,
+                        property.substring("workspace.".length()), value, matchAction));
+            }
+        } else if (StyleInfo.class.equals(type)) {
+            if (property.startsWith("workspace.")) {
+                return join(styles, WORKSPACE_INDEX, getIndexedIds(WorkspaceInfo.class,
+                        property.substring("workspace.".length()), value, matchAction));
+            }
+        }
+
+        return null;
+    }
+
+    private Set<String> getIndexedIds(CatalogInfoLookup<?> lookup, String index, Object key) {
+        if (key == null) {
+            return null;
+        }
+        return lookup.getIndexedIds(index, key);
+    }
+
+    /**
+     * Returns the ids of the objects referencing any of the given ids through the index
+     */
+    private Set<String> join(CatalogInfoLookup<?> lookup, String index, Set<String> ids) {
+        if (ids == null || !lookup.hasIndex(index)) {
+            return null;
+        }
+        Set<String> result = new HashSet<>();
+        for (String id : ids) {
+            result.addAll(lookup.getIndexedIds(index, id));
+        }
+        return result;
+    }
+
+    private Boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if ("true".equals(value) || "false".equals(value)) {
+            return Boolean.valueOf((String) value);
+        }
+        return null;
+    }
+
+    private Set<String> newSet(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
     private <T> Predicate<T> toPredicate(Filter filter) {
         if(filter != null && filter != Filter.INCLUDE) {
             return  o -> filter.evaluate(o);
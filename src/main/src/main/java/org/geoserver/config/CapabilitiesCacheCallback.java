@@ -0,0 +1,661 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.LocalPublished;
+import org.geoserver.ows.LocalWorkspace;
+import org.geoserver.ows.Request;
+import org.geoserver.ows.Response;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.security.DataAccessManager;
+import org.geoserver.security.GeoServerSecurityManager;
+import org.geoserver.security.ResourceAccessManager;
+import org.geoserver.security.impl.DataAccessRuleDAO;
+import org.geoserver.security.impl.DefaultResourceAccessManager;
+import org.geotools.util.logging.Logging;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Caches the encoded GetCapabilities documents, so that catalogs with many layers do not pay
+ * the cost of encoding the whole document on each request.
+ * <p>
+ * The documents are keyed by service, version, local workspace and layer, the roles of the
+ * current user, the request URL and forwarding headers and the request parameters. Only plain
+ * GET requests are cached. Catalog changes invalidate the documents of the workspace involved,
+ * along with the global ones, service changes the documents of the service, and global changes
+ * all of them. The documents also expire after a time to live, to account for the contents
+ * computed from the data, such as dimension ranges.
+ * </p>
+ * <p>
+ * The documents are cached only when the layers are secured by the
+ * {@link DefaultResourceAccessManager}, whose decisions depend only on the user roles. Other
+ * access managers can decide by user name, address or other request details that are not part
+ * of the cache key. Reloads of the data access rules and security configuration changes
+ * invalidate all the documents.
+ * </p>
+ * <p>
+ * The cache is disabled by default, and controlled by the following system, environment or
+ * servlet context variables:
+ * <ul>
+ * <li><code>GEOSERVER_CAPABILITIES_CACHE_ENABLED</code>: set to true to enable the cache</li>
+ * <li><code>GEOSERVER_CAPABILITIES_CACHE_MAX_SIZE</code>: maximum total size of the cached
+ * documents, in bytes, defaults to 64MB</li>
+ * <li><code>GEOSERVER_CAPABILITIES_CACHE_TTL</code>: time to live of the cached documents, in
+ * seconds, defaults to 300</li>
+ * </ul>
+ * </p>
+ */
+public class CapabilitiesCacheCallback extends AbstractDispatcherCallback
+        implements GeoServerLifecycleHandler {
+
+    static final Logger LOGGER = Logging.getLogger(CapabilitiesCacheCallback.class);
+
+    static final long MAX_SIZE_DEFAULT = 64 * 1024 * 1024;
+
+    static final long TTL_DEFAULT = 300;
+
+    /**
+     * Headers changing the URLs encoded in the capabilities documents
+     */
+    static final String[] URL_HEADERS = { "Host", "Forwarded", "X-Forwarded-Proto",
+            "X-Forwarded-Host", "X-Forwarded-Path" };
+
+    volatile boolean enabled;
+
+    final long maxSize;
+
+    final Cache<CacheKey, CachedDocument> cache;
+
+    /**
+     * Incremented on each invalidation, documents encoded while an invalidation happens are not
+     * cached
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Last modification of the data access rules the cached documents were encoded with
+     */
+    volatile long rulesLastModified = Long.MIN_VALUE;
+
+    public CapabilitiesCacheCallback(GeoServer gs, GeoServerSecurityManager securityManager) {
+        this(gs, Boolean.parseBoolean(
+                GeoServerExtensions.getProperty("GEOSERVER_CAPABILITIES_CACHE_ENABLED")),
+                getLongProperty("GEOSERVER_CAPABILITIES_CACHE_MAX_SIZE", MAX_SIZE_DEFAULT),
+                getLongProperty("GEOSERVER_CAPABILITIES_CACHE_TTL", TTL_DEFAULT));
+        // role, user group and filter chain changes alter what the users can see
+        securityManager.addListener(manager -> invalidateAll());
+    }
+
+    CapabilitiesCacheCallback(GeoServer gs, boolean enabled, long maxSize, long ttl) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats()
+                .maximumWeight(maxSize).weigher(new Weigher<CacheKey, CachedDocument>() {
+
+                    @Override
+                    public int weigh(CacheKey key, CachedDocument value) {
+                        return value.contents.length;
+                    }
+                });
+        if (ttl > 0) {
+            builder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+
+        gs.addListener(new ConfigurationInvalidator());
+        gs.getCatalog().addListener(new CatalogInvalidator());
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Capabilities cache enabled: " + enabled);
+        }
+    }
+
+    static long getLongProperty(String name, long defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + name + ": " + value
+                        + ", using the default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns true if the capabilities documents are cached
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables/disables the cache, disabling it removes the cached documents
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Removes all the cached documents
+     */
+    public void invalidateAll() {
+        invalidate(k -> true);
+    }
+
+    /**
+     * Number of cached documents
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    void invalidate(Predicate<CacheKey> predicate) {
+        generation.incrementAndGet();
+        cache.asMap().keySet().removeIf(predicate);
+    }
+
+    /**
+     * Removes the documents of the given workspace, and the global ones listing the contents of
+     * all workspaces. A null workspace removes all documents.
+     */
+    void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            invalidateAll();
+        } else {
+            invalidate(k -> k.workspace == null || workspace.equals(k.workspace));
+        }
+    }
+
+    /**
+     * Returns true if the layers visible to a user depend only on their roles, that is, if the
+     * catalog is secured by the {@link DefaultResourceAccessManager}
+     */
+    static boolean isRoleBasedSecurity() {
+        ResourceAccessManager manager = GeoServerExtensions.bean(ResourceAccessManager.class);
+        if (manager == null) {
+            return GeoServerExtensions.bean(DataAccessManager.class) == null;
+        }
+        return manager instanceof DefaultResourceAccessManager;
+    }
+
+    /**
+     * Removes all the documents if the data access rules changed since they were encoded
+     */
+    void checkAccessRules() {
+        DataAccessRuleDAO dao = DataAccessRuleDAO.get();
+        if (dao == null) {
+            return;
+        }
+        // reloads the rules if the property file changed
+        dao.getMode();
+        long lastModified = dao.getLastModified();
+        if (lastModified != rulesLastModified) {
+            rulesLastModified = lastModified;
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void onReset() {
+        invalidateAll();
+    }
+
+    @Override
+    public void onDispose() {
+        invalidateAll();
+    }
+
+    @Override
+    public void beforeReload() {
+        // nothing to do
+    }
+
+    @Override
+    public void onReload() {
+        invalidateAll();
+    }
+
+    @Override
+    public Response responseDispatched(Request request, Operation operation, Object result,
+            Response response) {
+        if (!enabled || !"GetCapabilities".equalsIgnoreCase(request.getRequest())
+                || !request.isGet() || request.isSOAP() || request.getHttpRequest() == null) {
+            return response;
+        }
+        if (!isRoleBasedSecurity()) {
+            return response;
+        }
+        checkAccessRules();
+
+        CacheKey key = new CacheKey(request, operation);
+        CachedDocument document = cache.getIfPresent(key);
+        return new CachingResponse(response, key, document, generation.get());
+    }
+
+    /**
+     * The cache key of a capabilities document
+     */
+    static class CacheKey {
+
+        final String service;
+
+        final String version;
+
+        final String workspace;
+
+        final String published;
+
+        final Set<String> roles = new TreeSet<>();
+
+        final String url;
+
+        final Map<String, String> headers = new TreeMap<>();
+
+        final Map<String, String> parameters = new TreeMap<>();
+
+        CacheKey(Request request, Operation operation) {
+            this.service = operation.getService().getId();
+            this.version = operation.getService().getVersion() != null
+                    ? operation.getService().getVersion().toString() : request.getVersion();
+            WorkspaceInfo ws = LocalWorkspace.get();
+            this.workspace = ws != null ? ws.getName() : null;
+            this.published = LocalPublished.get() != null ? LocalPublished.get().getName() : null;
+
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.getAuthorities() != null) {
+                for (GrantedAuthority authority : auth.getAuthorities()) {
+                    roles.add(authority.getAuthority());
+                }
+            }
+
+            HttpServletRequest httpRequest = request.getHttpRequest();
+            this.url = httpRequest.getRequestURL().toString();
+            for (String header : URL_HEADERS) {
+                Enumeration<String> values = httpRequest.getHeaders(header);
+                if (values != null && values.hasMoreElements()) {
+                    headers.put(header, String.join(",", Collections.list(values)));
+                }
+            }
+            Map<?, ?> kvp = request.getRawKvp();
+            if (kvp != null) {
+                for (Map.Entry<?, ?> entry : kvp.entrySet()) {
+                    Object value = entry.getValue();
+                    parameters.put(String.valueOf(entry.getKey()).toUpperCase(),
+                            value instanceof Object[] ? Arrays.toString((Object[]) value)
+                                    : String.valueOf(value));
+                }
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, version, workspace, published, roles, url, headers,
+                    parameters);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return Objects.equals(service, other.service)
+                    && Objects.equals(version, other.version)
+                    && Objects.equals(workspace, other.workspace)
+                    && Objects.equals(published, other.published)
+                    && roles.equals(other.roles) && url.equals(other.url)
+                    && headers.equals(other.headers) && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public String toString() {
+            return "CacheKey [service=" + service + ", version=" + version + ", workspace="
+                    + workspace + ", published=" + published + ", roles=" + roles + ", url="
+                    + url + ", parameters=" + parameters + "]";
+        }
+    }
+
+    /**
+     * An encoded capabilities document
+     */
+    static class CachedDocument {
+
+        final byte[] contents;
+
+        CachedDocument(byte[] contents) {
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * Writes the cached document if available, otherwise encodes the document, copying it into
+     * the cache as it's written to the client
+     */
+    class CachingResponse extends Response {
+
+        Response delegate;
+
+        CacheKey key;
+
+        CachedDocument document;
+
+        long startGeneration;
+
+        CachingResponse(Response delegate, CacheKey key, CachedDocument document,
+                long startGeneration) {
+            super(delegate.getBinding());
+            this.delegate = delegate;
+            this.key = key;
+            this.document = document;
+            this.startGeneration = startGeneration;
+        }
+
+        @Override
+        public boolean canHandle(Operation operation) {
+            return delegate.canHandle(operation);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) throws ServiceException {
+            return delegate.getMimeType(value, operation);
+        }
+
+        @Override
+        public String[][] getHeaders(Object value, Operation operation) throws ServiceException {
+            return delegate.getHeaders(value, operation);
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation)
+                throws IOException, ServiceException {
+            if (document != null) {
+                output.write(document.contents);
+                return;
+            }
+
+            CopyingOutputStream copy = new CopyingOutputStream(output, maxSize);
+            delegate.write(value, copy, operation);
+            byte[] contents = copy.getContents();
+            // skip documents too large for the cache
+            if (contents != null) {
+                cache.put(key, new CachedDocument(contents));
+                // an invalidation happened meanwhile, the document might be stale
+                if (generation.get() != startGeneration) {
+                    cache.invalidate(key);
+                }
+            }
+        }
+
+        @Override
+        public String getPreferredDisposition(Object value, Operation operation) {
+            return delegate.getPreferredDisposition(value, operation);
+        }
+
+        @Override
+        public String getAttachmentFileName(Object value, Operation operation) {
+            return delegate.getAttachmentFileName(value, operation);
+        }
+
+        @Override
+        public String getCharset(Operation operation) {
+            return delegate.getCharset(operation);
+        }
+    }
+
+    /**
+     * Writes to the delegate stream while keeping a copy of the contents, up to a maximum size
+     */
+    static class CopyingOutputStream extends OutputStream {
+
+        final OutputStream delegate;
+
+        final long maxSize;
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CopyingOutputStream(OutputStream delegate, long maxSize) {
+            this.delegate = delegate;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        void checkSize() {
+            if (copy.size() > maxSize) {
+                copy = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        /**
+         * The copied contents, or null if they exceeded the maximum size
+         */
+        byte[] getContents() {
+            return copy != null ? copy.toByteArray() : null;
+        }
+    }
+
+    /**
+     * Returns the name of the workspace a catalog object belongs to, or null if it's global or
+     * could affect all workspaces
+     */
+    static String getWorkspaceName(Object source) {
+        WorkspaceInfo ws = null;
+        if (source instanceof WorkspaceInfo) {
+            ws = (WorkspaceInfo) source;
+        } else if (source instanceof NamespaceInfo) {
+            return ((NamespaceInfo) source).getPrefix();
+        } else if (source instanceof StoreInfo) {
+            ws = ((StoreInfo) source).getWorkspace();
+        } else if (source instanceof ResourceInfo) {
+            ResourceInfo resource = (ResourceInfo) source;
+            if (resource.getStore() != null) {
+                ws = resource.getStore().getWorkspace();
+            }
+        } else if (source instanceof LayerInfo) {
+            LayerInfo layer = (LayerInfo) source;
+            if (layer.getResource() != null && layer.getResource().getStore() != null) {
+                ws = layer.getResource().getStore().getWorkspace();
+            }
+        } else if (source instanceof LayerGroupInfo) {
+            ws = ((LayerGroupInfo) source).getWorkspace();
+        } else if (source instanceof StyleInfo) {
+            ws = ((StyleInfo) source).getWorkspace();
+        }
+        return ws != null ? ws.getName() : null;
+    }
+
+    /**
+     * Invalidates the documents affected by catalog changes
+     */
+    class CatalogInvalidator implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            handle(event);
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            handle(event);
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            List<String> properties = event.getPropertyNames();
+            if (event.getSource() instanceof WorkspaceInfo
+                    || event.getSource() instanceof NamespaceInfo
+                    || properties.contains("workspace") || properties.contains("store")
+                    || properties.contains("resource")) {
+                // moves and renames, the source already returns the new values and the
+                // documents of the old workspace would be left around
+                invalidateAll();
+            } else {
+                handle(event);
+            }
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            handle(event);
+        }
+
+        void handle(CatalogEvent event) {
+            CatalogInfo source = event.getSource();
+            if (source instanceof Catalog) {
+                // default workspace, namespace or store changes
+                invalidateAll();
+            } else {
+                invalidateWorkspace(getWorkspaceName(source));
+            }
+        }
+
+        @Override
+        public void reloaded() {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Invalidates the documents affected by configuration changes
+     */
+    class ConfigurationInvalidator extends ConfigurationListenerAdapter {
+
+        @Override
+        public void handleGlobalChange(GeoServerInfo global, List<String> propertyNames,
+                List<Object> oldValues, List<Object> newValues) {
+            invalidateAll();
+        }
+
+        @Override
+        public void handleSettingsAdded(SettingsInfo settings) {
+            invalidateSettings(settings);
+        }
+
+        @Override
+        public void handleSettingsModified(SettingsInfo settings, List<String> propertyNames,
+                List<Object> oldValues, List<Object> newValues) {
+            invalidateSettings(settings);
+        }
+
+        @Override
+        public void handleSettingsRemoved(SettingsInfo settings) {
+            invalidateSettings(settings);
+        }
+
+        void invalidateSettings(SettingsInfo settings) {
+            WorkspaceInfo ws = settings.getWorkspace();
+            invalidateWorkspace(ws != null ? ws.getName() : null);
+        }
+
+        @Override
+        public void handleServiceChange(ServiceInfo service, List<String> propertyNames,
+                List<Object> oldValues, List<Object> newValues) {
+            invalidateService(service);
+        }
+
+        @Override
+        public void handleServiceRemove(ServiceInfo service) {
+            invalidateService(service);
+        }
+
+        void invalidateService(ServiceInfo service) {
+            String name = service.getName();
+            WorkspaceInfo ws = service.getWorkspace();
+            if (name == null) {
+                invalidateWorkspace(ws != null ? ws.getName() : null);
+            } else if (ws == null) {
+                // the global service configuration is inherited by the workspaces
+                invalidate(k -> name.equalsIgnoreCase(k.service));
+            } else {
+                String wsName = ws.getName();
+                invalidate(k -> name.equalsIgnoreCase(k.service) && wsName.equals(k.workspace));
+            }
+        }
+
+        @Override
+        public void reloaded() {
+            invalidateAll();
+        }
+    }
+}
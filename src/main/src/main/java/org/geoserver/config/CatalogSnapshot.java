@@ -0,0 +1,393 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.HTTPStoreInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.config.util.XStreamPersisterInitializer;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resource.Type;
+import org.geoserver.security.password.ConfigurationPasswordEncryptionHelper;
+import org.geoserver.security.password.GeoServerPasswordEncoder;
+
+/**
+ * A binary snapshot of the catalog contents, written with java serialization by the
+ * {@link GeoServerLoader} after a successful load of the configuration files, and used in their
+ * place on the next startup, skipping the XML parsing altogether.
+ * <p>
+ * The snapshot records a fingerprint of the paths and modification times of the catalog
+ * configuration files, it's ignored as soon as any of them is added, removed or modified, and
+ * gets rewritten after the following load. Enabled by setting the
+ * <code>org.geoserver.catalog.snapshot</code> variable to true.
+ * </p>
+ * <p>
+ * As in the XML files, the store passwords are encrypted in the snapshot, and only the classes
+ * of the catalog objects are accepted when reading it back.
+ * </p>
+ */
+class CatalogSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 4217356112983497416L;
+
+    static final String SNAPSHOT_PROPERTY = "org.geoserver.catalog.snapshot";
+
+    static final String SNAPSHOT_FILE = "catalog.snapshot";
+
+    /**
+     * Changes whenever the snapshot contents change in an incompatible way
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The directories holding the catalog configuration
+     */
+    static final String[] CATALOG_DIRECTORIES = { "workspaces", "styles", "layergroups" };
+
+    /**
+     * The packages of the classes that can be read from a snapshot
+     */
+    static final String[] ALLOWED_PACKAGES = { "java.lang.", "java.util.", "java.math.",
+            "javax.measure.", "tec.uom.", "si.uom.", "systems.uom.", "org.geoserver.",
+            "org.geotools.", "org.opengis.", "org.locationtech.jts." };
+
+    /**
+     * The packages excluded from the allowed ones
+     */
+    static final String[] DENIED_PACKAGES = { "java.lang.invoke.", "java.lang.reflect.",
+            "java.util.logging.", "java.util.prefs." };
+
+    String fingerprint;
+
+    List<WorkspaceInfo> workspaces;
+
+    List<NamespaceInfo> namespaces;
+
+    List<StyleInfo> styles;
+
+    List<StoreInfo> stores;
+
+    List<ResourceInfo> resources;
+
+    List<LayerInfo> layers;
+
+    List<LayerGroupInfo> layerGroups;
+
+    String defaultWorkspace;
+
+    String defaultNamespace;
+
+    /**
+     * The default data store ids, by workspace id
+     */
+    Map<String, String> defaultDataStores = new HashMap<>();
+
+    /**
+     * The encrypted passwords of the HTTP stores, by store id
+     */
+    Map<String, String> passwords = new HashMap<>();
+
+    /**
+     * The objects to be written in place of the ones holding the store passwords in clear text
+     */
+    transient Map<Object, Object> replacements = new IdentityHashMap<>();
+
+    static boolean isEnabled() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(SNAPSHOT_PROPERTY));
+    }
+
+    /**
+     * Computes the fingerprint of the catalog configuration files, out of their paths and
+     * modification times, and of the persister initializers that could change how they are
+     * parsed
+     */
+    static String getFingerprint(GeoServerResourceLoader resourceLoader) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, "version:" + VERSION);
+        for (XStreamPersisterInitializer initializer : GeoServerExtensions
+                .extensions(XStreamPersisterInitializer.class)) {
+            update(digest, initializer.getClass().getName());
+        }
+        update(digest, resourceLoader.get("global.xml"));
+        for (String directory : CATALOG_DIRECTORIES) {
+            update(digest, resourceLoader.get(directory));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    static void update(MessageDigest digest, Resource resource) {
+        if (resource.getType() == Type.DIRECTORY) {
+            List<Resource> children = new ArrayList<>(resource.list());
+            children.sort(Comparator.comparing(Resource::name));
+            for (Resource child : children) {
+                update(digest, child);
+            }
+        } else if (resource.getType() == Type.RESOURCE
+                && resource.name().toLowerCase().endsWith(".xml")) {
+            update(digest, resource.path() + ":" + resource.lastmodified());
+        }
+    }
+
+    static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * Takes a snapshot of the catalog contents
+     *
+     * @param helper Tells the store connection parameters to be encrypted, if null the passwords
+     *        are written in clear text
+     * @param encoder Encrypts the store passwords, if null they are written in clear text like
+     *        in the XML files
+     */
+    static CatalogSnapshot capture(Catalog catalog, String fingerprint,
+            ConfigurationPasswordEncryptionHelper helper, GeoServerPasswordEncoder encoder) {
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        snapshot.fingerprint = fingerprint;
+        snapshot.workspaces = unwrap(catalog.getWorkspaces());
+        snapshot.namespaces = unwrap(catalog.getNamespaces());
+        snapshot.styles = unwrap(catalog.getStyles());
+        snapshot.stores = unwrap(catalog.getStores(StoreInfo.class));
+        snapshot.resources = unwrap(catalog.getResources(ResourceInfo.class));
+        snapshot.layers = unwrap(catalog.getLayers());
+        snapshot.layerGroups = unwrap(catalog.getLayerGroups());
+
+        WorkspaceInfo ws = catalog.getDefaultWorkspace();
+        snapshot.defaultWorkspace = ws != null ? ws.getId() : null;
+        NamespaceInfo ns = catalog.getDefaultNamespace();
+        snapshot.defaultNamespace = ns != null ? ns.getId() : null;
+        for (WorkspaceInfo workspace : snapshot.workspaces) {
+            DataStoreInfo store = catalog.getDefaultDataStore(workspace);
+            if (store != null) {
+                snapshot.defaultDataStores.put(workspace.getId(), store.getId());
+            }
+        }
+        if (helper != null && encoder != null) {
+            for (StoreInfo store : snapshot.stores) {
+                snapshot.encrypt(store, helper, encoder);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers the replacements of the store fields holding passwords, the catalog objects are
+     * left untouched
+     */
+    void encrypt(StoreInfo store, ConfigurationPasswordEncryptionHelper helper,
+            GeoServerPasswordEncoder encoder) {
+        Map<String, Serializable> parameters = store.getConnectionParameters();
+        if (parameters != null) {
+            Map<String, Serializable> encrypted = null;
+            for (String key : helper.getEncryptedFields(store)) {
+                Serializable value = parameters.get(key);
+                if (value != null) {
+                    if (encrypted == null) {
+                        encrypted = new HashMap<>(parameters);
+                    }
+                    encrypted.put(key, encoder.encodePassword(value.toString(), null));
+                }
+            }
+            if (encrypted != null) {
+                replacements.put(parameters, encrypted);
+            }
+        }
+        if (store instanceof HTTPStoreInfo) {
+            String password = ((HTTPStoreInfo) store).getPassword();
+            if (password != null) {
+                passwords.put(store.getId(), encoder.encodePassword(password, null));
+                // the password is restored from the encrypted copy
+                replacements.put(password, "");
+            }
+        }
+    }
+
+    /**
+     * Decrypts the store passwords, once the stores have been restored
+     */
+    void decrypt(ConfigurationPasswordEncryptionHelper helper) {
+        for (StoreInfo store : stores) {
+            helper.decode(store);
+            String password = passwords.get(store.getId());
+            if (password != null && store instanceof HTTPStoreInfo) {
+                ((HTTPStoreInfo) store).setPassword(helper.decode(password));
+            }
+        }
+    }
+
+    static <T> List<T> unwrap(List<T> infos) {
+        return infos.stream().map(ModificationProxy::unwrap).collect(Collectors.toList());
+    }
+
+    /**
+     * Adds the snapshot contents to an empty catalog
+     */
+    void restore(Catalog catalog) {
+        workspaces.forEach(catalog::add);
+        namespaces.forEach(catalog::add);
+        styles.forEach(catalog::add);
+        stores.forEach(catalog::add);
+        resources.forEach(catalog::add);
+        layers.forEach(catalog::add);
+        layerGroups.forEach(catalog::add);
+
+        if (defaultWorkspace != null) {
+            catalog.setDefaultWorkspace(catalog.getWorkspace(defaultWorkspace));
+        }
+        if (defaultNamespace != null) {
+            catalog.setDefaultNamespace(catalog.getNamespace(defaultNamespace));
+        }
+        for (Map.Entry<String, String> entry : defaultDataStores.entrySet()) {
+            catalog.setDefaultDataStore(catalog.getWorkspace(entry.getKey()),
+                    catalog.getDataStore(entry.getValue()));
+        }
+    }
+
+    /**
+     * The number of catalog objects in the snapshot
+     */
+    int getSize() {
+        return workspaces.size() + namespaces.size() + styles.size() + stores.size()
+                + resources.size() + layers.size() + layerGroups.size();
+    }
+
+    static CatalogSnapshot read(Resource resource) throws IOException, ClassNotFoundException {
+        try (InputStream in = resource.in();
+                ObjectInputStream ois = new SnapshotInputStream(new BufferedInputStream(in))) {
+            return (CatalogSnapshot) ois.readObject();
+        }
+    }
+
+    void write(Resource resource) throws IOException {
+        try (OutputStream out = resource.out();
+                ObjectOutputStream oos = new SnapshotOutputStream(new BufferedOutputStream(out),
+                        replacements)) {
+            oos.writeObject(this);
+        }
+    }
+
+    static boolean isAllowed(String className) {
+        // arrays are checked against their component type
+        String name = className.replaceFirst("^\\[+", "");
+        if (name.length() == 1) {
+            // primitive array
+            return true;
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        for (String denied : DENIED_PACKAGES) {
+            if (name.startsWith(denied)) {
+                return false;
+            }
+        }
+        for (String allowed : ALLOWED_PACKAGES) {
+            if (name.startsWith(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the snapshot replacing the objects holding the clear text passwords
+     */
+    static class SnapshotOutputStream extends ObjectOutputStream {
+
+        Map<Object, Object> replacements;
+
+        SnapshotOutputStream(OutputStream out, Map<Object, Object> replacements)
+                throws IOException {
+            super(out);
+            this.replacements = replacements;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            Object replacement = replacements.get(obj);
+            return replacement != null ? replacement : obj;
+        }
+    }
+
+    /**
+     * Reads the snapshot, refusing any class that is not part of the catalog object graphs
+     */
+    static class SnapshotInputStream extends ObjectInputStream {
+
+        SnapshotInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(),
+                        "Class not allowed in a catalog snapshot");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces)
+                throws IOException, ClassNotFoundException {
+            for (String name : interfaces) {
+                if (!isAllowed(name)) {
+                    throw new InvalidClassException(name,
+                            "Class not allowed in a catalog snapshot");
+                }
+            }
+            return super.resolveProxyClass(interfaces);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogSnapshot [fingerprint=" + fingerprint + ", size=" + getSize() + "]";
+    }
+}
@@ -25,6 +25,7 @@ public class DefaultGeoServerLoader extends GeoServerLoader {
     
     ConfigurationListener listener;
     GeoServerPersister persister; 
+    WriteBehindWriter writer;
 
     public DefaultGeoServerLoader(GeoServerResourceLoader resourceLoader) {
         super(resourceLoader);
@@ -33,11 +34,21 @@ public class DefaultGeoServerLoader extends GeoServerLoader {
     protected void loadCatalog(Catalog catalog, XStreamPersister xp) throws Exception {
         catalog.setResourceLoader(resourceLoader);
 
+        if (writer == null) {
+            // first load, write down the changes a previous run journaled but did not write
+            WriteBehindWriter.recover(resourceLoader);
+            if (!legacy && WriteBehindWriter.isEnabled(resourceLoader)) {
+                writer = new WriteBehindWriter(resourceLoader);
+            }
+        } else {
+            writer.flush();
+        }
+
         readCatalog(catalog, xp);
         
         if ( !legacy ) {
             //add the listener which will persist changes
-            catalog.addListener( new GeoServerPersister( resourceLoader, xp ) );
+            catalog.addListener( new GeoServerPersister( resourceLoader, xp, writer ) );
         }
     }
     
@@ -60,7 +71,7 @@ public class DefaultGeoServerLoader extends GeoServerLoader {
                 geoserver.removeListener(persister);
             } else {
                 // lazy creation of the persister at the first need
-                this.persister = new GeoServerPersister(resourceLoader, xp);
+                this.persister = new GeoServerPersister(resourceLoader, xp, writer);
             }
             readConfiguration(geoServer, xp);
         } finally {
@@ -81,4 +92,14 @@ public class DefaultGeoServerLoader extends GeoServerLoader {
         catalog.removeListener(p);
     }
 
+    @Override
+    public void destroy() throws Exception {
+        // make sure the queued configuration changes are written down, and stop the writer
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        super.destroy();
+    }
+
 }
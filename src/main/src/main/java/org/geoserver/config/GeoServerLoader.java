@@ -10,14 +10,20 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.CoverageStoreInfo;
 import org.geoserver.catalog.DataStoreInfo;
@@ -27,6 +33,7 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.ResourcePool;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMSStoreInfo;
@@ -36,6 +43,8 @@ import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.Wrapper;
 import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.ResolvingProxy;
 import org.geoserver.catalog.util.LegacyCatalogImporter;
 import org.geoserver.catalog.util.LegacyCatalogReader;
 import org.geoserver.catalog.util.LegacyFeatureTypeInfoReader;
@@ -51,6 +60,9 @@ import org.geoserver.platform.resource.Resource;
 import org.geoserver.platform.resource.Resource.Type;
 import org.geoserver.platform.resource.Resources;
 import org.geoserver.platform.resource.Resources.ExtensionFilter;
+import org.geoserver.security.GeoServerSecurityManager;
+import org.geoserver.security.password.ConfigurationPasswordEncryptionHelper;
+import org.geoserver.security.password.GeoServerPasswordEncoder;
 import org.geoserver.util.Filter;
 import org.geoserver.util.IOUtils;
 import org.geotools.util.logging.Logging;
@@ -161,6 +173,82 @@ public abstract class GeoServerLoader {
         }
     }
     
+    /**
+     * Maps each store directory into a {@link StoreContents}
+     */
+    static final ResourceMapper<StoreContents> STORE_MAPPER = sd -> {
+        Resource f = sd.get("datastore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        f = sd.get("coveragestore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        f = sd.get("wmsstore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        f = sd.get("wmtsstore.xml");
+        if(Resources.exists(f)) {
+            return new StoreContents(f, f.getContents());
+        }
+        if(!isConfigDirectory(sd)) {
+            LOGGER.warning( "Ignoring store directory '" + sd.name() +  "'");
+        }
+        // nothing found
+        return null;
+    };
+
+    /**
+     * A store, and the futures of its resources and layers, depersisted in parallel and waiting
+     * to be added to the catalog
+     */
+    static final class LoadedStore {
+        Resource resource;
+        StoreInfo store;
+        List<Future<LoadedLayer>> layers = new ArrayList<>();
+
+        public LoadedStore(Resource resource, StoreInfo store) {
+            this.resource = resource;
+            this.store = store;
+        }
+    }
+
+    /**
+     * A resource and its layer, depersisted in parallel and waiting to be added to the catalog
+     */
+    static final class LoadedLayer {
+        Resource resource;
+        ResourceInfo info;
+        LayerInfo layer;
+
+        public LoadedLayer(Resource resource, ResourceInfo info, LayerInfo layer) {
+            this.resource = resource;
+            this.info = info;
+            this.layer = layer;
+        }
+    }
+
+    /**
+     * The number of threads depersisting stores, resources and layers, the parsing is CPU bound
+     * so it defaults to the number of available processors. One or less disables the parallel
+     * depersistence.
+     */
+    static int getDepersistThreads() {
+        String value = GeoServerExtensions.getProperty("org.geoserver.catalog.depersistThreads");
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (value != null) {
+            try {
+                threads = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid value " + value
+                        + " for org.geoserver.catalog.depersistThreads, using " + threads);
+            }
+        }
+        return threads;
+    }
+
     /** Feature Type IO resource mapper */
     static final ResourceLayerMapper FEATURE_LAYER_MAPPER = new ResourceLayerMapper("featuretype.xml", "feature type");
     /** Coverage IO resource mapper */
@@ -221,6 +309,7 @@ public abstract class GeoServerLoader {
     protected GeoServerResourceLoader resourceLoader;
     GeoServer geoserver;
     XStreamPersisterFactory xpf = new XStreamPersisterFactory();
+    int depersistThreads = getDepersistThreads();
     
     //JD: this is a hack for the moment, it is used only to maintain tests since the test setup relies
     // on the old data directory structure, once the tests have been ported to the new structure
@@ -425,6 +514,16 @@ public abstract class GeoServerLoader {
      * Reads the catalog from disk.
      */
     Catalog readCatalog( XStreamPersister xp ) throws Exception {
+        // a snapshot of the previous load can be used if no configuration file changed since
+        String fingerprint = null;
+        if (CatalogSnapshot.isEnabled()) {
+            fingerprint = CatalogSnapshot.getFingerprint(resourceLoader);
+            CatalogImpl restored = readSnapshot(xp, fingerprint);
+            if (restored != null) {
+                return restored;
+            }
+        }
+
         CatalogImpl catalog = new CatalogImpl();
         catalog.setResourceLoader(resourceLoader);
         xp.setCatalog( catalog );
@@ -519,51 +618,30 @@ public abstract class GeoServerLoader {
                 }
             }
 
-            // maps each store into a StoreContents
-            ResourceMapper<StoreContents> storeMapper = sd -> {
-                Resource f = sd.get("datastore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                f = sd.get("coveragestore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                f = sd.get("wmsstore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                f = sd.get("wmtsstore.xml");
-                if(Resources.exists(f)) {
-                    return new StoreContents(f, f.getContents());
-                }
-                if(!isConfigDirectory(sd)) {
-                    LOGGER.warning( "Ignoring store directory '" + sd.name() +  "'");
-                }
-                // nothing found
-                return null;
-                
-            };
-            
+            if (depersistThreads > 1) {
+                loadStores(workspaceList, catalog, checkStores);
+            }
             for (Resource wsd : workspaceList) {
-                // load the stores for this workspace
-                try (AsynchResourceIterator<StoreContents> it = new AsynchResourceIterator<>(wsd,
-                        Resources.DirectoryFilter.INSTANCE, storeMapper)) {
-                    while (it.hasNext()) {
-                        StoreContents storeContents = it.next();
-                        final String resourceName = storeContents.resource.name();
-                        if ("datastore.xml".equals(resourceName)) {
-                            loadDataStore(storeContents, catalog, xp, checkStores);
-                        } else if ("coveragestore.xml".equals(resourceName)) {
-                            loadCoverageStore(storeContents, catalog, xp);
-                        } else if ("wmsstore.xml".equals(resourceName)) {
-                            loadWmsStore(storeContents, catalog, xp);
-                        } else if ("wmtsstore.xml".equals(resourceName)) {
-                            loadWmtsStore(storeContents, catalog, xp);
-                        }else if (!isConfigDirectory(storeContents.resource)) {
-                            LOGGER.warning("Ignoring store directory '"
-                                    + storeContents.resource.name() + "'");
-                            continue;
+                // load the stores for this workspace, unless already loaded in parallel
+                if (depersistThreads <= 1) {
+                    try (AsynchResourceIterator<StoreContents> it = new AsynchResourceIterator<>(
+                            wsd, Resources.DirectoryFilter.INSTANCE, STORE_MAPPER)) {
+                        while (it.hasNext()) {
+                            StoreContents storeContents = it.next();
+                            final String resourceName = storeContents.resource.name();
+                            if ("datastore.xml".equals(resourceName)) {
+                                loadDataStore(storeContents, catalog, xp, checkStores);
+                            } else if ("coveragestore.xml".equals(resourceName)) {
+                                loadCoverageStore(storeContents, catalog, xp);
+                            } else if ("wmsstore.xml".equals(resourceName)) {
+                                loadWmsStore(storeContents, catalog, xp);
+                            } else if ("wmtsstore.xml".equals(resourceName)) {
+                                loadWmtsStore(storeContents, catalog, xp);
+                            }else if (!isConfigDirectory(storeContents.resource)) {
+                                LOGGER.warning("Ignoring store directory '"
+                                        + storeContents.resource.name() + "'");
+                                continue;
+                            }
                         }
                     }
                 }
@@ -590,8 +668,348 @@ public abstract class GeoServerLoader {
         if(!checkStores) {
             catalog.setExtendedValidation(true);
         }
+
+        if (fingerprint != null) {
+            writeSnapshot(catalog, fingerprint, xp);
+        }
         return catalog;
     }
+
+    /**
+     * Depersists the stores of the given workspaces, and their resources and layers, in parallel,
+     * then adds them all to the catalog, in the same order as the serial load. Each thread uses
+     * its own {@link XStreamPersister}, references among the objects are resolved once they are
+     * all in the catalog.
+     */
+    void loadStores(List<Resource> workspaceList, CatalogImpl catalog, boolean checkStores)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(depersistThreads);
+        ThreadLocal<XStreamPersister> persisters = ThreadLocal.withInitial(() -> {
+            XStreamPersister persister = xpf.createXMLPersister();
+            persister.setCatalog(catalog);
+            persister.setUnwrapNulls(false);
+            return persister;
+        });
+        try {
+            // depersist the stores
+            Map<Resource, List<Future<LoadedStore>>> storeFutures = new LinkedHashMap<>();
+            for (Resource wsd : workspaceList) {
+                List<Future<LoadedStore>> futures = new ArrayList<>();
+                for (Resource sd : wsd.list()) {
+                    if (Resources.DirectoryFilter.INSTANCE.accept(sd)) {
+                        futures.add(executor.submit(() -> depersistStore(sd, persisters.get())));
+                    }
+                }
+                storeFutures.put(wsd, futures);
+            }
+
+            // then their layers, as soon as each store is available
+            List<LoadedStore> stores = new ArrayList<>();
+            for (List<Future<LoadedStore>> futures : storeFutures.values()) {
+                for (Future<LoadedStore> future : futures) {
+                    LoadedStore ls = getLoaded(future);
+                    if (ls == null) {
+                        continue;
+                    }
+                    ResourceLayerMapper mapper = getLayerMapper(ls.store);
+                    Class<? extends ResourceInfo> clazz = getResourceClass(ls.store);
+                    for (Resource ld : ls.resource.parent().list()) {
+                        if (Resources.DirectoryFilter.INSTANCE.accept(ld)) {
+                            ls.layers.add(executor.submit(
+                                    () -> depersistLayer(ld, mapper, clazz, persisters.get())));
+                        }
+                    }
+                    stores.add(ls);
+                }
+            }
+
+            // add them all to the catalog in a single batch, no depersistence running meanwhile
+            for (LoadedStore ls : stores) {
+                for (Future<LoadedLayer> future : ls.layers) {
+                    getLoaded(future);
+                }
+            }
+            for (LoadedStore ls : stores) {
+                addStore(ls, catalog, checkStores);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static <T> T getLoaded(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to load resource", e.getCause());
+            return null;
+        }
+    }
+
+    LoadedStore depersistStore(Resource sd, XStreamPersister xp) {
+        StoreContents storeContents;
+        try {
+            storeContents = STORE_MAPPER.apply(sd);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load resource '" + sd.name() + "'", e);
+            return null;
+        }
+        if (storeContents == null) {
+            return null;
+        }
+
+        final String resourceName = storeContents.resource.name();
+        Class<? extends StoreInfo> clazz;
+        if ("datastore.xml".equals(resourceName)) {
+            clazz = DataStoreInfo.class;
+        } else if ("coveragestore.xml".equals(resourceName)) {
+            clazz = CoverageStoreInfo.class;
+        } else if ("wmsstore.xml".equals(resourceName)) {
+            clazz = WMSStoreInfo.class;
+        } else {
+            clazz = WMTSStoreInfo.class;
+        }
+        try {
+            return new LoadedStore(storeContents.resource,
+                    depersist(xp, storeContents.contents, clazz));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load store '" + sd.name() + "'", e);
+            return null;
+        }
+    }
+
+    LoadedLayer depersistLayer(Resource ld, ResourceLayerMapper mapper,
+            Class<? extends ResourceInfo> clazz, XStreamPersister xp) {
+        LayerContents lc;
+        try {
+            lc = mapper.apply(ld);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load resource '" + ld.name() + "'", e);
+            return null;
+        }
+        if (lc == null) {
+            return null;
+        }
+
+        ResourceInfo info;
+        try {
+            info = depersist(xp, lc.contents, clazz);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load resource", e);
+            return null;
+        }
+        LayerInfo layer = null;
+        try {
+            layer = depersist(xp, lc.layerContents, LayerInfo.class);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load layer " + lc.resource.name(), e);
+        }
+        return new LoadedLayer(lc.resource, info, layer);
+    }
+
+    static ResourceLayerMapper getLayerMapper(StoreInfo store) {
+        if (store instanceof DataStoreInfo) {
+            return FEATURE_LAYER_MAPPER;
+        } else if (store instanceof CoverageStoreInfo) {
+            return COVERAGE_LAYER_MAPPER;
+        } else if (store instanceof WMTSStoreInfo) {
+            return WMTS_LAYER_MAPPER;
+        }
+        return WMS_LAYER_MAPPER;
+    }
+
+    static Class<? extends ResourceInfo> getResourceClass(StoreInfo store) {
+        if (store instanceof DataStoreInfo) {
+            return FeatureTypeInfo.class;
+        } else if (store instanceof CoverageStoreInfo) {
+            return CoverageInfo.class;
+        } else if (store instanceof WMTSStoreInfo) {
+            return WMTSLayerInfo.class;
+        }
+        return WMSLayerInfo.class;
+    }
+
+    void addStore(LoadedStore ls, CatalogImpl catalog, boolean checkStores)
+            throws InterruptedException {
+        StoreInfo store = ls.store;
+        try {
+            catalog.add(store);
+
+            if (LOGGER.isLoggable(Level.INFO)) {
+                String type = store instanceof DataStoreInfo ? "data store"
+                        : store instanceof CoverageStoreInfo ? "coverage store"
+                        : store instanceof WMTSStoreInfo ? "wmtsstore" : "wmsstore";
+                LOGGER.info("Loaded " + type + " '" + store.getName() + "', "
+                        + (store.isEnabled() ? "enabled" : "disabled"));
+            }
+            if (checkStores && store instanceof DataStoreInfo && store.isEnabled()) {
+                checkDataStore((DataStoreInfo) store);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING,
+                    "Failed to load store '" + ls.resource.parent().name() + "'", e);
+            return;
+        }
+
+        for (Future<LoadedLayer> future : ls.layers) {
+            LoadedLayer ll = getLoaded(future);
+            if (ll == null) {
+                continue;
+            }
+            ResourceInfo info = ll.info;
+            try {
+                info.setStore(resolveReference(catalog, info.getStore()));
+                catalog.add(info);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to load resource", e);
+                continue;
+            }
+
+            if (LOGGER.isLoggable(Level.INFO)) {
+                String type = info instanceof CoverageInfo ? "coverage"
+                        : info instanceof FeatureTypeInfo ? "feature type" : "resource";
+                LOGGER.info("Loaded " + type + " '" + ll.resource.name() + "', "
+                        + (info.isEnabled() ? "enabled" : "disabled"));
+            }
+
+            if (ll.layer != null) {
+                try {
+                    ll.layer.setResource(resolveReference(catalog, ll.layer.getResource()));
+                    catalog.add(ll.layer);
+
+                    LOGGER.info("Loaded layer '" + ll.layer.getName() + "'");
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to load layer " + ll.resource.name(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves a reference that could not be resolved while depersisting, because the referenced
+     * object was not in the catalog yet
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends CatalogInfo> T resolveReference(Catalog catalog, T reference) {
+        T resolved = ResolvingProxy.resolve(catalog, reference);
+        return resolved != null ? (T) CatalogImpl.unwrap(resolved) : reference;
+    }
+
+    /**
+     * Connects to the data store, disabling it if the connection fails
+     */
+    void checkDataStore(DataStoreInfo ds) {
+        try {
+            ds.getDataStore(null);
+        } catch( Throwable t ) {
+            LOGGER.warning( "Error connecting to '" + ds.getName() + "'. Disabling." );
+            LOGGER.log( Level.INFO, "", t );
+            
+            ds.setError(t);
+            ds.setEnabled(false);
+        }
+    }
+
+    /**
+     * Reads the catalog from the snapshot, if present and matching the configuration files
+     *
+     * @return The catalog, or null if the snapshot could not be used
+     */
+    CatalogImpl readSnapshot(XStreamPersister xp, String fingerprint) {
+        Resource resource = resourceLoader.get(CatalogSnapshot.SNAPSHOT_FILE);
+        if (!Resources.exists(resource)) {
+            return null;
+        }
+        try {
+            CatalogSnapshot snapshot = CatalogSnapshot.read(resource);
+            if (!fingerprint.equals(snapshot.fingerprint)) {
+                LOGGER.info("The catalog snapshot is out of date, loading the configuration files");
+                return null;
+            }
+
+            CatalogImpl catalog = new CatalogImpl();
+            catalog.setResourceLoader(resourceLoader);
+            xp.setCatalog(catalog);
+            boolean checkStores = checkStoresOnStartup(xp);
+            if (!checkStores) {
+                catalog.setExtendedValidation(false);
+            }
+            snapshot.restore(catalog);
+            ConfigurationPasswordEncryptionHelper helper = getEncryptionHelper(xp);
+            if (helper != null) {
+                snapshot.decrypt(helper);
+            }
+            if (checkStores) {
+                for (DataStoreInfo ds : catalog.getDataStores()) {
+                    if (ds.isEnabled()) {
+                        checkDataStore(ModificationProxy.unwrap(ds));
+                    }
+                }
+            }
+            catalog.resolve();
+            if (!checkStores) {
+                catalog.setExtendedValidation(true);
+            }
+
+            LOGGER.info("Loaded the catalog from the snapshot, " + snapshot.getSize()
+                    + " objects");
+            return catalog;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING,
+                    "Failed to read the catalog snapshot, loading the configuration files", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the helper decrypting the store passwords, if the persister decrypts them
+     */
+    ConfigurationPasswordEncryptionHelper getEncryptionHelper(XStreamPersister xp) {
+        GeoServerSecurityManager secMgr = xp.isEncryptPasswordFields()
+                ? xp.getSecurityManager() : null;
+        return secMgr != null ? secMgr.getConfigPasswordEncryptionHelper() : null;
+    }
+
+    /**
+     * Writes the snapshot of a catalog just loaded from the configuration files
+     */
+    void writeSnapshot(Catalog catalog, String fingerprint, XStreamPersister xp) {
+        Resource resource = resourceLoader.get(CatalogSnapshot.SNAPSHOT_FILE);
+        for (StoreInfo store : catalog.getStores(StoreInfo.class)) {
+            if (store.getError() != null) {
+                // the store would stay disabled on the next startup
+                LOGGER.info("Not writing the catalog snapshot, store '" + store.getName()
+                        + "' failed to connect");
+                resource.delete();
+                return;
+            }
+        }
+        try {
+            ConfigurationPasswordEncryptionHelper helper = getEncryptionHelper(xp);
+            GeoServerPasswordEncoder encoder = null;
+            if (helper != null) {
+                // the security manager is initialized after the catalog, look up the encrypter
+                // in its configuration
+                GeoServerSecurityManager secMgr = xp.getSecurityManager();
+                Resource config = secMgr.security().get(GeoServerSecurityManager.CONFIG_FILENAME);
+                if (!Resources.exists(config)) {
+                    // first startup, the security configuration is not there yet
+                    LOGGER.info("Not writing the catalog snapshot, the security configuration "
+                            + "is missing");
+                    resource.delete();
+                    return;
+                }
+                String encoderName = secMgr.loadSecurityConfig().getConfigPasswordEncrypterName();
+                if (encoderName != null) {
+                    encoder = secMgr.loadPasswordEncoder(encoderName);
+                }
+            }
+            CatalogSnapshot.capture(catalog, fingerprint, helper, encoder).write(resource);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write the catalog snapshot", e);
+            resource.delete();
+        }
+    }
     
     private void loadWmsStore(StoreContents storeContents, CatalogImpl catalog,
             XStreamPersister xp) {
@@ -685,15 +1103,7 @@ public abstract class GeoServerLoader {
             
             if (checkStores && ds.isEnabled()) {
                 //connect to the datastore to determine if we should disable it
-                try {
-                    ds.getDataStore(null);
-                } catch( Throwable t ) {
-                    LOGGER.warning( "Error connecting to '" + ds.getName() + "'. Disabling." );
-                    LOGGER.log( Level.INFO, "", t );
-                    
-                    ds.setError(t);
-                    ds.setEnabled(false);
-                }
+                checkDataStore(ds);
             }
         } catch( Exception e ) {
             LOGGER.log( Level.WARNING, "Failed to load data store '" + storeResource.parent().name() + "'", e);
@@ -718,7 +1128,7 @@ public abstract class GeoServerLoader {
      * @param f
      *
      */
-    private boolean isConfigDirectory(Resource dir) {
+    private static boolean isConfigDirectory(Resource dir) {
         String name = dir.name();
         boolean result = "styles".equals(name) || "layergroups".equals(name);
         return result;
@@ -72,11 +72,31 @@ public class GeoServerPersister implements CatalogListener, ConfigurationListene
     GeoServerResourceLoader rl;
     GeoServerDataDirectory dd;
     XStreamPersister xp;
+    WriteBehindWriter writer;
     
     public GeoServerPersister(GeoServerResourceLoader rl, XStreamPersister xp) {
+        this(rl, xp, null);
+    }
+    
+    /**
+     * Creates a persister queueing its writes in the given write-behind writer, or writing them
+     * synchronously if the writer is null
+     */
+    GeoServerPersister(GeoServerResourceLoader rl, XStreamPersister xp, WriteBehindWriter writer) {
         this.rl = rl;
         this.dd = new GeoServerDataDirectory(rl);
         this.xp = xp;
+        this.writer = writer;
+    }
+    
+    /**
+     * Makes sure all the changes seen so far have been written to the configuration files, in
+     * case they are queued for a write-behind
+     */
+    public void flush() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
     }
     
     public void handleAddEvent(CatalogAddEvent event) {
@@ -792,10 +812,16 @@ public class GeoServerPersister implements CatalogListener, ConfigurationListene
     
     private void persist( Object o, Resource r ) throws IOException {
         try {
+            byte[] contents;
             synchronized ( xp ) {
                 ByteArrayOutputStream bos = new ByteArrayOutputStream();
                 xp.save(o, bos);
-                r.setContents(bos.toByteArray());
+                contents = bos.toByteArray();
+            }
+            if (writer != null) {
+                writer.write(r.path(), contents);
+            } else {
+                r.setContents(contents);
             }
             LOGGER.fine("Persisted " + o.getClass().getName() + " to " + r.path() );
         }
@@ -806,17 +832,32 @@ public class GeoServerPersister implements CatalogListener, ConfigurationListene
         }
     }
     
+    /**
+     * Removals, moves and copies work on the files, pending writes have to land first
+     */
+    private void flushPending() {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new CatalogException("Error writing the pending configuration changes", e);
+        }
+    }
+    
     private void rmRes(Resource r) {
+        flushPending();
         rl.remove(r.path());
     }
     private void renameRes(Resource r, String newName) {
+        flushPending();
         rl.move(r.path(), r.parent().get(newName).path());
     }
     private void moveResToDir(Resource r, Resource newDir) {
+        flushPending();
         rl.move(r.path(), newDir.get(r.name()).path());
     }
     
     private void copyResToDir(Resource r, Resource newDir) throws IOException {
+        flushPending();
         Resource newR = newDir.get(r.name());
         try(InputStream in = r.in();
             OutputStream out = newR.out()){
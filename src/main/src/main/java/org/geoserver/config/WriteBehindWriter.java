@@ -0,0 +1,464 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Write-behind storage of the configuration files written by the {@link GeoServerPersister}.
+ * <p>
+ * Writes are appended to a journal in the data directory and forced to disk before returning,
+ * concurrent writers sharing the same force, then queued in memory, coalesced by path with the
+ * last write winning, and written to the actual resources in batches by a background thread. Each
+ * batch gets its own journal segment, which is deleted only once all the batch files have been
+ * written, so that the segments left behind by a crash can be replayed by {@link #recover} on the
+ * next startup.
+ * </p>
+ * <p>
+ * Enabled by setting the <code>org.geoserver.config.writeBehind</code> variable to true, the
+ * <code>org.geoserver.config.writeBehind.delay</code> one controls how long changes are
+ * accumulated before being written, in milliseconds. Requires a data directory on the file
+ * system.
+ * </p>
+ */
+class WriteBehindWriter {
+
+    static final Logger LOGGER = Logging.getLogger(WriteBehindWriter.class);
+
+    static final String WRITE_BEHIND_PROPERTY = "org.geoserver.config.writeBehind";
+
+    static final String DELAY_PROPERTY = "org.geoserver.config.writeBehind.delay";
+
+    static final long DEFAULT_DELAY = 1000;
+
+    static final String JOURNAL_DIRECTORY = "catalog.journal";
+
+    static final String SEGMENT_EXTENSION = ".journal";
+
+    final GeoServerResourceLoader resourceLoader;
+
+    final File directory;
+
+    final long delay;
+
+    final ScheduledExecutorService executor;
+
+    /**
+     * The writes not yet performed, by resource path, guarded by this
+     */
+    Map<String, byte[]> pending = new LinkedHashMap<>();
+
+    /**
+     * The journal segments of the pending writes, guarded by this
+     */
+    List<Segment> segments = new ArrayList<>();
+
+    /**
+     * The segment new records are appended to, guarded by this, opened at the first write
+     */
+    Segment segment;
+
+    long sequence;
+
+    boolean flushScheduled;
+
+    WriteBehindWriter(GeoServerResourceLoader resourceLoader) throws IOException {
+        this(resourceLoader, getDelay());
+    }
+
+    WriteBehindWriter(GeoServerResourceLoader resourceLoader, long delay) throws IOException {
+        this.resourceLoader = resourceLoader;
+        this.directory = getJournalDirectory(resourceLoader);
+        this.delay = delay;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the journal directory " + directory);
+        }
+        // do not reuse the names of segments that could not be replayed
+        for (File file : listSegments(directory)) {
+            sequence = Math.max(sequence, getSequence(file) + 1);
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GeoServer configuration writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns true if write-behind is enabled and the data directory supports it
+     */
+    static boolean isEnabled(GeoServerResourceLoader resourceLoader) {
+        boolean enabled = Boolean
+                .parseBoolean(GeoServerExtensions.getProperty(WRITE_BEHIND_PROPERTY));
+        if (enabled && resourceLoader.getBaseDirectory() == null) {
+            LOGGER.warning("Configuration write-behind requires a data directory on the "
+                    + "file system, writing changes synchronously");
+            return false;
+        }
+        return enabled;
+    }
+
+    static long getDelay() {
+        String value = GeoServerExtensions.getProperty(DELAY_PROPERTY);
+        if (value != null) {
+            try {
+                long delay = Long.parseLong(value.trim());
+                if (delay >= 0) {
+                    return delay;
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            LOGGER.warning("Invalid value for " + DELAY_PROPERTY + ": " + value
+                    + ", using the default of " + DEFAULT_DELAY + "ms");
+        }
+        return DEFAULT_DELAY;
+    }
+
+    static File getJournalDirectory(GeoServerResourceLoader resourceLoader) {
+        return new File(resourceLoader.getBaseDirectory(), JOURNAL_DIRECTORY);
+    }
+
+    /**
+     * Writes to the configuration files the changes journaled, and not written, by a previous
+     * run, deleting the journal segments afterwards.
+     *
+     * @return The number of files written
+     */
+    static int recover(GeoServerResourceLoader resourceLoader) throws IOException {
+        if (resourceLoader.getBaseDirectory() == null) {
+            return 0;
+        }
+        File directory = getJournalDirectory(resourceLoader);
+        List<File> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        // segments are replayed in order, so that the latest write of each file wins
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        for (File segment : segments) {
+            read(segment, writes);
+        }
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            resourceLoader.get(write.getKey()).setContents(write.getValue());
+        }
+        for (File segment : segments) {
+            if (!segment.delete()) {
+                throw new IOException("Could not delete the replayed journal segment " + segment);
+            }
+        }
+        LOGGER.info("Recovered " + writes.size() + " configuration files from the journal in "
+                + directory);
+        return writes.size();
+    }
+
+    static List<File> listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, (f1, f2) -> Long.compare(getSequence(f1), getSequence(f2)));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    static long getSequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the records of a journal segment, stopping at the first incomplete or corrupted one,
+     * which can only be the result of a failure while it was being written, and was hence never
+     * acknowledged
+     */
+    static void read(File segment, Map<String, byte[]> writes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+        while (buffer.hasRemaining()) {
+            byte[] path = readBytes(buffer);
+            byte[] contents = path != null ? readBytes(buffer) : null;
+            if (contents == null || buffer.remaining() < 8
+                    || buffer.getLong() != checksum(path, contents)) {
+                LOGGER.warning("Ignoring the truncated or corrupted tail of journal segment "
+                        + segment);
+                return;
+            }
+            String key = new String(path, StandardCharsets.UTF_8);
+            // keep the write order of the latest writes
+            writes.remove(key);
+            writes.put(key, contents);
+        }
+    }
+
+    static byte[] readBytes(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static long checksum(byte[] path, byte[] contents) {
+        CRC32 crc = new CRC32();
+        crc.update(path);
+        crc.update(contents);
+        return crc.getValue();
+    }
+
+    static ByteBuffer encode(String path, byte[] contents) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(4 + pathBytes.length + 4 + contents.length + 8);
+        record.putInt(pathBytes.length);
+        record.put(pathBytes);
+        record.putInt(contents.length);
+        record.put(contents);
+        record.putLong(checksum(pathBytes, contents));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Queues the write of a configuration file. The change is durable once the method returns,
+     * but it reaches the file only at the next batch, or {@link #flush()}.
+     *
+     * @param path The resource path
+     * @param contents The full file contents
+     */
+    void write(String path, byte[] contents) throws IOException {
+        Segment current;
+        long end;
+        synchronized (this) {
+            current = append(path, contents);
+            end = current.written;
+            pending.put(path, contents);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flushQuietly, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        current.sync(end);
+    }
+
+    /**
+     * Appends a record to the current segment, opening one if needed. Call holding the lock.
+     */
+    Segment append(String path, byte[] contents) throws IOException {
+        if (segment == null) {
+            segment = new Segment(new File(directory, sequence++ + SEGMENT_EXTENSION));
+            segments.add(segment);
+        }
+        try {
+            segment.append(encode(path, contents));
+        } catch (IOException e) {
+            // a partial record hides the following ones at replay, carry on in a new segment
+            segment = null;
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Writes all the pending changes to the configuration files, returning once they are on disk
+     */
+    void flush() throws IOException {
+        Future<?> future = executor.submit(() -> {
+            writeBatch();
+            return null;
+        });
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing the pending changes");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to flush the pending configuration changes",
+                    e.getCause());
+        }
+    }
+
+    void flushQuietly() {
+        try {
+            writeBatch();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to write the pending configuration changes", e);
+        }
+    }
+
+    /**
+     * Writes the current batch, runs in the writer thread only
+     */
+    void writeBatch() throws IOException {
+        Map<String, byte[]> batch;
+        List<Segment> batchSegments;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            batchSegments = segments;
+            pending = new LinkedHashMap<>();
+            segments = new ArrayList<>();
+            segment = null;
+        }
+        // wait for forces in progress, no writer will use the segments anymore
+        for (Segment batchSegment : batchSegments) {
+            batchSegment.sync(batchSegment.written);
+            batchSegment.close();
+        }
+
+        Map<String, byte[]> failed = new LinkedHashMap<>();
+        IOException failure = null;
+        for (Map.Entry<String, byte[]> write : batch.entrySet()) {
+            try {
+                resourceLoader.get(write.getKey()).setContents(write.getValue());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write " + write.getKey(), e);
+                failed.put(write.getKey(), write.getValue());
+                failure = e;
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            // queue the failed writes again, unless superseded, journaling them in the
+            // current segment so that the batch ones can go
+            Segment current = null;
+            synchronized (this) {
+                for (Map.Entry<String, byte[]> write : failed.entrySet()) {
+                    if (!pending.containsKey(write.getKey())) {
+                        current = append(write.getKey(), write.getValue());
+                        pending.put(write.getKey(), write.getValue());
+                    }
+                }
+                if (!flushScheduled && !pending.isEmpty()) {
+                    flushScheduled = true;
+                    executor.schedule(this::flushQuietly, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (current != null) {
+                current.sync(current.written);
+            }
+        }
+        for (Segment batchSegment : batchSegments) {
+            batchSegment.delete();
+        }
+
+        if (failure != null) {
+            throw new IOException("Failed to write " + failed.size()
+                    + " configuration files, they will be retried", failure);
+        }
+    }
+
+    /**
+     * Writes the pending changes and stops the writer thread
+     */
+    void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            executor.shutdown();
+            synchronized (this) {
+                // written after the flush, will be replayed at the next startup
+                for (Segment open : segments) {
+                    open.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * A journal file. Records are appended holding the writer lock, while forces happen outside
+     * of it, so that a single force can cover the records of several concurrent writers.
+     */
+    static class Segment {
+
+        final File file;
+
+        final FileChannel channel;
+
+        final Object syncLock = new Object();
+
+        volatile long written;
+
+        volatile long synced;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+        }
+
+        void append(ByteBuffer record) throws IOException {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            written = channel.position();
+        }
+
+        /**
+         * Forces the segment to disk at least up to the given position
+         */
+        void sync(long position) throws IOException {
+            if (synced >= position) {
+                return;
+            }
+            synchronized (syncLock) {
+                if (synced >= position) {
+                    return;
+                }
+                // covers whatever has been appended so far, not just the caller's record
+                long target = written;
+                channel.force(false);
+                synced = target;
+            }
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                LOGGER.warning("Could not delete journal segment " + file);
+            }
+        }
+    }
+}
@@ -30,12 +30,26 @@ public class AlternativesResponseStream extends ServletOutputStream {
     Set myCompressibleTypes;
     Logger logger = org.geotools.util.logging.Logging.getLogger("org.geoserver.filters");
     int contentLength;
+    GZIPSettings settings;
+    String cacheKey;
 
     public AlternativesResponseStream(HttpServletResponse response, Set compressible, int contentLength) throws IOException {
+        this(response, compressible, contentLength, new GZIPSettings(), null);
+    }
+
+    /**
+     * @param settings The compression settings
+     * @param cacheKey Identifies the request in the cache of compressed responses, or null if the
+     *        response should not be cached
+     */
+    public AlternativesResponseStream(HttpServletResponse response, Set compressible,
+            int contentLength, GZIPSettings settings, String cacheKey) throws IOException {
         super();
         myResponse = response;
         myCompressibleTypes = compressible;
         this.contentLength = contentLength;
+        this.settings = settings;
+        this.cacheKey = cacheKey;
     }
 
     public void close() throws IOException {
@@ -71,7 +85,17 @@ public class AlternativesResponseStream extends ServletOutputStream {
         if (type != null && isCompressible(type)){
             logger.log(Level.FINE, "Compressing output for mimetype: {0}", type);
             myResponse.addHeader("Content-Encoding", "gzip");
-            myStream = new GZIPResponseStream(myResponse);
+            String key = getCompressedCacheKey(type);
+            byte[] cached = key == null ? null : settings.getCache().get(key);
+            if (cached != null) {
+                // same entity tag, same content, no need to compress it again
+                logger.log(Level.FINE, "Using the cached compressed output for {0}", key);
+                myResponse.setContentLength(cached.length);
+                myResponse.getOutputStream().write(cached);
+                myStream = new DiscardingResponseStream();
+            } else {
+                myStream = new GZIPResponseStream(myResponse, settings, key);
+            }
         } else {
             logger.log(Level.FINE, "Not compressing output for mimetype: {0}", type);
             if(contentLength >= 0) {
@@ -83,6 +107,22 @@ public class AlternativesResponseStream extends ServletOutputStream {
         return myStream;
     }
 
+    /**
+     * Returns the key of the compressed response in the cache, or null if the response cannot be
+     * cached. Only successful responses with a strong entity tag are cached, as a strong entity tag
+     * guarantees the content is the same, byte by byte.
+     */
+    String getCompressedCacheKey(String type) {
+        if (cacheKey == null || settings.getCache() == null || myResponse.getStatus() != 200) {
+            return null;
+        }
+        String etag = myResponse.getHeader("ETag");
+        if (etag == null || etag.startsWith("W/")) {
+            return null;
+        }
+        return cacheKey + "|" + type + "|" + etag;
+    }
+
     protected boolean isDirty(){
         return myStream != null;
     }
@@ -110,4 +150,20 @@ public class AlternativesResponseStream extends ServletOutputStream {
 
         return mimetype;
     }
+
+    /**
+     * Ignores the output, used when the compressed response has been found in the cache
+     */
+    static class DiscardingResponseStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            // already written
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // already written
+        }
+    }
 }
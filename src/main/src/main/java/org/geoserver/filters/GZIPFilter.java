@@ -30,6 +30,8 @@ public class GZIPFilter implements Filter {
 
     private Set myCompressedTypes;
 
+    private GZIPSettings settings = new GZIPSettings();
+
     public void doFilter(ServletRequest req, ServletResponse res,
             FilterChain chain) throws IOException, ServletException {
         if (req instanceof HttpServletRequest) {
@@ -37,8 +39,9 @@ public class GZIPFilter implements Filter {
             HttpServletResponse response = (HttpServletResponse) res;
             String ae = request.getHeader("accept-encoding");
             if (ae != null && ae.indexOf("gzip") != -1) {
-                GZIPResponseWrapper wrappedResponse =
-                    new GZIPResponseWrapper(response, myCompressedTypes, request.getRequestURL().toString());
+                String url = request.getRequestURL().toString();
+                GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response,
+                        myCompressedTypes, url, settings, getCacheKey(request, url));
                 chain.doFilter(req, wrappedResponse);
                 wrappedResponse.finishResponse();
                 return;
@@ -48,6 +51,17 @@ public class GZIPFilter implements Filter {
         chain.doFilter(req, res);
     }
 
+    /**
+     * Only the GET requests are cached, the response of the other ones depends on the body
+     */
+    String getCacheKey(HttpServletRequest request, String url) {
+        if (settings.getCache() == null || !"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        String query = request.getQueryString();
+        return query == null ? url : url + "?" + query;
+    }
+
     public void init(FilterConfig filterConfig) {
         try {
             String compressedTypes = filterConfig.getInitParameter("compressed-types");
@@ -61,8 +75,10 @@ public class GZIPFilter implements Filter {
         } catch (Exception e){
             System.out.println("Error while setting up GZIPFilter; " + e);
         }
+        settings = new GZIPSettings(filterConfig);
     }
 
     public void destroy() {
+        settings.dispose();
     }
 }
@@ -4,39 +4,106 @@
  */
 package org.geoserver.filters;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
+import org.geoserver.catalog.ResourceCache;
+
 /**
- * A simple streaming gzipping servlet output stream wrapper
+ * A simple streaming gzipping servlet output stream wrapper.
+ * <p>
+ * The compression level, buffer size and parallel block compression are controlled by the
+ * {@link GZIPSettings}. When given a cache key the compressed output is also captured, and cached
+ * once complete, if small enough and the response is successful.
+ * </p>
  * 
  * @author Andrea Aime - GeoSolutions
  */
 public class GZIPResponseStream extends ServletOutputStream {
     protected GZIPOutputStream gzipstream = null;
 
+    /**
+     * The stream compressing in parallel blocks, used instead of {@link #gzipstream} if enabled
+     */
+    protected ParallelGZIPOutputStream parallelstream = null;
+
     protected boolean closed = false;
 
+    HttpServletResponse response;
+
+    CapturingOutputStream capture;
+
+    ResourceCache<String, byte[]> cache;
+
+    String cacheKey;
+
     public GZIPResponseStream(HttpServletResponse response) throws IOException {
+        this(response, new GZIPSettings(), null);
+    }
+
+    /**
+     * @param response The response to be compressed
+     * @param settings The compression settings
+     * @param cacheKey The key used to cache the compressed output, or null to avoid caching it
+     */
+    public GZIPResponseStream(HttpServletResponse response, GZIPSettings settings,
+            String cacheKey) throws IOException {
         super();
         closed = false;
-        gzipstream = new GZIPOutputStream(response.getOutputStream(), 4096, true);
+        this.response = response;
+        OutputStream out = response.getOutputStream();
+        if (cacheKey != null && settings.getCache() != null) {
+            this.cache = settings.getCache();
+            this.cacheKey = cacheKey;
+            this.capture = new CapturingOutputStream(out, settings.maxCachedResponseSize);
+            out = capture;
+        }
+        if (settings.isParallel()) {
+            parallelstream = new ParallelGZIPOutputStream(out, settings.deflaters,
+                    settings.parallelThreads, settings.compressionLevel, settings.blockSize);
+        } else {
+            final int level = settings.compressionLevel;
+            gzipstream = new GZIPOutputStream(out, settings.bufferSize, true) {
+                {
+                    if (level != Deflater.DEFAULT_COMPRESSION) {
+                        def.setLevel(level);
+                    }
+                }
+            };
+        }
+    }
+
+    private OutputStream getCompressedStream() {
+        return parallelstream != null ? parallelstream : gzipstream;
     }
 
     public void close() throws IOException {
         if (closed) {
             throw new IOException("This output stream has already been closed");
         }
-        gzipstream.finish();
+        if (parallelstream != null) {
+            parallelstream.finish();
+        } else {
+            gzipstream.finish();
+        }
         closed = true;
+
+        // only successful responses are worth caching
+        if (capture != null && !capture.isOverflown() && response.getStatus() == 200) {
+            cache.put(cacheKey, capture.getCaptured());
+        }
     }
 
     public void flush() throws IOException {
         if (!closed) {
-            gzipstream.flush();
+            getCompressedStream().flush();
         }
     }
 
@@ -44,7 +111,7 @@ public class GZIPResponseStream extends ServletOutputStream {
         if (closed) {
             throw new IOException("Cannot write to a closed output stream");
         }
-        gzipstream.write((byte) b);
+        getCompressedStream().write((byte) b);
     }
 
     public void write(byte b[]) throws IOException {
@@ -55,11 +122,58 @@ public class GZIPResponseStream extends ServletOutputStream {
         if (closed) {
             throw new IOException("Cannot write to a closed output stream");
         }
-        gzipstream.write(b, off, len);
+        getCompressedStream().write(b, off, len);
     }
 
     public boolean closed() {
         return (this.closed);
     }
 
+    /**
+     * Copies the data written to the wrapped stream in memory, up to a max size
+     */
+    static class CapturingOutputStream extends FilterOutputStream {
+
+        final int maxSize;
+
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream out, int maxSize) {
+            super(out);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (captured != null) {
+                captured.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (captured != null) {
+                captured.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        private void checkSize() {
+            if (captured.size() > maxSize) {
+                captured = null;
+            }
+        }
+
+        boolean isOverflown() {
+            return captured == null;
+        }
+
+        byte[] getCaptured() {
+            return captured.toByteArray();
+        }
+    }
+
 }
@@ -28,18 +28,33 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
     protected Set formatsToCompress;
     protected String requestedURL;
     protected Logger logger = org.geotools.util.logging.Logging.getLogger("org.geoserver.filters");
+    protected GZIPSettings settings;
+    protected String cacheKey;
     private int contentLength = -1;
 
     public GZIPResponseWrapper(HttpServletResponse response, Set toCompress, String url) {
+        this(response, toCompress, url, new GZIPSettings(), null);
+    }
+
+    /**
+     * @param settings The compression settings
+     * @param cacheKey Identifies the request in the cache of compressed responses, or null if the
+     *        response should not be cached
+     */
+    public GZIPResponseWrapper(HttpServletResponse response, Set toCompress, String url,
+            GZIPSettings settings, String cacheKey) {
         super(response);
         requestedURL = url;
         origResponse = response;
         // TODO: allow user-configured format list here
         formatsToCompress = toCompress;
+        this.settings = settings;
+        this.cacheKey = cacheKey;
     }
 
     protected AlternativesResponseStream createOutputStream() throws IOException {
-        return new AlternativesResponseStream(origResponse, formatsToCompress, contentLength);
+        return new AlternativesResponseStream(origResponse, formatsToCompress, contentLength,
+                settings, cacheKey);
     }
 
     
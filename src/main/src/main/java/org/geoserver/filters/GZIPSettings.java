@@ -0,0 +1,148 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.filters;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+import javax.servlet.FilterConfig;
+
+import org.geoserver.catalog.ResourceCache;
+import org.geotools.util.logging.Logging;
+
+/**
+ * The compression settings of the {@link GZIPFilter}, read from the filter init parameters:
+ * <ul>
+ * <li><code>compression-level</code>: the deflate level, from 1 (fastest) to 9 (smallest), the
+ * zlib default otherwise</li>
+ * <li><code>buffer-size</code>: the size of the compressed output buffer, 4096 by default</li>
+ * <li><code>parallel-threads</code>: the number of threads compressing large responses in
+ * parallel blocks, 0 (the default) disables parallel compression</li>
+ * <li><code>parallel-block-size</code>: the size of the blocks compressed in parallel, 128KB by
+ * default. Responses shorter than a block are always compressed in the request thread</li>
+ * <li><code>cache-size</code>: the max size in bytes of the cache of compressed responses, 0 (the
+ * default) disables the cache. Only the responses with a strong <code>ETag</code> are cached</li>
+ * <li><code>cache-max-response-size</code>: the max size of a single cached compressed response,
+ * 1MB by default</li>
+ * </ul>
+ */
+public class GZIPSettings {
+
+    static final Logger LOGGER = Logging.getLogger(GZIPSettings.class);
+
+    static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    static final int DEFAULT_MAX_RESPONSE_SIZE = 1024 * 1024;
+
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    int blockSize = DEFAULT_BLOCK_SIZE;
+
+    int parallelThreads;
+
+    ExecutorService deflaters;
+
+    ResourceCache<String, byte[]> cache;
+
+    int maxCachedResponseSize = DEFAULT_MAX_RESPONSE_SIZE;
+
+    /**
+     * Settings with the default values, no parallel compression and no cache
+     */
+    public GZIPSettings() {
+    }
+
+    public GZIPSettings(FilterConfig config) {
+        compressionLevel = getInt(config, "compression-level", Deflater.DEFAULT_COMPRESSION);
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION
+                || compressionLevel > Deflater.BEST_COMPRESSION) {
+            LOGGER.warning("Invalid GZIP compression level " + compressionLevel
+                    + ", using the default one");
+            compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        }
+        bufferSize = Math.max(512, getInt(config, "buffer-size", DEFAULT_BUFFER_SIZE));
+        blockSize = Math.max(32 * 1024, getInt(config, "parallel-block-size",
+                DEFAULT_BLOCK_SIZE));
+        parallelThreads = getInt(config, "parallel-threads", 0);
+        if (parallelThreads > 0) {
+            deflaters = new ThreadPoolExecutor(parallelThreads, parallelThreads, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DeflaterThreadFactory());
+            ((ThreadPoolExecutor) deflaters).allowCoreThreadTimeOut(true);
+        }
+        maxCachedResponseSize = getInt(config, "cache-max-response-size",
+                DEFAULT_MAX_RESPONSE_SIZE);
+        int cacheSize = getInt(config, "cache-size", 0);
+        if (cacheSize > 0) {
+            cache = new ResourceCache<String, byte[]>("gzipResponses", cacheSize, 0) {
+
+                @Override
+                protected int weigh(String key, byte[] value) {
+                    return value.length + key.length() * 2;
+                }
+            };
+        }
+    }
+
+    static int getInt(FilterConfig config, String name, int defaultValue) {
+        String value = config.getInitParameter(name);
+        if (value == null && config.getServletContext() != null) {
+            value = config.getServletContext().getInitParameter(name);
+        }
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for GZIP filter parameter " + name + ": " + value
+                        + ", using the default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * The cache of the compressed responses, or null if caching is disabled
+     */
+    public ResourceCache<String, byte[]> getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns true if the large responses are compressed in parallel blocks
+     */
+    public boolean isParallel() {
+        return deflaters != null;
+    }
+
+    void dispose() {
+        if (deflaters != null) {
+            deflaters.shutdown();
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    static class DeflaterThreadFactory implements ThreadFactory {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "gzip-deflater-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
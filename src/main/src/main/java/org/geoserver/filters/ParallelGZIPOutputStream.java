@@ -0,0 +1,280 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A GZIP output stream compressing the data in blocks, in parallel.
+ * <p>
+ * Each block is deflated independently, using the last 32KB of the previous block as the
+ * dictionary, and ends with a sync flush, so that the blocks can be concatenated in a single
+ * deflate stream, the same approach used by <code>pigz</code>. The compression ratio is almost the
+ * same as compressing sequentially. Only a bounded number of blocks is kept in memory, waiting to
+ * be written out.
+ * </p>
+ * <p>
+ * The first block is compressed in the calling thread if the stream is finished before the block
+ * is full, so that small outputs do not pay for the thread hand-off.
+ * </p>
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    final OutputStream out;
+
+    final ExecutorService executor;
+
+    final int level;
+
+    final int blockSize;
+
+    final int maxPending;
+
+    final CRC32 crc = new CRC32();
+
+    final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    byte[] block;
+
+    int count;
+
+    byte[] dictionary;
+
+    long size;
+
+    boolean headerWritten;
+
+    boolean finished;
+
+    /**
+     * @param out The stream receiving the compressed data
+     * @param executor The executor compressing the blocks
+     * @param threads The number of threads of the executor, bounds the blocks kept in memory
+     * @param level The compression level
+     * @param blockSize The size of each block
+     */
+    public ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, int threads,
+            int level, int blockSize) {
+        this.out = out;
+        this.executor = executor;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPending = Math.max(2, threads * 2);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) {
+            throw new IOException("Cannot write to a finished stream");
+        }
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submit(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Cannot write to a finished stream");
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses the data written so far, and writes it out
+     */
+    @Override
+    public void flush() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (count > 0) {
+            submit(false);
+        }
+        drain(0);
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining data and writes the GZIP trailer, without closing the wrapped
+     * stream
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        submit(true);
+        drain(0);
+        writeInt((int) crc.getValue());
+        writeInt((int) size);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        byte[] data = count == blockSize ? block : Arrays.copyOf(block, count);
+        crc.update(data, 0, data.length);
+        size += data.length;
+        byte[] dict = dictionary;
+        BlockDeflater deflater = new BlockDeflater(data, dict, level, last);
+
+        // the next block uses the tail of this one as its dictionary
+        if (data.length >= DICTIONARY_SIZE) {
+            dictionary = Arrays.copyOfRange(data, data.length - DICTIONARY_SIZE, data.length);
+        } else if (data.length > 0) {
+            byte[] merged = dict == null ? data : concat(dict, data);
+            dictionary = Arrays.copyOfRange(merged, Math.max(0, merged.length - DICTIONARY_SIZE),
+                    merged.length);
+        }
+        block = new byte[blockSize];
+        count = 0;
+
+        if (last && pending.isEmpty()) {
+            // nothing to wait for, no need to hand off
+            writeBlock(deflater.call());
+            return;
+        }
+        try {
+            pending.add(executor.submit(deflater));
+        } catch (RejectedExecutionException e) {
+            drain(0);
+            writeBlock(deflater.call());
+            return;
+        }
+        drain(maxPending);
+    }
+
+    private byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Writes out the compressed blocks, in order, until no more than the given number is pending
+     */
+    private void drain(int max) throws IOException {
+        while (pending.size() > max) {
+            Future<byte[]> future = pending.removeFirst();
+            try {
+                writeBlock(future.get());
+            } catch (InterruptedException e) {
+                cancelPending();
+                throw new InterruptedIOException("Interrupted while compressing the output");
+            } catch (ExecutionException e) {
+                cancelPending();
+                throw new IOException("Failed to compress the output", e.getCause());
+            }
+        }
+    }
+
+    private void cancelPending() {
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    private void writeBlock(byte[] compressed) throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            headerWritten = true;
+        }
+        out.write(compressed);
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    /**
+     * Deflates a single block
+     */
+    static class BlockDeflater implements Callable<byte[]> {
+
+        final byte[] data;
+
+        final byte[] dictionary;
+
+        final int level;
+
+        final boolean last;
+
+        BlockDeflater(byte[] data, byte[] dictionary, int level, boolean last) {
+            this.data = data;
+            this.dictionary = dictionary;
+            this.level = level;
+            this.last = last;
+        }
+
+        @Override
+        public byte[] call() {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(data);
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2 + 64);
+                byte[] buffer = new byte[16 * 1024];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int n = deflater.deflate(buffer);
+                        bos.write(buffer, 0, n);
+                    }
+                } else {
+                    int n;
+                    do {
+                        n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        bos.write(buffer, 0, n);
+                    } while (n == buffer.length);
+                }
+                return bos.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
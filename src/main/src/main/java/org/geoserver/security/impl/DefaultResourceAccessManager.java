@@ -8,11 +8,18 @@ package org.geoserver.security.impl;
 import static org.geoserver.security.impl.DataAccessRule.ANY;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -26,11 +33,17 @@ import org.geoserver.catalog.LayerGroupInfo.Mode;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.Predicates;
 import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceCache;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMTSLayerInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.platform.GeoServerExtensions;
@@ -40,6 +53,7 @@ import org.geoserver.security.CatalogMode;
 import org.geoserver.security.CoverageAccessLimits;
 import org.geoserver.security.DataAccessLimits;
 import org.geoserver.security.DataAccessManager;
+import org.geoserver.security.GeoServerSecurityFilterChainProxy;
 import org.geoserver.security.InMemorySecurityFilter;
 import org.geoserver.security.LayerGroupAccessLimits;
 import org.geoserver.security.ResourceAccessManager;
@@ -52,6 +66,7 @@ import org.geoserver.security.impl.LayerGroupContainmentCache.LayerGroupSummary;
 import org.geotools.util.logging.Logging;
 import org.opengis.filter.Filter;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 /**
  * Default implementation of {@link DataAccessManager}, loads simple access
@@ -79,6 +94,10 @@ import org.springframework.security.core.Authentication;
  * If no {@link Properties} is provided, one will be looked upon in
  * <code>GEOSERVER_DATA_DIR/security/layers.properties, and the class will
  * keep up to date vs changes in the file</code>
+ * <p>
+ * The access decisions are cached by role set, object and access mode, the cache is cleared when
+ * the rules are reloaded or the catalog changes. The max number of cached decisions is set by the
+ * <code>ACCESS_DECISION_CACHE_MAX_SIZE</code> variable, zero disables the cache.
  * 
  * @author Andrea Aime - TOPP
  */
@@ -107,7 +126,7 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         
     }
     
-    SecureTreeNode root;
+    volatile SecureTreeNode root;
 
     DataAccessRuleDAO dao;
     
@@ -117,6 +136,27 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
     
     LayerGroupContainmentCache groupsCache;
 
+    static final String DECISION_CACHE_SIZE_PROPERTY = "ACCESS_DECISION_CACHE_MAX_SIZE";
+
+    static final long DEFAULT_DECISION_CACHE_SIZE = 10000;
+
+    /**
+     * The access decisions, null if caching is disabled
+     */
+    final ResourceCache<AccessKey, Boolean> decisions;
+
+    /**
+     * Incremented on each clear of the decisions, the ones computed while the cache is cleared
+     * are not kept
+     */
+    final AtomicLong decisionsGeneration = new AtomicLong();
+
+    /**
+     * The access limits built so far, by catalog mode, resource class and access, they are
+     * immutable and can be shared
+     */
+    final Map<List<Object>, DataAccessLimits> limits = new ConcurrentHashMap<>();
+
     @Deprecated
     public DefaultResourceAccessManager(DataAccessRuleDAO dao) {
         this(dao, (Catalog) GeoServerExtensions.bean("rawCatalog"));
@@ -133,6 +173,83 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         this.rawCatalog = rawCatalog;
         this.root = buildAuthorizationTree(dao);
         this.groupsCache = new LayerGroupContainmentCache(rawCatalog);
+        long cacheSize = getDecisionCacheSize();
+        if (cacheSize > 0) {
+            this.decisions = new ResourceCache<>("accessDecisions", cacheSize, 0);
+            if (rawCatalog != null) {
+                rawCatalog.addListener(new DecisionCacheCleaner());
+            }
+        } else {
+            this.decisions = null;
+        }
+    }
+
+    static long getDecisionCacheSize() {
+        String value = GeoServerExtensions.getProperty(DECISION_CACHE_SIZE_PROPERTY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + DECISION_CACHE_SIZE_PROPERTY + ": " + value
+                        + ", using the default " + DEFAULT_DECISION_CACHE_SIZE);
+            }
+        }
+        return DEFAULT_DECISION_CACHE_SIZE;
+    }
+
+    /**
+     * Returns the access decision cache statistics, including its hit rate, or null if the
+     * decisions are not cached
+     */
+    public ResourceCache.Statistics getDecisionCacheStatistics() {
+        return decisions == null ? null : decisions.getStatistics();
+    }
+
+    /**
+     * Drops all the cached access decisions
+     */
+    public void clearDecisionCache() {
+        decisionsGeneration.incrementAndGet();
+        if (decisions != null) {
+            decisions.clear();
+        }
+    }
+
+    /**
+     * Returns the cached access decision, or computes and caches it. Decisions about objects not
+     * yet in the catalog, or for requests that bypass security, are not cached.
+     */
+    boolean cached(Authentication user, String id, String workspace, String name,
+            AccessMode mode, boolean directAccess, BooleanSupplier decision) {
+        if (decisions == null || id == null
+                || !GeoServerSecurityFilterChainProxy.isSecurityEnabledForCurrentRequest()) {
+            return decision.getAsBoolean();
+        }
+
+        AccessKey key = new AccessKey(getRoles(user), id, workspace, name, mode, directAccess,
+                layerGroupContainmentCheckRequired());
+        Boolean result = decisions.get(key);
+        if (result == null) {
+            long generation = decisionsGeneration.get();
+            result = decision.getAsBoolean();
+            decisions.put(key, result);
+            // the rules or the catalog changed meanwhile, the decision might be stale
+            if (decisionsGeneration.get() != generation) {
+                decisions.remove(key);
+            }
+        }
+        return result;
+    }
+
+    private Set<String> getRoles(Authentication user) {
+        if (user == null || user.getAuthorities() == null) {
+            return null;
+        }
+        Set<String> roles = new HashSet<>();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        return roles;
     }
 
     
@@ -143,6 +260,12 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
 
     public boolean canAccess(Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         checkPropertyFile();
+        return cached(user, workspace.getId(), workspace.getName(), null, mode, true,
+                () -> canAccessWorkspace(user, workspace, mode));
+    }
+
+    private boolean canAccessWorkspace(Authentication user, WorkspaceInfo workspace,
+            AccessMode mode) {
         SecureTreeNode node = root.getDeepestNode(new String[] { workspace.getName() });
         if(node.canAccess(user, mode)) {
             return true;
@@ -207,7 +330,14 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
             // it's a layer whose resource we don't know about
             return true;
         }
-        
+        return cached(user, resource.getId(), workspace, resourceName, mode, directAccess,
+                () -> canAccess(user, resource, workspace, mode, directAccess));
+    }
+
+    private boolean canAccess(Authentication user, ResourceInfo resource, String workspace,
+            AccessMode mode, boolean directAccess) {
+        final String resourceName = resource.getName();
+
         // if we have a catalog rule that is at resource level, it's the most specific type,
         // it wins. Or it could be that we do not need to check layer groups at all
         SecureTreeNode securityNode = root.getDeepestNode(new String[] { workspace, resourceName });
@@ -315,6 +445,7 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         if(lastLoaded < daoLastModified || force) {
             root = buildAuthorizationTree(dao);
             lastLoaded = daoLastModified;
+            clearDecisionCache();
         }
     }
 
@@ -396,6 +527,18 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
             return null;
         }
 
+        // only the include/exclude filters are used here, the limits can be reused
+        if ((readFilter == Filter.INCLUDE || readFilter == Filter.EXCLUDE)
+                && (writeFilter == Filter.INCLUDE || writeFilter == Filter.EXCLUDE)) {
+            List<Object> key = Arrays.asList(mode, resourceClass, readFilter, writeFilter);
+            return limits.computeIfAbsent(key,
+                    k -> buildLimits(mode, resourceClass, readFilter, writeFilter));
+        }
+        return buildLimits(mode, resourceClass, readFilter, writeFilter);
+    }
+
+    private DataAccessLimits buildLimits(CatalogMode mode,
+            Class<? extends ResourceInfo> resourceClass, Filter readFilter, Filter writeFilter) {
         // build the appropriate limit class
         if (FeatureTypeInfo.class.isAssignableFrom(resourceClass)) {
             return new VectorAccessLimits(mode, null, readFilter, null, writeFilter);
@@ -436,12 +579,21 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
 
     @Override
     public LayerGroupAccessLimits getAccessLimits(Authentication user, LayerGroupInfo layerGroup, List<LayerGroupInfo> containers) {
+        checkPropertyFile();
         boolean allowAccess = canAccess(user, layerGroup, containers == null || containers.isEmpty());
         return allowAccess ? null : new LayerGroupAccessLimits(getMode());
     }
     
     
     private boolean canAccess(Authentication user, LayerGroupInfo layerGroup, boolean directAccess) {
+        String workspace = layerGroup.getWorkspace() == null ? null
+                : layerGroup.getWorkspace().getName();
+        return cached(user, layerGroup.getId(), workspace, layerGroup.getName(), AccessMode.READ,
+                directAccess, () -> canAccessGroup(user, layerGroup, directAccess));
+    }
+
+    private boolean canAccessGroup(Authentication user, LayerGroupInfo layerGroup,
+            boolean directAccess) {
         String[] path = getLayerGroupPath(layerGroup);
         SecureTreeNode node = root.getDeepestNode(path);
         boolean catalogNodeAllowsAccess = node.canAccess(user, AccessMode.READ);
@@ -645,5 +797,89 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         return getAccessLimits(user, layerGroup, Collections.emptyList());
     }
 
+    /**
+     * The key of a cached access decision
+     */
+    static class AccessKey {
+
+        final Set<String> roles;
+
+        final String id;
+
+        final String workspace;
+
+        final String name;
+
+        final AccessMode mode;
+
+        final boolean directAccess;
+
+        final boolean groupsCheck;
+
+        AccessKey(Set<String> roles, String id, String workspace, String name, AccessMode mode,
+                boolean directAccess, boolean groupsCheck) {
+            this.roles = roles;
+            this.id = id;
+            this.workspace = workspace;
+            this.name = name;
+            this.mode = mode;
+            this.directAccess = directAccess;
+            this.groupsCheck = groupsCheck;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roles, id, workspace, name, mode, directAccess, groupsCheck);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AccessKey)) {
+                return false;
+            }
+            AccessKey other = (AccessKey) obj;
+            return id.equals(other.id) && mode == other.mode
+                    && directAccess == other.directAccess && groupsCheck == other.groupsCheck
+                    && Objects.equals(workspace, other.workspace)
+                    && Objects.equals(name, other.name) && Objects.equals(roles, other.roles);
+        }
+
+        @Override
+        public String toString() {
+            return roles + " " + workspace + ":" + name + " " + mode;
+        }
+    }
+
+    /**
+     * Drops the cached decisions when the catalog changes, as they depend on the names of the
+     * objects and on the layer group structure
+     */
+    class DecisionCacheCleaner implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) {
+            clearDecisionCache();
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) {
+            clearDecisionCache();
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) {
+            // wait for the change to be applied
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+            clearDecisionCache();
+        }
+
+        @Override
+        public void reloaded() {
+            clearDecisionCache();
+        }
+    }
+
 }
- 
\ No newline at end of file
@@ -0,0 +1,107 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * A bounded pool of named daemon threads, created on first use.
+ * <p>
+ * The number of threads is looked up on first use and kept until the pool is
+ * {@link #dispose() disposed}, zero or negative disables the pool. Idle threads are let go after a
+ * minute.
+ * </p>
+ */
+public class LazyThreadPool {
+
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    final String name;
+
+    final IntSupplier threadsSupplier;
+
+    volatile Integer threads;
+
+    volatile ExecutorService pool;
+
+    /**
+     * @param name The prefix of the thread names
+     * @param threadsSupplier Provides the number of threads, zero or negative to disable the pool
+     */
+    public LazyThreadPool(String name, IntSupplier threadsSupplier) {
+        this.name = name;
+        this.threadsSupplier = threadsSupplier;
+    }
+
+    /**
+     * Returns the number of threads of the pool, zero if the pool is disabled
+     */
+    public int getThreads() {
+        Integer result = threads;
+        if (result == null) {
+            synchronized (this) {
+                result = threads;
+                if (result == null) {
+                    result = Math.max(0, threadsSupplier.getAsInt());
+                    threads = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pool, creating it if needed, or null if the pool is disabled
+     */
+    public ExecutorService get() {
+        ExecutorService result = pool;
+        if (result == null && getThreads() > 0) {
+            synchronized (this) {
+                result = pool;
+                // the pool might have been disposed of meanwhile
+                int size = getThreads();
+                if (result == null && size > 0) {
+                    AtomicInteger count = new AtomicInteger();
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size,
+                            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread t = new Thread(r, name + " " + count.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            });
+                    executor.allowCoreThreadTimeOut(true);
+                    pool = result = executor;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Shuts down the pool, if created, waiting a bit for the running tasks to complete. The
+     * number of threads is looked up again on the next use.
+     */
+    public synchronized void dispose() {
+        ExecutorService executor = pool;
+        pool = null;
+        threads = null;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
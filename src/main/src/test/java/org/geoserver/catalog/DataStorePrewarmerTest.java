@@ -0,0 +1,128 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.geoserver.config.GeoServer;
+import org.geoserver.platform.GeoServerExtensionsHelper;
+import org.junit.After;
+import org.junit.Test;
+
+public class DataStorePrewarmerTest {
+
+    @After
+    public void tearDown() {
+        GeoServerExtensionsHelper.clear();
+    }
+
+    @Test
+    public void testMostUsedStores() throws Exception {
+        DataStoreInfo a = store("a", true);
+        DataStoreInfo b = store("b", true);
+        DataStoreInfo c = store("c", true);
+        DataStoreInfo disabled = store("disabled", false);
+        DataStoreInfo unused = store("unused", true);
+        Catalog catalog = catalog(Arrays.asList(a, b, c, disabled, unused),
+                Arrays.asList(layer(b, true), layer(c, true), layer(c, true), layer(c, false),
+                        layer(a, true), layer(b, true), layer(c, true), layer(disabled, true),
+                        layer(disabled, true), layer(disabled, true), layer(disabled, true)));
+
+        // ranked by enabled layers, the disabled store and the one without layers are skipped
+        assertEquals(Arrays.asList("c", "b", "a"),
+                names(DataStorePrewarmer.getMostUsedStores(catalog, 10)));
+        assertEquals(Arrays.asList("c", "b"),
+                names(DataStorePrewarmer.getMostUsedStores(catalog, 2)));
+    }
+
+    @Test
+    public void testReinitializeCancelsPreviousRun() throws Exception {
+        GeoServerExtensionsHelper.property(DataStorePrewarmer.PREWARM_STORES_PROPERTY, "2");
+        GeoServerExtensionsHelper.property(DataStorePrewarmer.PREWARM_THREADS_PROPERTY, "1");
+        DataStoreInfo a = store("a", true);
+        DataStoreInfo b = store("b", true);
+        Catalog catalog = catalog(Arrays.asList(a, b),
+                Arrays.asList(layer(a, true), layer(a, true), layer(b, true)));
+        GeoServer geoServer = createNiceMock(GeoServer.class);
+        expect(geoServer.getCatalog()).andReturn(catalog).anyTimes();
+        replay(geoServer);
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final List<String> connected = Collections.synchronizedList(new ArrayList<>());
+        DataStorePrewarmer prewarmer = new DataStorePrewarmer() {
+            @Override
+            void prewarm(ResourcePool pool, DataStoreInfo store) {
+                connected.add(store.getName());
+                if (connected.size() == 1) {
+                    // a slow connection
+                    blocked.countDown();
+                    try {
+                        Thread.sleep(60000);
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                }
+            }
+        };
+
+        prewarmer.initialize(geoServer);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        ExecutorService first = prewarmer.executor;
+
+        // the reload interrupts the slow connection and drops the pending one
+        prewarmer.initialize(geoServer);
+        assertTrue(first.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertTrue(prewarmer.executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "a", "b"), connected);
+    }
+
+    List<String> names(List<DataStoreInfo> stores) {
+        return stores.stream().map(DataStoreInfo::getName).collect(Collectors.toList());
+    }
+
+    DataStoreInfo store(String name, boolean enabled) {
+        DataStoreInfo store = createNiceMock(DataStoreInfo.class);
+        expect(store.getId()).andReturn(name + "-id").anyTimes();
+        expect(store.getName()).andReturn(name).anyTimes();
+        expect(store.isEnabled()).andReturn(enabled).anyTimes();
+        replay(store);
+        return store;
+    }
+
+    LayerInfo layer(DataStoreInfo store, boolean enabled) {
+        FeatureTypeInfo resource = createNiceMock(FeatureTypeInfo.class);
+        expect(resource.getStore()).andReturn(store).anyTimes();
+        replay(resource);
+        LayerInfo layer = createNiceMock(LayerInfo.class);
+        expect(layer.enabled()).andReturn(enabled).anyTimes();
+        expect(layer.getResource()).andReturn(resource).anyTimes();
+        replay(layer);
+        return layer;
+    }
+
+    Catalog catalog(List<DataStoreInfo> stores, List<LayerInfo> layers) {
+        Catalog catalog = createNiceMock(Catalog.class);
+        expect(catalog.getDataStores()).andReturn(stores).anyTimes();
+        expect(catalog.getLayers()).andReturn(layers).anyTimes();
+        replay(catalog);
+        return catalog;
+    }
+}
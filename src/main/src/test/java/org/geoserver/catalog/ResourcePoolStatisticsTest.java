@@ -0,0 +1,46 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.platform.GeoServerExtensionsHelper;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+
+public class ResourcePoolStatisticsTest {
+
+    @After
+    public void tearDown() {
+        GeoServerExtensionsHelper.clear();
+    }
+
+    @Test
+    public void testProviderStatistics() throws Exception {
+        Catalog catalog = new CatalogImpl();
+        ResourceCache.Statistics tiles = new ResourceCache.Statistics("tiles", 1, 1024, 2048, 0,
+                new CacheStats(3, 1, 1, 0, 0, 0));
+        CacheStatisticsProvider provider = () -> Collections.singletonList(tiles);
+        GeoServerExtensionsHelper.singleton("tileCache", provider,
+                CacheStatisticsProvider.class);
+
+        // the resource pool caches come first, then the ones of the extensions
+        List<ResourceCache.Statistics> poolStats = catalog.getResourcePool().getCacheStatistics();
+        List<ResourceCache.Statistics> stats = new ResourcePoolStatistics(catalog)
+                .getCacheStatistics();
+        assertEquals(poolStats.size() + 1, stats.size());
+        for (int i = 0; i < poolStats.size(); i++) {
+            assertEquals(poolStats.get(i).getName(), stats.get(i).getName());
+        }
+        assertSame(tiles, stats.get(stats.size() - 1));
+    }
+}
@@ -21,8 +21,13 @@ import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.media.jai.PlanarImage;
@@ -75,7 +80,6 @@ import org.geotools.styling.AbstractStyleVisitor;
 import org.geotools.styling.Mark;
 import org.geotools.styling.PolygonSymbolizer;
 import org.geotools.styling.Style;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.URLs;
 import org.geotools.util.Version;
 import org.junit.Test;
@@ -274,6 +278,43 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         assertTrue(disposeCalled);
     }
 
+    @Test public void testDataStoreSingleFlight() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        ResourcePool pool = new ResourcePool(getCatalog()) {
+            @Override
+            protected DataAccess<? extends FeatureType, ? extends Feature> createDataStore(
+                    DataStoreInfo info) throws IOException {
+                created.incrementAndGet();
+                try {
+                    // give the other threads time to pile up on the pending connection
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.createDataStore(info);
+            }
+        };
+        final DataStoreInfo info = getCatalog().getDataStores().get(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DataAccess<? extends FeatureType, ? extends Feature>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> pool.getDataStore(info)));
+            }
+            DataAccess<? extends FeatureType, ? extends Feature> first = futures.get(0).get();
+            assertNotNull(first);
+            for (Future<DataAccess<? extends FeatureType, ? extends Feature>> f : futures) {
+                assertSame(first, f.get());
+            }
+            assertEquals(1, created.get());
+            assertSame(first, pool.getDataStore(info));
+        } finally {
+            executor.shutdown();
+            pool.dispose();
+        }
+    }
+
     @Test public void testConfigureFeatureTypeCacheSize() {
         GeoServer gs = getGeoServer();
         GeoServerInfo global = gs.getGlobal();
@@ -283,9 +324,105 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         Catalog catalog = getCatalog();
         // we actually keep two versions of the feature type in the cache, so we need it 
         // twice as big
-        assertEquals(400, ((SoftValueHashMap)catalog.getResourcePool().getFeatureTypeCache()).getHardReferencesCount());
+        assertEquals(400 * ResourcePool.FEATURETYPE_AVERAGE_WEIGHT,
+                ((ResourceCache) catalog.getResourcePool().getFeatureTypeCache()).getMaxWeight());
+    }
+
+    @Test public void testCacheStatistics() throws Exception {
+        Catalog catalog = getCatalog();
+        ResourcePool pool = catalog.getResourcePool();
+        FeatureTypeInfo info = catalog.getFeatureTypeByName(
+                MockData.LAKES.getNamespaceURI(), MockData.LAKES.getLocalPart());
+        pool.clear(info);
+        ResourceCache<String, FeatureType> cache = (ResourceCache<String, FeatureType>) pool
+                .getFeatureTypeCache();
+        ResourceCache.Statistics before = cache.getStatistics();
+
+        // first access loads, second one hits the cache
+        FeatureType ft1 = pool.getFeatureType(info);
+        FeatureType ft2 = pool.getFeatureType(info);
+        assertSame(ft1, ft2);
+
+        ResourceCache.Statistics after = null;
+        for (ResourceCache.Statistics s : pool.getCacheStatistics()) {
+            if ("featureTypes".equals(s.getName())) {
+                after = s;
+            }
+        }
+        assertNotNull(after);
+        assertEquals(before.getSize() + 1, after.getSize());
+        assertEquals(before.getLoadCount() + 1, after.getLoadCount());
+        assertTrue(after.getHitCount() > before.getHitCount());
+        assertTrue(after.getWeight() > before.getWeight());
+        assertTrue(after.getWeight() <= after.getMaxWeight());
+
+        // removal gives back the weight
+        pool.clear(info);
+        assertEquals(before.getWeight(), cache.getStatistics().getWeight());
+    }
+
+    @Test public void testResourceCacheEvictsAndDisposes() throws Exception {
+        final List<String> disposed = new ArrayList<>();
+        ResourceCache<String, String> cache = new ResourceCache<String, String>("test", 10, 0) {
+            @Override
+            protected int weigh(String key, String value) {
+                return value.length();
+            }
+
+            @Override
+            protected void dispose(String key, String value) {
+                disposed.add(key);
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            cache.put("k" + i, "12345");
+        }
+        // the weight limit is honored, the evicted entries got disposed
+        ResourceCache.Statistics stats = cache.getStatistics();
+        assertTrue(stats.getWeight() <= 10);
+        assertEquals(20 - cache.size(), disposed.size());
+        assertEquals(disposed.size(), stats.getEvictionCount());
+
+        // explicit removal disposes, replacement does not
+        cache.clear();
+        disposed.clear();
+        assertEquals("1", cache.get("x", () -> "1"));
+        cache.put("x", "2");
+        assertTrue(disposed.isEmpty());
+        cache.remove("x");
+        assertEquals(Arrays.asList("x"), disposed);
+        assertEquals(0, cache.getStatistics().getWeight());
     }
     
+    @Test public void testCoverageReaderEvictionDoesNotDispose() throws Exception {
+        ResourcePool pool = new ResourcePool(getCatalog());
+        // room for a single reader at most
+        ResourcePool.CoverageHintReaderCache cache = pool.new CoverageHintReaderCache(
+                1024 * 1024, 0);
+        GridCoverageReader first = createMock(GridCoverageReader.class);
+        GridCoverageReader second = createMock(GridCoverageReader.class);
+        replay(first, second);
+        ResourcePool.CoverageHintReaderKey firstKey = new ResourcePool.CoverageHintReaderKey(
+                "first", null);
+        ResourcePool.CoverageHintReaderKey secondKey = new ResourcePool.CoverageHintReaderKey(
+                "second", null);
+        cache.put(firstKey, first);
+        cache.put(secondKey, second);
+
+        // evicted readers might still be in use, they are not disposed and can be reused
+        assertSame(first, cache.get(firstKey, () -> second));
+        assertSame(second, cache.get(secondKey));
+        verify(first, second);
+
+        // explicit clear disposes them
+        reset(first, second);
+        first.dispose();
+        second.dispose();
+        replay(first, second);
+        cache.clear();
+        verify(first, second);
+    }
+
     @Test public void testDropCoverageStore() throws Exception {
         // build the store
         Catalog cat = getCatalog();
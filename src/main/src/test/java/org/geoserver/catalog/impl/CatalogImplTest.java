@@ -40,6 +40,7 @@ import java.util.logging.Logger;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.CatalogFactory;
 import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.CoverageInfo;
@@ -50,6 +51,7 @@ import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.Keyword;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.LockingCatalogFacade;
 import org.geoserver.catalog.MetadataLinkInfo;
 import org.geoserver.catalog.MetadataMap;
 import org.geoserver.catalog.NamespaceInfo;
@@ -3154,6 +3156,81 @@ public class CatalogImplTest {
         return set;
     }
 
+    /**
+     * Checks the filters that can use the facade secondary indexes, also after the indexed
+     * properties change
+     */
+    @Test
+    public void testListPredicateIndexed() {
+        addDataStore();
+        addNamespace();
+        addStyle();
+        catalog.add(wsA);
+        catalog.add(nsA);
+        catalog.add(dsA);
+
+        FeatureTypeInfo ft1, ft2, ft3;
+        catalog.add(ft1 = newFeatureType("ft1", ds));
+        catalog.add(ft2 = newFeatureType("ft2", ds));
+        ft3 = newFeatureType("ft3", dsA);
+        ft3.setNamespace(nsA);
+        catalog.add(ft3);
+        ft1 = catalog.getFeatureType(ft1.getId());
+        ft1.setEnabled(true);
+        ft1.getKeywords().add(new Keyword("keyword1"));
+        catalog.save(ft1);
+
+        LayerInfo l1, l2, l3;
+        catalog.add(l1 = newLayer(ft1, s));
+        catalog.add(l2 = newLayer(ft2, s));
+        catalog.add(l3 = newLayer(ft3, s));
+        l1 = catalog.getLayer(l1.getId());
+        l2 = catalog.getLayer(l2.getId());
+        l3 = catalog.getLayer(l3.getId());
+
+        Filter byWorkspace = equal("resource.store.workspace.name", ws.getName());
+        assertEquals(newHashSet(l1, l2), newHashSet(catalog.list(LayerInfo.class, byWorkspace)));
+        assertEquals(newHashSet(catalog.getFeatureType(ft3.getId())), newHashSet(
+                catalog.list(ResourceInfo.class, equal("namespace.prefix", nsA.getPrefix()))));
+        assertEquals(newHashSet(ft1), newHashSet(
+                catalog.list(FeatureTypeInfo.class, equal("keywords.value", "keyword1"))));
+        assertEquals(newHashSet(catalog.getDataStore(ds.getId()),
+                catalog.getDataStore(dsA.getId())),
+                newHashSet(catalog.list(DataStoreInfo.class, equal("enabled", true))));
+        Filter enabledInWorkspace = Predicates.and(equal("enabled", true),
+                equal("resource.store.workspace.id", ws.getId()));
+        assertEquals(newHashSet(l1),
+                newHashSet(catalog.list(LayerInfo.class, enabledInWorkspace)));
+        assertEquals(1, catalog.count(LayerInfo.class, enabledInWorkspace));
+
+        // the indexes follow the changes
+        ft2 = catalog.getFeatureType(ft2.getId());
+        ft2.setEnabled(true);
+        catalog.save(ft2);
+        assertEquals(newHashSet(l1, l2),
+                newHashSet(catalog.list(LayerInfo.class, enabledInWorkspace)));
+        DataStoreInfo movedStore = catalog.getDataStore(dsA.getId());
+        movedStore.setWorkspace(ws);
+        catalog.save(movedStore);
+        l3 = catalog.getLayer(l3.getId());
+        assertEquals(newHashSet(l1, l2, l3),
+                newHashSet(catalog.list(LayerInfo.class, byWorkspace)));
+        catalog.remove(l3);
+        assertEquals(newHashSet(l1, l2), newHashSet(catalog.list(LayerInfo.class, byWorkspace)));
+
+        // check the indexes are actually used
+        CatalogFacade facade = ProxyUtils.unwrap(catalog.getFacade(),
+                LockingCatalogFacade.class);
+        if (facade instanceof DefaultCatalogFacade) {
+            DefaultCatalogFacade dcf = (DefaultCatalogFacade) facade;
+            assertEquals(newHashSet(ft1.getId()), dcf.getCandidateIds(ResourceInfo.class,
+                    equal("keywords.value", "keyword1")));
+            assertEquals(newHashSet(l1.getId(), l2.getId()),
+                    dcf.getCandidateIds(LayerInfo.class, byWorkspace));
+            assertNull(dcf.getCandidateIds(LayerInfo.class, contains("name", "ft")));
+        }
+    }
+
     protected LayerInfo newLayer(ResourceInfo resource, StyleInfo defStyle,
             StyleInfo... extraStyles) {
         LayerInfo l2 = catalog.getFactory().createLayer();
@@ -5,16 +5,29 @@
  */
 package org.geoserver.config;
 
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
+import org.apache.commons.io.FileUtils;
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WMSStoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.impl.CatalogImpl;
 import org.geoserver.config.impl.GeoServerImpl;
 import org.geoserver.config.impl.ServiceInfoImpl;
@@ -24,11 +37,17 @@ import org.geoserver.config.util.XStreamServiceLoader;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.GeoServerExtensionsHelper;
 import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resources;
+import org.geoserver.security.password.ConfigurationPasswordEncryptionHelper;
+import org.geoserver.security.password.GeoServerPasswordEncoder;
 import org.geotools.data.DataUtilities;
 import org.geotools.util.URLs;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class DefaultGeoServerLoaderTest {
     DefaultGeoServerLoader loader;
@@ -37,6 +56,9 @@ public class DefaultGeoServerLoaderTest {
     XStreamPersister xp;
 
     boolean helloServiceSaved = false;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
     
     static interface HelloServiceInfo extends ServiceInfo {
     }
@@ -130,6 +152,122 @@ public class DefaultGeoServerLoaderTest {
         assertTrue(nestedLayerGroup.getLayers().get(1) instanceof LayerInfo);
     }
 
+    @Test
+    public void testLoadParallel() throws Exception {
+        loader.depersistThreads = 4;
+        loader.readCatalog(catalog, xp);
+        assertLoaded(catalog);
+
+        // same contents as the serial load
+        Catalog serial = new CatalogImpl();
+        serial.setResourceLoader(catalog.getResourceLoader());
+        loader.depersistThreads = 1;
+        loader.readCatalog(serial, xp);
+        assertLoaded(serial);
+        assertEquals(serial.getStores(DataStoreInfo.class).size(),
+                catalog.getStores(DataStoreInfo.class).size());
+        assertEquals(serial.getFeatureTypes().size(), catalog.getFeatureTypes().size());
+        assertEquals(serial.getLayers().size(), catalog.getLayers().size());
+        assertEquals(serial.getLayerGroups().size(), catalog.getLayerGroups().size());
+    }
+
+    void assertLoaded(Catalog catalog) {
+        DataStoreInfo store = catalog.getDataStoreByName("topp", "toponimi");
+        assertNotNull(store);
+        LayerInfo layer = catalog.getLayerByName("topp:layer1");
+        assertNotNull(layer);
+        FeatureTypeInfo ft = (FeatureTypeInfo) layer.getResource();
+        assertEquals("layer1", ft.getName());
+        assertEquals(store.getId(), ft.getStore().getId());
+        assertEquals("toponimi", ft.getStore().getName());
+        assertNotNull(catalog.getLayerByName("topp:layer2"));
+        assertEquals(2, catalog.getLayerGroupByName("topp", "nestedgroup").getLayers().size());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        File dataDir = tempFolder.newFolder("data");
+        FileUtils.copyDirectory(URLs.urlToFile(
+                DefaultGeoServerLoaderTest.class.getResource("/data_dir/nested_layer_groups")),
+                dataDir);
+        GeoServerResourceLoader resourceLoader = new GeoServerResourceLoader(dataDir);
+        GeoServerExtensionsHelper.singleton("resourceLoader", resourceLoader,
+                GeoServerResourceLoader.class);
+        GeoServerExtensionsHelper.property(CatalogSnapshot.SNAPSHOT_PROPERTY, "true");
+        DefaultGeoServerLoader loader = new DefaultGeoServerLoader(resourceLoader);
+
+        // the first load writes the snapshot
+        Catalog catalog = loader.readCatalog(new XStreamPersisterFactory().createXMLPersister());
+        assertLoaded(catalog);
+        assertTrue(Resources.exists(resourceLoader.get(CatalogSnapshot.SNAPSHOT_FILE)));
+
+        // break a configuration file without changing its modification time, the snapshot
+        // is still used
+        File featureType = new File(dataDir, "workspaces/topp/datastore/layer2/featuretype.xml");
+        long lastModified = featureType.lastModified();
+        FileUtils.writeStringToFile(featureType, "<featureType>", "UTF-8");
+        assertTrue(featureType.setLastModified(lastModified));
+        catalog = loader.readCatalog(new XStreamPersisterFactory().createXMLPersister());
+        assertLoaded(catalog);
+
+        // once modified, the configuration files are read again
+        assertTrue(featureType.setLastModified(lastModified + 10000));
+        catalog = loader.readCatalog(new XStreamPersisterFactory().createXMLPersister());
+        assertNotNull(catalog.getLayerByName("topp:layer1"));
+        assertNull(catalog.getFeatureTypeByName("topp", "layer2"));
+    }
+
+    @Test
+    public void testSnapshotPasswordEncrypted() throws Exception {
+        CatalogImpl catalog = new CatalogImpl();
+        WorkspaceInfo ws = catalog.getFactory().createWorkspace();
+        ws.setName("test");
+        catalog.add(ws);
+        WMSStoreInfo store = catalog.getFactory().createWebMapServer();
+        store.setName("wms");
+        store.setWorkspace(ws);
+        store.setCapabilitiesURL("http://localhost/wms");
+        store.setUsername("user");
+        store.setPassword("secret");
+        catalog.add(store);
+
+        GeoServerPasswordEncoder encoder = createMock(GeoServerPasswordEncoder.class);
+        expect(encoder.encodePassword("secret", null)).andReturn("crypt1:encrypted");
+        replay(encoder);
+        GeoServerResourceLoader resourceLoader = new GeoServerResourceLoader(
+                tempFolder.newFolder("data"));
+        Resource resource = resourceLoader.get(CatalogSnapshot.SNAPSHOT_FILE);
+        CatalogSnapshot.capture(catalog, "test", new ConfigurationPasswordEncryptionHelper(null),
+                encoder).write(resource);
+        verify(encoder);
+
+        // only the encrypted password is written, the catalog is left untouched
+        String contents = new String(resource.getContents(), StandardCharsets.ISO_8859_1);
+        assertFalse(contents.contains("secret"));
+        assertEquals("secret", catalog.getStoreByName("wms", WMSStoreInfo.class).getPassword());
+        CatalogSnapshot snapshot = CatalogSnapshot.read(resource);
+        assertEquals("crypt1:encrypted", snapshot.passwords.get(store.getId()));
+        assertEquals("", ((WMSStoreInfo) snapshot.stores.get(0)).getPassword());
+    }
+
+    @Test
+    public void testSnapshotRejectsOtherClasses() throws Exception {
+        GeoServerResourceLoader resourceLoader = new GeoServerResourceLoader(
+                tempFolder.newFolder("data"));
+        Resource resource = resourceLoader.get(CatalogSnapshot.SNAPSHOT_FILE);
+        try (OutputStream out = resource.out();
+                ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(new File("test"));
+        }
+
+        try {
+            CatalogSnapshot.read(resource);
+            fail("The snapshot should have been rejected");
+        } catch (InvalidClassException e) {
+            assertEquals(File.class.getName(), e.classname);
+        }
+    }
+
     @Test
     public void testLoadWithoutResaving() throws Exception {
         GeoServerImpl gs = new GeoServerImpl();
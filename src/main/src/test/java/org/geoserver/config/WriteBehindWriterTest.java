@@ -0,0 +1,175 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteBehindWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    GeoServerResourceLoader loader;
+
+    WriteBehindWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        loader = new GeoServerResourceLoader(folder.getRoot());
+        // long enough for the background writer never to kick in during the tests
+        writer = new WriteBehindWriter(loader, 60 * 60 * 1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writer.executor.shutdownNow();
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        writer.write("workspaces/acme/workspace.xml", bytes("one"));
+        writer.write("workspaces/acme/namespace.xml", bytes("ns"));
+        writer.write("workspaces/acme/workspace.xml", bytes("two"));
+        assertFalse(file("workspaces/acme/workspace.xml").exists());
+        assertEquals(1, journal().size());
+
+        writer.flush();
+        // last write wins
+        assertEquals("two", read("workspaces/acme/workspace.xml"));
+        assertEquals("ns", read("workspaces/acme/namespace.xml"));
+        assertTrue(journal().isEmpty());
+        assertTrue(writer.pending.isEmpty());
+
+        // the next batch goes into a new segment
+        writer.write("workspaces/acme/workspace.xml", bytes("three"));
+        assertEquals(1, journal().size());
+        writer.flush();
+        assertEquals("three", read("workspaces/acme/workspace.xml"));
+        assertTrue(journal().isEmpty());
+    }
+
+    @Test
+    public void testBackgroundWrite() throws Exception {
+        writer.executor.shutdownNow();
+        writer = new WriteBehindWriter(loader, 10);
+        writer.write("styles/point.xml", bytes("point"));
+        for (int i = 0; i < 500 && !file("styles/point.xml").exists(); i++) {
+            Thread.sleep(10);
+        }
+        // flush waits for the scheduled batch, if still running
+        writer.flush();
+        assertEquals("point", read("styles/point.xml"));
+        assertTrue(journal().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final String path = "workspaces/ws" + (i % 20) + "/workspace.xml";
+                final String value = "value" + i;
+                futures.add(pool.submit(() -> {
+                    writer.write(path, bytes(value));
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(20, writer.pending.size());
+        writer.flush();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(read("workspaces/ws" + i + "/workspace.xml").startsWith("value"));
+        }
+        assertTrue(journal().isEmpty());
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        writer.write("workspaces/acme/workspace.xml", bytes("one"));
+        writer.write("workspaces/acme/workspace.xml", bytes("two"));
+        writer.write("styles/line.xml", bytes("line"));
+        // simulate a crash, the changes are only in the journal
+        writer.executor.shutdownNow();
+        for (WriteBehindWriter.Segment segment : writer.segments) {
+            segment.close();
+        }
+        assertFalse(file("styles/line.xml").exists());
+
+        assertEquals(2, WriteBehindWriter.recover(loader));
+        assertEquals("two", read("workspaces/acme/workspace.xml"));
+        assertEquals("line", read("styles/line.xml"));
+        assertTrue(journal().isEmpty());
+        assertEquals(0, WriteBehindWriter.recover(loader));
+    }
+
+    @Test
+    public void testRecoverTruncated() throws Exception {
+        writer.write("styles/line.xml", bytes("line"));
+        writer.write("styles/point.xml", bytes("point"));
+        writer.executor.shutdownNow();
+        for (WriteBehindWriter.Segment segment : writer.segments) {
+            segment.close();
+        }
+        // a record cut short by a crash
+        File segment = journal().get(0);
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(WriteBehindWriter.encode("styles/polygon.xml", bytes("polygon")).array(), 0,
+                    20);
+        }
+
+        assertEquals(2, WriteBehindWriter.recover(loader));
+        assertEquals("line", read("styles/line.xml"));
+        assertEquals("point", read("styles/point.xml"));
+        assertFalse(file("styles/polygon.xml").exists());
+        assertTrue(journal().isEmpty());
+    }
+
+    @Test
+    public void testRecoverDisabledWithoutDirectory() throws Exception {
+        assertEquals(0, WriteBehindWriter.recover(new GeoServerResourceLoader()));
+    }
+
+    List<File> journal() {
+        return WriteBehindWriter.listSegments(WriteBehindWriter.getJournalDirectory(loader));
+    }
+
+    File file(String path) {
+        return new File(folder.getRoot(), path);
+    }
+
+    String read(String path) throws IOException {
+        return new String(Files.readAllBytes(file(path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -4,20 +4,30 @@
  */
 package org.geoserver.filters;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Test;
 import org.springframework.mock.web.DelegatingServletOutputStream;
@@ -168,4 +178,131 @@ public class GZipFilterTest {
         filter.doFilter(request, response, chain);
         assertFalse(response.containsHeader("Content-Length"));
     }
+
+    @Test
+    public void testParallelCompression() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("<feature id=\"").append(i).append("\">").append(i * 31 % 977)
+                    .append("</feature>\n");
+        }
+        byte[] data = sb.toString().getBytes("UTF-8");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ParallelGZIPOutputStream os = new ParallelGZIPOutputStream(bos, executor, 2,
+                    Deflater.BEST_SPEED, 32 * 1024);
+            os.write(data, 0, 1000);
+            // flushing midway still produces a valid stream
+            os.flush();
+            for (int i = 1000; i < 1100; i++) {
+                os.write(data[i]);
+            }
+            os.write(data, 1100, data.length - 1100);
+            os.close();
+
+            assertArrayEquals(data, gunzip(bos.toByteArray()));
+            assertTrue(bos.size() < data.length / 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelCompressionSmallOutput() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ParallelGZIPOutputStream os = new ParallelGZIPOutputStream(bos, executor, 2,
+                    Deflater.DEFAULT_COMPRESSION, 32 * 1024);
+            os.close();
+            assertEquals(0, gunzip(bos.toByteArray()).length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompressionSettings() throws Exception {
+        MockServletContext context = new MockServletContext();
+        MockFilterConfig config = new MockFilterConfig(context);
+        config.addInitParameter("compression-level", "1");
+        config.addInitParameter("buffer-size", "8192");
+        config.addInitParameter("parallel-threads", "abc");
+        GZIPSettings settings = new GZIPSettings(config);
+        try {
+            assertEquals(1, settings.compressionLevel);
+            assertEquals(8192, settings.bufferSize);
+            assertFalse(settings.isParallel());
+            assertNull(settings.getCache());
+        } finally {
+            settings.dispose();
+        }
+    }
+
+    @Test
+    public void testCompressedResponseCache() throws Exception {
+        GZIPFilter filter = new GZIPFilter();
+        MockServletContext context = new MockServletContext();
+        MockFilterConfig config = new MockFilterConfig(context);
+        config.addInitParameter("compressed-types", "text/plain");
+        config.addInitParameter("cache-size", "100000");
+        config.addInitParameter("parallel-threads", "2");
+        filter.init(config);
+
+        try {
+            MockHttpServletResponse first = runCacheableRequest(filter, "\"abc\"");
+            assertEquals("gzip", first.getHeader("Content-Encoding"));
+            assertFalse(first.containsHeader("Content-Length"));
+            assertEquals("Hello world", new String(gunzip(first.getContentAsByteArray()),
+                    "UTF-8"));
+
+            // same entity tag, served from the cache
+            MockHttpServletResponse second = runCacheableRequest(filter, "\"abc\"");
+            assertArrayEquals(first.getContentAsByteArray(), second.getContentAsByteArray());
+            assertEquals(String.valueOf(first.getContentAsByteArray().length),
+                    second.getHeader("Content-Length"));
+
+            // weak entity tags are not cached
+            runCacheableRequest(filter, "W/\"def\"");
+            MockHttpServletResponse weak = runCacheableRequest(filter, "W/\"def\"");
+            assertFalse(weak.containsHeader("Content-Length"));
+        } finally {
+            filter.destroy();
+        }
+    }
+
+    private MockHttpServletResponse runCacheableRequest(GZIPFilter filter, final String etag)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                "http://www.geoserver.org");
+        request.setQueryString("service=WFS");
+        request.addHeader("accept-encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setContentType("text/plain");
+
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException, ServletException {
+                ((HttpServletResponse) response).setHeader("ETag", etag);
+                response.getOutputStream().write("Hello world".getBytes("UTF-8"));
+            }
+        };
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = is.read(buffer)) > 0) {
+                bos.write(buffer, 0, n);
+            }
+            return bos.toByteArray();
+        }
+    }
 }
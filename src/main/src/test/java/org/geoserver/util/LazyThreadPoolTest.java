@@ -0,0 +1,62 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LazyThreadPoolTest {
+
+    @Test
+    public void testDisabled() {
+        AtomicInteger lookups = new AtomicInteger();
+        LazyThreadPool pool = new LazyThreadPool("test", () -> {
+            lookups.incrementAndGet();
+            return -1;
+        });
+        assertEquals(0, pool.getThreads());
+        assertNull(pool.get());
+        assertNull(pool.get());
+        // looked up once
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testLazyCreation() throws Exception {
+        AtomicInteger threads = new AtomicInteger(2);
+        LazyThreadPool pool = new LazyThreadPool("test pool", threads::get);
+        try {
+            ExecutorService executor = pool.get();
+            assertSame(executor, pool.get());
+            assertEquals(2, pool.getThreads());
+
+            Thread thread = executor.submit(Thread::currentThread).get();
+            assertTrue(thread.isDaemon());
+            assertTrue(thread.getName().startsWith("test pool "));
+
+            // the number of threads is kept until the pool is disposed
+            threads.set(0);
+            assertEquals(2, pool.getThreads());
+            pool.dispose();
+            assertTrue(executor.isShutdown());
+
+            // looked up again after the dispose
+            threads.set(1);
+            ExecutorService other = pool.get();
+            assertNotSame(executor, other);
+            assertEquals(1, pool.getThreads());
+        } finally {
+            pool.dispose();
+        }
+    }
+}
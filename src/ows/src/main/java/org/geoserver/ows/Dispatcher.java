@@ -68,6 +68,7 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlPullParserException;
 
 
 /**
@@ -132,6 +133,9 @@ public class Dispatcher extends AbstractController {
     public static final ThreadLocal<Request> REQUEST = new InheritableThreadLocal<Request>();
     
     static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** shared factory for the pull parsers reading the root element of XML requests */
+    static volatile XmlPullParserFactory pullParserFactory;
     
     /**
      * The amount of bytes to be read to determine the proper xml reader in POST request
@@ -369,19 +373,21 @@ public class Dispatcher extends AbstractController {
                 request.setInput(reader(httpRequest));
             }
 
-            char[] req = new char[xmlPostRequestLogBufferSize];
-            int read = request.getInput().read(req, 0, xmlPostRequestLogBufferSize);
-
-            if (logger.isLoggable(Level.FINE)) {
+            int read;
+            if (xmlPostRequestLogBufferSize > 0 && logger.isLoggable(Level.FINE)) {
+                // copy the start of the body only when it's going to be logged
+                char[] req = new char[xmlPostRequestLogBufferSize];
+                read = request.getInput().read(req, 0, xmlPostRequestLogBufferSize);
                 if (read == -1) {
-                    request.setInput(null);
+                    // empty body, nothing to log
                 } else if (read < xmlPostRequestLogBufferSize) {
-                    logger.fine("Raw XML request: " + new String(req));
-                } else if (xmlPostRequestLogBufferSize == 0) {
-                    // logging disabled --> do nothing
+                    logger.fine("Raw XML request: " + new String(req, 0, read));
                 } else {
                     logger.fine("Raw XML request starts with: " + new String(req) + "...");
                 }
+            } else {
+                // just check for an empty body, the reader streams straight into the parser
+                read = request.getInput().read();
             }
             if (read == -1)
                 request.setInput(null);
@@ -1494,9 +1500,9 @@ public class Dispatcher extends AbstractController {
             return;
         }
 
-        //track parsed kvp and unparsd
-        Map parsedKvp = KvpUtils.normalize(kvp);
-        Map rawKvp = new KvpMap( parsedKvp );
+        //track parsed kvp and unparsd, both filled in a single pass
+        Map rawKvp = new KvpMap(kvp.size());
+        Map parsedKvp = KvpUtils.normalize(kvp, rawKvp);
 
         req.setKvp(parsedKvp);
         req.setRawKvp(rawKvp);
@@ -1545,13 +1551,8 @@ public class Dispatcher extends AbstractController {
             return null;
         }
 
-        //create stream parser
-        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setValidating(false);
-
         //parse root element
-        XmlPullParser parser = factory.newPullParser();
+        XmlPullParser parser = newPullParser();
         //parser.setInput(input, "UTF-8");
         parser.setInput(input);
         parser.nextTag();
@@ -1622,13 +1623,8 @@ public class Dispatcher extends AbstractController {
      * @throws Exception if there was an error reading the input.
      */
     public static Map readOpPost(BufferedReader input) throws Exception {
-        //create stream parser
-        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setValidating(false);
-
         //parse root element
-        XmlPullParser parser = factory.newPullParser();
+        XmlPullParser parser = newPullParser();
         parser.setInput(input);
         parser.nextTag();
 
@@ -1661,6 +1657,21 @@ public class Dispatcher extends AbstractController {
         return map;
     }
 
+    /**
+     * Creates a namespace aware, non validating pull parser to read the root element of the
+     * requests. The factory lookup scans the classpath, so it's done once and shared.
+     */
+    static XmlPullParser newPullParser() throws XmlPullParserException {
+        XmlPullParserFactory factory = pullParserFactory;
+        if (factory == null) {
+            factory = XmlPullParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+            pullParserFactory = factory;
+        }
+        return factory.newPullParser();
+    }
+
     void exception(Throwable t, Service service, Request request) {
         Throwable current = t;
         while (current != null && !(current instanceof ClientStreamAbortedException) 
@@ -22,6 +22,13 @@ public class KvpMap extends HashMap {
     public KvpMap() {
         super();
     }
+
+    /**
+     * Creates a map sized to hold the given number of entries without rehashing
+     */
+    public KvpMap(int expectedSize) {
+        super(Math.max(16, (int) (expectedSize / .75f) + 1));
+    }
     
     public KvpMap( Map other ) {
         this();
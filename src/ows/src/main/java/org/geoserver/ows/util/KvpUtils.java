@@ -14,7 +14,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -319,47 +318,84 @@ public class KvpUtils {
      * @param kvp unparsed/unormalized kvp set
      */
     public static KvpMap normalize( Map kvp ) {
+        return normalize(kvp, null);
+    }
+
+    /**
+     * Normalizes the kvp set as {@link #normalize(Map)} does, also storing the normalized values in
+     * the provided raw map, so that the parsed and raw kvp sets of a request are built in a single
+     * pass.
+     *
+     * @param kvp unparsed/unormalized kvp set
+     * @param raw map receiving the normalized, unparsed values, can be null
+     */
+    public static KvpMap normalize(Map kvp, Map raw) {
         if ( kvp == null ) {
             return null;
         }
        
         //create a normalied map
-        KvpMap normalizedKvp = new KvpMap();
+        KvpMap normalizedKvp = new KvpMap(kvp.size());
         
         for (Iterator itr = kvp.entrySet().iterator(); itr.hasNext();) {
             Map.Entry entry = (Map.Entry) itr.next();
-            String key = (String) entry.getKey();
+            // the kvp map is case insensitive, a single upper case conversion is enough
+            String key = ((String) entry.getKey()).toUpperCase();
             Object value = null;
 
             if (entry.getValue() instanceof String) {
                 value = trim((String) entry.getValue());
             } else if (entry.getValue() instanceof String[]) {
-                String[] values = (String[]) entry.getValue();
-                // we use a set so that mere value repetition (a common error for which the OWS spec
-                // leaves the server up to decide what to do) does not cause the result to be a String[]
-                LinkedHashSet<String> normalized = new LinkedHashSet<String>();
-                for (String v : values) {
-                    v = trim(v);
-                    if(v != null) {
-                        normalized.add(v);
-                    }
-                }
-                if(normalized.size() == 0) {
-                    value = null;
-                } else if(normalized.size() == 1) {
-                    value = normalized.iterator().next();
-                } else {
-                    value = (String[]) normalized.toArray(new String[normalized.size()]);
-                }
+                value = normalize((String[]) entry.getValue());
             }
             
-            //convert key to lowercase 
-            normalizedKvp.put(key.toLowerCase(), value);
+            normalizedKvp.put(key, value);
+            if (raw != null) {
+                raw.put(key, value);
+            }
         }
         
         return normalizedKvp;
     }
 
+    /**
+     * Trims the values and removes the duplicates, returning null if no value is left, the value
+     * itself if only one is left, the array of values otherwise
+     */
+    static Object normalize(String[] values) {
+        // servlet containers use single element arrays for most parameters, skip the dedup
+        if (values.length == 1) {
+            return trim(values[0]);
+        }
+        // mere value repetition (a common error for which the OWS spec leaves the server up
+        // to decide what to do) must not cause the result to be a String[]
+        String[] normalized = new String[values.length];
+        int count = 0;
+        for (String v : values) {
+            v = trim(v);
+            if (v != null && !contains(normalized, count, v)) {
+                normalized[count++] = v;
+            }
+        }
+        if (count == 0) {
+            return null;
+        } else if (count == 1) {
+            return normalized[0];
+        } else if (count < normalized.length) {
+            return Arrays.copyOf(normalized, count);
+        }
+        return normalized;
+    }
+
+    private static boolean contains(String[] values, int count, String value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String trim(String value) {
         // trim the string
         if ( value != null ) {
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -155,6 +156,44 @@ public class DispatcherTest extends TestCase {
         assertEquals(new Message("Hello world!"), message);
     }
 
+    public void testPreParseKVP() throws Exception {
+        URL url = getClass().getResource("applicationContext.xml");
+
+        FileSystemXmlApplicationContext context = new FileSystemXmlApplicationContext(url.toString());
+
+        Dispatcher dispatcher = (Dispatcher) context.getBean("dispatcher");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContextPath("/geoserver");
+
+        request.addParameter("service", " hello ");
+        request.addParameter("Request", "Hello");
+        request.addParameter("message", new String[] {"Hello world!", " Hello world! "});
+        request.addParameter("layers", new String[] {"a", "b", "a"});
+
+        Request req = new Request();
+        req.setHttpRequest(request);
+
+        dispatcher.preParseKVP(req);
+
+        Map kvp = req.getKvp();
+        Map rawKvp = req.getRawKvp();
+        assertNotSame(kvp, rawKvp);
+        for (Map map : new Map[] {kvp, rawKvp}) {
+            assertEquals(4, map.size());
+            assertEquals("hello", map.get("service"));
+            assertEquals("Hello", map.get("request"));
+            assertEquals("Hello", map.get("REQUEST"));
+            // repeated values are collapsed
+            assertEquals("Hello world!", map.get("message"));
+            assertTrue(Arrays.equals(new String[] {"a", "b"}, (String[]) map.get("layers")));
+        }
+
+        // parsing does not alter the raw values
+        kvp.put("message", new Message("Hello world!"));
+        assertEquals("Hello world!", rawKvp.get("message"));
+    }
+
     public void testParseXML() throws Exception {
         URL url = getClass().getResource("applicationContext.xml");
 
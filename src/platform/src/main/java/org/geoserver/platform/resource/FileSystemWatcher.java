@@ -5,20 +5,41 @@
  */
 package org.geoserver.platform.resource;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.resource.ResourceNotification.Kind;
+import org.geotools.util.logging.Logging;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
@@ -26,14 +47,32 @@ import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 /**
  * Active object (using a ScheduledExecutorService) used to watch file system for changes.
  * <p>
- * This implementation currently polls the file system and should be updated with Java 7 WatchService when available. The internal design is similar
- * to WatchService, WatchKey and WatchEvent in order to facilitate this transition.
+ * Directories holding the watched files, and the watched directories themselves, are registered
+ * with the native {@link WatchService}. Native events only mark the affected watches as dirty,
+ * the dirty watches are then checked together once the events settle for a short debounce delay,
+ * so that bursts of events result in a single notification per watch.
+ * <p>
+ * Watches that cannot be covered by native events are polled on a timer instead: files whose
+ * directory does not exist yet, directories on network file systems (whose remote changes do not
+ * generate local events), and all watches if the platform has no native WatchService. Polling
+ * can also be forced with the <code>GEOSERVER_FILESYSTEM_WATCHER_POLLING</code> variable.
  * <p>
  * This implementation makes a few concessions to being associated with ResourceStore, reporting changes with resource paths rather than files.
  * 
  * @author Jody Garnett (Boundless)
  */
 public class FileSystemWatcher implements ResourceNotificationDispatcher, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(FileSystemWatcher.class);
+
+    static final String POLLING_PROPERTY = "GEOSERVER_FILESYSTEM_WATCHER_POLLING";
+
+    /**
+     * File system types whose changes can happen elsewhere, without native events
+     */
+    static final Set<String> NETWORK_FILE_SYSTEMS = new HashSet<>(Arrays.asList("nfs", "nfs4",
+            "cifs", "smbfs", "smb2", "afs", "9p", "fuse.sshfs", "fuse.glusterfs", "glusterfs",
+            "ceph", "lustre", "gpfs"));
     
     interface FileExtractor {
         public File getFile(String path);
@@ -99,9 +138,29 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         
         File[] contents; // directory contents at last check
 
+        /** Absolute path, used to match native events */
+        final Path absolute;
+
+        /** Directory holding the watched file, null for a file system root */
+        final Path parent;
+
+        /** Set by native events, the watch has to be checked */
+        volatile boolean dirty;
+
+        /** Set when native events do not cover the watch, and it has to be polled */
+        volatile boolean polled = true;
+
+        /**
+         * Names of the entries reported as modified by native events since the last check, the
+         * file itself or the directory children
+         */
+        final Set<String> reported = ConcurrentHashMap.newKeySet();
+
         public Watch(File file, String path) {
             this.file = file;
             this.path = path;
+            this.absolute = file.toPath().toAbsolutePath().normalize();
+            this.parent = absolute.getParent();
             this.exsists = file.exists();
             this.last = exsists ? file.lastModified() : 0;
             if (file.isDirectory()) {
@@ -258,6 +317,41 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
             return null; // no change
         }
 
+        /**
+         * Delta for entries reported modified by native events, but whose timestamp did not
+         * change enough to be noticed by {@link #changed(long)}
+         */
+        public Delta modified(Set<String> names) {
+            if (file.isFile()) {
+                return new Delta(file, Kind.ENTRY_MODIFY);
+            }
+            if (file.isDirectory()) {
+                List<File> files = new ArrayList<File>(names.size());
+                for (String name : names) {
+                    File child = new File(file, name);
+                    if (child.exists()) {
+                        files.add(child);
+                    }
+                }
+                if (!files.isEmpty()) {
+                    return new Delta(file, Kind.ENTRY_MODIFY, null, null, files);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Takes the entries reported modified so far
+         */
+        public Set<String> drainReported() {
+            Set<String> names = new HashSet<String>();
+            for (Iterator<String> it = reported.iterator(); it.hasNext();) {
+                names.add(it.next());
+                it.remove();
+            }
+            return names;
+        }
+
         public boolean isMatch(File file, String path) {
             if (this.file == null) {
                 if (file != null){
@@ -285,41 +379,63 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
     protected long lastmodified;
 
     CopyOnWriteArrayList<Watch> watchers = new CopyOnWriteArrayList<Watch>();
-    
+
+    /**
+     * The native watch service, null if not available
+     */
+    volatile WatchService watchService;
+
+    boolean watchServiceInitialized;
+
+    /**
+     * The directories registered with the native watch service
+     */
+    final Map<Path, WatchKey> keys = new ConcurrentHashMap<Path, WatchKey>();
+
+    final AtomicBoolean checkScheduled = new AtomicBoolean();
+
     /**
-     * Note we have a single runnable here to review all outstanding Watch instances.
-     * The focus is on using minimal system resources while we wait for Java 7 WatchService
-     * (to be more efficient).
+     * How long native events are left to settle before checking the affected watches, in
+     * milliseconds
+     */
+    long debounce = 250;
+
+    /**
+     * Polls the Watch instances not covered by native events, and drops the ones nobody
+     * listens to anymore.
      */
     private Runnable sync = new Runnable() {
         @Override
         public void run() {
             long now = System.currentTimeMillis();
+            boolean removed = false;
             for (Watch watch : watchers) {
                 if( watch.getListeners().isEmpty()){
-                    watchers.remove(watch);
+                    removed |= watchers.remove(watch);
                     continue;
                 }
-                Delta delta = watch.changed(now);
-                if (delta != null) {
-                    
-                    /** Created based on created/removed/modified files */
-                    List<ResourceNotification.Event> events = ResourceNotification.delta(
-                            watch.file, delta.created, delta.removed, delta.modified);
-                    
-                    ResourceNotification notify = new ResourceNotification( watch.getPath(),
-                            delta.kind, watch.last, events);
-                    
-                    for (ResourceListener listener : watch.getListeners()) {
-                        try {
-                            listener.changed(notify);
-                        } catch (Throwable t) {
-                            Logger logger = Logger.getLogger(listener.getClass().getPackage()
-                                    .getName());
-                            logger.log(Level.FINE,
-                                    "Unable to notify " + watch + ":" + t.getMessage(), t);
-                        }
-                    }
+                if (watch.polled) {
+                    check(watch, now);
+                }
+            }
+            if (removed) {
+                release();
+            }
+        }
+    };
+
+    /**
+     * Checks the Watch instances marked dirty by native events
+     */
+    private Runnable checkDirty = new Runnable() {
+        @Override
+        public void run() {
+            checkScheduled.set(false);
+            long now = System.currentTimeMillis();
+            for (Watch watch : watchers) {
+                if (watch.dirty) {
+                    watch.dirty = false;
+                    check(watch, now);
                 }
             }
         }
@@ -356,6 +472,214 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         });
     }
 
+    /**
+     * Checks a watch for changes, notifying its listeners
+     */
+    void check(Watch watch, long now) {
+        Set<String> reported = watch.drainReported();
+        Delta delta = watch.changed(now);
+        if (delta == null && !reported.isEmpty()) {
+            // modified again within the file system timestamp resolution
+            delta = watch.modified(reported);
+        }
+        // the watched file or its parent might have been created or removed
+        register(watch);
+        if (delta != null) {
+            
+            /** Created based on created/removed/modified files */
+            List<ResourceNotification.Event> events = ResourceNotification.delta(
+                    watch.file, delta.created, delta.removed, delta.modified);
+            
+            ResourceNotification notify = new ResourceNotification( watch.getPath(),
+                    delta.kind, watch.last, events);
+            
+            for (ResourceListener listener : watch.getListeners()) {
+                try {
+                    listener.changed(notify);
+                } catch (Throwable t) {
+                    Logger logger = Logger.getLogger(listener.getClass().getPackage()
+                            .getName());
+                    logger.log(Level.FINE,
+                            "Unable to notify " + watch + ":" + t.getMessage(), t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the native watch service, unless disabled or not available, and starts the thread
+     * receiving its events
+     */
+    void initWatchService() {
+        if (watchServiceInitialized) {
+            return;
+        }
+        watchServiceInitialized = true;
+        if (Boolean.parseBoolean(GeoServerExtensions.getProperty(POLLING_PROPERTY))) {
+            return;
+        }
+        final WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.INFO,
+                    "Native file system events not available, polling for changes", e);
+            return;
+        }
+        if (service.getClass().getSimpleName().startsWith("Polling")) {
+            // the JDK fallback polls every watched directory, with a longer delay than ours
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close the watch service", e);
+            }
+            return;
+        }
+        watchService = service;
+        Thread thread = tFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    WatchKey key;
+                    try {
+                        key = service.take();
+                    } catch (InterruptedException | ClosedWatchServiceException e) {
+                        return;
+                    }
+                    try {
+                        dispatch(key);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to dispatch file system events", e);
+                    }
+                }
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * Marks the watches affected by the events of a native key as dirty, and schedules their
+     * check
+     */
+    void dispatch(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        List<WatchEvent<?>> events = key.pollEvents();
+        boolean valid = key.reset();
+        if (!valid) {
+            // directory removed, the watches relying on it will poll
+            keys.remove(directory, key);
+        }
+        for (Watch watch : watchers) {
+            boolean contents = directory.equals(watch.absolute);
+            boolean self = directory.equals(watch.parent);
+            if (!contents && !self) {
+                continue;
+            }
+            if (!valid) {
+                watch.dirty = true;
+            }
+            for (WatchEvent<?> event : events) {
+                if (event.kind() == OVERFLOW) {
+                    watch.dirty = true;
+                    continue;
+                }
+                String name = event.context().toString();
+                if (contents) {
+                    watch.dirty = true;
+                    if (event.kind() == ENTRY_MODIFY) {
+                        watch.reported.add(name);
+                    }
+                } else if (name.equals(watch.absolute.getFileName().toString())) {
+                    watch.dirty = true;
+                    if (event.kind() == ENTRY_MODIFY && !watch.file.isDirectory()) {
+                        watch.reported.add(name);
+                    }
+                }
+            }
+        }
+        if (checkScheduled.compareAndSet(false, true)) {
+            try {
+                pool.schedule(checkDirty, debounce, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+    }
+
+    /**
+     * Registers the directories a watch relies on with the native watch service, marking the
+     * watch as polled if not all of them could be
+     */
+    void register(Watch watch) {
+        if (watchService == null) {
+            return;
+        }
+        boolean covered = watch.parent != null && register(watch.parent);
+        if (covered && watch.file.isDirectory()) {
+            covered = register(watch.absolute);
+        }
+        watch.polled = !covered;
+    }
+
+    boolean register(Path directory) {
+        if (keys.containsKey(directory)) {
+            return true;
+        }
+        synchronized (keys) {
+            if (keys.containsKey(directory)) {
+                return true;
+            }
+            if (!directory.toFile().isDirectory() || !isNativeSupported(directory)) {
+                return false;
+            }
+            try {
+                keys.put(directory, directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE,
+                        ENTRY_MODIFY));
+                return true;
+            } catch (IOException | ClosedWatchServiceException e) {
+                LOGGER.log(Level.FINE, "Cannot watch " + directory + ", will poll it", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns false for directories on network file systems, which can be modified by other
+     * hosts without generating local events
+     */
+    boolean isNativeSupported(Path directory) {
+        try {
+            String type = java.nio.file.Files.getFileStore(directory).type();
+            return !NETWORK_FILE_SYSTEMS.contains(type.toLowerCase());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Cancels the native registrations no watch relies on anymore
+     */
+    void release() {
+        synchronized (keys) {
+            for (Iterator<Map.Entry<Path, WatchKey>> it = keys.entrySet().iterator(); it
+                    .hasNext();) {
+                Map.Entry<Path, WatchKey> entry = it.next();
+                boolean used = false;
+                for (Watch watch : watchers) {
+                    if (entry.getKey().equals(watch.absolute)
+                            || entry.getKey().equals(watch.parent)) {
+                        used = true;
+                        break;
+                    }
+                }
+                if (!used) {
+                    entry.getValue().cancel();
+                    it.remove();
+                }
+            }
+        }
+    }
+
     private Watch watch(File file, String path ){
         if( file == null || path == null ){
             return null;
@@ -377,13 +701,18 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         }
         Watch watch = watch( file, path );
         if( watch == null ){
+            initWatchService();
             watch = new Watch(file, path);
+            watch.addListener(listener);
+            // listed before its directories are registered, so that their first events find it
             watchers.add(watch);
+            register(watch);
             if( monitor == null){
                 monitor = pool.scheduleWithFixedDelay(sync, delay, delay, unit);
-            }                
+            }
+        } else {
+            watch.addListener(listener);
         }
-        watch.addListener(listener);
     }
 
     public synchronized boolean removeListener(String path, ResourceListener listener) {
@@ -408,11 +737,14 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
                 monitor = null;
             }
         }
+        if (removed) {
+            release();
+        }
         return removed;
     }
 
     /**
-     * Package visibility to allow test cases to set a shorter delay for testing.
+     * Package visibility to allow test cases to set a shorter polling delay for testing.
      * 
      * @param delay
      * @param unit
@@ -426,9 +758,25 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         }
     }
 
+    /**
+     * Package visibility to allow test cases to check whether a path is polled, or covered by
+     * native events.
+     */
+    boolean isPolled(String path) {
+        for (Watch watch : watchers) {
+            if (watch.getPath().equals(path)) {
+                return watch.polled;
+            }
+        }
+        throw new IllegalArgumentException("Path " + path + " is not watched");
+    }
+
     @Override
     public void destroy() throws Exception {
         pool.shutdown();
+        if (watchService != null) {
+            watchService.close();
+        }
     }
 
     @Override
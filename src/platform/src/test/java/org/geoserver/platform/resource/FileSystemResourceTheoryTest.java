@@ -5,10 +5,12 @@
 package org.geoserver.platform.resource;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -167,6 +169,36 @@ public class FileSystemResourceTheoryTest extends ResourceTheoryTest {
         store.get(Paths.BASE).removeListener(listener);
     }
 
+    @Test
+    public void nativeEvents() throws Exception {
+        File fileD = Paths.toFile(store.baseDirectory, "DirC/FileD");
+
+        AwaitResourceListener listener = new AwaitResourceListener();
+        store.get("DirC/FileD").addListener(listener);
+        store.get("DirE/UndefG/UndefH").addListener(listener);
+        assumeTrue("Native file system events not available",
+                store.watcher.watchService != null);
+        // do not let polling catch the changes
+        store.watcher.schedule(1, TimeUnit.HOURS);
+        assertFalse(store.watcher.isPolled("DirC/FileD"));
+        // parent directory not there yet
+        assertTrue(store.watcher.isPolled("DirE/UndefG/UndefH"));
+
+        // two writes within the file system timestamp resolution
+        java.nio.file.Files.write(fileD.toPath(), "one".getBytes());
+        ResourceNotification n = listener.await(5, TimeUnit.SECONDS);
+        assertNotNull("detected event", n);
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+        listener.reset();
+        java.nio.file.Files.write(fileD.toPath(), "two".getBytes());
+        n = listener.await(5, TimeUnit.SECONDS);
+        assertNotNull("detected second event", n);
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+
+        store.get("DirC/FileD").removeListener(listener);
+        store.get("DirE/UndefG/UndefH").removeListener(listener);
+    }
+
     /** ResourceListener that traps the next ResourceNotification for testing */
     static class AwaitResourceListener extends Await<ResourceNotification> implements ResourceListener {
         @Override
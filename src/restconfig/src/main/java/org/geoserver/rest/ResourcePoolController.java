@@ -0,0 +1,61 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.geoserver.catalog.ResourceCache;
+import org.geoserver.catalog.ResourcePoolStatistics;
+import org.geoserver.rest.catalog.NamedMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the usage statistics of the resource pool caches, and of the other caches published
+ * by {@link ResourcePoolStatistics}
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/resourcepool", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+public class ResourcePoolController extends RestBaseController {
+
+    ResourcePoolStatistics statistics;
+
+    @Autowired
+    public ResourcePoolController(ResourcePoolStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @GetMapping
+    public Map<String, Object> resourcePoolGet() {
+        List<Map<String, Object>> caches = new ArrayList<>();
+        for (ResourceCache.Statistics stats : statistics.getCacheStatistics()) {
+            Map<String, Object> cache = new NamedMap<>("cache");
+            cache.put("name", stats.getName());
+            cache.put("size", stats.getSize());
+            cache.put("weight", stats.getWeight());
+            cache.put("maxWeight", stats.getMaxWeight());
+            cache.put("idleTimeout", stats.getIdleTimeout());
+            cache.put("hitCount", stats.getHitCount());
+            cache.put("missCount", stats.getMissCount());
+            cache.put("hitRate", stats.getHitRate());
+            cache.put("evictionCount", stats.getEvictionCount());
+            cache.put("loadCount", stats.getLoadCount());
+            cache.put("loadExceptionCount", stats.getLoadExceptionCount());
+            cache.put("totalLoadTime", stats.getTotalLoadTime());
+            cache.put("averageLoadPenalty", stats.getAverageLoadPenalty());
+            caches.add(cache);
+        }
+
+        Map<String, Object> result = new NamedMap<>("resourcePool");
+        result.put("caches", caches);
+        return result;
+    }
+}
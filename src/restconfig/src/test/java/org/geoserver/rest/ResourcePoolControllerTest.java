@@ -0,0 +1,50 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.geoserver.catalog.ResourcePoolStatistics;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+public class ResourcePoolControllerTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testGetAsJSON() throws Exception {
+        JSON json = getAsJSON(RestBaseController.ROOT_PATH + "/resourcepool.json");
+
+        assertTrue(json instanceof JSONObject);
+        JSONArray caches = ((JSONObject) json).getJSONArray("caches");
+        assertEquals(GeoServerExtensions.bean(ResourcePoolStatistics.class).getCacheStatistics()
+                .size(), caches.size());
+        boolean found = false;
+        for (int i = 0; i < caches.size(); i++) {
+            JSONObject cache = caches.getJSONObject(i);
+            if ("featureTypes".equals(cache.getString("name"))) {
+                found = true;
+                assertTrue(cache.getLong("maxWeight") > 0);
+                assertTrue(cache.has("hitCount"));
+                assertTrue(cache.has("evictionCount"));
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testGetAsXML() throws Exception {
+        Document dom = getAsDOM(RestBaseController.ROOT_PATH + "/resourcepool.xml");
+
+        assertEquals("resourcePool", dom.getDocumentElement().getNodeName());
+        assertTrue(dom.getElementsByTagName("maxWeight").getLength() > 0);
+    }
+}
@@ -297,6 +297,43 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         assertTrue(canAccess(manager, milUser, arcGridLayer, AccessMode.READ));
     }
 
+    @Test
+    public void testDecisionCache() throws Exception {
+        setupRequestThreadLocal("WMS");
+        DefaultResourceAccessManager manager = buildAccessManager("wsContainerGroupDMilitaryOnly.properties");
+
+        for (int i = 0; i < 2; i++) {
+            assertFalse(canAccess(manager, roUser, wsContainerD, AccessMode.READ));
+            assertFalse(canAccess(manager, roUser, arcGridLayer, AccessMode.READ));
+            assertTrue(canAccess(manager, milUser, wsContainerD, AccessMode.READ));
+            assertTrue(canAccess(manager, milUser, arcGridLayer, AccessMode.READ));
+        }
+        assertTrue(manager.getDecisionCacheStatistics().getHitCount() > 0);
+        long size = manager.getDecisionCacheStatistics().getSize();
+        assertTrue(size > 0);
+
+        // the limits are reused
+        DataAccessLimits limits = manager.getAccessLimits(roUser, arcGridLayer.getResource());
+        assertNotNull(limits);
+        assertSame(limits, manager.getAccessLimits(roUser, arcGridLayer.getResource()));
+
+        // layer groups are not considered outside of WMS, the decisions are kept separate
+        setupRequestThreadLocal("WFS");
+        assertTrue(canAccess(manager, roUser, arcGridLayer, AccessMode.READ));
+        assertTrue(manager.getDecisionCacheStatistics().getSize() > size);
+
+        // catalog changes drop the decisions
+        manager.new DecisionCacheCleaner().reloaded();
+        assertEquals(0, manager.getDecisionCacheStatistics().getSize());
+
+        // nor is a decision computed while the cache is being cleared kept
+        assertTrue(manager.cached(roUser, "id", "ws", "name", AccessMode.READ, true, () -> {
+            manager.clearDecisionCache();
+            return true;
+        }));
+        assertEquals(0, manager.getDecisionCacheStatistics().getSize());
+    }
+
     private boolean canAccess(ResourceAccessManager manager, Authentication user, LayerInfo catalogInfo, AccessMode mode) {
         DataAccessLimits limits = manager.getAccessLimits(user, catalogInfo);
         return canAccess(mode, limits);
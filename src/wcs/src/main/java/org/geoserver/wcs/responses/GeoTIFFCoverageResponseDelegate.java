@@ -6,8 +6,6 @@
 package org.geoserver.wcs.responses;
 
 import java.awt.Dimension;
-import java.awt.image.RenderedImage;
-import java.awt.image.SampleModel;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
@@ -24,7 +22,6 @@ import org.geotools.gce.geotiff.GeoTiffFormat;
 import org.geotools.gce.geotiff.GeoTiffWriteParams;
 import org.geotools.util.Utilities;
 import org.geotools.util.logging.Logging;
-import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.parameter.ParameterValueGroup;
 import org.vfny.geoserver.wcs.WcsException;
 import org.vfny.geoserver.wcs.WcsException.WcsExceptionCode;
@@ -162,22 +159,10 @@ public class GeoTIFFCoverageResponseDelegate extends BaseCoverageResponseDelegat
     private void handleTiling(Map<String, String> econdingParameters, GridCoverage2D sourceCoverage, GeoTiffWriterHelper helper)
             throws WcsException {
 
-        // start with default dimension, since tileW and tileH are optional
-        final RenderedImage sourceImage=sourceCoverage.getRenderedImage();
-        final SampleModel sampleModel = sourceImage.getSampleModel();
-        final int sourceTileW=sampleModel.getWidth();
-        final int sourceTileH=sampleModel.getHeight();        
-        final Dimension tileDimensions= new Dimension(sourceTileW,sourceTileH);
-        LOGGER.fine("Source tiling:"+tileDimensions.width+"x"+tileDimensions.height);
-        // if the tile size exceeds the image dimension, let's retile to save space on output image
-        final GridEnvelope gr = sourceCoverage.getGridGeometry().getGridRange();
-        if(gr.getSpan(0) < tileDimensions.width) {
-            tileDimensions.width = gr.getSpan(0);
-        }
-        if(gr.getSpan(1) < tileDimensions.height) {
-            tileDimensions.height = gr.getSpan(1);
-        }
-        LOGGER.fine("Source tiling reviewed to save space:"+tileDimensions.width+"x"+tileDimensions.height);        
+        // start with default dimension, since tileW and tileH are optional, the source tiling
+        // unless the source tiles are too large to be written one at a time
+        final Dimension tileDimensions = GeoTiffWriterHelper.getDefaultTileSize(sourceCoverage);
+        LOGGER.fine("Default tiling:"+tileDimensions.width+"x"+tileDimensions.height);
 
         //
         // tiling
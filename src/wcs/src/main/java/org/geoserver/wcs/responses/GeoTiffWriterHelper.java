@@ -4,11 +4,15 @@
  */
 package org.geoserver.wcs.responses;
 
+import java.awt.Dimension;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.imageio.stream.ImageOutputStream;
 import javax.media.jai.OpImage;
 import javax.media.jai.RenderedOp;
 
@@ -24,7 +28,9 @@ import org.geotools.gce.geotiff.GeoTiffReader;
 import org.geotools.gce.geotiff.GeoTiffWriteParams;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.image.ImageWorker;
+import org.geotools.image.io.ImageIOExt;
 import org.geotools.resources.image.ImageUtilities;
+import org.geotools.util.logging.Logging;
 import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.geometry.Envelope;
 import org.opengis.parameter.GeneralParameterValue;
@@ -39,8 +45,21 @@ import org.opengis.referencing.crs.EngineeringCRS;
  */
 public class GeoTiffWriterHelper {
 
+    private static final Logger LOGGER = Logging.getLogger(GeoTiffWriterHelper.class);
+
     private static final float DEFAULT_QUALITY = 0.75f;
 
+    /**
+     * Source tiles larger than this, on either side, are not kept in the output, as each one
+     * would be computed and held in memory as a whole while writing
+     */
+    static final int MAX_SOURCE_TILE_SIZE = 1024;
+
+    /**
+     * The output tile size used when the source tiles are too large
+     */
+    static final int STREAMING_TILE_SIZE = 512;
+
     private final static GeoTiffFormat TIFF_FORMAT = new GeoTiffFormat();
 
     private GridCoverage2D coverage;
@@ -98,10 +117,28 @@ public class GeoTiffWriterHelper {
     }
 
     private GeoTiffWriteParams buildWriteParams(GridCoverage2D coverage) {
+        Dimension tileSize = getDefaultTileSize(coverage);
+
+        GeoTiffWriteParams writeParams = new GeoTiffWriteParams();
+        writeParams.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
+        writeParams.setTiling(tileSize.width, tileSize.height);
+        return writeParams;
+    }
+
+    /**
+     * Returns the default output tile size, the source one, unless the source is made of large
+     * tiles or strips, in that case the output is written in smaller tiles, so that the coverage
+     * gets computed and encoded a tile at a time instead of being fully loaded in memory
+     */
+    public static Dimension getDefaultTileSize(GridCoverage2D coverage) {
         final RenderedImage renderedImage = coverage.getRenderedImage();
         int tileWidth = renderedImage.getTileWidth();
         int tileHeight = renderedImage.getTileHeight();
-        
+        if (tileWidth > MAX_SOURCE_TILE_SIZE || tileHeight > MAX_SOURCE_TILE_SIZE) {
+            tileWidth = STREAMING_TILE_SIZE;
+            tileHeight = STREAMING_TILE_SIZE;
+        }
+
         // avoid tiles bigger than the image
         final GridEnvelope gr = coverage.getGridGeometry().getGridRange();
         if(gr.getSpan(0) < tileWidth) {
@@ -111,11 +148,7 @@ public class GeoTiffWriterHelper {
             tileHeight = gr.getSpan(1);
         }
 
-
-        GeoTiffWriteParams writeParams = new GeoTiffWriteParams();
-        writeParams.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
-        writeParams.setTiling(tileWidth, tileHeight);
-        return writeParams;
+        return new Dimension(tileWidth, tileHeight);
     }
     
     private ParameterValueGroup buildGeoToolsWriteParams(GeoTiffWriteParams writeParams) {
@@ -181,10 +214,15 @@ public class GeoTiffWriterHelper {
             } else {
                 final GeneralParameterValue[] wps = (GeneralParameterValue[]) geotoolsWriteParams.values()
                         .toArray(new GeneralParameterValue[geotoolsWriteParams.values().size()]);
+
+                // the TIFF writer goes back to fill in the tile offsets, large outputs are
+                // cached on disk rather than in memory, according to the ImageIO cache threshold
+                ImageOutputStream imageOutStream = ImageIOExt
+                        .createImageOutputStream(coverage.getRenderedImage(), stream);
         
                 // write out the coverage
                 AbstractGridCoverageWriter writer = (AbstractGridCoverageWriter) TIFF_FORMAT
-                        .getWriter(stream);
+                        .getWriter(imageOutStream != null ? imageOutStream : stream);
                 if (writer == null)
                     throw new ServiceException(
                             "Could not find the GeoTIFF writer, please check it's in the classpath");
@@ -196,6 +234,14 @@ public class GeoTiffWriterHelper {
                     } catch (Exception e) {
                         // swallow, silent close
                     }
+                    if (imageOutStream != null) {
+                        try {
+                            // flushes the cached output to the stream
+                            imageOutStream.close();
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "Failed to close the image output stream", e);
+                        }
+                    }
                 }
             }
         } 
@@ -35,6 +35,7 @@ import org.geoserver.wcs2_0.util.WCS20DescribeCoverageExtension;
 import org.geotools.util.logging.Logging;
 import org.geotools.xml.transform.TransformerBase;
 import org.opengis.coverage.grid.GridCoverage;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * Default implementation of the Web Coverage Service 2.0
@@ -42,7 +43,7 @@ import org.opengis.coverage.grid.GridCoverage;
  * @author Emanuele Tajariol (etj) - GeoSolutions
  * @author Simone Giannecchini, GeoSolutions
  */
-public class DefaultWebCoverageService20 implements WebCoverageService20 {
+public class DefaultWebCoverageService20 implements WebCoverageService20, DisposableBean {
 
     protected Logger LOGGER = Logging.getLogger(DefaultWebCoverageService20.class);
     
@@ -143,4 +144,9 @@ public class DefaultWebCoverageService20 implements WebCoverageService20 {
         throw new ServiceException("WCS-EO extension is not installed, thus the operation is not available");
     }
 
+    @Override
+    public void destroy() throws Exception {
+        GetCoverage.disposeReadPool();
+    }
+
 }
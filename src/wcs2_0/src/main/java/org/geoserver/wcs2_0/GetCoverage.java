@@ -12,12 +12,18 @@ import java.awt.image.SampleModel;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -34,7 +40,10 @@ import org.geoserver.catalog.CoverageDimensionCustomizerReader.GridCoverageWrapp
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.data.util.CoverageUtils;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geoserver.util.LazyThreadPool;
 import org.geoserver.wcs.CoverageCleanerCallback;
 import org.geoserver.wcs.WCSInfo;
 import org.geoserver.wcs2_0.exception.WCS20Exception;
@@ -165,6 +174,17 @@ public class GetCoverage {
 
     private static final double EPS = 1e-6;
 
+    /**
+     * The property setting the number of threads reading the envelopes of a request in parallel
+     */
+    public static final String READ_THREADS_PROPERTY = "WCS_PARALLEL_READ_THREADS";
+
+    /**
+     * The pool reading the envelopes of a request in parallel, when enabled
+     */
+    private static final LazyThreadPool READ_POOL = new LazyThreadPool(
+            "GeoServer WCS coverage reader", GetCoverage::lookupReadThreads);
+
     public GetCoverage(WCSInfo serviceInfo, Catalog catalog, EnvelopeAxesLabelsMapper envelopeDimensionsMapper, MIMETypeMapper mimeMapper) {
         this.wcs = serviceInfo;
         this.catalog = catalog;
@@ -183,6 +203,43 @@ public class GetCoverage {
         this.gridCoverageFactory = CoverageFactoryFinder.getGridCoverageFactory(GeoTools.getDefaultHints());
     }
 
+    /**
+     * Returns the number of threads reading the envelopes of a request in parallel, 0 if parallel
+     * reads are disabled (the default, set the WCS_PARALLEL_READ_THREADS property to enable them)
+     */
+    static int getReadThreads() {
+        return READ_POOL.getThreads();
+    }
+
+    static int lookupReadThreads() {
+        String value = GeoServerExtensions.getProperty(READ_THREADS_PROPERTY);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + READ_THREADS_PROPERTY + ": " + value
+                        + ", the coverages will be read sequentially");
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the bounded pool used to read the envelopes of a request in parallel, or null if
+     * parallel reads are disabled
+     */
+    static ExecutorService getReadPool() {
+        return READ_POOL.get();
+    }
+
+    /**
+     * Shuts down the parallel read pool, if any. The number of threads is read again from the
+     * WCS_PARALLEL_READ_THREADS property on the next request
+     */
+    public static void disposeReadPool() {
+        READ_POOL.dispose();
+    }
+
     /**
      * Return true in case the specified format supports Multidimensional Output
      * TODO: Consider adding a method to CoverageResponseDelegate returning this information
@@ -760,41 +817,208 @@ public class GetCoverage {
             addEnvelopes(subset, readEnvelopes, coverageCRS);
         }
 
+        // with several envelopes, the ones after the first are read in parallel, each with
+        // its own pre-applied scale, while the first one is read in this thread
+        List<Future<GridCoverage2D>> reads = null;
+        List<double[]> readScales = null;
+        PendingReads pending = null;
+        ExecutorService executor = getReadPool();
+        if (executor != null && readEnvelopes.size() > 1) {
+            // the pool threads need the request and security thread locals
+            final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+            final PendingReads pendingReads = new PendingReads(
+                    CoverageCleanerCallback::disposeCoverage);
+            pending = pendingReads;
+            reads = new ArrayList<>();
+            readScales = new ArrayList<>();
+            reads.add(null);
+            readScales.add(preAppliedScale);
+            for (final GeneralEnvelope readEnvelope : readEnvelopes.subList(1,
+                    readEnvelopes.size())) {
+                final double[] readScale = new double[] { Double.NaN, Double.NaN };
+                readScales.add(readScale);
+                reads.add(executor.submit(() -> {
+                    threadLocals.apply();
+                    try {
+                        return pendingReads.completed(readCoverage(cinfo, request, reader, hints,
+                                incrementalInputSize, spatialInterpolation, coverageCRS,
+                                readEnvelope, requestedEnvelope, scaling, readScale));
+                    } finally {
+                        threadLocals.cleanup();
+                    }
+                }));
+            }
+        }
+
         List<GridCoverage2D> readCoverages = new ArrayList<>();
-        for (GeneralEnvelope readEnvelope : readEnvelopes) {
-            // check if a previous read already covered this envelope, readers
-            // can return more than we asked
-            GridCoverage2D cov = null;
-            BoundingBox readBoundingBox = new Envelope2D(readEnvelope);
-            for (GridCoverage2D gc : readCoverages) {
-                Envelope2D gce = gc.getEnvelope2D();
-                if (gce.contains(readBoundingBox)) {
-                    cov = gc;
-                    break;
+        boolean completed = false;
+        try {
+            for (int i = 0; i < readEnvelopes.size(); i++) {
+                GeneralEnvelope readEnvelope = readEnvelopes.get(i);
+                // check if a previous read already covered this envelope, readers
+                // can return more than we asked
+                GridCoverage2D cov = null;
+                BoundingBox readBoundingBox = new Envelope2D(readEnvelope);
+                for (GridCoverage2D gc : readCoverages) {
+                    Envelope2D gce = gc.getEnvelope2D();
+                    if (gce.contains(readBoundingBox)) {
+                        cov = gc;
+                        break;
+                    }
+                }
+                Future<GridCoverage2D> read = reads == null ? null : reads.get(i);
+                if (cov != null && read != null) {
+                    // the parallel read was not needed after all, let it go
+                    GridCoverage2D unused = waitForRead(read);
+                    // taken out, the reads left over are disposed of in case of failure
+                    reads.set(i, null);
+                    pending.taken(unused);
+                    if (unused != null) {
+                        CoverageCleanerCallback.addCoverages(unused);
+                    }
                 }
-            }
-            if (cov == null) {
-                cov = readCoverage(cinfo, request, reader, hints, incrementalInputSize,
-                        spatialInterpolation, coverageCRS, readEnvelope, requestedEnvelope, scaling, preAppliedScale);
                 if (cov == null) {
-                    continue;
+                    if (read == null) {
+                        cov = readCoverage(cinfo, request, reader, hints, incrementalInputSize,
+                                spatialInterpolation, coverageCRS, readEnvelope,
+                                requestedEnvelope, scaling, preAppliedScale);
+                    } else {
+                        cov = waitForRead(read);
+                        reads.set(i, null);
+                        pending.taken(cov);
+                        double[] readScale = readScales.get(i);
+                        if (cov != null && !Double.isNaN(readScale[0])) {
+                            preAppliedScale[0] = readScale[0];
+                            preAppliedScale[1] = readScale[1];
+                        }
+                    }
+                    if (cov == null) {
+                        continue;
+                    }
+                    readCoverages.add(cov);
+                }
+                Envelope2D covEnvelope = cov.getEnvelope2D();
+                if (covEnvelope.contains(readBoundingBox)
+                        && (covEnvelope.getWidth() > readBoundingBox.getWidth() || covEnvelope
+                                .getHeight() > readBoundingBox.getHeight())) {
+                    GridCoverage2D cropped = cropOnEnvelope(cov, readEnvelope);
+                    result.add(cropped);
+                } else {
+                    result.add(cov);
                 }
-                readCoverages.add(cov);
             }
-            Envelope2D covEnvelope = cov.getEnvelope2D();
-            if (covEnvelope.contains(readBoundingBox)
-                    && (covEnvelope.getWidth() > readBoundingBox.getWidth() || covEnvelope
-                            .getHeight() > readBoundingBox.getHeight())) {
-                GridCoverage2D cropped = cropOnEnvelope(cov, readEnvelope);
-                result.add(cropped);
-            } else {
-                result.add(cov);
+            completed = true;
+        } finally {
+            // no need to keep reading if one of the reads failed
+            if (reads != null) {
+                for (Future<GridCoverage2D> read : reads) {
+                    if (read != null) {
+                        read.cancel(true);
+                    }
+                }
+            }
+            if (!completed) {
+                disposeReads(readCoverages, pending);
             }
         }
 
         return result;
     }
 
+    /**
+     * Hands the coverages read so far, and the ones of the parallel reads that completed without
+     * being consumed, to the {@link CoverageCleanerCallback}, as they won't be part of the result.
+     * The parallel reads still running dispose of their own coverages once done.
+     */
+    private void disposeReads(List<GridCoverage2D> readCoverages, PendingReads pending) {
+        List<GridCoverage2D> coverages = new ArrayList<>(readCoverages);
+        if (pending != null) {
+            coverages.addAll(pending.abandon());
+        }
+        if (!coverages.isEmpty()) {
+            CoverageCleanerCallback.addCoverages(
+                    coverages.toArray(new GridCoverage2D[coverages.size()]));
+        }
+    }
+
+    /**
+     * Tracks the coverages of the parallel reads not yet consumed by the request thread. Once the
+     * request failed, the reads completing afterwards dispose of their coverages right away, as
+     * cancelling their futures neither stops them nor gives access to their results.
+     */
+    static class PendingReads {
+
+        final Consumer<GridCoverage2D> disposer;
+
+        final Set<GridCoverage2D> coverages = Collections
+                .newSetFromMap(new IdentityHashMap<>());
+
+        boolean abandoned;
+
+        PendingReads(Consumer<GridCoverage2D> disposer) {
+            this.disposer = disposer;
+        }
+
+        /**
+         * Called by the reading thread with the coverage read, disposes of it if the request
+         * already failed
+         *
+         * @return The coverage, or null if it has been disposed of
+         */
+        GridCoverage2D completed(GridCoverage2D coverage) {
+            if (coverage == null) {
+                return null;
+            }
+            synchronized (this) {
+                if (!abandoned) {
+                    coverages.add(coverage);
+                    return coverage;
+                }
+            }
+            disposer.accept(coverage);
+            return null;
+        }
+
+        /**
+         * Called by the request thread once it owns the coverage of a read
+         */
+        synchronized void taken(GridCoverage2D coverage) {
+            if (coverage != null) {
+                coverages.remove(coverage);
+            }
+        }
+
+        /**
+         * Marks the request as failed, returning the coverages read and not yet taken
+         */
+        synchronized List<GridCoverage2D> abandon() {
+            abandoned = true;
+            List<GridCoverage2D> result = new ArrayList<>(coverages);
+            coverages.clear();
+            return result;
+        }
+    }
+
+    /**
+     * Waits for a parallel read to complete, rethrowing its failure, if any
+     */
+    private GridCoverage2D waitForRead(Future<GridCoverage2D> read) throws Exception {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while reading the coverage", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ServiceException(cause);
+        }
+    }
+
     private void addEnvelopes(Envelope envelope, List<GeneralEnvelope> readEnvelopes,
             CoordinateReferenceSystem readerCRS) throws TransformException, FactoryException {
         // leverage GeoTools projection handlers to figure out exactly which areas we should be
@@ -1548,11 +1772,12 @@ public class GetCoverage {
         }
 
         /**
-         * Increment the total size value if not disabled
+         * Increment the total size value if not disabled. Synchronized, as the coverages can be
+         * read in parallel
          * 
          * @param GridCoverage2D
          */
-        public void addSize(GridCoverage2D coverage) {
+        public synchronized void addSize(GridCoverage2D coverage) {
             incrementalSize += getCoverageSize(coverage.getGridGeometry().getGridRange2D(),
                     coverage.getRenderedImage().getSampleModel());
             isSizeExceeded();
@@ -1563,7 +1788,7 @@ public class GetCoverage {
          * 
          *
          */
-        public long finalSize() {
+        public synchronized long finalSize() {
             return incrementalSize;
         }
 
@@ -0,0 +1,52 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs2_0;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.geoserver.wcs2_0.GetCoverage.PendingReads;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+public class PendingReadsTest {
+
+    GridCoverageFactory factory = new GridCoverageFactory();
+
+    @Test
+    public void testAbandon() throws Exception {
+        List<GridCoverage2D> disposed = new ArrayList<>();
+        PendingReads pending = new PendingReads(disposed::add);
+        GridCoverage2D taken = coverage("taken");
+        GridCoverage2D left = coverage("left");
+        assertSame(taken, pending.completed(taken));
+        assertSame(left, pending.completed(left));
+        pending.taken(taken);
+
+        // the coverages read and not taken by the request are handed back
+        assertEquals(Collections.singletonList(left), pending.abandon());
+        assertTrue(disposed.isEmpty());
+
+        // a read completing after the failure disposes of its own coverage
+        GridCoverage2D late = coverage("late");
+        assertNull(pending.completed(late));
+        assertEquals(Collections.singletonList(late), disposed);
+        assertTrue(pending.abandon().isEmpty());
+    }
+
+    GridCoverage2D coverage(String name) {
+        return factory.create(name, new float[][] { { 1 } },
+                new ReferencedEnvelope(0, 1, 0, 1, DefaultGeographicCRS.WGS84));
+    }
+}
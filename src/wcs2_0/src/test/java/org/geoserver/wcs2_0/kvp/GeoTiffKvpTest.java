@@ -12,12 +12,16 @@ import net.opengis.wcs20.GetCoverageType;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.geoserver.wcs.WCSInfo;
+import org.geoserver.wcs.responses.GeoTiffWriterHelper;
+import org.geotools.coverage.CoverageFactoryFinder;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.factory.Hints;
 import org.geotools.gce.geotiff.GeoTiffReader;
 import org.geotools.geometry.GeneralEnvelope;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.CRS.AxisOrder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.geotools.resources.coverage.CoverageUtilities;
 import org.junit.Test;
@@ -30,6 +34,8 @@ import javax.imageio.metadata.IIOMetadataNode;
 import javax.imageio.stream.FileImageInputStream;
 import javax.mail.BodyPart;
 import javax.mail.Multipart;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.io.File;
@@ -295,6 +301,21 @@ public class GeoTiffKvpTest extends WCSKVPTestSupport {
         reader.dispose();
     }
     
+    @Test
+    public void defaultTilingLargeSourceTiles() throws Exception {
+        // a single, large strip, it would be computed and encoded all at once
+        GridCoverage2D strip = CoverageFactoryFinder.getGridCoverageFactory(null).create("strip",
+                new BufferedImage(3000, 100, BufferedImage.TYPE_BYTE_GRAY),
+                new ReferencedEnvelope(0, 30, 0, 1, DefaultGeographicCRS.WGS84));
+        assertEquals(new Dimension(512, 100), GeoTiffWriterHelper.getDefaultTileSize(strip));
+
+        // reasonably sized tiles are kept
+        GridCoverage2D small = CoverageFactoryFinder.getGridCoverageFactory(null).create("small",
+                new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY),
+                new ReferencedEnvelope(0, 3, 0, 2, DefaultGeographicCRS.WGS84));
+        assertEquals(new Dimension(300, 200), GeoTiffWriterHelper.getDefaultTileSize(small));
+    }
+
     @Test
     public void tiling() throws Exception {
         MockHttpServletResponse response = getAsServletResponse("wcs?request=GetCoverage&service=WCS&version=2.0.1" +
@@ -750,6 +750,21 @@ public class GetCoverageTest extends WCSTestSupport {
         checkDatelineCrossing(xml);
     }
 
+    @Test
+    public void testDatelineCrossingParallelReads() throws Exception {
+        System.setProperty(GetCoverage.READ_THREADS_PROPERTY, "2");
+        try {
+            GetCoverage.disposeReadPool();
+            checkDatelineCrossing(
+                    new File("./src/test/resources/requestGetCoverageAcrossDateline.xml"));
+            checkDatelineCrossing(
+                    new File("./src/test/resources/requestGetCoverageAcrossDateline2.xml"));
+        } finally {
+            System.clearProperty(GetCoverage.READ_THREADS_PROPERTY);
+            GetCoverage.disposeReadPool();
+        }
+    }
+
     private void checkDatelineCrossing(final File xml) throws IOException, Exception,
             DataSourceException {
         final String request = FileUtils.readFileToString(xml);
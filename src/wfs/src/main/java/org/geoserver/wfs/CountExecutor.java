@@ -6,21 +6,55 @@
 package org.geoserver.wfs;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
+import org.geotools.util.logging.Logging;
 
 /**
  * A class executing a feature count, but also able to return a pre-computed one. Used as an accessory
  * to compute the numberMatched attribute for WFS 2.0, and running the actual counts only when strictly
  * necessary
+ * <p>
+ * When the <code>GEOSERVER_WFS_COUNT_TIMEOUT</code> variable is set to a positive number of
+ * milliseconds the counts are started in a background pool as soon as the queries are set up,
+ * running in parallel with the feature stream, and the total is reported as unknown if they are
+ * not done within the timeout. The <code>GEOSERVER_WFS_COUNT_THREADS</code> variable sets the
+ * size of the pool, by default the number of available processors.
+ * </p>
  *  
  * @author Andrea Aime - GeoSolutions
  */
 class CountExecutor {
 
+    static final Logger LOGGER = Logging.getLogger(CountExecutor.class);
+
     private static final int COUNT_UNSET = -1;
 
+    static final String COUNT_TIMEOUT_PROPERTY = "GEOSERVER_WFS_COUNT_TIMEOUT";
+
+    static final String COUNT_THREADS_PROPERTY = "GEOSERVER_WFS_COUNT_THREADS";
+
+    static ExecutorService executor;
+
+    static ScheduledExecutorService canceller;
+
     FeatureSource source;
 
     Query query;
@@ -46,4 +80,146 @@ class CountExecutor {
         }
     }
 
+    /**
+     * Starts the count in the given executor, a pre-computed count is returned as a completed
+     * future
+     */
+    Future<Integer> start(ExecutorService executor) {
+        if (providedCount != COUNT_UNSET) {
+            return CompletableFuture.completedFuture(providedCount);
+        }
+        // the count runs in a pool thread, it needs the request and security context
+        final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        return executor.submit(() -> {
+            threadLocals.apply();
+            try {
+                return getCount();
+            } finally {
+                threadLocals.cleanup();
+            }
+        });
+    }
+
+    /**
+     * Starts all the counts in the background pool. The counts still running after the timeout,
+     * in milliseconds, are cancelled, as their result would be reported as unknown anyways, and
+     * the output format might never ask for it
+     */
+    static List<Future<Integer>> start(List<CountExecutor> executors, long timeout) {
+        ExecutorService pool = getExecutor();
+        List<Future<Integer>> counts = new ArrayList<>(executors.size());
+        for (CountExecutor executor : executors) {
+            counts.add(executor.start(pool));
+        }
+        getCanceller().schedule(() -> {
+            for (Future<Integer> count : counts) {
+                count.cancel(true);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        return counts;
+    }
+
+    /**
+     * Sums the counts, waiting for them until the deadline, expressed in milliseconds since the
+     * epoch. Returns -1 if any count is unknown or not done in time, in which case the pending
+     * ones are cancelled.
+     */
+    static long getTotal(List<Future<Integer>> counts, long deadline) throws IOException {
+        long total = 0;
+        try {
+            for (Future<Integer> count : counts) {
+                long wait = Math.max(0, deadline - System.currentTimeMillis());
+                int result = count.get(wait, TimeUnit.MILLISECONDS);
+                // if the count is unknown for one, we don't know the total, period
+                if (result == -1) {
+                    return -1;
+                }
+                total += result;
+            }
+            return total;
+        } catch (TimeoutException | CancellationException e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Count not completed within the timeout, reporting it as unknown");
+            }
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to count features", cause);
+        } finally {
+            for (Future<Integer> count : counts) {
+                count.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The time in milliseconds the counts can run in parallel with the feature stream, zero or
+     * negative if they are run sequentially, on demand
+     */
+    static long getTimeout() {
+        return getLongProperty(COUNT_TIMEOUT_PROPERTY, 0);
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = (int) getLongProperty(COUNT_THREADS_PROPERTY,
+                    Runtime.getRuntime().availableProcessors());
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+                Thread t = new Thread(r, "GeoServer WFS count " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    static synchronized ScheduledExecutorService getCanceller() {
+        if (canceller == null) {
+            canceller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "GeoServer WFS count canceller");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return canceller;
+    }
+
+    /**
+     * Shuts down the count and canceller threads, they are created again if needed
+     */
+    static synchronized void dispose() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (canceller != null) {
+            canceller.shutdownNow();
+            canceller = null;
+        }
+    }
+
+    static long getLongProperty(String name, long defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid value " + value + " for " + name
+                        + ", using the default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
 }
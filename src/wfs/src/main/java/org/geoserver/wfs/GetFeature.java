@@ -112,6 +112,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -376,6 +377,9 @@ public class GetFeature {
         boolean calculateSize = !(("1.0".equals(request.getVersion()) || "1.0.0".equals(request.getVersion())) && 
             (queries.size() == 1 || maxFeatures == Integer.MAX_VALUE));
 
+        // keyset paging needs to know where the page starts, only single queries are supported
+        boolean keysetPaging = queries.size() == 1 && KeysetPaging.isEnabled();
+
         List results = new ArrayList();
         final List<CountExecutor> totalCountExecutors = new ArrayList<CountExecutor>();
         try {
@@ -582,8 +586,24 @@ public class GetFeature {
                     gtQuery = context.getQuery();
                 }
 
+                // if the previous page was read with the same sort, start after its last keys
+                List<Object> pagesKey = null;
+                KeysetPaging.Cursor cursor = null;
+                if (keysetPaging && KeysetPaging.isSupported(gtQuery, source)) {
+                    pagesKey = KeysetPaging.getPagesKey(meta.getQualifiedName(), gtQuery);
+                    if (offset > 0) {
+                        cursor = KeysetPaging.getCursor(pagesKey, offset);
+                        if (cursor != null) {
+                            gtQuery = KeysetPaging.apply(gtQuery, cursor);
+                        }
+                    }
+                }
 
                 FeatureCollection<? extends FeatureType, ? extends Feature> features = getFeatures(request, source, gtQuery);
+                if (pagesKey != null && features instanceof SimpleFeatureCollection) {
+                    features = KeysetPaging.record((SimpleFeatureCollection) features, pagesKey,
+                            gtQuery.getSortBy(), offset, cursor);
+                }
 
                 // For complex features, we need the targetCrs and version in scenario where we have
                 // a top level feature that does not contain a geometry(therefore no crs) and has a
@@ -690,6 +710,7 @@ public class GetFeature {
             
             // total count represents the total count of the features matched for this query in cases
             // where the client has limited the result set size, so we compute it lazily
+            final long countTimeout = CountExecutor.getTimeout();
             if (isNumberMatchedSkipped) {
                 totalCount = BigInteger.valueOf(-1);
             } else if(count < maxFeatures && calculateSize && totalOffset == 0) {
@@ -699,13 +720,21 @@ public class GetFeature {
             } else {
                 // ok, in this case we're forced to run the queries to discover the actual total count
                 // We do so lazily, not all output formats need it, leveraging the fact that BigInteger
-                // is not final to wrap it in a lazy loading proxy
+                // is not final to wrap it in a lazy loading proxy. If so configured, the counts
+                // are started right away, in parallel with the feature stream, and reported as
+                // unknown if not done in time
+                final List<Future<Integer>> counts = countTimeout > 0
+                        ? CountExecutor.start(totalCountExecutors, countTimeout) : null;
+                final long countDeadline = System.currentTimeMillis() + countTimeout;
                 Enhancer enhancer = new Enhancer();
                 enhancer.setSuperclass(BigInteger.class);
                 enhancer.setCallback(new LazyLoader() {
                     
                     @Override
                     public Object loadObject() throws Exception {
+                        if (counts != null) {
+                            return BigInteger.valueOf(CountExecutor.getTotal(counts, countDeadline));
+                        }
                         long totalCount = 0;
                         for (CountExecutor q : totalCountExecutors) {
                             int result = q.getCount();
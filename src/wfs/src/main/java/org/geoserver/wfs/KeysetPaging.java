@@ -0,0 +1,322 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keyset paging support for {@link GetFeature}.
+ * <p>
+ * While a sorted page is encoded the sort key values of its last feature are remembered, so that
+ * the request for the next page (same query, start index equal to the end of the previous page)
+ * can be turned into a filter on the sort keys, e.g. <code>key &gt;= lastValue</code>, that the
+ * stores push down to the database, instead of making them skip all the previous rows. The
+ * features sharing the last key value that were already returned are skipped with a start index,
+ * so the results are the same as offset based paging, but deep pages cost the same as the first.
+ * </p>
+ * <p>
+ * Inserting or deleting features changes the offsets of the following ones, so the cursors of a
+ * feature type are dropped by {@link KeysetPagingCleaner} on WFS transactions and catalog changes.
+ * Changes made to the data outside of GeoServer cannot be tracked, the cursors are dropped
+ * {@link #CURSOR_TIMEOUT} minutes after being recorded to limit their effects.
+ * </p>
+ * <p>
+ * Only queries sorted on non nillable attributes are paged this way, nulls sort differently
+ * depending on the store and would be missed by the comparison. Enabled by setting the
+ * <code>GEOSERVER_WFS_KEYSET_PAGING</code> variable to true.
+ * </p>
+ */
+class KeysetPaging {
+
+    static final String KEYSET_PAGING_PROPERTY = "GEOSERVER_WFS_KEYSET_PAGING";
+
+    static final int MAX_CURSORS = 1000;
+
+    static final long CURSOR_TIMEOUT = 10;
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    /**
+     * The sort key values at the end of the pages encoded so far, by query and end index
+     */
+    static final Cache<List<Object>, Cursor> CURSORS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CURSORS).expireAfterWrite(CURSOR_TIMEOUT, TimeUnit.MINUTES).build();
+
+    /**
+     * The sort key values of the last feature of a page, and the number of features sharing them
+     * up to the end of the page
+     */
+    static class Cursor {
+
+        final Object[] values;
+
+        final int ties;
+
+        Cursor(Object[] values, int ties) {
+            this.values = values;
+            this.ties = ties;
+        }
+    }
+
+    static boolean isEnabled() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(KEYSET_PAGING_PROPERTY));
+    }
+
+    /**
+     * Returns true if the query can be paged on its sort keys, that is, it's sorted on
+     * attributes that cannot be null
+     */
+    static boolean isSupported(Query query,
+            FeatureSource<? extends FeatureType, ? extends Feature> source) {
+        SortBy[] sortBy = query.getSortBy();
+        FeatureType schema = source.getSchema();
+        if (sortBy == null || sortBy.length == 0 || !(schema instanceof SimpleFeatureType)
+                || query.getAlias() != null || !query.getJoins().isEmpty()) {
+            return false;
+        }
+        for (SortBy sort : sortBy) {
+            PropertyName property = sort.getPropertyName();
+            if (property == null) {
+                // natural or reverse order
+                return false;
+            }
+            AttributeDescriptor descriptor = ((SimpleFeatureType) schema)
+                    .getDescriptor(property.getPropertyName());
+            if (descriptor == null || descriptor.isNillable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the key identifying the pages of a query, the offset excluded
+     */
+    static List<Object> getPagesKey(Name typeName, Query query) {
+        // the security subsystem can restrict the features returned depending on the user
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Object viewParams = query.getHints().get(Hints.VIRTUAL_TABLE_PARAMETERS);
+        return Arrays.asList(typeName, String.valueOf(query.getFilter()),
+                Arrays.toString(query.getSortBy()), query.getVersion(), viewParams,
+                auth != null ? auth.getName() : null);
+    }
+
+    static List<Object> getCursorKey(List<Object> pagesKey, int endIndex) {
+        List<Object> key = new ArrayList<>(pagesKey);
+        key.add(endIndex);
+        return key;
+    }
+
+    /**
+     * Drops the cursors of a feature type, the namespace is ignored if null or empty
+     */
+    static void invalidate(String namespaceURI, String localName) {
+        CURSORS.asMap().keySet().removeIf(key -> {
+            Name typeName = (Name) key.get(0);
+            return typeName.getLocalPart().equals(localName)
+                    && (namespaceURI == null || namespaceURI.isEmpty()
+                            || namespaceURI.equals(typeName.getNamespaceURI()));
+        });
+    }
+
+    /**
+     * Drops all the cursors
+     */
+    static void invalidateAll() {
+        CURSORS.invalidateAll();
+    }
+
+    /**
+     * Returns the cursor at the end of the page ending at the given index, if any
+     */
+    static Cursor getCursor(List<Object> pagesKey, int endIndex) {
+        return CURSORS.getIfPresent(getCursorKey(pagesKey, endIndex));
+    }
+
+    /**
+     * Turns the query in one starting right after the cursor, using a filter on the sort keys
+     * instead of skipping the previous features
+     */
+    static Query apply(Query query, Cursor cursor) {
+        Query result = new Query(query);
+        Filter after = getAfterFilter(query.getSortBy(), cursor.values);
+        Filter filter = query.getFilter();
+        result.setFilter(filter == null || filter == Filter.INCLUDE ? after
+                : FF.and(filter, after));
+        result.setStartIndex(cursor.ties > 0 ? cursor.ties : null);
+        return result;
+    }
+
+    /**
+     * Builds the filter matching the features whose sort keys follow or equal the given values in
+     * sort order, e.g. <code>(k1 &gt; v1) or (k1 = v1 and k2 &gt;= v2)</code>
+     */
+    static Filter getAfterFilter(SortBy[] sortBy, Object[] values) {
+        List<Filter> alternatives = new ArrayList<>();
+        for (int i = 0; i < sortBy.length; i++) {
+            List<Filter> conditions = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                conditions.add(FF.equals(sortBy[j].getPropertyName(), FF.literal(values[j])));
+            }
+            PropertyName property = sortBy[i].getPropertyName();
+            Literal value = FF.literal(values[i]);
+            boolean ascending = sortBy[i].getSortOrder() != SortOrder.DESCENDING;
+            if (i < sortBy.length - 1) {
+                conditions.add(ascending ? FF.greater(property, value)
+                        : FF.less(property, value));
+            } else {
+                conditions.add(ascending ? FF.greaterOrEqual(property, value)
+                        : FF.lessOrEqual(property, value));
+            }
+            alternatives.add(conditions.size() == 1 ? conditions.get(0) : FF.and(conditions));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : FF.or(alternatives);
+    }
+
+    /**
+     * Wraps the features of a page so that the cursor at its end gets recorded once they are
+     * fully read
+     *
+     * @param startIndex The index of the first feature of the page
+     * @param start The cursor the page started from, or null if it was read with an offset
+     */
+    static SimpleFeatureCollection record(SimpleFeatureCollection features,
+            List<Object> pagesKey, SortBy[] sortBy, int startIndex, Cursor start) {
+        return new RecordingFeatureCollection(features, pagesKey, sortBy, startIndex, start);
+    }
+
+    static class RecordingFeatureCollection extends DecoratingSimpleFeatureCollection {
+
+        final List<Object> pagesKey;
+
+        final String[] keys;
+
+        final int startIndex;
+
+        final Cursor start;
+
+        RecordingFeatureCollection(SimpleFeatureCollection delegate, List<Object> pagesKey,
+                SortBy[] sortBy, int startIndex, Cursor start) {
+            super(delegate);
+            this.pagesKey = pagesKey;
+            this.keys = new String[sortBy.length];
+            for (int i = 0; i < sortBy.length; i++) {
+                keys[i] = sortBy[i].getPropertyName().getPropertyName();
+            }
+            this.startIndex = Math.max(0, startIndex);
+            this.start = start;
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            return new RecordingIterator(delegate.features());
+        }
+
+        class RecordingIterator implements SimpleFeatureIterator {
+
+            final SimpleFeatureIterator delegate;
+
+            int read;
+
+            Object[] last;
+
+            int ties;
+
+            boolean tiesFromStart;
+
+            boolean valid = true;
+
+            boolean exhausted;
+
+            RecordingIterator(SimpleFeatureIterator delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = delegate.hasNext();
+                if (!hasNext) {
+                    exhausted = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public SimpleFeature next() throws NoSuchElementException {
+                SimpleFeature feature = delegate.next();
+                read++;
+                if (valid) {
+                    Object[] values = new Object[keys.length];
+                    for (int i = 0; i < keys.length; i++) {
+                        values[i] = feature.getAttribute(keys[i]);
+                        if (values[i] == null) {
+                            // sort key not returned, cannot page on it
+                            valid = false;
+                            return feature;
+                        }
+                    }
+                    if (last != null && Arrays.equals(last, values)) {
+                        ties++;
+                    } else {
+                        last = values;
+                        ties = 1;
+                        tiesFromStart = read == 1;
+                    }
+                }
+                return feature;
+            }
+
+            @Override
+            public void close() {
+                delegate.close();
+                if (valid && exhausted && last != null) {
+                    int total = ties;
+                    if (tiesFromStart) {
+                        // the features sharing the last values might have started in the
+                        // previous pages
+                        if (start != null && Arrays.equals(start.values, last)) {
+                            total += start.ties;
+                        } else if (start == null && startIndex > 0) {
+                            // the page was read with an offset, can't tell
+                            return;
+                        }
+                    }
+                    CURSORS.put(getCursorKey(pagesKey, startIndex + read),
+                            new Cursor(last, total));
+                }
+            }
+        }
+    }
+}
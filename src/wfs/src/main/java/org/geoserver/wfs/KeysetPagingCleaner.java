@@ -0,0 +1,83 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import javax.xml.namespace.QName;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.opengis.feature.type.Name;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Drops the {@link KeysetPaging} cursors of the feature types modified by WFS transactions, or
+ * changed in the catalog, as the features following the changed ones are now at different offsets.
+ * Also shuts down the {@link CountExecutor} threads when the application context is destroyed.
+ */
+public class KeysetPagingCleaner implements TransactionListener, CatalogListener, DisposableBean {
+
+    public KeysetPagingCleaner(Catalog catalog) {
+        catalog.addListener(this);
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        QName layerName = event.getLayerName();
+        if (layerName == null) {
+            KeysetPaging.invalidateAll();
+        } else {
+            KeysetPaging.invalidate(layerName.getNamespaceURI(), layerName.getLocalPart());
+        }
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        // no cursors for new resources
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        invalidate(event);
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // the resource might be renamed, drop the cursors under the old name
+        invalidate(event);
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        invalidate(event);
+    }
+
+    @Override
+    public void reloaded() {
+        KeysetPaging.invalidateAll();
+    }
+
+    @Override
+    public void destroy() {
+        KeysetPaging.invalidateAll();
+        CountExecutor.dispose();
+    }
+
+    void invalidate(CatalogEvent event) {
+        Object source = event.getSource();
+        if (source instanceof ResourceInfo) {
+            Name name = ((ResourceInfo) source).getQualifiedName();
+            KeysetPaging.invalidate(name.getNamespaceURI(), name.getLocalPart());
+        } else if (source instanceof StoreInfo) {
+            KeysetPaging.invalidateAll();
+        }
+    }
+}
@@ -5,6 +5,7 @@
  */
 package org.geoserver.wfs.json;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Calendar;
 import java.util.List;
@@ -30,11 +31,17 @@ import com.vividsolutions.jts.geom.impl.CoordinateArraySequence;
 
 import net.sf.json.JSONException;
 import net.sf.json.util.JSONBuilder;
+import net.sf.json.util.JSONUtils;
 
 
 /**
  * This class extends the JSONBuilder to be able to write out geometric types.  It is coded
  * against the draft 5 version of the spec on http://geojson.org
+ * <p>
+ * Coordinates are formatted directly from the coordinate sequences into a reusable char buffer,
+ * see {@link RoundingUtil#format(double, int, char[], int)}, bypassing the json-lib number
+ * handling, which allocates several objects per ordinate.
+ * </p>
  *
  * @author Chris Holmes, The Open Planning Project
  * @version $Id$
@@ -42,6 +49,8 @@ import net.sf.json.util.JSONBuilder;
  */
 public class GeoJSONBuilder extends JSONBuilder {
 
+    static final int COORDINATE_BUFFER_SIZE = 4096;
+
     private final Logger LOGGER = org.geotools.util.logging.Logging
     .getLogger(this.getClass());
     
@@ -49,6 +58,13 @@ public class GeoJSONBuilder extends JSONBuilder {
 
     private int numDecimals = 6;
 
+    /**
+     * The buffer the coordinates are formatted into, reused for all the geometries
+     */
+    private final char[] coordinates = new char[COORDINATE_BUFFER_SIZE];
+
+    private int position;
+
     public GeoJSONBuilder(Writer w) {
         super(w);
     }
@@ -69,46 +85,52 @@ public class GeoJSONBuilder extends JSONBuilder {
 
         if (geometryType != MULTIGEOMETRY) {
             this.key("coordinates");
+            // the outer array goes through the builder, the contents are formatted directly
+            // in the coordinate buffer
+            this.array();
 
             switch (geometryType) {
             case POINT:
                 Point point = (Point) geometry;
                 Coordinate c = point.getCoordinate();
-                writeCoordinate(c.x, c.y, c.z);
+                writeOrdinates(c.x, c.y, c.z);
                 break;
             case LINESTRING:
-                writeCoordinates(((LineString)geometry).getCoordinateSequence());
+                writeCoordinatesContent(((LineString)geometry).getCoordinateSequence());
                 break;
             case MULTIPOINT:
-                writeCoordinates(geometry.getCoordinates());
+                writeCoordinatesContent(new CoordinateArraySequence(geometry.getCoordinates()));
                 break;
             case POLYGON:
-                writePolygon((Polygon) geometry);
+                writePolygonContent((Polygon) geometry);
 
                 break;
 
             case MULTILINESTRING:
-                this.array();
-
                 for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
+                    if (i > 0) {
+                        writeChar(',');
+                    }
                     writeCoordinates(((LineString)geometry.getGeometryN(i)).getCoordinateSequence());
                 }
 
-                this.endArray();
-
                 break;
 
             case MULTIPOLYGON:
-                this.array();
-
                 for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
-                    writePolygon((Polygon) geometry.getGeometryN(i));
+                    if (i > 0) {
+                        writeChar(',');
+                    }
+                    writeChar('[');
+                    writePolygonContent((Polygon) geometry.getGeometryN(i));
+                    writeChar(']');
                 }
 
-                this.endArray();
-
                 break;
             }
+
+            flushCoordinates();
+            this.endArray();
         } else {
             writeGeomCollection((GeometryCollection) geometry);
         }
@@ -127,58 +149,97 @@ public class GeoJSONBuilder extends JSONBuilder {
         return this.endArray();
     }
 
-    private JSONBuilder writeCoordinates(Coordinate[] coords)
-        throws JSONException {
-        return writeCoordinates(new CoordinateArraySequence(coords));
+    /**
+     * Write the coordinates of a geometry as an array
+     * @param coords The coordinates to write
+     */
+    private void writeCoordinates(CoordinateSequence coords) {
+        writeChar('[');
+        writeCoordinatesContent(coords);
+        writeChar(']');
     }
-    
+
     /**
-     * Write the coordinates of a geometry
+     * Write the coordinates of a geometry, comma separated
      * @param coords The coordinates to write
-     * @return this
-     * @throws JSONException
      */
-    private JSONBuilder writeCoordinates(CoordinateSequence coords)
-        throws JSONException {
-        this.array();
-        
+    private void writeCoordinatesContent(CoordinateSequence coords) {
         // guess the dimension of the coordinate sequence
         int dim = CoordinateSequences.coordinateDimension(coords);
 
         final int coordCount = coords.size();
         for (int i = 0; i < coordCount; i++) {
+            if (i > 0) {
+                writeChar(',');
+            }
+            writeChar('[');
             if(dim > 2) {
-                writeCoordinate(coords.getX(i), coords.getY(i), coords.getOrdinate(i, 2));
+                writeOrdinates(coords.getX(i), coords.getY(i), coords.getOrdinate(i, 2));
             } else {
-                writeCoordinate(coords.getX(i), coords.getY(i));
+                writeOrdinates(coords.getX(i), coords.getY(i), Double.NaN);
             }
+            writeChar(']');
         }
-
-        return this.endArray();
     }
 
-    private JSONBuilder writeCoordinate(double x, double y) {
-        return writeCoordinate(x, y, Double.NaN);
-    }
-    
-    private JSONBuilder writeCoordinate(double x, double y, double z) {
-        this.array();
+    private void writeOrdinates(double x, double y, double z) {
         if(axisOrder==CRS.AxisOrder.NORTH_EAST){
-            roundedValue(y);
-            roundedValue(x);
+            writeNumber(y);
+            writeChar(',');
+            writeNumber(x);
         } else {
-            roundedValue(x);
-            roundedValue(y);
+            writeNumber(x);
+            writeChar(',');
+            writeNumber(y);
         }
         if(!Double.isNaN(z)) {
-            roundedValue(z);
+            writeChar(',');
+            writeNumber(z);
         }
+    }
 
-        return this.endArray();
+    /**
+     * Writes a rounded number in the coordinate buffer, without allocating any object for the
+     * common cases
+     */
+    private void writeNumber(double value) {
+        if (coordinates.length - position < RoundingUtil.MAX_FORMATTED_LENGTH) {
+            flushCoordinates();
+        }
+        int end = RoundingUtil.format(value, numDecimals, coordinates, position);
+        if (end >= 0) {
+            position = end;
+        } else {
+            // non finite, huge or very precise values, format them as json-lib would
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new JSONException("JSON does not allow non-finite numbers");
+            }
+            String number = JSONUtils.numberToString(RoundingUtil.round(value, numDecimals));
+            number.getChars(0, number.length(), coordinates, position);
+            position += number.length();
+        }
     }
 
-    private void roundedValue(double value) {
-        super.value(RoundingUtil.round(value, numDecimals));
+    private void writeChar(char c) {
+        if (position == coordinates.length) {
+            flushCoordinates();
+        }
+        coordinates[position++] = c;
+    }
+
+    /**
+     * Writes out the contents of the coordinate buffer, needs to be called before using the
+     * builder methods again
+     */
+    private void flushCoordinates() {
+        if (position > 0) {
+            try {
+                writer.write(coordinates, 0, position);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            position = 0;
+        }
     }
     
     /**
@@ -189,35 +250,26 @@ public class GeoJSONBuilder extends JSONBuilder {
     protected JSONBuilder writeBoundingBox(Envelope env) {
         this.key("bbox");
         this.array();
-        if(axisOrder==CRS.AxisOrder.NORTH_EAST) {
-            roundedValue(env.getMinY());
-            roundedValue(env.getMinX());
-            roundedValue(env.getMaxY());
-            roundedValue(env.getMaxX());
-        } else {
-            roundedValue(env.getMinX());
-            roundedValue(env.getMinY());
-            roundedValue(env.getMaxX());
-            roundedValue(env.getMaxY());
-        }
+        // axis order is handled by writeOrdinates
+        writeOrdinates(env.getMinX(), env.getMinY(), Double.NaN);
+        writeChar(',');
+        writeOrdinates(env.getMaxX(), env.getMaxY(), Double.NaN);
+        flushCoordinates();
         return this.endArray();
     }
 
     /**
-     * Writes a polygon
+     * Writes the rings of a polygon, comma separated
      * @param geometry The polygon to write
      * @throws JSONException
      */
-    private void writePolygon(Polygon geometry) throws JSONException {
-        this.array();
+    private void writePolygonContent(Polygon geometry) throws JSONException {
         writeCoordinates(geometry.getExteriorRing().getCoordinateSequence());
 
         for (int i = 0, ii = geometry.getNumInteriorRing(); i < ii; i++) {
+            writeChar(',');
             writeCoordinates(geometry.getInteriorRingN(i).getCoordinateSequence());
         }
-
-        this.endArray(); //end the linear ring
-                         //this.endObject(); //end the 
     }
 
     /** Internal representation of OGC SF Point */
@@ -240,6 +240,8 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
     private FeaturesInfo encodeSimpleFeatures(GeoJSONBuilder jsonWriter, List<FeatureCollection> resultsList,
                                               String id_option, boolean featureBounding) {
         CoordinateReferenceSystem crs = null;
+        CoordinateReferenceSystem axisOrderCrs = null;
+        CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
         boolean hasGeom = false;
         for (FeatureCollection collection : resultsList) {
             try (FeatureIterator iterator = collection.features()) {
@@ -268,7 +270,13 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
                     if (defaultGeomType != null) {
                         CoordinateReferenceSystem featureCrs =
                                 defaultGeomType.getCoordinateReferenceSystem();
-                        jsonWriter.setAxisOrder(CRS.getAxisOrder(featureCrs));
+                        // the features of a collection usually share the same crs, avoid
+                        // looking up the axis order for each one
+                        if (featureCrs != axisOrderCrs) {
+                            axisOrder = CRS.getAxisOrder(featureCrs);
+                            axisOrderCrs = featureCrs;
+                        }
+                        jsonWriter.setAxisOrder(axisOrder);
                         if (crs == null) {
                             crs = featureCrs;
                         }
@@ -322,9 +330,11 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
                         }
                     }
                     // Bounding box for feature in properties
-                    ReferencedEnvelope refenv = ReferencedEnvelope.reference(simpleFeature.getBounds());
-                    if (featureBounding && !refenv.isEmpty())
-                        jsonWriter.writeBoundingBox(refenv);
+                    if (featureBounding) {
+                        ReferencedEnvelope refenv = ReferencedEnvelope.reference(simpleFeature.getBounds());
+                        if (!refenv.isEmpty())
+                            jsonWriter.writeBoundingBox(refenv);
+                    }
                     jsonWriter.endObject(); // end the properties
                     jsonWriter.endObject(); // end the feature
                 }
@@ -52,4 +52,106 @@ public class RoundingUtil {
         return Math.floor(value * scale + 0.5) / scale;
     }
 
+    // Powers of ten as longs, indexed by the number of digits
+    private static final long[] POWERS = {
+            1L,
+            10L,
+            100L,
+            1000L,
+            10000L,
+            100000L,
+            1000000L,
+            10000000L,
+            100000000L,
+            1000000000L,
+            10000000000L,
+            100000000000L,
+            1000000000000L,
+            10000000000000L,
+            100000000000000L,
+            1000000000000000L
+        };
+
+    // Scaled values past this one have more digits than a double can represent exactly
+    private static final double MAX_SCALED = 1e15;
+
+    /**
+     * The maximum number of chars written by {@link #format(double, int, char[], int)}
+     */
+    public static final int MAX_FORMATTED_LENGTH = 34;
+
+    /**
+     * Rounds a value as {@link #round(double, int)} does and writes its plain decimal
+     * representation, without trailing zeros in the fractional part, in the buffer, without
+     * allocating any object.
+     * 
+     * <p>
+     * The values that cannot be written this way, that is, NaN, infinities, values that are too
+     * large, or too small for their digits to be significant at the given number of decimals, are
+     * left to the caller and -1 is returned.
+     * </p>
+     * 
+     * @param value The value to format
+     * @param numDecimals The number of decimal places to round to.
+     * @param buffer The buffer to write into, must have room for {@link #MAX_FORMATTED_LENGTH}
+     *        chars past the offset
+     * @param offset The position of the first char to write
+     * 
+     * @return The position after the last char written, or -1 if the value was not written
+     */
+    public static int format(double value, int numDecimals, char[] buffer, int offset) {
+        if (numDecimals < 0 || numDecimals >= POWERS.length || Double.isNaN(value)
+                || Double.isInfinite(value)) {
+            return -1;
+        }
+        long power = POWERS[numDecimals];
+        double scale = power;
+        if (Math.ulp(value) * scale > 1d) {
+            return -1;
+        }
+        double scaled = Math.floor(value * scale + 0.5);
+        if (Math.abs(scaled) >= MAX_SCALED) {
+            return -1;
+        }
+
+        long units = (long) scaled;
+        int position = offset;
+        if (units < 0) {
+            buffer[position++] = '-';
+            units = -units;
+        }
+        position = writeDigits(units / power, buffer, position);
+        long fraction = units % power;
+        if (fraction != 0) {
+            int digits = numDecimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            buffer[position++] = '.';
+            for (int i = countDigits(fraction); i < digits; i++) {
+                buffer[position++] = '0';
+            }
+            position = writeDigits(fraction, buffer, position);
+        }
+        return position;
+    }
+
+    private static int countDigits(long value) {
+        int digits = 1;
+        while (digits < POWERS.length && value >= POWERS[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static int writeDigits(long value, char[] buffer, int offset) {
+        int end = offset + countDigits(value);
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
 }
@@ -0,0 +1,81 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class CountExecutorTest {
+
+    @Test
+    public void testParallelCount() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("num", Integer.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+        MemoryDataStore store = new MemoryDataStore();
+        store.createSchema(type);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        for (int i = 0; i < 5; i++) {
+            store.addFeature(fb.buildFeature(null, new Object[] { i }));
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Future<Integer>> counts = Arrays.asList(
+                    new CountExecutor(store.getFeatureSource("test"), new Query("test"))
+                            .start(executor),
+                    new CountExecutor(3).start(executor));
+            assertEquals(8, CountExecutor.getTotal(counts, System.currentTimeMillis() + 10000));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        ExecutorService executor = CountExecutor.getExecutor();
+        ScheduledExecutorService canceller = CountExecutor.getCanceller();
+
+        CountExecutor.dispose();
+        assertTrue(executor.isShutdown());
+        assertTrue(canceller.isShutdown());
+        // new threads are created on demand
+        assertNotSame(executor, CountExecutor.getExecutor());
+        CountExecutor.dispose();
+    }
+
+    @Test
+    public void testUnknownCount() throws Exception {
+        List<Future<Integer>> counts = Arrays.asList(CompletableFuture.completedFuture(-1),
+                CompletableFuture.completedFuture(3));
+        assertEquals(-1, CountExecutor.getTotal(counts, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testCountTimeout() throws Exception {
+        CompletableFuture<Integer> slow = new CompletableFuture<>();
+        List<Future<Integer>> counts = Arrays.asList(CompletableFuture.completedFuture(3), slow);
+        assertEquals(-1, CountExecutor.getTotal(counts, System.currentTimeMillis() + 50));
+        // the pending count is not left running
+        assertTrue(slow.isCancelled());
+    }
+}
@@ -24,6 +24,7 @@ import org.custommonkey.xmlunit.XpathEngine;
 import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.config.CapabilitiesCacheCallback;
 import org.geoserver.config.CapabilitiesCacheHeadersCallback;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
@@ -31,6 +32,7 @@ import org.geoserver.config.ResourceErrorHandling;
 import org.geoserver.data.test.CiteTestData;
 import org.geoserver.data.test.SystemTestData;
 import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.security.impl.DataAccessRuleDAO;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.http.HttpHeaders;
@@ -291,6 +293,43 @@ public class GetCapabilitiesTest extends WFSTestSupport {
         }
     }
        
+    @Test
+    public void testServerSideCache() throws Exception {
+        CapabilitiesCacheCallback callback = GeoServerExtensions.bean(CapabilitiesCacheCallback.class);
+        boolean backup = callback.isEnabled();
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(
+                getLayerId(CiteTestData.PRIMITIVEGEOFEATURE));
+        String title = ft.getTitle();
+        try {
+            callback.setEnabled(true);
+            String path = "wfs?service=WFS&version=1.1.0&request=getCapabilities";
+            String first = getAsString(path);
+            assertEquals(1, callback.size());
+            assertEquals(first, getAsString(path));
+            assertEquals(1, callback.size());
+
+            // other parameters, other document
+            getAsString(path + "&sections=FeatureTypeList");
+            assertEquals(2, callback.size());
+
+            // reloading the data access rules invalidates the cached documents
+            DataAccessRuleDAO.get().reload();
+            getAsString(path);
+            assertEquals(1, callback.size());
+
+            // catalog changes invalidate the cached documents
+            ft.setTitle("A changed title");
+            getCatalog().save(ft);
+            assertEquals(0, callback.size());
+            assertTrue(getAsString(path).contains("A changed title"));
+        } finally {
+            callback.setEnabled(backup);
+            ft = getCatalog().getFeatureTypeByName(getLayerId(CiteTestData.PRIMITIVEGEOFEATURE));
+            ft.setTitle(title);
+            getCatalog().save(ft);
+        }
+    }
+
     MockHttpServletRequest createGetRequestWithHeaders(String path, String... headers) {
         MockHttpServletRequest request = createRequest( path ); 
         request.setMethod( "GET" );
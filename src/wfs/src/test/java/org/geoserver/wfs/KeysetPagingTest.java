@@ -0,0 +1,197 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.easymock.EasyMock;
+import org.geoserver.catalog.Catalog;
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.NameImpl;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+public class KeysetPagingTest {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    MemoryDataStore store;
+
+    SimpleFeatureSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        KeysetPaging.CURSORS.invalidateAll();
+
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.nillable(false).add("grp", Integer.class);
+        tb.nillable(false).add("num", Integer.class);
+        tb.nillable(true).add("label", String.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+
+        store = new MemoryDataStore();
+        store.createSchema(type);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        for (int i = 0; i < 15; i++) {
+            // groups of four features sharing the same key
+            store.addFeature(fb.buildFeature("test." + i, new Object[] { i / 4, i, "f" + i }));
+        }
+        source = store.getFeatureSource("test");
+    }
+
+    @Test
+    public void testSupported() throws Exception {
+        Query query = new Query("test");
+        assertFalse(KeysetPaging.isSupported(query, source));
+
+        query.setSortBy(new SortBy[] { FF.sort("grp", SortOrder.ASCENDING) });
+        assertTrue(KeysetPaging.isSupported(query, source));
+
+        // nulls would be skipped by the comparisons
+        query.setSortBy(new SortBy[] { FF.sort("label", SortOrder.ASCENDING) });
+        assertFalse(KeysetPaging.isSupported(query, source));
+
+        query.setSortBy(new SortBy[] { SortBy.NATURAL_ORDER });
+        assertFalse(KeysetPaging.isSupported(query, source));
+    }
+
+    @Test
+    public void testAfterFilter() throws Exception {
+        SortBy[] sortBy = new SortBy[] { FF.sort("grp", SortOrder.DESCENDING),
+                FF.sort("num", SortOrder.ASCENDING) };
+        Filter after = KeysetPaging.getAfterFilter(sortBy, new Object[] { 2, 9 });
+
+        assertTrue(after.evaluate(feature(2, 9)));
+        assertTrue(after.evaluate(feature(2, 10)));
+        assertTrue(after.evaluate(feature(1, 0)));
+        assertFalse(after.evaluate(feature(2, 8)));
+        assertFalse(after.evaluate(feature(3, 12)));
+    }
+
+    @Test
+    public void testPagingWithTies() throws Exception {
+        // pages of three over groups of four, the ties straddle the page boundaries
+        assertEquals(readAll(3, false), readAll(3, true));
+    }
+
+    @Test
+    public void testPagingSingleFeature() throws Exception {
+        // a tie run longer than a page
+        assertEquals(readAll(1, false), readAll(1, true));
+    }
+
+    @Test
+    public void testOffsetPageNotRecorded() throws Exception {
+        Query query = new Query("test");
+        query.setSortBy(new SortBy[] { FF.sort("grp", SortOrder.ASCENDING) });
+        List<Object> pagesKey = KeysetPaging.getPagesKey(new NameImpl("test"), query);
+
+        // page read with an offset, in the middle of a tie run, cannot tell how many precede it
+        query.setStartIndex(5);
+        query.setMaxFeatures(2);
+        read(KeysetPaging.record(source.getFeatures(query), pagesKey, query.getSortBy(), 5,
+                null).features());
+        assertNull(KeysetPaging.getCursor(pagesKey, 7));
+
+        // this one ends on a different key
+        query.setStartIndex(6);
+        query.setMaxFeatures(3);
+        read(KeysetPaging.record(source.getFeatures(query), pagesKey, query.getSortBy(), 6,
+                null).features());
+        KeysetPaging.Cursor cursor = KeysetPaging.getCursor(pagesKey, 9);
+        assertNotNull(cursor);
+        assertEquals(2, cursor.values[0]);
+        assertEquals(1, cursor.ties);
+    }
+
+    @Test
+    public void testTransactionBetweenPages() throws Exception {
+        Query query = new Query("test");
+        query.setSortBy(new SortBy[] { FF.sort("grp", SortOrder.ASCENDING) });
+        List<Object> pagesKey = KeysetPaging.getPagesKey(new NameImpl("test"), query);
+        query.setStartIndex(0);
+        query.setMaxFeatures(6);
+        read(KeysetPaging.record(source.getFeatures(query), pagesKey, query.getSortBy(), 0,
+                null).features());
+        assertNotNull(KeysetPaging.getCursor(pagesKey, 6));
+
+        // a feature inserted before the end of the first page shifts the following ones
+        store.addFeature(feature(0, 15));
+        KeysetPagingCleaner cleaner = new KeysetPagingCleaner(
+                EasyMock.createNiceMock(Catalog.class));
+        cleaner.dataStoreChange(new TransactionEvent(TransactionEventType.PRE_INSERT, null,
+                new QName("test"), null));
+        assertNull(KeysetPaging.getCursor(pagesKey, 6));
+
+        // the cursors recorded from now on account for the new feature
+        assertEquals(readAll(6, false), readAll(6, true));
+    }
+
+    List<Integer> readAll(int pageSize, boolean keyset) throws Exception {
+        Query base = new Query("test");
+        base.setSortBy(new SortBy[] { FF.sort("grp", SortOrder.ASCENDING) });
+        List<Object> pagesKey = KeysetPaging.getPagesKey(new NameImpl("test"), base);
+
+        List<Integer> nums = new ArrayList<>();
+        int offset = 0;
+        while (true) {
+            Query query = new Query(base);
+            query.setMaxFeatures(pageSize);
+            query.setStartIndex(offset);
+            KeysetPaging.Cursor cursor = null;
+            if (keyset && offset > 0) {
+                cursor = KeysetPaging.getCursor(pagesKey, offset);
+                assertNotNull(cursor);
+                query = KeysetPaging.apply(query, cursor);
+            }
+            List<Integer> page = read(KeysetPaging.record(source.getFeatures(query), pagesKey,
+                    query.getSortBy(), offset, cursor).features());
+            if (page.isEmpty()) {
+                return nums;
+            }
+            nums.addAll(page);
+            offset += page.size();
+        }
+    }
+
+    List<Integer> read(SimpleFeatureIterator it) {
+        List<Integer> nums = new ArrayList<>();
+        try {
+            while (it.hasNext()) {
+                nums.add((Integer) it.next().getAttribute("num"));
+            }
+        } finally {
+            it.close();
+        }
+        return nums;
+    }
+
+    SimpleFeature feature(int grp, int num) throws Exception {
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(source.getSchema());
+        return fb.buildFeature(null, new Object[] { grp, num, null });
+    }
+}
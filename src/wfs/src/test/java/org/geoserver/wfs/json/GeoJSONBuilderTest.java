@@ -12,11 +12,14 @@ import java.util.*;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
+import org.geotools.referencing.CRS;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import com.vividsolutions.jts.io.WKTReader;
@@ -337,5 +340,46 @@ public class GeoJSONBuilderTest {
         assertEquals(u2.toString(), o2.get("b"));
         assertEquals("object2", o2.get("c"));
     }
-}
 
+    @Test
+    public void testWriteProjectedCoordinates() throws Exception {
+        builder.setNumberOfDecimals(2);
+        Geometry g = new WKTReader().read("POINT(10000000.123456 -20037508.342789)");
+        builder.writeGeom(g);
+        assertEquals("{\"type\":\"Point\",\"coordinates\":[10000000.12,-20037508.34]}",
+                writer.toString());
+    }
+
+    @Test
+    public void testWriteBoundingBoxNorthEast() throws Exception {
+        builder.setAxisOrder(CRS.AxisOrder.NORTH_EAST);
+        builder.object();
+        builder.writeBoundingBox(new Envelope(1, 3, 2, 4));
+        builder.key("id").value("test");
+        builder.endObject();
+        assertEquals("{\"bbox\":[2,1,4,3],\"id\":\"test\"}", writer.toString());
+    }
+
+    @Test
+    public void testWriteLongLine() throws Exception {
+        // longer than the coordinate buffer
+        Coordinate[] coordinates = new Coordinate[10000];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(i + 0.25, -i - 0.5);
+        }
+        Geometry g = new GeometryFactory().createLineString(coordinates);
+        builder.object().key("geometry");
+        builder.writeGeom(g);
+        builder.key("id").value("test");
+        builder.endObject();
+
+        JSONObject root = JSONObject.fromObject(writer.toString());
+        assertEquals("test", root.get("id"));
+        JSONArray parsed = root.getJSONObject("geometry").getJSONArray("coordinates");
+        assertEquals(coordinates.length, parsed.size());
+        for (int i = 0; i < coordinates.length; i++) {
+            assertEquals(i + 0.25, parsed.getJSONArray(i).getDouble(0), 0d);
+            assertEquals(-i - 0.5, parsed.getJSONArray(i).getDouble(1), 0d);
+        }
+    }
+}
@@ -82,4 +82,52 @@ public class RoundingUtilTest {
         }
     
     }
+    @Test
+    public void testFormatSpecificCases() {
+        assertThat(format(0d, 0), is(equalTo("0")));
+        assertThat(format(-0d, 3), is(equalTo("0")));
+        assertThat(format(0.05, 1), is(equalTo("0.1")));
+        assertThat(format(-0.05, 1), is(equalTo("0")));
+        assertThat(format(-0.001, 3), is(equalTo("-0.001")));
+        assertThat(format(1.00000015, 7), is(equalTo("1.0000002")));
+        assertThat(format(1E-10, 10), is(equalTo("0.0000000001")));
+        assertThat(format(12.5, 8), is(equalTo("12.5")));
+        // no exponential notation for large projected coordinates
+        assertThat(format(-20037508.342789244, 2), is(equalTo("-20037508.34")));
+        assertThat(format(10000000d, 4), is(equalTo("10000000")));
+    }
+
+    @Test
+    public void testFormatFallback() {
+        char[] buffer = new char[RoundingUtil.MAX_FORMATTED_LENGTH];
+        assertThat(RoundingUtil.format(Double.NaN, 2, buffer, 0), is(equalTo(-1)));
+        assertThat(RoundingUtil.format(Double.POSITIVE_INFINITY, 2, buffer, 0), is(equalTo(-1)));
+        assertThat(RoundingUtil.format(Double.MAX_VALUE, 2, buffer, 0), is(equalTo(-1)));
+        assertThat(RoundingUtil.format(1.01234567890123456E14, 2, buffer, 0), is(equalTo(-1)));
+    }
+
+    @Test
+    public void testRandomFormatVsRound() {
+        Random r = new Random();
+        for (int i = 0; i < 10000; i++) {
+            double value = (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(10));
+            for (int numDecimals = 0; numDecimals <= 8; numDecimals++) {
+                String formatted = format(value, numDecimals);
+                if (formatted == null) {
+                    // too many digits, left to the caller
+                    assertThat(Math.abs(value) * Math.pow(10, numDecimals) >= 1e14, is(true));
+                    continue;
+                }
+                double expected = RoundingUtil.round(value, numDecimals);
+                assertThat(Double.parseDouble(formatted), is(equalTo(expected == 0 ? 0d : expected)));
+                assertThat(formatted.endsWith("0") && formatted.contains("."), is(false));
+            }
+        }
+    }
+
+    String format(double value, int numDecimals) {
+        char[] buffer = new char[RoundingUtil.MAX_FORMATTED_LENGTH];
+        int end = RoundingUtil.format(value, numDecimals, buffer, 0);
+        return end < 0 ? null : new String(buffer, 0, end);
+    }
 }
@@ -18,6 +18,7 @@ import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.sld.GetStyles;
 import org.geoserver.sld.GetStylesRequest;
+import org.geoserver.util.LazyThreadPool;
 import org.geoserver.wms.animate.Animator;
 import org.geoserver.wms.capabilities.Capabilities_1_3_0_Transformer;
 import org.geoserver.wms.capabilities.GetCapabilitiesTransformer;
@@ -148,6 +149,18 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
      */
     private static Boolean USE_GLOBAL_RENDERING_POOL = null;
 
+    /**
+     * Number of threads used to render the layers of a map in parallel, zero or negative
+     * disables parallel layer rendering
+     */
+    private static Integer PARALLEL_LAYER_RENDERING_THREADS = null;
+
+    /**
+     * The pool rendering the layers of a map in parallel, when enabled
+     */
+    private static final LazyThreadPool LAYER_RENDERING_POOL = new LazyThreadPool(
+            "GeoServer layer rendering", DefaultWebMapService::getLayerRenderingThreads);
+
     private GetCapabilities getCapabilities;
 
     private DescribeLayer describeLayer;
@@ -247,6 +260,16 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
             else
                 USE_GLOBAL_RENDERING_POOL = Boolean.valueOf(usePool);
         }
+
+        // parallel layer rendering, disabled by default
+        if (PARALLEL_LAYER_RENDERING_THREADS == null) {
+            String threads = GeoServerExtensions.getProperty("PARALLEL_LAYER_RENDERING_THREADS",
+                    context);
+            if (threads == null)
+                PARALLEL_LAYER_RENDERING_THREADS = 0;
+            else
+                PARALLEL_LAYER_RENDERING_THREADS = Integer.valueOf(threads);
+        }
     }
 
     /**
@@ -687,12 +710,31 @@ public class DefaultWebMapService implements WebMapService, ApplicationContextAw
         return RENDERING_POOL;
     }
 
+    /**
+     * Returns the number of threads used to render the layers of a map in parallel, zero if
+     * parallel layer rendering is disabled (the default, set the PARALLEL_LAYER_RENDERING_THREADS
+     * property to enable it)
+     */
+    public static int getLayerRenderingThreads() {
+        Integer threads = PARALLEL_LAYER_RENDERING_THREADS;
+        return threads == null ? 0 : Math.max(0, threads);
+    }
+
+    /**
+     * Returns the bounded pool used to render the layers of a map in parallel, or null if parallel
+     * layer rendering is disabled
+     */
+    public static ExecutorService getLayerRenderingPool() {
+        return LAYER_RENDERING_POOL.get();
+    }
+
     public void destroy() throws Exception {
         if (RENDERING_POOL != null) {
             RENDERING_POOL.shutdown();
             RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
             RENDERING_POOL = null;
         }
+        LAYER_RENDERING_POOL.dispose();
     }
 
 }
@@ -241,6 +241,12 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
                 return graphics;
             }
    
+            @Override
+            protected boolean isParallelRenderingEnabled() {
+                // the listener checks the single graphics every feature is painted on
+                return false;
+            }
+
             @Override
             protected void onBeforeRender(StreamingRenderer renderer) {
                 // force the renderer into serial painting mode, as we need to check what
@@ -107,6 +107,12 @@ class FeatureCountProcessor {
             return new NoOpGraphics2D();
         }
 
+        @Override
+        protected boolean isParallelRenderingEnabled() {
+            // nothing gets painted, the parallel buffers would only waste memory
+            return false;
+        }
+
         @Override
         protected void onBeforeRender(StreamingRenderer renderer) {
             super.onBeforeRender(renderer);
@@ -0,0 +1,342 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.RenderedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.CacheStatisticsProvider;
+import org.geoserver.catalog.ResourceCache;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * A pool of the drawing surfaces used by {@link RenderedImageMapOutputFormat}, keyed by size and
+ * color model, so that GetMap requests can paint on the surfaces of the previous ones instead of
+ * allocating new ones.
+ * <p>
+ * Surfaces handed out by {@link #createImage(int, int, boolean)} are leased, they go back in the
+ * pool only when the {@link org.geoserver.wms.RasterCleaner} disposes them at the end of the
+ * request, and only if they are still leased at that time, surfaces whose content outlives the
+ * request (e.g., meta-tiles whose tiles are cached) have to be {@link #forget(RenderedImage)
+ * forgotten}. Reused surfaces are cleared before being handed out again.
+ * </p>
+ * <p>
+ * The memory of the idle surfaces, as computed by
+ * {@link ImageUtils#getDrawingSurfaceMemoryUse(int, int, java.awt.image.IndexColorModel, boolean)},
+ * is bounded by the <code>GEOSERVER_DRAWING_SURFACE_POOL_SIZE</code> variable, in bytes. The
+ * pool is disabled by default. Only the true color surfaces are pooled, paletted ones are
+ * allocated every time.
+ * </p>
+ * <p>
+ * The surfaces are plain on-heap {@link BufferedImage} objects, pooling them saves the allocation
+ * and garbage collection of their rasters, not heap space. The pool occupancy is published as the
+ * <code>drawingSurfaces</code> cache statistics, see {@link CacheStatisticsProvider}.
+ * </p>
+ */
+public class DrawingSurfacePool implements CacheStatisticsProvider {
+
+    static final Logger LOGGER = Logging.getLogger(DrawingSurfacePool.class);
+
+    static final String POOL_SIZE_PROPERTY = "GEOSERVER_DRAWING_SURFACE_POOL_SIZE";
+
+    static volatile DrawingSurfacePool INSTANCE;
+
+    final long maxMemory;
+
+    final Map<SurfaceKey, Deque<BufferedImage>> idle = new ConcurrentHashMap<>();
+
+    final AtomicLong memory = new AtomicLong();
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The surfaces handed out and not yet released, weakly referenced so that the ones never
+     * released do not leak
+     */
+    final Set<BufferedImage> leased = Collections
+            .synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * Creates a new pool
+     *
+     * @param maxMemory The maximum memory used by the idle surfaces, zero or negative disables
+     *        the pool
+     */
+    public DrawingSurfacePool(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns the pool shared by the GetMap requests, configured with the
+     * <code>GEOSERVER_DRAWING_SURFACE_POOL_SIZE</code> variable
+     */
+    public static DrawingSurfacePool get() {
+        if (INSTANCE == null) {
+            synchronized (DrawingSurfacePool.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new DrawingSurfacePool(getMaxMemory());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    static long getMaxMemory() {
+        String value = GeoServerExtensions.getProperty(POOL_SIZE_PROPERTY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid value " + value + " for " + POOL_SIZE_PROPERTY
+                        + ", the drawing surface pool will be disabled");
+            }
+        }
+        return 0;
+    }
+
+    public boolean isEnabled() {
+        return maxMemory > 0;
+    }
+
+    /**
+     * Returns a drawing surface, as built by
+     * {@link ImageUtils#createImage(int, int, java.awt.image.IndexColorModel, boolean)} with no
+     * palette, taken from the pool if possible
+     */
+    public BufferedImage createImage(int width, int height, boolean transparent) {
+        long size = ImageUtils.getDrawingSurfaceMemoryUse(width, height, null, transparent);
+        if (!isEnabled() || width <= 0 || height <= 0 || size > maxMemory) {
+            return ImageUtils.createImage(width, height, null, transparent);
+        }
+
+        BufferedImage image = null;
+        Deque<BufferedImage> surfaces = idle.get(new SurfaceKey(width, height, transparent));
+        if (surfaces != null) {
+            image = surfaces.pollFirst();
+        }
+        if (image != null) {
+            memory.addAndGet(-size);
+            hits.incrementAndGet();
+            clear(image);
+        } else {
+            misses.incrementAndGet();
+            image = ImageUtils.createImage(width, height, null, transparent);
+        }
+        leased.add(image);
+        return image;
+    }
+
+    /**
+     * Gives back a surface obtained from {@link #createImage(int, int, boolean)}, once nothing
+     * references it anymore. Images not leased by this pool are ignored.
+     *
+     * @return true if the surface has been pooled for reuse
+     */
+    public boolean release(RenderedImage image) {
+        if (!(image instanceof BufferedImage) || !leased.remove(image)) {
+            return false;
+        }
+        BufferedImage surface = (BufferedImage) image;
+        boolean transparent = surface.getType() == BufferedImage.TYPE_4BYTE_ABGR;
+        if (!transparent && surface.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            return false;
+        }
+        SurfaceKey key = new SurfaceKey(surface.getWidth(), surface.getHeight(), transparent);
+        long size = ImageUtils.getDrawingSurfaceMemoryUse(key.width, key.height, null,
+                transparent);
+        if (!reserve(size, key)) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Drawing surface pool full, dropping the released surface: " + this);
+            }
+            return false;
+        }
+        idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>()).offerFirst(surface);
+        return true;
+    }
+
+    /**
+     * Reserves room for an idle surface, evicting surfaces of other sizes if needed
+     */
+    boolean reserve(long size, SurfaceKey key) {
+        while (true) {
+            long current = memory.get();
+            if (current + size <= maxMemory) {
+                if (memory.compareAndSet(current, current + size)) {
+                    return true;
+                }
+            } else if (!evictOther(key)) {
+                return false;
+            }
+        }
+    }
+
+    boolean evictOther(SurfaceKey key) {
+        for (Map.Entry<SurfaceKey, Deque<BufferedImage>> entry : idle.entrySet()) {
+            SurfaceKey other = entry.getKey();
+            if (!other.equals(key)) {
+                // least recently released first
+                BufferedImage evicted = entry.getValue().pollLast();
+                if (evicted != null) {
+                    evictions.incrementAndGet();
+                    memory.addAndGet(-ImageUtils.getDrawingSurfaceMemoryUse(other.width,
+                            other.height, null, other.transparent));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes the pool forget about a leased surface, which will not be reused. To be called when
+     * the surface contents are going to be used after the end of the request.
+     */
+    public void forget(RenderedImage image) {
+        if (image instanceof BufferedImage) {
+            leased.remove(image);
+        }
+    }
+
+    /**
+     * Drops all the idle surfaces
+     */
+    public void clear() {
+        for (Map.Entry<SurfaceKey, Deque<BufferedImage>> entry : idle.entrySet()) {
+            SurfaceKey key = entry.getKey();
+            long size = ImageUtils.getDrawingSurfaceMemoryUse(key.width, key.height, null,
+                    key.transparent);
+            while (entry.getValue().pollFirst() != null) {
+                memory.addAndGet(-size);
+            }
+        }
+    }
+
+    void clear(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        for (int i = 0; i < buffer.getNumBanks(); i++) {
+            Arrays.fill(((DataBufferByte) buffer).getData(i), (byte) 0);
+        }
+    }
+
+    /**
+     * The number of idle surfaces in the pool
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (Deque<BufferedImage> surfaces : idle.values()) {
+            count += surfaces.size();
+        }
+        return count;
+    }
+
+    /**
+     * The memory used by the idle surfaces in the pool, in bytes
+     */
+    public long getIdleMemory() {
+        return memory.get();
+    }
+
+    /**
+     * The number of surfaces handed out and not yet released
+     */
+    public int getLeasedCount() {
+        return leased.size();
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * The number of surfaces handed out reusing a pooled one
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of surfaces handed out that had to be allocated
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The number of idle surfaces dropped to make room for surfaces of other sizes
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the pool occupancy as cache statistics: the idle surfaces are the cache entries,
+     * weighted by their memory use
+     */
+    @Override
+    public List<ResourceCache.Statistics> getCacheStatistics() {
+        return Collections.singletonList(new ResourceCache.Statistics("drawingSurfaces",
+                getIdleCount(), getIdleMemory(), maxMemory, 0,
+                new CacheStats(getHitCount(), getMissCount(), 0, 0, 0, getEvictionCount())));
+    }
+
+    @Override
+    public String toString() {
+        return "DrawingSurfacePool [idle=" + getIdleCount() + ", idleMemory=" + getIdleMemory()
+                + ", maxMemory=" + maxMemory + ", leased=" + getLeasedCount() + ", hits="
+                + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+                + getEvictionCount() + "]";
+    }
+
+    static class SurfaceKey {
+
+        final int width;
+
+        final int height;
+
+        final boolean transparent;
+
+        SurfaceKey(int width, int height, boolean transparent) {
+            this.width = width;
+            this.height = height;
+            this.transparent = transparent;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * width + height) + (transparent ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SurfaceKey)) {
+                return false;
+            }
+            SurfaceKey other = (SurfaceKey) obj;
+            return width == other.width && height == other.height
+                    && transparent == other.transparent;
+        }
+    }
+}
@@ -122,57 +122,55 @@ public final class MetatileMapOutputFormat implements GetMapOutputFormat {
      */
     public WebMap produceMap(WMSMapContent mapContent) throws ServiceException, IOException {
         // get the key that identifies the meta tile. The cache will make sure
-        // two threads asking
-        // for the same tile will get the same key, and thus will synchronize
-        // with each other
+        // two threads asking for the same meta tile will wait on a single rendering
         // (the first eventually builds the meta-tile, the second finds it ready
-        // to be used)
-        QuickTileCache.MetaTileKey key = tileCache.getMetaTileKey(request);
-
-        synchronized (key) {
-            RenderedImage tile = tileCache.getTile(key, request);
-            List<GridCoverage2D> renderedCoverages = null;
+        // to be used), without blocking the ones asking for other meta tiles
+        final QuickTileCache.MetaTileKey key = tileCache.getMetaTileKey(request);
+        final RenderedImageMap[] rendered = new RenderedImageMap[1];
 
+        RenderedImage[] tiles = tileCache.getTiles(key, () -> {
+            // compute the meta-tile
             if (LOGGER.isLoggable(Level.FINER)) {
-                LOGGER.finer("Looked for meta tile " + key.metaTileCoords.x + ", "
-                        + key.metaTileCoords.y + "in cache: " + ((tile != null) ? "hit!" : "miss"));
+                LOGGER.finer("Building meta tile " + key.metaTileCoords.x + ", "
+                        + key.metaTileCoords.y+" of size w="+
+                        key.getTileSize() * key.getMetaFactor()+", h="+
+                        key.getTileSize() * key.getMetaFactor()+ " with metatilign factor "+key.getMetaFactor());
+                
             }
 
-            if (tile == null) {
-                // compute the meta-tile
-                if (LOGGER.isLoggable(Level.FINER)) {
-                    LOGGER.finer("Building meta tile " + key.metaTileCoords.x + ", "
-                            + key.metaTileCoords.y+" of size w="+
-                            key.getTileSize() * key.getMetaFactor()+", h="+
-                            key.getTileSize() * key.getMetaFactor()+ " with metatilign factor "+key.getMetaFactor());
-                    
-                }
+            // alter the map definition so that we build a meta-tile instead
+            // of just the tile
+            mapContent.getViewport().setBounds(key.getMetaTileEnvelope());
+            mapContent.setMapWidth(key.getTileSize() * key.getMetaFactor());
+            mapContent.setMapHeight(key.getTileSize() * key.getMetaFactor());
+            mapContent.setTileSize(key.getTileSize());
+            
+            // adjust the bbox/width/height env vars that GetMap setup, since we
+            // are changing them under its feet
+            EnvFunction.setLocalValue("wms_bbox", mapContent.getViewport().getBounds());
+            EnvFunction.setLocalValue("wms_width", mapContent.getMapWidth());
+            EnvFunction.setLocalValue("wms_height", mapContent.getMapHeight());
+
+            RenderedImageMap metaTileMap = delegate.produceMap(mapContent);
+            rendered[0] = metaTileMap;
+
+            return split(key, metaTileMap.getImage());
+        });
+
+        if (LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.finer("Looked for meta tile " + key.metaTileCoords.x + ", "
+                    + key.metaTileCoords.y + "in cache: "
+                    + ((rendered[0] == null) ? "hit!" : "miss"));
+        }
 
-                // alter the map definition so that we build a meta-tile instead
-                // of just the tile
-                mapContent.getViewport().setBounds(key.getMetaTileEnvelope());
-                mapContent.setMapWidth(key.getTileSize() * key.getMetaFactor());
-                mapContent.setMapHeight(key.getTileSize() * key.getMetaFactor());
-                mapContent.setTileSize(key.getTileSize());
-                
-                // adjust the bbox/width/height env vars that GetMap setup, since we
-                // are changing them under its feet
-                EnvFunction.setLocalValue("wms_bbox", mapContent.getViewport().getBounds());
-                EnvFunction.setLocalValue("wms_width", mapContent.getMapWidth());
-                EnvFunction.setLocalValue("wms_height", mapContent.getMapHeight());
-
-                RenderedImageMap metaTileMap = delegate.produceMap(mapContent);
-
-                RenderedImage metaTile = metaTileMap.getImage();
-                RenderedImage[] tiles = split(key, metaTile);
-                tileCache.storeTiles(key, tiles);
-                tile = tileCache.getTile(key, request, tiles);
-                renderedCoverages = metaTileMap.getRenderedCoverages();
-            }
-            RenderedImageMap tileMap = new RenderedImageMap(mapContent, tile, getMimeType());
-            tileMap.setRenderedCoverages(renderedCoverages);
-            return tileMap;
+        RenderedImage tile = tileCache.getTile(key, request, tiles);
+        List<GridCoverage2D> renderedCoverages = null;
+        if (rendered[0] != null) {
+            renderedCoverages = rendered[0].getRenderedCoverages();
         }
+        RenderedImageMap tileMap = new RenderedImageMap(mapContent, tile, getMimeType());
+        tileMap.setRenderedCoverages(renderedCoverages);
+        return tileMap;
     }
 
     /**
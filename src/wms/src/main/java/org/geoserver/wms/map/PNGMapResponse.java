@@ -9,20 +9,25 @@ import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geoserver.config.JAIInfo;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.util.LazyThreadPool;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.png.PNGJWriter;
+import org.geoserver.wms.map.png.ParallelPNGEncoder;
 import org.geotools.image.ImageWorker;
 import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * Handles a GetMap request that spects a map in GIF format.
@@ -31,7 +36,7 @@ import org.geotools.util.logging.Logging;
  * @author Didier Richard
  * @version $Id
  */
-public class PNGMapResponse extends RenderedImageMapResponse {
+public class PNGMapResponse extends RenderedImageMapResponse implements DisposableBean {
     /** Logger */
     private static final Logger LOGGER = Logging.getLogger(PNGMapResponse.class);
 
@@ -41,6 +46,8 @@ public class PNGMapResponse extends RenderedImageMapResponse {
 
     private static final String[] OUTPUT_FORMATS = { MIME_TYPE, MIME_TYPE_8BIT, "image/png8" };
 
+    static final String ENCODER_THREADS_PROPERTY = "GEOSERVER_PNG_ENCODER_THREADS";
+
     /**
      * The two quantizers available for PNG images
      */
@@ -62,6 +69,21 @@ public class PNGMapResponse extends RenderedImageMapResponse {
     private static MapProducerCapabilities CAPABILITIES = new MapProducerCapabilities(true, false,
             true, true, null);
 
+    /**
+     * The number of threads used to encode large images with the PNGJ encoder, zero or less
+     * to encode them in the request thread
+     */
+    private volatile int encoderThreads = getDefaultEncoderThreads();
+
+    /**
+     * The compression level used when encoding in parallel, if null it's derived from the WMS
+     * PNG compression
+     */
+    private Integer compressionLevel;
+
+    private final LazyThreadPool encoderPool = new LazyThreadPool("GeoServer PNG encoder",
+            () -> encoderThreads);
+
     /**
      * @param format the format name as to be reported in the capabilities document
      * @param wms
@@ -70,6 +92,68 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         super(OUTPUT_FORMATS, wms);
     }
 
+    static int getDefaultEncoderThreads() {
+        String value = GeoServerExtensions.getProperty(ENCODER_THREADS_PROPERTY);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid value " + value + " for "
+                        + ENCODER_THREADS_PROPERTY + ", PNG images will be encoded serially");
+            }
+        }
+        return 0;
+    }
+
+    public int getEncoderThreads() {
+        return encoderThreads;
+    }
+
+    /**
+     * Sets the number of threads encoding the PNG images in parallel, when the PNGJ encoder is
+     * in use. Zero or less disables the parallel encoding.
+     */
+    public synchronized void setEncoderThreads(int encoderThreads) {
+        if (encoderThreads != this.encoderThreads) {
+            this.encoderThreads = encoderThreads;
+            encoderPool.dispose();
+        }
+    }
+
+    public Integer getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the deflate compression level, between 0 and 9, used when encoding in parallel
+     */
+    public void setCompressionLevel(Integer compressionLevel) {
+        if (compressionLevel != null && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel
+                    + ", should be between 0 and 9");
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    ExecutorService getEncoderExecutor() {
+        return encoderPool.get();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        encoderPool.dispose();
+    }
+
+    PNGJWriter getPNGJWriter(float quality) {
+        ExecutorService executor = getEncoderExecutor();
+        if (executor == null) {
+            return new PNGJWriter();
+        }
+        int level = compressionLevel != null ? compressionLevel
+                : ParallelPNGEncoder.getCompressionLevel(quality);
+        return new PNGJWriter(new ParallelPNGEncoder(executor, level));
+    }
+
     @Override
     public String getMimeType(Object value, Operation operation) throws ServiceException {
         GetMapRequest request = (GetMapRequest) operation.getParameters()[0];
@@ -101,7 +185,7 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         float quality = (100 - wms.getPngCompression()) / 100.0f;
         JAIInfo.PngEncoderType encoder = wms.getPNGEncoderType();
         if(encoder == JAIInfo.PngEncoderType.PNGJ) {
-            image = new PNGJWriter().writePNG(image, outStream, quality, mapContent);
+            image = getPNGJWriter(quality).writePNG(image, outStream, quality, mapContent);
             RasterCleaner.addImage(image);
         } else {
             Boolean PNGNativeAcc = (encoder == JAIInfo.PngEncoderType.NATIVE);
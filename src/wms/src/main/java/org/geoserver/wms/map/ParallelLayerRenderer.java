@@ -0,0 +1,342 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.filter.function.EnvFunction;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.map.StyleLayer;
+import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.Symbolizer;
+import org.geotools.styling.TextSymbolizer;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * A {@link StreamingRenderer} painting groups of consecutive layers in parallel, each one with its
+ * own renderer and off-screen buffer, compositing the buffers in layer order once done.
+ * <p>
+ * Labels are painted on top of all layers and have their conflicts resolved across layers, z-order
+ * groups and composition groups span several layers, so the first layer with text symbolizers,
+ * <code>sortByGroup</code> or blending with the layers below, and all the ones above it, are
+ * painted as a single group, by a single renderer. The bottom group paints straight on the target
+ * graphics in the calling thread.
+ * </p>
+ * <p>
+ * The render listeners and {@link #stopRendering()} work as in a plain {@link StreamingRenderer},
+ * listeners are notified one thread at a time, so the {@link RenderingTimeoutEnforcer} and the
+ * {@link MaxErrorEnforcer} can be attached to this renderer unchanged.
+ * </p>
+ */
+public class ParallelLayerRenderer extends StreamingRenderer {
+
+    final ExecutorService executor;
+
+    final Supplier<StreamingRenderer> rendererFactory;
+
+    final int maxGroups;
+
+    final List<RenderListener> listeners = new CopyOnWriteArrayList<>();
+
+    final List<StreamingRenderer> renderers = new CopyOnWriteArrayList<>();
+
+    volatile boolean stopped;
+
+    ExecutorService painterPool;
+
+    /**
+     * Builds a new parallel renderer
+     *
+     * @param executor The pool painting the layer groups
+     * @param rendererFactory Builds the renderers painting each group
+     * @param maxGroups The maximum number of groups painted in parallel
+     */
+    public ParallelLayerRenderer(ExecutorService executor,
+            Supplier<StreamingRenderer> rendererFactory, int maxGroups) {
+        this.executor = executor;
+        this.rendererFactory = rendererFactory;
+        this.maxGroups = maxGroups;
+    }
+
+    /**
+     * Splits the layers in groups that can be painted independently, in layer order. The layers
+     * below {@link #getSharedStart(List)} are split in at most <code>maxGroups - 1</code> groups of
+     * consecutive layers, the layers above form the last group.
+     */
+    static List<List<Layer>> groupLayers(List<Layer> layers, int maxGroups) {
+        int isolated = getSharedStart(layers);
+
+        List<List<Layer>> groups = new ArrayList<>();
+        int splits = Math.min(isolated, isolated < layers.size() ? maxGroups - 1 : maxGroups);
+        for (int i = 0; i < splits; i++) {
+            // spread the layers evenly among the groups
+            int from = isolated * i / splits;
+            int to = isolated * (i + 1) / splits;
+            groups.add(new ArrayList<>(layers.subList(from, to)));
+        }
+        if (isolated < layers.size()) {
+            groups.add(new ArrayList<>(layers.subList(isolated, layers.size())));
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the index of the first layer that has to be painted by a single renderer along with
+     * all the layers above it:
+     * <ul>
+     * <li>layers with labels, as label conflicts are resolved across layers</li>
+     * <li>layers with <code>sortByGroup</code>, as their features are z-ordered along with the
+     * other layers in the same group</li>
+     * <li>layers with a <code>composite</code> option, as they blend with the layers below,
+     * down to the <code>composite-base</code> starting their composition group, or all of them if
+     * there is no base, or the base itself blends with what's below</li>
+     * </ul>
+     * Layers that are not styled are not painted in parallel either.
+     */
+    static int getSharedStart(List<Layer> layers) {
+        int start = layers.size();
+        // the layer holding the base of the current composition group
+        int base = 0;
+        for (int i = 0; i < layers.size() && i < start; i++) {
+            Layer layer = layers.get(i);
+            Style style = layer instanceof StyleLayer ? ((StyleLayer) layer).getStyle() : null;
+            if (style == null) {
+                return i;
+            }
+            for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+                Map<String, String> options = fts.getOptions();
+                boolean isBase = Boolean.parseBoolean(options.get(FeatureTypeStyle.COMPOSITE_BASE));
+                if (isBase) {
+                    base = i;
+                }
+                if (options.get(FeatureTypeStyle.COMPOSITE) != null) {
+                    start = Math.min(start, isBase ? 0 : base);
+                }
+                if (options.get(FeatureTypeStyle.SORT_BY_GROUP) != null || hasLabels(fts)) {
+                    start = Math.min(start, i);
+                }
+            }
+        }
+        return start;
+    }
+
+    static boolean hasLabels(FeatureTypeStyle fts) {
+        for (Rule rule : fts.rules()) {
+            for (Symbolizer symbolizer : rule.symbolizers()) {
+                if (symbolizer instanceof TextSymbolizer) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The memory used by the off-screen buffers of each group but the bottom one
+     */
+    static long getBufferMemory(int groups, int width, int height) {
+        return Math.max(0, groups - 1) * (long) width * height * 4;
+    }
+
+    @Override
+    public void addRenderListener(RenderListener listener) {
+        super.addRenderListener(listener);
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeRenderListener(RenderListener listener) {
+        super.removeRenderListener(listener);
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void setThreadPool(ExecutorService threadPool) {
+        super.setThreadPool(threadPool);
+        this.painterPool = threadPool;
+    }
+
+    @Override
+    public void stopRendering() {
+        stopped = true;
+        super.stopRendering();
+        for (StreamingRenderer renderer : renderers) {
+            renderer.stopRendering();
+        }
+    }
+
+    @Override
+    public void paint(Graphics2D graphics, Rectangle paintArea, ReferencedEnvelope mapArea,
+            AffineTransform worldToScreen) {
+        List<List<Layer>> groups = groupLayers(getMapContent().layers(), maxGroups);
+        // the buffers are composited without transformations
+        if (groups.size() < 2 || !graphics.getTransform().isIdentity()) {
+            super.paint(graphics, paintArea, mapArea, worldToScreen);
+            return;
+        }
+
+        final RenderingHints graphicsHints = graphics.getRenderingHints();
+        // the data is read in the pool threads, they need the request, security and env values
+        final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        final Map<String, Object> envValues = new HashMap<>(EnvFunction.getLocalValues());
+        List<Future<BufferedImage>> buffers = new ArrayList<>();
+        try {
+            for (final List<Layer> group : groups.subList(1, groups.size())) {
+                buffers.add(executor.submit(() -> {
+                    threadLocals.apply();
+                    EnvFunction.setLocalValues(envValues);
+                    try {
+                        return paintBuffer(group, graphicsHints, paintArea, mapArea,
+                                worldToScreen);
+                    } finally {
+                        EnvFunction.clearLocalValues();
+                        threadLocals.cleanup();
+                    }
+                }));
+            }
+
+            // the bottom group goes straight on the target while the others are being painted
+            paintGroup(groups.get(0), graphics, paintArea, mapArea, worldToScreen);
+
+            for (Future<BufferedImage> future : buffers) {
+                BufferedImage buffer = future.get();
+                if (stopped) {
+                    return;
+                }
+                if (buffer != null) {
+                    graphics.drawImage(buffer, 0, 0, null);
+                }
+            }
+        } catch (InterruptedException e) {
+            stopRendering();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            stopRendering();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Failed to render layers in parallel", cause);
+        } finally {
+            for (Future<BufferedImage> future : buffers) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    BufferedImage paintBuffer(List<Layer> group, RenderingHints graphicsHints,
+            Rectangle paintArea, ReferencedEnvelope mapArea, AffineTransform worldToScreen) {
+        if (stopped) {
+            return null;
+        }
+        BufferedImage buffer = new BufferedImage(paintArea.x + paintArea.width,
+                paintArea.y + paintArea.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = buffer.createGraphics();
+        try {
+            graphics.setRenderingHints(graphicsHints);
+            paintGroup(group, graphics, paintArea, mapArea, worldToScreen);
+        } finally {
+            graphics.dispose();
+        }
+        return buffer;
+    }
+
+    void paintGroup(List<Layer> group, Graphics2D graphics, Rectangle paintArea,
+            ReferencedEnvelope mapArea, AffineTransform worldToScreen) {
+        if (stopped) {
+            return;
+        }
+        final StreamingRenderer renderer = rendererFactory.get();
+        GroupMapContent content = new GroupMapContent(group);
+        content.getViewport().setBounds(mapArea);
+        renderer.setMapContent(content);
+        if (painterPool != null) {
+            renderer.setThreadPool(painterPool);
+        }
+        if (getJava2DHints() != null) {
+            renderer.setJava2DHints((RenderingHints) getJava2DHints().clone());
+        }
+        if (getRendererHints() != null) {
+            renderer.setRendererHints(new HashMap<Object, Object>(getRendererHints()));
+        }
+        renderer.setGeneralizationDistance(getGeneralizationDistance());
+        renderer.addRenderListener(new RenderListener() {
+
+            @Override
+            public void featureRenderer(SimpleFeature feature) {
+                // the renderer resets its stop flag when it starts painting, re-apply it
+                if (stopped) {
+                    renderer.stopRendering();
+                }
+                synchronized (listeners) {
+                    for (RenderListener listener : listeners) {
+                        listener.featureRenderer(feature);
+                    }
+                }
+            }
+
+            @Override
+            public void errorOccurred(Exception e) {
+                synchronized (listeners) {
+                    for (RenderListener listener : listeners) {
+                        listener.errorOccurred(e);
+                    }
+                }
+                if (stopped) {
+                    renderer.stopRendering();
+                }
+            }
+        });
+
+        renderers.add(renderer);
+        try {
+            renderer.paint(graphics, paintArea, mapArea, worldToScreen);
+        } finally {
+            renderers.remove(renderer);
+            content.dispose();
+        }
+    }
+
+    /**
+     * A map content exposing a subset of the layers of another one, without taking ownership of
+     * them, so that disposing it leaves the layers untouched
+     */
+    static class GroupMapContent extends MapContent {
+
+        final List<Layer> layers;
+
+        GroupMapContent(List<Layer> layers) {
+            this.layers = Collections.unmodifiableList(layers);
+        }
+
+        @Override
+        public List<Layer> layers() {
+            return layers;
+        }
+    }
+}
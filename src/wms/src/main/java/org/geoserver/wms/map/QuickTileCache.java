@@ -7,22 +7,31 @@ package org.geoserver.wms.map;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.geoserver.catalog.CacheStatisticsProvider;
+import org.geoserver.catalog.ResourceCache;
 import org.geoserver.config.ConfigurationListenerAdapter;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.ServiceInfo;
 import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionListener;
@@ -31,11 +40,26 @@ import org.geoserver.wms.GetMapRequest;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.CRS.AxisOrder;
-import org.geotools.util.CanonicalSet;
+import org.geotools.util.logging.Logging;
 
 import com.vividsolutions.jts.geom.Envelope;
 
-public class QuickTileCache implements TransactionListener, GeoServerLifecycleHandler {
+/**
+ * Caches the tiles of the meta-tiles rendered for tiled WMS requests.
+ * <p>
+ * The cache is bounded by the memory used by the tiles, set in bytes by the
+ * <code>GEOSERVER_META_TILE_CACHE_MAX_SIZE</code> variable (64MB by default). Concurrent requests
+ * for tiles of the same meta-tile wait for a single rendering, see
+ * {@link #getTiles(MetaTileKey, Callable)}, without blocking the requests for other meta-tiles.
+ * </p>
+ */
+public class QuickTileCache implements TransactionListener, GeoServerLifecycleHandler,
+        CacheStatisticsProvider {
+
+    static final Logger LOGGER = Logging.getLogger(QuickTileCache.class);
+
+    static final long MAX_SIZE_DEFAULT = 64 * 1024 * 1024;
+
     /**
      * Set of parameters that we can ignore, since they do not define a map, are either unrelated,
      * or define the tiling instead
@@ -54,27 +78,28 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         ignoredParameters.add("EXCEPTIONS");
     }
 
+    private final ResourceCache<MetaTileKey, RenderedImage[]> tileCache;
+
     /**
-     * Canonicalizer used to return the same object when two threads ask for the same meta-tile
+     * Incremented on each clear, the tiles rendered while the cache is cleared are not kept
      */
-    private CanonicalSet<MetaTileKey> metaTileKeys = CanonicalSet.newInstance(MetaTileKey.class);
-
-    private WeakHashMap tileCache = new WeakHashMap();
+    private final AtomicLong generation = new AtomicLong();
 
     public QuickTileCache(GeoServer geoServer) {
+        this(getMaxSize());
         geoServer.addListener(new ConfigurationListenerAdapter() {
             public void handleGlobalChange(GeoServerInfo global, List<String> propertyNames,
                     List<Object> oldValues, List<Object> newValues) {
-                tileCache.clear();
+                clear();
             }
 
             public void handleServiceChange(ServiceInfo service, List<String> propertyNames,
                     List<Object> oldValues, List<Object> newValues) {
-                tileCache.clear();
+                clear();
             }
 
             public void reloaded() {
-                tileCache.clear();
+                clear();
             }
         });
     }
@@ -83,12 +108,43 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
      * For testing only
      */
     QuickTileCache() {
+        this(getMaxSize());
+    }
+
+    QuickTileCache(long maxSize) {
+        this.tileCache = new ResourceCache<MetaTileKey, RenderedImage[]>("metaTiles", maxSize, 0) {
+
+            @Override
+            protected int weigh(MetaTileKey key, RenderedImage[] tiles) {
+                long weight = 0;
+                for (RenderedImage tile : tiles) {
+                    if (tile != null) {
+                        SampleModel sm = tile.getSampleModel();
+                        weight += (long) tile.getWidth() * tile.getHeight() * sm.getNumBands()
+                                * DataBuffer.getDataTypeSize(sm.getDataType()) / 8;
+                    }
+                }
+                return (int) Math.min(weight, Integer.MAX_VALUE);
+            }
+        };
+    }
+
+    static long getMaxSize() {
+        String value = GeoServerExtensions.getProperty("GEOSERVER_META_TILE_CACHE_MAX_SIZE");
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for GEOSERVER_META_TILE_CACHE_MAX_SIZE: " + value
+                        + ", using the default " + MAX_SIZE_DEFAULT);
+            }
+        }
+        return MAX_SIZE_DEFAULT;
     }
 
     /**
      * Given a tiled request, builds a key that can be used to access the cache looking for a
-     * specific meta-tile, and also as a synchronization tool to avoid multiple requests to trigger
-     * parallel computation of the same meta-tile
+     * specific meta-tile
      * 
      * @param request
      *
@@ -111,12 +167,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         Point tileCoords = getTileCoordinates(bbox, origin);
         Point metaTileCoords = getMetaTileCoordinates(tileCoords);
         ReferencedEnvelope metaTileEnvelope = getMetaTileEnvelope(bbox, tileCoords, metaTileCoords);
-        MetaTileKey key = new MetaTileKey(mapKey, metaTileCoords, metaTileEnvelope);
-
-        // since this will be used for thread synchronization, we have to make
-        // sure two thread asking for the same meta tile will get the same key
-        // object
-        return metaTileKeys.unique(key);
+        return new MetaTileKey(mapKey, metaTileCoords, metaTileEnvelope);
     }
 
     private ReferencedEnvelope getMetaTileEnvelope(ReferencedEnvelope bbox, Point tileCoords, Point metaTileCoords) {
@@ -335,14 +386,34 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
      * @param request
      *
      */
-    public synchronized RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
-        CacheElement ce = (CacheElement) tileCache.get(key);
+    public RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
+        RenderedImage[] tiles = tileCache.get(key);
 
-        if (ce == null) {
+        if (tiles == null) {
             return null;
         }
 
-        return getTile(key, request, ce.tiles);
+        return getTile(key, request, tiles);
+    }
+
+    /**
+     * Returns the tiles of the meta-tile, rendering and caching them with the provided loader if
+     * missing. Only one thread renders a given meta-tile, the other ones asking for it wait for
+     * the result.
+     * 
+     * @param key
+     * @param loader Renders the meta-tile and splits it in tiles
+     * @throws IOException If the loader failed with a checked exception
+     */
+    public RenderedImage[] getTiles(MetaTileKey key, Callable<RenderedImage[]> loader)
+            throws IOException {
+        long current = generation.get();
+        RenderedImage[] tiles = tileCache.get(key, loader);
+        if (generation.get() != current) {
+            // cleared while rendering, the tiles might be stale
+            tileCache.remove(key);
+        }
+        return tiles;
     }
 
     /**
@@ -371,16 +442,35 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
      * @param tiles
      *
      */
-    public synchronized void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
-        tileCache.put(key, new CacheElement(tiles));
+    public void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
+        tileCache.put(key, tiles);
     }
 
-    class CacheElement {
-        RenderedImage[] tiles;
+    /**
+     * Removes all the tiles from the cache
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        tileCache.clear();
+    }
 
-        public CacheElement(RenderedImage[] tiles) {
-            this.tiles = tiles;
-        }
+    /**
+     * Returns the number of meta-tiles in the cache
+     */
+    public int size() {
+        return tileCache.size();
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics
+     */
+    public ResourceCache.Statistics getStatistics() {
+        return tileCache.getStatistics();
+    }
+
+    @Override
+    public List<ResourceCache.Statistics> getCacheStatistics() {
+        return Collections.singletonList(getStatistics());
     }
 
     public void dataStoreChange(TransactionEvent event) throws WFSException {
@@ -388,18 +478,18 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         // contains a string with part of the map request where the layer
         // name is included, but we would have to parse it and consider
         // also that the namespace may be missing in the getmap request
-        tileCache.clear();
+        clear();
     }
 
     @Override
     public void onReset() {
         // data might have changed in the meantime
-        tileCache.clear();        
+        clear();        
     }
 
     @Override
     public void onDispose() {
-        tileCache.clear();
+        clear();
     }
 
     public void beforeReload() {
@@ -408,6 +498,6 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
     @Override
     public void onReload() {
-        tileCache.clear();
+        clear();
     }
 }
@@ -379,9 +379,15 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         // we use the alpha channel if the image is transparent or if the meta tiler
         // is enabled, since apparently the Crop operation inside the meta-tiler
         // generates striped images in that case (see GEOS-
-        boolean useAlpha = transparent || MetatileMapOutputFormat.isRequestTiled(request, this);
+        boolean tiled = MetatileMapOutputFormat.isRequestTiled(request, this);
+        boolean useAlpha = transparent || tiled;
         final RenderedImage preparedImage = prepareImage(paintArea.width, paintArea.height,
                 palette, useAlpha);
+        if (tiled) {
+            // the tiles cut out of the meta-tile share its raster and can be cached, the surface
+            // cannot go back to the pool at the end of the request
+            DrawingSurfacePool.get().forget(preparedImage);
+        }
         final Map<RenderingHints.Key, Object> hintsMap = new HashMap<RenderingHints.Key, Object>();
 
         final Graphics2D graphic = getGraphics(transparent, bgColor, preparedImage, hintsMap);
@@ -435,7 +441,21 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         graphic.setRenderingHints(hintsMap);
 
         RenderingHints hints = new RenderingHints(hintsMap);
-        StreamingRenderer renderer = buildRenderer();
+        StreamingRenderer renderer = null;
+        if (palette == null && labelCache == null && isParallelRenderingEnabled()) {
+            // paint groups of layers in parallel, provided their buffers fit in the memory limit
+            int maxGroups = DefaultWebMapService.getLayerRenderingThreads() + 1;
+            int groups = ParallelLayerRenderer.groupLayers(mapContent.layers(), maxGroups).size();
+            long bufferMemory = ParallelLayerRenderer.getBufferMemory(groups, paintArea.width,
+                    paintArea.height);
+            if (groups > 1 && (maxMemory <= 0 || memory + bufferMemory <= maxMemory)) {
+                renderer = new ParallelLayerRenderer(DefaultWebMapService.getLayerRenderingPool(),
+                        this::buildRenderer, maxGroups);
+            }
+        }
+        if (renderer == null) {
+            renderer = buildRenderer();
+        }
         renderer.setThreadPool(DefaultWebMapService.getRenderingPool());
         renderer.setMapContent(mapContent);
         renderer.setJava2DHints(hints);
@@ -669,6 +689,15 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
     
     
 
+    /**
+     * Returns true if the layers of the map can be painted in parallel, each group of layers in its
+     * own buffer, when enabled in the configuration. Subclasses depending on the map being painted
+     * by a single renderer, on a single surface, should return false.
+     */
+    protected boolean isParallelRenderingEnabled() {
+        return DefaultWebMapService.getLayerRenderingPool() != null;
+    }
+
     /**
      * Allows subclasses to customize the renderer before the paint method gets invoked
      * 
@@ -788,7 +817,7 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
     /**
      * Sets up a {@link BufferedImage#TYPE_4BYTE_ABGR} if the paletteInverter is not provided, or a
      * indexed image otherwise. Subclasses may override this method should they need a special kind
-     * of image
+     * of image. True color surfaces are taken from the {@link DrawingSurfacePool} when enabled.
      * 
      * @param width
      * @param height
@@ -797,8 +826,12 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
      */
     protected RenderedImage prepareImage(int width, int height, IndexColorModel palette,
             boolean transparent) {
-        return ImageUtils.createImage(width, height, isPaletteSupported() ? palette : null,
-                transparent && isTransparencySupported());
+        IndexColorModel surfacePalette = isPaletteSupported() ? palette : null;
+        boolean surfaceTransparent = transparent && isTransparencySupported();
+        if (surfacePalette == null) {
+            return DrawingSurfacePool.get().createImage(width, height, surfaceTransparent);
+        }
+        return ImageUtils.createImage(width, height, surfacePalette, surfaceTransparent);
     }
 
     /**
@@ -32,6 +32,22 @@ public class PNGJWriter {
 
     private static final Logger LOGGER = Logging.getLogger(PNGJWriter.class);
 
+    private final ParallelPNGEncoder parallelEncoder;
+
+    public PNGJWriter() {
+        this(null);
+    }
+
+    /**
+     * Builds a writer that encodes the images supported by the parallel encoder with it, and the
+     * others with PNGJ
+     *
+     * @param parallelEncoder The parallel encoder, or null to always use PNGJ
+     */
+    public PNGJWriter(ParallelPNGEncoder parallelEncoder) {
+        this.parallelEncoder = parallelEncoder;
+    }
+
     public RenderedImage writePNG(RenderedImage image, OutputStream outStream, float quality,
             WMSMapContent mapContent) {
         // what kind of scaline filtering are we going to use?
@@ -45,6 +61,17 @@ public class PNGJWriter {
             image = new ImageWorker(image).rescaleToBytes().forceComponentColorModel().getRenderedImage();           
         }
         
+        // large enough images are split in bands compressed concurrently
+        if (parallelEncoder != null && parallelEncoder.canEncode(image)) {
+            try {
+                parallelEncoder.encode(image, outStream, getParallelFilter(filterType));
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Failed to encode the PNG", e);
+                throw new ServiceException(e);
+            }
+            return image;
+        }
+
         RenderedImage output = null;
         // Image writing
         try {
@@ -83,6 +110,27 @@ public class PNGJWriter {
         return FilterType.FILTER_NONE;
     }
 
+    /**
+     * Maps a PNGJ filter type to the {@link ParallelPNGEncoder} one, the PNGJ strategies other
+     * than the basic filters are all mapped to the adaptive filtering
+     */
+    static int getParallelFilter(FilterType filterType) {
+        switch (filterType) {
+        case FILTER_NONE:
+            return ParallelPNGEncoder.FILTER_NONE;
+        case FILTER_SUB:
+            return ParallelPNGEncoder.FILTER_SUB;
+        case FILTER_UP:
+            return ParallelPNGEncoder.FILTER_UP;
+        case FILTER_AVERAGE:
+            return ParallelPNGEncoder.FILTER_AVERAGE;
+        case FILTER_PAETH:
+            return ParallelPNGEncoder.FILTER_PAETH;
+        default:
+            return ParallelPNGEncoder.FILTER_ADAPTIVE;
+        }
+    }
+
     /**
      * Check if the style contains a "high change" raster symbolizer, that is, one that generates a
      * continuous set of values for which SUB filtering provides better results
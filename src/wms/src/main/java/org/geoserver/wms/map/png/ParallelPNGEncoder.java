@@ -0,0 +1,554 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes 8 bit images in PNG using multiple threads.
+ * <p>
+ * The image is split in bands of rows, each band is filtered and deflated concurrently into an
+ * independent sequence of deflate blocks, which is primed with the tail of the previous band as
+ * a dictionary, so that the compression ratio is close to the one of a single stream. The blocks
+ * are then concatenated in a single zlib stream, whose checksum is combined from the ones of the
+ * bands, and written out as IDAT chunks while the following bands are still being compressed.
+ * </p>
+ * <p>
+ * Each band uses the requested scanline filter or, by default, the one giving the smallest sum of
+ * absolute differences over a sample of its rows. Paletted images are never filtered. Only gray,
+ * gray alpha, RGB,
+ * RGBA and 8 bit paletted images stored in bytes are supported, see
+ * {@link #isSupported(RenderedImage)}.
+ * </p>
+ */
+public class ParallelPNGEncoder {
+
+    static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    /**
+     * The default size of the filtered data compressed by each task, in bytes
+     */
+    static final int DEFAULT_BAND_SIZE = 128 * 1024;
+
+    /**
+     * The size of the deflate window, the most data of the previous band usable as a dictionary
+     */
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    static final int SAMPLE_ROWS = 16;
+
+    /**
+     * Picks the best filter for each band
+     */
+    public static final int FILTER_ADAPTIVE = -1;
+
+    public static final int FILTER_NONE = 0;
+
+    public static final int FILTER_SUB = 1;
+
+    public static final int FILTER_UP = 2;
+
+    public static final int FILTER_AVERAGE = 3;
+
+    public static final int FILTER_PAETH = 4;
+
+    static final int COLOR_GRAY = 0;
+
+    static final int COLOR_RGB = 2;
+
+    static final int COLOR_PALETTE = 3;
+
+    static final int COLOR_GRAY_ALPHA = 4;
+
+    static final int COLOR_RGBA = 6;
+
+    final ExecutorService executor;
+
+    final int compressionLevel;
+
+    int bandSize = DEFAULT_BAND_SIZE;
+
+    /**
+     * Builds a new encoder
+     *
+     * @param executor The executor running the band filtering and compression tasks
+     * @param compressionLevel The deflate compression level, between 0 and 9
+     */
+    public ParallelPNGEncoder(ExecutorService executor, int compressionLevel) {
+        if (compressionLevel < Deflater.NO_COMPRESSION
+                || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel
+                    + ", should be between 0 and 9");
+        }
+        this.executor = executor;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Maps a PNG quality, as used by {@link PNGJWriter}, to a deflate compression level
+     */
+    public static int getCompressionLevel(float quality) {
+        int level = Math.round(9 * (1f - quality));
+        return Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    /**
+     * Returns true if the image layout can be encoded by this class
+     */
+    public static boolean isSupported(RenderedImage image) {
+        return getColorType(image) >= 0;
+    }
+
+    /**
+     * Returns true if the image is supported and large enough to be split in more than one band
+     */
+    public boolean canEncode(RenderedImage image) {
+        if (!isSupported(image)) {
+            return false;
+        }
+        long rowBytes = (long) image.getWidth() * image.getSampleModel().getNumBands() + 1;
+        return rowBytes * image.getHeight() > bandSize;
+    }
+
+    /**
+     * Returns the PNG color type of the image, or -1 if the image is not supported
+     */
+    static int getColorType(RenderedImage image) {
+        SampleModel sm = image.getSampleModel();
+        ColorModel cm = image.getColorModel();
+        if (!(sm instanceof ComponentSampleModel) || sm.getDataType() != DataBuffer.TYPE_BYTE
+                || cm == null || image.getWidth() <= 0 || image.getHeight() <= 0) {
+            return -1;
+        }
+        int bands = sm.getNumBands();
+        for (int i = 0; i < bands; i++) {
+            if (sm.getSampleSize(i) != 8) {
+                return -1;
+            }
+        }
+        if (cm instanceof IndexColorModel) {
+            return bands == 1 && ((IndexColorModel) cm).getMapSize() <= 256 ? COLOR_PALETTE : -1;
+        }
+        if (!(cm instanceof ComponentColorModel) || cm.isAlphaPremultiplied()
+                || cm.getNumComponents() != bands) {
+            return -1;
+        }
+        ColorSpace cs = cm.getColorSpace();
+        boolean gray = cs.getType() == ColorSpace.TYPE_GRAY;
+        boolean rgb = cs.isCS_sRGB();
+        switch (bands) {
+        case 1:
+            return gray && !cm.hasAlpha() ? COLOR_GRAY : -1;
+        case 2:
+            return gray && cm.hasAlpha() ? COLOR_GRAY_ALPHA : -1;
+        case 3:
+            return rgb && !cm.hasAlpha() ? COLOR_RGB : -1;
+        case 4:
+            return rgb && cm.hasAlpha() ? COLOR_RGBA : -1;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Encodes the image in PNG, picking the best scanline filter for each band
+     *
+     * @throws IllegalArgumentException if the image is not supported
+     */
+    public void encode(RenderedImage image, OutputStream out) throws IOException {
+        encode(image, out, FILTER_ADAPTIVE);
+    }
+
+    /**
+     * Encodes the image in PNG with the given scanline filter
+     *
+     * @param filter One of the PNG filter types, from {@link #FILTER_NONE} to
+     *        {@link #FILTER_PAETH}, or {@link #FILTER_ADAPTIVE} to pick the best one for each band
+     * @throws IllegalArgumentException if the image or the filter are not supported
+     */
+    public void encode(RenderedImage image, OutputStream out, int filter) throws IOException {
+        if (filter < FILTER_ADAPTIVE || filter > FILTER_PAETH) {
+            throw new IllegalArgumentException("Unknown filter type " + filter);
+        }
+        int colorType = getColorType(image);
+        if (colorType < 0) {
+            throw new IllegalArgumentException("Unsupported image layout for the PNG encoding: "
+                    + image.getSampleModel() + ", " + image.getColorModel());
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bpp = image.getSampleModel().getNumBands();
+        int rowBytes = width * bpp;
+        int bandRows = Math.max(1, bandSize / (rowBytes + 1));
+        boolean palette = colorType == COLOR_PALETTE;
+        // filtering palette indexes is pointless
+        int bandFilter = palette ? FILTER_NONE : filter;
+
+        // filter the bands, then compress each one as soon as it and the previous one are
+        // available, the previous one is used as a dictionary
+        List<CompletableFuture<byte[]>> filtered = new ArrayList<>();
+        for (int y = 0; y < height; y += bandRows) {
+            final int row = y;
+            final int rows = Math.min(bandRows, height - y);
+            filtered.add(CompletableFuture
+                    .supplyAsync(() -> filterBand(image, row, rows, bandFilter), executor));
+        }
+        List<CompletableFuture<Deflated>> deflated = new ArrayList<>();
+        for (int i = 0; i < filtered.size(); i++) {
+            boolean last = i == filtered.size() - 1;
+            if (i == 0) {
+                deflated.add(filtered.get(0)
+                        .thenApplyAsync(data -> deflate(data, null, last), executor));
+            } else {
+                deflated.add(filtered.get(i).thenCombineAsync(filtered.get(i - 1),
+                        (data, previous) -> deflate(data, previous, last), executor));
+            }
+        }
+
+        try {
+            out.write(SIGNATURE);
+            writeHeader(out, width, height, colorType);
+            if (palette) {
+                writePalette(out, (IndexColorModel) image.getColorModel());
+            }
+            long adler = 1;
+            for (int i = 0; i < deflated.size(); i++) {
+                Deflated band = deflated.get(i).join();
+                adler = i == 0 ? band.adler : combineAdler32(adler, band.adler, band.length);
+                byte[] prefix = i == 0 ? getZlibHeader(compressionLevel) : new byte[0];
+                byte[] suffix = i == deflated.size() - 1 ? toBytes((int) adler) : new byte[0];
+                writeChunk(out, "IDAT", prefix, band.data, suffix);
+            }
+            writeChunk(out, "IEND");
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Failed to encode the PNG", cause);
+        } finally {
+            // don't leave the remaining bands compressing if the output failed
+            for (CompletableFuture<Deflated> future : deflated) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Filters the rows of a band, each one prefixed by its filter type
+     *
+     * @param filter The filter type, or {@link #FILTER_ADAPTIVE} to pick the best one
+     */
+    byte[] filterBand(RenderedImage image, int y, int rows, int filter) {
+        int width = image.getWidth();
+        int bpp = image.getSampleModel().getNumBands();
+        int rowBytes = width * bpp;
+        // the first row is filtered against the last one of the previous band
+        int first = y > 0 ? y - 1 : y;
+        Raster raster = getRows(image, first, y + rows - first);
+        int minX = image.getMinX();
+        int minY = image.getMinY();
+
+        byte[][] raw = new byte[rows + 1][];
+        raw[0] = y > 0 ? getRow(raster, minX, minY + first, width, rowBytes)
+                : new byte[rowBytes];
+        for (int i = 0; i < rows; i++) {
+            raw[i + 1] = getRow(raster, minX, minY + y + i, width, rowBytes);
+        }
+
+        if (filter == FILTER_ADAPTIVE) {
+            filter = chooseFilter(raw, bpp);
+        }
+        byte[] result = new byte[rows * (rowBytes + 1)];
+        for (int i = 0; i < rows; i++) {
+            filterRow(filter, raw[i + 1], raw[i], bpp, result, i * (rowBytes + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a raster containing the requested rows, in the image coordinates
+     */
+    Raster getRows(RenderedImage image, int y, int rows) {
+        if (image instanceof BufferedImage) {
+            return ((BufferedImage) image).getRaster();
+        }
+        return image.getData(
+                new Rectangle(image.getMinX(), image.getMinY() + y, image.getWidth(), rows));
+    }
+
+    byte[] getRow(Raster raster, int x, int y, int width, int rowBytes) {
+        // data elements are returned in band order, whatever the pixel layout
+        byte[] row = (byte[]) raster.getDataElements(x, y, width, 1, null);
+        if (row.length != rowBytes) {
+            throw new IllegalStateException(
+                    "Unexpected row length " + row.length + ", was expecting " + rowBytes);
+        }
+        return row;
+    }
+
+    /**
+     * Picks the filter with the smallest sum of absolute differences over a sample of the rows,
+     * the usual PNG heuristic
+     *
+     * @param raw The band rows, preceded by the row above the band
+     */
+    static int chooseFilter(byte[][] raw, int bpp) {
+        int rows = raw.length - 1;
+        int step = Math.max(1, rows / SAMPLE_ROWS);
+        byte[] scratch = new byte[raw[0].length + 1];
+        long[] costs = new long[FILTER_PAETH + 1];
+        for (int i = 1; i <= rows; i += step) {
+            for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+                filterRow(filter, raw[i], raw[i - 1], bpp, scratch, 0);
+                long cost = 0;
+                for (int j = 1; j < scratch.length; j++) {
+                    cost += Math.abs(scratch[j]);
+                }
+                costs[filter] += cost;
+            }
+        }
+        int best = FILTER_NONE;
+        for (int filter = FILTER_SUB; filter <= FILTER_PAETH; filter++) {
+            if (costs[filter] < costs[best]) {
+                best = filter;
+            }
+        }
+        return best;
+    }
+
+    static void filterRow(int filter, byte[] row, byte[] previous, int bpp, byte[] out,
+            int offset) {
+        out[offset++] = (byte) filter;
+        int length = row.length;
+        switch (filter) {
+        case FILTER_NONE:
+            System.arraycopy(row, 0, out, offset, length);
+            break;
+        case FILTER_SUB:
+            for (int i = 0; i < bpp; i++) {
+                out[offset + i] = row[i];
+            }
+            for (int i = bpp; i < length; i++) {
+                out[offset + i] = (byte) (row[i] - row[i - bpp]);
+            }
+            break;
+        case FILTER_UP:
+            for (int i = 0; i < length; i++) {
+                out[offset + i] = (byte) (row[i] - previous[i]);
+            }
+            break;
+        case FILTER_AVERAGE:
+            for (int i = 0; i < bpp; i++) {
+                out[offset + i] = (byte) (row[i] - ((previous[i] & 0xFF) >> 1));
+            }
+            for (int i = bpp; i < length; i++) {
+                out[offset + i] = (byte) (row[i]
+                        - (((row[i - bpp] & 0xFF) + (previous[i] & 0xFF)) >> 1));
+            }
+            break;
+        case FILTER_PAETH:
+            for (int i = 0; i < bpp; i++) {
+                out[offset + i] = (byte) (row[i] - previous[i]);
+            }
+            for (int i = bpp; i < length; i++) {
+                out[offset + i] = (byte) (row[i] - paeth(row[i - bpp] & 0xFF,
+                        previous[i] & 0xFF, previous[i - bpp] & 0xFF));
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown filter type " + filter);
+        }
+    }
+
+    static int paeth(int left, int up, int upLeft) {
+        int p = left + up - upLeft;
+        int pa = Math.abs(p - left);
+        int pb = Math.abs(p - up);
+        int pc = Math.abs(p - upLeft);
+        if (pa <= pb && pa <= pc) {
+            return left;
+        } else if (pb <= pc) {
+            return up;
+        }
+        return upLeft;
+    }
+
+    /**
+     * Compresses a band into raw deflate blocks. All bands but the last end with a sync flush, so
+     * that the next band blocks can be appended, the last one terminates the deflate stream.
+     */
+    Deflated deflate(byte[] data, byte[] previous, boolean last) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (previous != null) {
+                int length = Math.min(DICTIONARY_SIZE, previous.length);
+                deflater.setDictionary(previous, previous.length - length, length);
+            }
+            deflater.setInput(data);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 4 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    bos.write(buffer, 0, count);
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    bos.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+
+            Adler32 adler = new Adler32();
+            adler.update(data);
+            return new Deflated(bos.toByteArray(), adler.getValue(), data.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Computes the Adler-32 checksum of two concatenated sequences out of the checksums of the
+     * two, as the zlib <code>adler32_combine</code> function
+     *
+     * @param length2 The length of the second sequence
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * The zlib stream header, 32k window, with the compression level hint
+     */
+    static byte[] getZlibHeader(int level) {
+        int cmf = 0x78;
+        int hint = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int flg = hint << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        return new byte[] { (byte) cmf, (byte) flg };
+    }
+
+    void writeHeader(OutputStream out, int width, int height, int colorType)
+            throws IOException {
+        byte[] header = new byte[13];
+        System.arraycopy(toBytes(width), 0, header, 0, 4);
+        System.arraycopy(toBytes(height), 0, header, 4, 4);
+        header[8] = 8; // bit depth
+        header[9] = (byte) colorType;
+        // compression, filter and interlace methods are all zero
+        writeChunk(out, "IHDR", header);
+    }
+
+    void writePalette(OutputStream out, IndexColorModel icm) throws IOException {
+        int size = icm.getMapSize();
+        byte[] reds = new byte[size];
+        byte[] greens = new byte[size];
+        byte[] blues = new byte[size];
+        byte[] alphas = new byte[size];
+        icm.getReds(reds);
+        icm.getGreens(greens);
+        icm.getBlues(blues);
+        icm.getAlphas(alphas);
+
+        byte[] palette = new byte[size * 3];
+        for (int i = 0; i < size; i++) {
+            palette[i * 3] = reds[i];
+            palette[i * 3 + 1] = greens[i];
+            palette[i * 3 + 2] = blues[i];
+        }
+        writeChunk(out, "PLTE", palette);
+
+        // only the entries up to the last translucent one need to be listed
+        int transparent = size;
+        while (transparent > 0 && alphas[transparent - 1] == (byte) 0xFF) {
+            transparent--;
+        }
+        if (transparent > 0) {
+            byte[] transparency = new byte[transparent];
+            System.arraycopy(alphas, 0, transparency, 0, transparent);
+            writeChunk(out, "tRNS", transparency);
+        }
+    }
+
+    static void writeChunk(OutputStream out, String type, byte[]... parts) throws IOException {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        out.write(toBytes(length));
+        out.write(typeBytes);
+        for (byte[] part : parts) {
+            crc.update(part);
+            out.write(part);
+        }
+        out.write(toBytes((int) crc.getValue()));
+    }
+
+    static byte[] toBytes(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8),
+                (byte) value };
+    }
+
+    /**
+     * A compressed band, with the checksum and length of the uncompressed data
+     */
+    static class Deflated {
+
+        final byte[] data;
+
+        final long adler;
+
+        final int length;
+
+        Deflated(byte[] data, long adler, int length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+}
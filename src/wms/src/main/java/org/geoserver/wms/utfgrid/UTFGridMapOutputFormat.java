@@ -96,6 +96,12 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
                 return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
             }
 
+            @Override
+            protected boolean isParallelRenderingEnabled() {
+                // the color function collecting the entries is not thread safe
+                return false;
+            }
+
             @Override
             protected void onBeforeRender(StreamingRenderer renderer) {
                 // disable antialiasing, numbers signify ids, we cannot have "half tints"
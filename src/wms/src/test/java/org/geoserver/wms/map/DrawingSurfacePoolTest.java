@@ -0,0 +1,123 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.geoserver.catalog.ResourceCache;
+import org.junit.Test;
+
+public class DrawingSurfacePoolTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        DrawingSurfacePool pool = new DrawingSurfacePool(1024 * 1024);
+        BufferedImage image = pool.createImage(256, 256, true);
+        assertEquals(BufferedImage.TYPE_4BYTE_ABGR, image.getType());
+        assertEquals(1, pool.getLeasedCount());
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 256, 256);
+        graphics.dispose();
+
+        assertTrue(pool.release(image));
+        assertEquals(0, pool.getLeasedCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(256 * 256 * 4, pool.getIdleMemory());
+        // released only once
+        assertFalse(pool.release(image));
+
+        // different color model, not reused
+        BufferedImage opaque = pool.createImage(256, 256, false);
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, opaque.getType());
+        assertNotSame(image, opaque);
+
+        // same size and color model, reused and cleared
+        BufferedImage reused = pool.createImage(256, 256, true);
+        assertSame(image, reused);
+        assertEquals(0, reused.getRGB(128, 128));
+        assertEquals(0, pool.getIdleMemory());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testCacheStatistics() throws Exception {
+        DrawingSurfacePool pool = new DrawingSurfacePool(1024 * 1024);
+        BufferedImage image = pool.createImage(256, 256, true);
+        assertTrue(pool.release(image));
+        pool.createImage(256, 256, true);
+        pool.createImage(256, 256, true);
+        assertTrue(pool.release(image));
+
+        List<ResourceCache.Statistics> stats = pool.getCacheStatistics();
+        assertEquals(1, stats.size());
+        ResourceCache.Statistics poolStats = stats.get(0);
+        assertEquals("drawingSurfaces", poolStats.getName());
+        assertEquals(1, poolStats.getSize());
+        assertEquals(256 * 256 * 4, poolStats.getWeight());
+        assertEquals(1024 * 1024, poolStats.getMaxWeight());
+        assertEquals(1, poolStats.getHitCount());
+        assertEquals(2, poolStats.getMissCount());
+    }
+
+    @Test
+    public void testMemoryBound() throws Exception {
+        // room for two transparent 256x256 surfaces
+        DrawingSurfacePool pool = new DrawingSurfacePool(2 * 256 * 256 * 4);
+        BufferedImage small1 = pool.createImage(256, 256, true);
+        BufferedImage small2 = pool.createImage(256, 256, true);
+        BufferedImage small3 = pool.createImage(256, 256, true);
+        assertTrue(pool.release(small1));
+        assertTrue(pool.release(small2));
+        assertFalse(pool.release(small3));
+        assertEquals(2, pool.getIdleCount());
+
+        // a surface of a different size evicts the idle ones to make room
+        BufferedImage large = pool.createImage(512, 256, true);
+        assertTrue(pool.release(large));
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(512 * 256 * 4, pool.getIdleMemory());
+        assertEquals(2, pool.getEvictionCount());
+
+        // too large to be ever pooled
+        BufferedImage huge = pool.createImage(1024, 1024, true);
+        assertFalse(pool.release(huge));
+
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getIdleMemory());
+    }
+
+    @Test
+    public void testForget() throws Exception {
+        DrawingSurfacePool pool = new DrawingSurfacePool(1024 * 1024);
+        BufferedImage image = pool.createImage(256, 256, true);
+        pool.forget(image);
+        assertFalse(pool.release(image));
+
+        // images not created by the pool are ignored
+        assertFalse(pool.release(new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR)));
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        DrawingSurfacePool pool = new DrawingSurfacePool(0);
+        BufferedImage image = pool.createImage(256, 256, true);
+        assertEquals(BufferedImage.TYPE_4BYTE_ABGR, image.getType());
+        assertFalse(pool.release(image));
+        assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -6,10 +6,25 @@
 package org.geoserver.wms.map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
-
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geoserver.catalog.ResourceCache;
+import org.geoserver.wms.map.QuickTileCache.MapKey;
+import org.geoserver.wms.map.QuickTileCache.MetaTileKey;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.junit.Test;
 
 import com.vividsolutions.jts.geom.Envelope;
@@ -67,4 +82,90 @@ public class QuickTileCacheTest {
         assertEquals(new Point(0, 2), cache.getTileOffsetsInMeta(box1, meta));
         assertEquals(new Point(1, 2), cache.getTileOffsetsInMeta(box2, meta));
     }
+
+    @Test
+    public void testConcurrentRendersCoalesced() throws Exception {
+        final MetaTileKey key = metaTileKey(0, 0);
+        final AtomicInteger renders = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<RenderedImage[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.getTiles(key, () -> {
+                    renders.incrementAndGet();
+                    latch.await();
+                    return tiles();
+                })));
+            }
+            Thread.sleep(100);
+            latch.countDown();
+            RenderedImage[] tiles = futures.get(0).get();
+            for (Future<RenderedImage[]> future : futures) {
+                assertSame(tiles, future.get());
+            }
+            assertEquals(1, renders.get());
+        } finally {
+            executor.shutdown();
+        }
+
+        ResourceCache.Statistics stats = cache.getStatistics();
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getLoadCount());
+        assertEquals(9 * 256 * 256 * 4, stats.getWeight());
+    }
+
+    @Test
+    public void testCacheStatistics() throws Exception {
+        cache.storeTiles(metaTileKey(0, 0), tiles());
+
+        List<ResourceCache.Statistics> stats = cache.getCacheStatistics();
+        assertEquals(1, stats.size());
+        assertEquals("metaTiles", stats.get(0).getName());
+        assertEquals(1, stats.get(0).getSize());
+    }
+
+    @Test
+    public void testMemoryBound() throws Exception {
+        // room for two meta tiles only
+        QuickTileCache cache = new QuickTileCache(2 * 9 * 256 * 256 * 4);
+        for (int i = 0; i < 5; i++) {
+            cache.storeTiles(metaTileKey(i * 3, 0), tiles());
+        }
+        assertTrue(cache.size() <= 2);
+        assertTrue(cache.getStatistics().getEvictionCount() >= 3);
+        assertTrue(cache.getStatistics().getWeight() <= 2 * 9 * 256 * 256 * 4);
+    }
+
+    @Test
+    public void testClearWhileRendering() throws Exception {
+        final MetaTileKey key = metaTileKey(0, 0);
+        cache.getTiles(key, () -> {
+            cache.clear();
+            return tiles();
+        });
+        // the tiles might be stale, they are not cached
+        assertEquals(0, cache.size());
+
+        RenderedImage[] tiles = cache.getTiles(key, () -> tiles());
+        assertEquals(1, cache.size());
+        assertSame(tiles, cache.getTiles(key, () -> tiles()));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    MetaTileKey metaTileKey(int x, int y) {
+        MapKey mapKey = new MapKey("layers=topp:states", 1, new Point2D.Double(0, 0));
+        ReferencedEnvelope envelope = new ReferencedEnvelope(x * 256, (x + 3) * 256, y * 256,
+                (y + 3) * 256, null);
+        return new MetaTileKey(mapKey, new Point(x, y), envelope);
+    }
+
+    RenderedImage[] tiles() {
+        RenderedImage[] tiles = new RenderedImage[9];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        }
+        return tiles;
+    }
 }
@@ -31,6 +31,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -81,14 +83,17 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.image.test.ImageAssert;
 import org.geotools.map.FeatureLayer;
 import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
 import org.geotools.parameter.Parameter;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.renderer.lite.LabelCache;
+import org.geotools.renderer.lite.RendererUtilities;
 import org.geotools.renderer.lite.StreamingRenderer;
 import org.geotools.resources.coverage.FeatureUtilities;
 import org.geotools.resources.image.ImageUtilities;
 import org.geotools.styling.ChannelSelection;
 import org.geotools.styling.ChannelSelectionImpl;
+import org.geotools.styling.FeatureTypeStyle;
 import org.geotools.styling.RasterSymbolizer;
 import org.geotools.styling.SelectedChannelType;
 import org.geotools.styling.SelectedChannelTypeImpl;
@@ -342,6 +347,208 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
         }
     }
 
+    @Test
+    public void testParallelLayerRendering() throws Exception {
+        Catalog catalog = getCatalog();
+        MapContent content = new MapContent();
+        ReferencedEnvelope bounds = null;
+        for (QName name : new QName[] { MockData.BASIC_POLYGONS, MockData.LAKES, MockData.FORESTS,
+                MockData.STREAMS }) {
+            FeatureTypeInfo ft = catalog.getFeatureTypeByName(name.getPrefix(),
+                    name.getLocalPart());
+            Style style = catalog.getLayerByName(ft.prefixedName()).getDefaultStyle().getStyle();
+            content.addLayer(new FeatureLayer(ft.getFeatureSource(null, null), style));
+            ReferencedEnvelope layerBounds = ft.getLatLonBoundingBox();
+            if (bounds == null) {
+                bounds = new ReferencedEnvelope(layerBounds);
+            } else {
+                bounds.expandToInclude(layerBounds);
+            }
+        }
+        // none of the layers has labels, they can be split in as many groups as asked
+        assertEquals(3, ParallelLayerRenderer.groupLayers(content.layers(), 3).size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BufferedImage expected = paint(new StreamingRenderer(), content, bounds);
+            BufferedImage actual = paint(new ParallelLayerRenderer(executor,
+                    StreamingRenderer::new, 3), content, bounds);
+            ImageAssert.assertEquals(expected, actual, 10);
+        } finally {
+            executor.shutdown();
+            content.dispose();
+        }
+    }
+
+    @Test
+    public void testParallelLayerRenderingGroups() throws Exception {
+        Catalog catalog = getCatalog();
+        StyleBuilder sb = new StyleBuilder();
+        Style polygons = sb.createStyle(sb.createPolygonSymbolizer());
+        Style labels = sb.createStyle(sb.createTextSymbolizer());
+        SimpleFeatureSource fs = (SimpleFeatureSource) catalog.getFeatureTypeByName(
+                MockData.BASIC_POLYGONS.getPrefix(), MockData.BASIC_POLYGONS.getLocalPart())
+                .getFeatureSource(null, null);
+        List<Layer> layers = new ArrayList<>();
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, labels));
+        layers.add(new FeatureLayer(fs, polygons));
+
+        // the labelled layer and the ones above it are painted together
+        List<List<Layer>> groups = ParallelLayerRenderer.groupLayers(layers, 8);
+        assertEquals(3, groups.size());
+        assertEquals(Collections.singletonList(layers.get(0)), groups.get(0));
+        assertEquals(Collections.singletonList(layers.get(1)), groups.get(1));
+        assertEquals(layers.subList(2, 4), groups.get(2));
+
+        // with fewer groups available the layers without labels are merged
+        groups = ParallelLayerRenderer.groupLayers(layers, 2);
+        assertEquals(2, groups.size());
+        assertEquals(layers.subList(0, 2), groups.get(0));
+
+        // nothing to parallelize if the bottom layer has labels
+        assertEquals(1, ParallelLayerRenderer.groupLayers(layers.subList(2, 4), 8).size());
+    }
+
+    @Test
+    public void testParallelLayerRenderingSortByGroup() throws Exception {
+        StyleBuilder sb = new StyleBuilder();
+        Style polygons = sb.createStyle(sb.createPolygonSymbolizer());
+        Style sorted = sb.createStyle(sb.createPolygonSymbolizer());
+        sorted.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.SORT_BY_GROUP,
+                "roads");
+        SimpleFeatureSource fs = getBasicPolygons();
+        List<Layer> layers = new ArrayList<>();
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, sorted));
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, sorted));
+
+        // the z-ordered layers and the ones between them are painted together
+        List<List<Layer>> groups = ParallelLayerRenderer.groupLayers(layers, 8);
+        assertEquals(3, groups.size());
+        assertEquals(layers.subList(2, 5), groups.get(2));
+    }
+
+    @Test
+    public void testParallelLayerRenderingComposite() throws Exception {
+        StyleBuilder sb = new StyleBuilder();
+        Style polygons = sb.createStyle(sb.createPolygonSymbolizer());
+        Style multiply = sb.createStyle(sb.createPolygonSymbolizer());
+        multiply.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.COMPOSITE,
+                "multiply");
+        Style base = sb.createStyle(sb.createPolygonSymbolizer());
+        base.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.COMPOSITE_BASE,
+                "true");
+        SimpleFeatureSource fs = getBasicPolygons();
+        List<Layer> layers = new ArrayList<>();
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, polygons));
+        layers.add(new FeatureLayer(fs, multiply));
+
+        // blends with all the layers below, nothing can be painted in parallel
+        assertEquals(1, ParallelLayerRenderer.groupLayers(layers, 8).size());
+
+        // unless a composition base starts a new group
+        layers.add(2, new FeatureLayer(fs, base));
+        List<List<Layer>> groups = ParallelLayerRenderer.groupLayers(layers, 8);
+        assertEquals(3, groups.size());
+        assertEquals(layers.subList(2, 4), groups.get(2));
+
+        // a base blending with what's below needs all the layers below as well
+        base.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.COMPOSITE,
+                "multiply");
+        assertEquals(1, ParallelLayerRenderer.groupLayers(layers, 8).size());
+
+        // and the output matches the sequential one
+        MapContent content = new MapContent();
+        Style red = sb.createStyle(sb.createPolygonSymbolizer(Color.RED));
+        Style blue = sb.createStyle(sb.createPolygonSymbolizer(Color.BLUE));
+        blue.featureTypeStyles().get(0).getOptions().put(FeatureTypeStyle.COMPOSITE,
+                "multiply");
+        content.addLayer(new FeatureLayer(fs, red));
+        content.addLayer(new FeatureLayer(fs, polygons));
+        content.addLayer(new FeatureLayer(fs, blue));
+        ReferencedEnvelope bounds = new ReferencedEnvelope(fs.getBounds(),
+                DefaultGeographicCRS.WGS84);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BufferedImage expected = paint(new StreamingRenderer(), content, bounds);
+            BufferedImage actual = paint(new ParallelLayerRenderer(executor,
+                    StreamingRenderer::new, 3), content, bounds);
+            ImageAssert.assertEquals(expected, actual, 10);
+        } finally {
+            executor.shutdown();
+            content.dispose();
+        }
+    }
+
+    private SimpleFeatureSource getBasicPolygons() throws IOException {
+        return (SimpleFeatureSource) getCatalog().getFeatureTypeByName(
+                MockData.BASIC_POLYGONS.getPrefix(), MockData.BASIC_POLYGONS.getLocalPart())
+                .getFeatureSource(null, null);
+    }
+
+    @Test
+    public void testParallelLayerRenderingTimeout() throws Exception {
+        Catalog catalog = getCatalog();
+        Style basicStyle = catalog.getStyleByName("Default").getStyle();
+        SimpleFeatureSource fs = (SimpleFeatureSource) catalog.getFeatureTypeByName(
+                MockData.BASIC_POLYGONS.getPrefix(), MockData.BASIC_POLYGONS.getLocalPart())
+                .getFeatureSource(null, null);
+        ReferencedEnvelope bounds = new ReferencedEnvelope(fs.getBounds(),
+                DefaultGeographicCRS.WGS84);
+        MapContent content = new MapContent();
+        for (int i = 0; i < 4; i++) {
+            content.addLayer(new FeatureLayer(new DelayedFeatureCollection(fs.getFeatures(), 1000),
+                    basicStyle));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ParallelLayerRenderer renderer = new ParallelLayerRenderer(executor,
+                    StreamingRenderer::new, 4);
+            renderer.setMapContent(content);
+            BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            RenderingTimeoutEnforcer timeout = new RenderingTimeoutEnforcer(100, renderer,
+                    graphics);
+            long start = System.currentTimeMillis();
+            timeout.start();
+            try {
+                Rectangle paintArea = new Rectangle(0, 0, 100, 100);
+                renderer.paint(graphics, paintArea, bounds,
+                        RendererUtilities.worldToScreenTransform(bounds, paintArea));
+            } finally {
+                timeout.stop();
+            }
+            assertTrue(timeout.isTimedOut());
+            // every layer takes 3 seconds to paint, the stop request has to reach all of them
+            assertTrue(System.currentTimeMillis() - start < 2500);
+        } finally {
+            executor.shutdown();
+            content.dispose();
+        }
+    }
+
+    private BufferedImage paint(StreamingRenderer renderer, MapContent content,
+            ReferencedEnvelope bounds) throws Exception {
+        Rectangle paintArea = new Rectangle(0, 0, 300, 300);
+        BufferedImage image = new BufferedImage(paintArea.width, paintArea.height,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            renderer.setMapContent(content);
+            renderer.paint(graphics, paintArea, bounds,
+                    RendererUtilities.worldToScreenTransform(bounds, paintArea));
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
     @Test
     public void testDefaultStyle() throws Exception {
         List<org.geoserver.catalog.FeatureTypeInfo> typeInfos = getCatalog().getFeatureTypes();
@@ -0,0 +1,191 @@
+/* (c) 2018 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ar.com.hjg.pngj.FilterType;
+
+public class ParallelPNGEncoderTest {
+
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRGBA() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_4BYTE_ABGR)), 6);
+    }
+
+    @Test
+    public void testRGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_3BYTE_BGR)), 9);
+    }
+
+    @Test
+    public void testGray() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY)), 1);
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(300, 200, BufferedImage.TYPE_4BYTE_ABGR)), 0);
+    }
+
+    @Test
+    public void testFixedFilters() throws Exception {
+        BufferedImage image = paint(new BufferedImage(300, 200, BufferedImage.TYPE_4BYTE_ABGR));
+        for (int filter = ParallelPNGEncoder.FILTER_NONE;
+                filter <= ParallelPNGEncoder.FILTER_PAETH; filter++) {
+            assertRoundTrip(image, 6, filter);
+            // each row is prefixed by the requested filter type
+            byte[] band = new ParallelPNGEncoder(executor, 6).filterBand(image, 10, 2, filter);
+            assertEquals(filter, band[0]);
+            assertEquals(filter, band[300 * 4 + 1]);
+        }
+    }
+
+    @Test
+    public void testPNGJFilterMapping() throws Exception {
+        assertEquals(ParallelPNGEncoder.FILTER_NONE,
+                PNGJWriter.getParallelFilter(FilterType.FILTER_NONE));
+        assertEquals(ParallelPNGEncoder.FILTER_SUB,
+                PNGJWriter.getParallelFilter(FilterType.FILTER_SUB));
+        assertEquals(ParallelPNGEncoder.FILTER_ADAPTIVE,
+                PNGJWriter.getParallelFilter(FilterType.FILTER_DEFAULT));
+    }
+
+    @Test
+    public void testPaletted() throws Exception {
+        byte[] reds = new byte[256];
+        byte[] greens = new byte[256];
+        byte[] blues = new byte[256];
+        byte[] alphas = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            reds[i] = (byte) i;
+            greens[i] = (byte) (255 - i);
+            blues[i] = (byte) (i * 7);
+            alphas[i] = (byte) (i < 16 ? i * 16 : 255);
+        }
+        IndexColorModel icm = new IndexColorModel(8, 256, reds, greens, blues, alphas);
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_INDEXED, icm);
+        Random random = new Random(0);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.getRaster().setSample(x, y, 0, (x / 10 + y / 10 + random.nextInt(3)) % 256);
+            }
+        }
+        assertRoundTrip(image, 6);
+    }
+
+    @Test
+    public void testSupported() throws Exception {
+        ParallelPNGEncoder encoder = new ParallelPNGEncoder(executor, 6);
+        assertTrue(encoder.canEncode(new BufferedImage(512, 512, BufferedImage.TYPE_4BYTE_ABGR)));
+        // a single band, not worth splitting
+        assertFalse(encoder.canEncode(new BufferedImage(64, 64, BufferedImage.TYPE_4BYTE_ABGR)));
+        // packed pixels and premultiplied alpha are not handled
+        assertFalse(ParallelPNGEncoder
+                .isSupported(new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB)));
+        assertFalse(ParallelPNGEncoder
+                .isSupported(new BufferedImage(64, 64, BufferedImage.TYPE_4BYTE_ABGR_PRE)));
+        assertFalse(ParallelPNGEncoder
+                .isSupported(new BufferedImage(64, 64, BufferedImage.TYPE_BYTE_BINARY)));
+    }
+
+    @Test
+    public void testCombineAdler32() throws Exception {
+        byte[] data = new byte[100000];
+        new Random(0).nextBytes(data);
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 30000);
+        Adler32 second = new Adler32();
+        second.update(data, 30000, 70000);
+        assertEquals(whole.getValue(),
+                ParallelPNGEncoder.combineAdler32(first.getValue(), second.getValue(), 70000));
+    }
+
+    @Test
+    public void testZlibHeader() throws Exception {
+        for (int level = 0; level <= 9; level++) {
+            byte[] header = ParallelPNGEncoder.getZlibHeader(level);
+            assertEquals(0, (((header[0] & 0xFF) << 8) + (header[1] & 0xFF)) % 31);
+            // no preset dictionary
+            assertEquals(0, header[1] & 0x20);
+        }
+        assertEquals((byte) 0x9C, ParallelPNGEncoder.getZlibHeader(6)[1]);
+    }
+
+    BufferedImage paint(BufferedImage image) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setPaint(new GradientPaint(0, 0, new Color(255, 0, 0, 40), 300, 200,
+                new Color(0, 0, 255, 220)));
+        graphics.fillRect(0, 0, 300, 100);
+        graphics.setColor(Color.GREEN);
+        graphics.setStroke(new BasicStroke(3));
+        for (int i = 0; i < 20; i++) {
+            graphics.drawLine(i * 15, 0, 300 - i * 15, 200);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    void assertRoundTrip(BufferedImage image, int level) throws Exception {
+        assertRoundTrip(image, level, ParallelPNGEncoder.FILTER_ADAPTIVE);
+    }
+
+    void assertRoundTrip(BufferedImage image, int level, int filter) throws Exception {
+        ParallelPNGEncoder encoder = new ParallelPNGEncoder(executor, level);
+        // small bands, so that the image is split in many of them
+        encoder.bandSize = 4096;
+        assertTrue(encoder.canEncode(image));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encoder.encode(image, bos, filter);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(image.getWidth(), decoded.getWidth());
+        assertEquals(image.getHeight(), decoded.getHeight());
+        assertEquals(image.getColorModel().hasAlpha(), decoded.getColorModel().hasAlpha());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals("Pixel " + x + "," + y, image.getRGB(x, y), decoded.getRGB(x, y));
+            }
+        }
+    }
+}